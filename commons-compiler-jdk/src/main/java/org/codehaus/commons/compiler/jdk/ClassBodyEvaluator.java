@@ -64,7 +64,7 @@ import org.codehaus.commons.nullanalysis.Nullable;
 public
 class ClassBodyEvaluator extends Cookable implements IClassBodyEvaluator {
 
-    private final SimpleCompiler sc = new SimpleCompiler();
+    final SimpleCompiler sc = new SimpleCompiler();
 
     private String[]           defaultImports = new String[0];
     private String             className      = IClassBodyEvaluator.DEFAULT_CLASS_NAME;
@@ -75,6 +75,9 @@ class ClassBodyEvaluator extends Cookable implements IClassBodyEvaluator {
     @Override public void
     setClassName(String className) { this.className = className; }
 
+    String
+    getClassName() { return this.className; }
+
     @Override public void
     setDefaultImports(String... defaultImports) { this.defaultImports = defaultImports.clone(); }
 
@@ -115,6 +118,12 @@ class ClassBodyEvaluator extends Cookable implements IClassBodyEvaluator {
     @Override public void
     setTargetVersion(int version) { this.sc.setTargetVersion(version); }
 
+    /**
+     * @see Compiler#setPooled(boolean)
+     */
+    public void
+    setPooled(boolean pooled) { this.sc.setPooled(pooled); }
+
     @Override public void
     setCompileErrorHandler(@Nullable ErrorHandler compileErrorHandler) {
         this.sc.setCompileErrorHandler(compileErrorHandler);
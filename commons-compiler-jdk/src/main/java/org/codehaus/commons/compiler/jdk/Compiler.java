@@ -31,16 +31,24 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Deque;
+import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedSet;
 
 import javax.tools.Diagnostic;
 import javax.tools.DiagnosticListener;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
 import javax.tools.JavaCompiler;
 import javax.tools.JavaFileManager;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaFileObject.Kind;
+import javax.tools.StandardJavaFileManager;
 import javax.tools.StandardLocation;
 import javax.tools.ToolProvider;
 
@@ -54,9 +62,11 @@ import org.codehaus.commons.compiler.jdk.util.JavaFileManagers;
 import org.codehaus.commons.compiler.jdk.util.JavaFileObjects;
 import org.codehaus.commons.compiler.jdk.util.JavaFileObjects.ResourceJavaFileObject;
 import org.codehaus.commons.compiler.util.reflect.ApiLog;
+import org.codehaus.commons.compiler.util.resource.MapResourceCreator;
 import org.codehaus.commons.compiler.util.resource.Resource;
 import org.codehaus.commons.compiler.util.resource.ResourceCreator;
 import org.codehaus.commons.compiler.util.resource.ResourceFinder;
+import org.codehaus.commons.nullanalysis.NotNullByDefault;
 import org.codehaus.commons.nullanalysis.Nullable;
 
 /**
@@ -65,28 +75,72 @@ import org.codehaus.commons.nullanalysis.Nullable;
 public
 class Compiler extends AbstractCompiler {
 
+    /**
+     * The maximum number of idle {@link StandardJavaFileManager}s that are kept per pool; see {@link
+     * #setPooled(boolean)}.
+     */
+    private static final int MAX_IDLE_FILE_MANAGERS = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Idle {@link StandardJavaFileManager}s, keyed by the {@link JavaCompiler} that created them and by the effective
+     * compiler options that were applied to them; see {@link #setPooled(boolean)}.
+     */
+    private static final Map<List<Object>, Deque<StandardJavaFileManager>>
+    IDLE_FILE_MANAGERS = new HashMap<>();
+
+    @Nullable private static JavaCompiler systemJavaCompiler;
+
     private Collection<String> compilerOptions = new ArrayList<>();
 
     private final JavaCompiler compiler;
 
+    private boolean pooled;
+
     public
-    Compiler() {
-        JavaCompiler c = ToolProvider.getSystemJavaCompiler();
-        if (c == null) {
+    Compiler() { this.compiler = Compiler.getSystemJavaCompiler(); }
+
+    /**
+     * Initializes with a <em>different</em>, {@code javax.tools.JavaCompiler}-compatible Java compiler.
+     */
+    public
+    Compiler(JavaCompiler compiler) { this.compiler = compiler; }
+
+    /**
+     * The system Java compiler is looked up only once, because the lookup scans the class path for service providers.
+     */
+    private static synchronized JavaCompiler
+    getSystemJavaCompiler() {
+
+        JavaCompiler result = Compiler.systemJavaCompiler;
+        if (result != null) return result;
+
+        result = ToolProvider.getSystemJavaCompiler();
+        if (result == null) {
             throw new RuntimeException(
                 "JDK Java compiler not available - probably you're running a JRE, not a JDK",
                 null
             );
         }
 
-        this.compiler = c;
+        return (Compiler.systemJavaCompiler = result);
     }
 
     /**
-     * Initializes with a <em>different</em>, {@code javax.tools.JavaCompiler}-compatible Java compiler.
+     * By default, each compilation creates a new {@link StandardJavaFileManager}, which must index the boot class
+     * path and the class path before it can find any class; that typically takes several hundred milliseconds.
+     * <p>
+     *   In "pooled mode", the {@link StandardJavaFileManager}s are not closed after the compilation, but are kept
+     *   in a JVM-wide pool together with their caches, and are re-used by later compilations (in any thread) with
+     *   the same {@link JavaCompiler} and the same compiler options. Only the in-memory layers that read the source
+     *   files and store the class files are created anew for each compilation.
+     * </p>
+     * <p>
+     *   Notice that in pooled mode, changes to JAR files on the class path may go unnoticed. Also, the idle file
+     *   managers keep their JAR files open until {@link #closePooledFileManagers()} is invoked.
+     * </p>
      */
-    public
-    Compiler(JavaCompiler compiler) { this.compiler = compiler; }
+    public void
+    setPooled(boolean pooled) { this.pooled = pooled; }
 
     @Override public void
     setVerbose(boolean verbose) {}
@@ -111,6 +165,113 @@ class Compiler extends AbstractCompiler {
     public void
     compile(final Resource[] sourceResources, @Nullable SortedSet<Location> offsets) throws CompileException, IOException {
 
+        Compiler.compile(
+            this.compiler,
+            this.getEffectiveOptions(),
+            this.sourceFinder,
+            this.sourceCharset,
+            this.classFileFinder,
+            this.classFileCreator,
+            sourceResources,
+            this.compileErrorHandler,
+            this.warningHandler,
+            offsets,
+            this.pooled
+        );
+    }
+
+    /**
+     * Compiles all the <var>sourceResources</var> with only one javac task. Each generated class file is stored in the
+     * map that is associated with the source resource that it was generated from, rather than through the class file
+     * creator.
+     * <p>
+     *   Compilation errors are not reported to the compile error handler; instead, the first error causes a {@link
+     *   CompileException} to be thrown. Warnings are not reported.
+     * </p>
+     */
+    void
+    compile(Map<Resource, Map<String /*className*/, byte[] /*bytecode*/>> sourceResources)
+    throws CompileException, IOException {
+
+        // Wrap the source resources in JavaFileObjects.
+        final Map<JavaFileObject, Map<String, byte[]>> sourceFileObjects = new LinkedHashMap<>();
+        for (Map.Entry<Resource, Map<String, byte[]>> e : sourceResources.entrySet()) {
+            Resource sourceResource = e.getKey();
+            sourceFileObjects.put(
+                JavaFileObjects.fromResource(
+                    sourceResource,
+                    sourceResource.getFileName(),
+                    Kind.SOURCE,
+                    this.sourceCharset
+                ),
+                e.getValue()
+            );
+        }
+
+        List<String>            options             = this.getEffectiveOptions();
+        List<Object>            poolKey             = Arrays.asList(this.compiler, options);
+        StandardJavaFileManager standardFileManager = (
+            this.pooled
+            ? Compiler.borrowFileManager(this.compiler, poolKey)
+            : this.compiler.getStandardFileManager(null, null, null)
+        );
+
+        JavaFileManager fileManager = Compiler.getJavaFileManager(
+            standardFileManager,
+            this.sourceFinder,
+            this.sourceCharset,
+            this.classFileFinder,
+            this.classFileCreator
+        );
+
+        // Store each .class file in the map of its source file ("sibling").
+        fileManager = new ForwardingJavaFileManager<JavaFileManager>(fileManager) {
+
+            @Override @NotNullByDefault(false) public JavaFileObject
+            getJavaFileForOutput(JavaFileManager.Location location, String className, Kind kind, FileObject sibling)
+            throws IOException {
+
+                Map<String, byte[]> classFiles = sourceFileObjects.get(sibling);
+                if (location == StandardLocation.CLASS_OUTPUT && kind == Kind.CLASS && classFiles != null) {
+                    return JavaFileObjects.fromResourceCreator(
+                        new MapResourceCreator(classFiles),
+                        className.replace('.', '/') + ".class",
+                        kind,
+                        Charset.defaultCharset()
+                    );
+                }
+
+                return super.getJavaFileForOutput(location, className, kind, sibling);
+            }
+        };
+
+        try {
+            Compiler.compile(
+                this.compiler,
+                options,
+                sourceFileObjects.keySet(),
+                fileManager,
+                null,                       // compileErrorHandler
+                null,                       // warningHandler
+                null                        // offsets
+            );
+        } finally {
+            if (this.pooled) {
+                fileManager.flush();
+                Compiler.releaseFileManager(poolKey, standardFileManager);
+            } else {
+                fileManager.close();
+            }
+        }
+    }
+
+    /**
+     * @return The command line options for javac, composed from the {@link #setCompilerOptions(String[]) compiler
+     *         options} and the various settings of this object
+     */
+    List<String>
+    getEffectiveOptions() {
+
         // Compose the effective compiler options.
         List<String> options = new ArrayList<>(this.compilerOptions);
 
@@ -154,18 +315,7 @@ class Compiler extends AbstractCompiler {
         options.add("-classpath");
         options.add(Compiler.filesToPath(this.classPath));
 
-        Compiler.compile(
-            this.compiler,
-            options,
-            this.sourceFinder,
-            this.sourceCharset,
-            this.classFileFinder,
-            this.classFileCreator,
-            sourceResources,
-            this.compileErrorHandler,
-            this.warningHandler,
-            offsets
-        );
+        return options;
     }
 
     static void
@@ -179,7 +329,8 @@ class Compiler extends AbstractCompiler {
         Resource[]                    sourceFiles,
         @Nullable ErrorHandler        compileErrorHandler,
         @Nullable WarningHandler      warningHandler,
-        @Nullable SortedSet<Location> offsets
+        @Nullable SortedSet<Location> offsets,
+        boolean                       pooled
     ) throws CompileException, IOException {
 
         // Wrap the source files in JavaFileObjects.
@@ -198,8 +349,16 @@ class Compiler extends AbstractCompiler {
             ));
         }
 
+        // Get the original FM, which reads class files through this JVM's BOOTCLASSPATH and CLASSPATH.
+        List<Object>            poolKey             = Arrays.asList(compiler, options);
+        StandardJavaFileManager standardFileManager = (
+            pooled
+            ? Compiler.borrowFileManager(compiler, poolKey)
+            : compiler.getStandardFileManager(null, null, null)
+        );
+
         final JavaFileManager fileManager = Compiler.getJavaFileManager(
-            compiler,
+            standardFileManager,
             sourceFinder,
             sourceFileCharset,
             classFileFinder,
@@ -216,26 +375,84 @@ class Compiler extends AbstractCompiler {
                 offsets
             );
         } finally {
-            fileManager.close();
+            if (pooled) {
+                fileManager.flush();
+                Compiler.releaseFileManager(poolKey, standardFileManager);
+            } else {
+                fileManager.close();
+            }
+        }
+    }
+
+    private static StandardJavaFileManager
+    borrowFileManager(JavaCompiler compiler, List<Object> poolKey) {
+
+        synchronized (Compiler.IDLE_FILE_MANAGERS) {
+            Deque<StandardJavaFileManager> idle = Compiler.IDLE_FILE_MANAGERS.get(poolKey);
+            if (idle != null && !idle.isEmpty()) return idle.pop();
+        }
+
+        return compiler.getStandardFileManager(null, null, null);
+    }
+
+    /**
+     * Closes and removes all idle {@link StandardJavaFileManager}s from the pool, which releases their caches and the
+     * JAR files that they hold open; see {@link #setPooled(boolean)}. File managers that are currently in use by a
+     * compilation are not affected; they are put back into the pool when that compilation completes.
+     */
+    public static void
+    closePooledFileManagers() throws IOException {
+
+        List<StandardJavaFileManager> fileManagers = new ArrayList<>();
+        synchronized (Compiler.IDLE_FILE_MANAGERS) {
+            for (Deque<StandardJavaFileManager> idle : Compiler.IDLE_FILE_MANAGERS.values()) fileManagers.addAll(idle);
+            Compiler.IDLE_FILE_MANAGERS.clear();
         }
+
+        IOException firstException = null;
+        for (StandardJavaFileManager fileManager : fileManagers) {
+            try {
+                fileManager.close();
+            } catch (IOException ioe) {
+                if (firstException == null) firstException = ioe;
+            }
+        }
+        if (firstException != null) throw firstException;
+    }
+
+    /**
+     * Puts the <var>fileManager</var> back into the pool, or closes it iff the pool is already full.
+     */
+    private static void
+    releaseFileManager(List<Object> poolKey, StandardJavaFileManager fileManager) throws IOException {
+
+        synchronized (Compiler.IDLE_FILE_MANAGERS) {
+            Deque<StandardJavaFileManager> idle = Compiler.IDLE_FILE_MANAGERS.get(poolKey);
+            if (idle == null) Compiler.IDLE_FILE_MANAGERS.put(poolKey, (idle = new LinkedList<>()));
+            if (idle.size() < Compiler.MAX_IDLE_FILE_MANAGERS) {
+                idle.push(fileManager);
+                return;
+            }
+        }
+
+        fileManager.close();
     }
 
     /**
-     * Creates a {@link JavaFileManager} that implements the given <var>sourceFileFinder</var>, <var>sourceFileCharset</var>,
-     * <var>classFileFinder</var> and <var>classFileCreator</var>.
+     * Wraps the <var>standardFileManager</var> in a {@link JavaFileManager} that implements the given
+     * <var>sourceFileFinder</var>, <var>sourceFileCharset</var>, <var>classFileFinder</var> and
+     * <var>classFileCreator</var>.
      */
     private static JavaFileManager
     getJavaFileManager(
-        JavaCompiler    compiler,
-        ResourceFinder  sourceFileFinder,
-        Charset         sourceFileCharset,
-        ResourceFinder  classFileFinder,
-        ResourceCreator classFileCreator
+        StandardJavaFileManager standardFileManager,
+        ResourceFinder          sourceFileFinder,
+        Charset                 sourceFileCharset,
+        ResourceFinder          classFileFinder,
+        ResourceCreator         classFileCreator
     ) {
 
-        // Get the original FM, which reads class files through this JVM's BOOTCLASSPATH and
-        // CLASSPATH.
-        JavaFileManager jfm = compiler.getStandardFileManager(null, null, null);
+        JavaFileManager jfm = standardFileManager;
 
         // Store .class file via the classFileCreator.
         jfm = JavaFileManagers.fromResourceCreator(
@@ -0,0 +1,304 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2019 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+
+package org.codehaus.commons.compiler.jdk;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.Cookable;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.StringResource;
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Cooks many {@link SimpleCompiler}s, {@link ClassBodyEvaluator}s, {@link ScriptEvaluator}s and {@link
+ * ExpressionEvaluator}s with as few javac tasks as possible, which amortizes javac's considerable per-task setup,
+ * e.g. when hundreds of evaluators are cooked at application startup.
+ * <pre>
+ *     CookBatch batch = new CookBatch();
+ *
+ *     ExpressionEvaluator ee1 = new ExpressionEvaluator();
+ *     ee1.setParameters(new String[] { "a", "b" }, new Class[] { int.class, int.class });
+ *     batch.add(ee1, "a + b");
+ *
+ *     ExpressionEvaluator ee2 = new ExpressionEvaluator();
+ *     batch.add(ee2, "\"foo\".length()");
+ *
+ *     batch.cook();
+ *
+ *     ee1.evaluate(new Object[] { 3, 4 });
+ * </pre>
+ * <p>
+ *   All members of the batch that have the same configuration (compiler options and parent class loader) are
+ *   compiled with one javac task, with one in-memory compilation unit per member. Members that use the {@link
+ *   IClassBodyEvaluator#DEFAULT_CLASS_NAME default class name} are assigned a unique class name, so that their
+ *   compilation units do not clash.
+ * </p>
+ * <p>
+ *   If a batched compilation fails, then the affected members are cooked one by one, so that each compilation error
+ *   is reported to (the compile error handler of) the right member. Notice that warnings are only reported for members
+ *   that are cooked one by one.
+ * </p>
+ */
+public
+class CookBatch {
+
+    private final List<Member> members = new ArrayList<>();
+
+    /**
+     * The members that are currently being cooked.
+     */
+    private final Map<SimpleCompiler, Member> cooking = new IdentityHashMap<>();
+
+    /**
+     * {@code true} while the compilation units are being collected, {@code false} while the members are being cooked.
+     */
+    private boolean collecting;
+
+    private static
+    class Member {
+
+        final Cookable         cookable;
+        final SimpleCompiler   simpleCompiler;
+        @Nullable final String fileName;
+        final String           document;
+
+        /**
+         * The compilation unit that the {@link #simpleCompiler} would compile, or {@code null} iff it was not (yet)
+         * collected.
+         */
+        @Nullable String compilationUnit;
+
+        /**
+         * The class files generated from the {@link #compilationUnit}, or {@code null} iff it was not (yet) compiled
+         * successfully.
+         */
+        @Nullable Map<String /*className*/, byte[] /*bytecode*/> classFiles;
+
+        Member(Cookable cookable, SimpleCompiler simpleCompiler, @Nullable String fileName, String document) {
+            this.cookable       = cookable;
+            this.simpleCompiler = simpleCompiler;
+            this.fileName       = fileName;
+            this.document       = document;
+        }
+    }
+
+    /**
+     * Thrown by {@link CookBatch#getClassFiles(SimpleCompiler, String)} to abort a cook after its compilation unit was
+     * collected.
+     */
+    private static
+    class Collected extends RuntimeException {
+
+        private static final long serialVersionUID = 1L;
+
+        Collected() { super(null, null, false, false); }
+    }
+
+    /**
+     * Equivalent with {@code add(cookable, null, document)}.
+     *
+     * @see #add(Cookable, String, String)
+     */
+    public void
+    add(Cookable cookable, String document) { this.add(cookable, null, document); }
+
+    /**
+     * Adds the <var>cookable</var> to this batch; it is cooked from the <var>document</var> by the next invocation of
+     * {@link #cook()}. The <var>cookable</var> must be configured completely <em>before</em> {@link #cook()} is
+     * invoked.
+     *
+     * @param cookable                  A {@link SimpleCompiler}, {@link ClassBodyEvaluator}, {@link ScriptEvaluator}
+     *                                  or {@link ExpressionEvaluator}
+     * @throws IllegalArgumentException The <var>cookable</var> is of another type
+     */
+    public void
+    add(Cookable cookable, @Nullable String fileName, String document) {
+        this.members.add(new Member(cookable, CookBatch.getSimpleCompiler(cookable), fileName, document));
+    }
+
+    /**
+     * Cooks all the members that were added since the preceding invocation of {@link #cook()}. Even if some members
+     * fail to compile, all other members are cooked.
+     *
+     * @throws CompileException The first compilation error of any member (unless the member has a compile error
+     *                          handler); the compilation errors of the other members are {@link
+     *                          Throwable#getSuppressed() suppressed} by it
+     */
+    public void
+    cook() throws CompileException, IOException {
+
+        List<Member> members = new ArrayList<>(this.members);
+        this.members.clear();
+
+        // Give each member that uses the default class name a unique one (only for the time of the cook).
+        List<ClassBodyEvaluator> renamed = new ArrayList<>();
+        for (int i = 0; i < members.size(); i++) {
+            ClassBodyEvaluator cbe = CookBatch.getClassBodyEvaluator(members.get(i).cookable);
+            if (cbe != null && IClassBodyEvaluator.DEFAULT_CLASS_NAME.equals(cbe.getClassName())) {
+                cbe.setClassName(IClassBodyEvaluator.DEFAULT_CLASS_NAME + i);
+                renamed.add(cbe);
+            }
+        }
+
+        try {
+            for (Member m : members) {
+                m.simpleCompiler.batch = this;
+                this.cooking.put(m.simpleCompiler, m);
+            }
+
+            // Collect the compilation units of all members. Errors that occur at this stage will re-occur when
+            // the member is cooked one by one.
+            this.collecting = true;
+            for (Member m : members) {
+                try {
+                    m.cookable.cook(m.fileName, m.document);
+                } catch (Collected c) {
+                    continue;
+                } catch (CompileException ce) {
+                    continue;
+                }
+            }
+            this.collecting = false;
+
+            // Group the members by their configuration, and compile each group with one javac task.
+            Map<List<Object>, List<Member>> groups = new LinkedHashMap<>();
+            for (Member m : members) {
+                if (m.compilationUnit == null) continue;
+
+                SimpleCompiler sc  = m.simpleCompiler;
+                List<Object>   key = Arrays.<Object>asList(
+                    sc.compiler.getEffectiveOptions(),
+                    sc.getParentClassLoader()
+                );
+
+                List<Member> group = groups.get(key);
+                if (group == null) groups.put(key, (group = new ArrayList<>()));
+                group.add(m);
+            }
+            for (List<Member> group : groups.values()) CookBatch.compile(group);
+
+            // Now cook the members; those whose compilation units were compiled successfully use the generated class
+            // files, the others are compiled one by one.
+            CompileException firstCompileException = null;
+            for (Member m : members) {
+                try {
+                    m.cookable.cook(m.fileName, m.document);
+                } catch (CompileException ce) {
+                    if (firstCompileException == null) {
+                        firstCompileException = ce;
+                    } else {
+                        firstCompileException.addSuppressed(ce);
+                    }
+                }
+            }
+            if (firstCompileException != null) throw firstCompileException;
+        } finally {
+            this.collecting = false;
+            this.cooking.clear();
+            for (Member m : members) m.simpleCompiler.batch = null;
+            for (ClassBodyEvaluator cbe : renamed) cbe.setClassName(IClassBodyEvaluator.DEFAULT_CLASS_NAME);
+        }
+    }
+
+    /**
+     * Invoked by {@link SimpleCompiler#cook(String, java.io.Reader)}.
+     *
+     * @return The class files generated from the <var>compilationUnit</var>, or {@code null} iff the compilation unit
+     *         must be compiled by the <var>simpleCompiler</var> itself
+     * @throws Collected The batch is collecting compilation units
+     */
+    @Nullable Map<String, byte[]>
+    getClassFiles(SimpleCompiler simpleCompiler, String compilationUnit) {
+
+        Member member = this.cooking.get(simpleCompiler);
+        if (member == null) return null;
+
+        if (this.collecting) {
+            member.compilationUnit = compilationUnit;
+            throw new Collected();
+        }
+
+        // Use the generated class files only if the compilation unit did not change in the meantime.
+        return compilationUnit.equals(member.compilationUnit) ? member.classFiles : null;
+    }
+
+    /**
+     * Compiles the compilation units of the <var>group</var> with one javac task. Iff that succeeds, then the
+     * generated class files are attached to the members.
+     */
+    private static void
+    compile(List<Member> group) throws IOException {
+
+        // Give each compilation unit a unique name, so that javac does not take them as one and the same file.
+        Map<Resource, Map<String, byte[]>> sourceResources = new LinkedHashMap<>();
+        for (int i = 0; i < group.size(); i++) {
+            String cu = group.get(i).compilationUnit;
+            assert cu != null;
+
+            sourceResources.put(new StringResource("batch" + i, cu), new HashMap<String, byte[]>());
+        }
+
+        try {
+            group.get(0).simpleCompiler.compiler.compile(sourceResources);
+        } catch (CompileException ce) {
+            return;
+        }
+
+        int i = 0;
+        for (Map<String, byte[]> classFiles : sourceResources.values()) group.get(i++).classFiles = classFiles;
+    }
+
+    private static SimpleCompiler
+    getSimpleCompiler(Cookable cookable) {
+
+        if (cookable instanceof SimpleCompiler) return (SimpleCompiler) cookable;
+
+        ClassBodyEvaluator cbe = CookBatch.getClassBodyEvaluator(cookable);
+        if (cbe != null) return cbe.sc;
+
+        throw new IllegalArgumentException(cookable.getClass().getName());
+    }
+
+    @Nullable private static ClassBodyEvaluator
+    getClassBodyEvaluator(Cookable cookable) {
+        return (
+            cookable instanceof ClassBodyEvaluator  ? (ClassBodyEvaluator) cookable :
+            cookable instanceof ScriptEvaluator     ? ((ScriptEvaluator) cookable).cbe :
+            cookable instanceof ExpressionEvaluator ? ((ExpressionEvaluator) cookable).se.cbe :
+            null
+        );
+    }
+}
@@ -93,7 +93,7 @@ import org.codehaus.commons.nullanalysis.Nullable;
 public
 class ExpressionEvaluator extends MultiCookable implements IExpressionEvaluator {
 
-    private final ScriptEvaluator se = new ScriptEvaluator();
+    final ScriptEvaluator se = new ScriptEvaluator();
     {
         this.se.setClassName(IExpressionEvaluator.DEFAULT_CLASS_NAME);
         this.se.setDefaultReturnType(IExpressionEvaluator.DEFAULT_EXPRESSION_TYPE);
@@ -221,6 +221,12 @@ class ExpressionEvaluator extends MultiCookable implements IExpressionEvaluator
     @Override public void
     setTargetVersion(int version) { this.se.setTargetVersion(version); }
 
+    /**
+     * @see Compiler#setPooled(boolean)
+     */
+    public void
+    setPooled(boolean pooled) { this.se.setPooled(pooled); }
+
     @Override public void
     setCompileErrorHandler(@Nullable ErrorHandler compileErrorHandler) {
         this.se.setCompileErrorHandler(compileErrorHandler);
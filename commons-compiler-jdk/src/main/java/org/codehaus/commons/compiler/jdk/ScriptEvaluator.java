@@ -287,6 +287,12 @@ class ScriptEvaluator extends MultiCookable implements IScriptEvaluator {
     @Override public void
     setTargetVersion(int version) { this.cbe.setTargetVersion(version); }
 
+    /**
+     * @see Compiler#setPooled(boolean)
+     */
+    public void
+    setPooled(boolean pooled) { this.cbe.setPooled(pooled); }
+
     @Override public void
     setCompileErrorHandler(@Nullable ErrorHandler compileErrorHandler) {
         this.cbe.setCompileErrorHandler(compileErrorHandler);
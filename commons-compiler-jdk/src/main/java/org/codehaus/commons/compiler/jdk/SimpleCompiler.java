@@ -63,7 +63,12 @@ public
 class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
     private ClassLoader    parentClassLoader = Thread.currentThread().getContextClassLoader();
-    private final Compiler compiler;
+    final Compiler         compiler;
+
+    /**
+     * Is not {@code null} while this {@link SimpleCompiler} is being cooked by a {@link CookBatch}.
+     */
+    @Nullable CookBatch batch;
 
     /**
      * Is {@code null} iff this {@link SimpleCompiler} is not yet cooked.
@@ -99,6 +104,12 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
     @Override public void
     setTargetVersion(int version) { this.compiler.setTargetVersion(version); }
 
+    /**
+     * @see Compiler#setPooled(boolean)
+     */
+    public void
+    setPooled(boolean pooled) { this.compiler.setPooled(pooled); }
+
     @Override public Map<String /*className*/, byte[] /*bytecode*/>
     getBytecodes() { return this.assertCooked(); }
 
@@ -158,6 +169,17 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         ));
         this.compiler.setClassFileCreator(new MapResourceCreator(bcs));
 
+        // When cooked by a batch, the compilation unit may have been compiled already, together with those of the
+        // other members of the batch.
+        CookBatch b = this.batch;
+        if (b != null) {
+            Map<String, byte[]> classFiles = b.getClassFiles(this, text);
+            if (classFiles != null) {
+                bcs.putAll(classFiles);
+                return;
+            }
+        }
+
         this.compiler.compile(new Resource[] { compilationUnit }, this.offsets);
     }
 
@@ -168,6 +190,9 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         this.compiler.setDebugVars(debugVars);
     }
 
+    ClassLoader
+    getParentClassLoader() { return this.parentClassLoader; }
+
     @Override public void
     setParentClassLoader(@Nullable ClassLoader parentClassLoader) {
         this.parentClassLoader = (
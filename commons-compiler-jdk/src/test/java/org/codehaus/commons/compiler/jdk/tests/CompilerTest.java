@@ -0,0 +1,221 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.commons.compiler.jdk.tests;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.tools.JavaCompiler;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.ToolProvider;
+
+import org.codehaus.commons.compiler.jdk.Compiler;
+import org.codehaus.commons.compiler.util.resource.MapResourceCreator;
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.StringResource;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.junit.Assert;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the file manager pool of the {@link Compiler}; see {@link Compiler#setPooled(boolean)}.
+ * <p>
+ *   Each test uses its own {@link CountingJavaCompiler}, so its file managers never mix with those of other tests.
+ * </p>
+ */
+public
+class CompilerTest {
+
+    @Test public void
+    testUnpooled() throws Exception {
+        CountingJavaCompiler cjc = new CountingJavaCompiler();
+
+        for (int i = 0; i < 3; i++) CompilerTest.compile(cjc.javaCompiler, false);
+
+        Assert.assertEquals(3, cjc.created.get());
+        Assert.assertEquals(3, cjc.closed.get());
+    }
+
+    @Test public void
+    testPoolReuse() throws Exception {
+        CountingJavaCompiler cjc = new CountingJavaCompiler();
+
+        try {
+            for (int i = 0; i < 3; i++) CompilerTest.compile(cjc.javaCompiler, true);
+
+            Assert.assertEquals(1, cjc.created.get());
+            Assert.assertEquals(0, cjc.closed.get());
+        } finally {
+            Compiler.closePooledFileManagers();
+        }
+        Assert.assertEquals(1, cjc.closed.get());
+
+        // After the pool was cleared, a new file manager must be created.
+        try {
+            CompilerTest.compile(cjc.javaCompiler, true);
+            Assert.assertEquals(2, cjc.created.get());
+        } finally {
+            Compiler.closePooledFileManagers();
+        }
+        Assert.assertEquals(2, cjc.closed.get());
+    }
+
+    /**
+     * Runs one more concurrent compilation than the pool can hold, and verifies that the surplus file manager is
+     * closed instead of being put back into the pool.
+     */
+    @Test public void
+    testPoolEviction() throws Exception {
+
+        // Must be kept in sync with "Compiler.MAX_IDLE_FILE_MANAGERS".
+        final int maxIdle = Runtime.getRuntime().availableProcessors();
+
+        final CountingJavaCompiler cjc = new CountingJavaCompiler();
+        cjc.barrier = new CyclicBarrier(maxIdle + 1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(maxIdle + 1);
+        try {
+            List<Future<Void>> futures = new ArrayList<>();
+            for (int i = 0; i <= maxIdle; i++) {
+                futures.add(executor.submit(new Callable<Void>() {
+
+                    @Override @Nullable public Void
+                    call() throws Exception {
+                        CompilerTest.compile(cjc.javaCompiler, true);
+                        return null;
+                    }
+                }));
+            }
+            for (Future<Void> f : futures) f.get(60, TimeUnit.SECONDS);
+            cjc.barrier = null;
+
+            Assert.assertEquals(maxIdle + 1, cjc.created.get());
+            Assert.assertEquals(1, cjc.closed.get());
+
+            // The idle file managers must be re-used.
+            CompilerTest.compile(cjc.javaCompiler, true);
+            Assert.assertEquals(maxIdle + 1, cjc.created.get());
+        } finally {
+            executor.shutdown();
+            Compiler.closePooledFileManagers();
+        }
+        Assert.assertEquals(maxIdle + 1, cjc.closed.get());
+    }
+
+    private static void
+    compile(JavaCompiler javaCompiler, boolean pooled) throws Exception {
+
+        Compiler compiler = new Compiler(javaCompiler);
+        compiler.setPooled(pooled);
+
+        MapResourceCreator classFiles = new MapResourceCreator();
+        compiler.setClassFileCreator(classFiles);
+
+        compiler.compile(new Resource[] { new StringResource("pkg/A.java", "package pkg; public class A {}") });
+
+        Assert.assertTrue(classFiles.getMap().containsKey("pkg/A.class"));
+    }
+
+    /**
+     * Wraps the system Java compiler, and counts the {@link StandardJavaFileManager}s that it creates, and how many of
+     * them were closed. Iff a {@link #barrier} is set, then its {@link JavaCompiler#getTask(java.io.Writer,
+     * javax.tools.JavaFileManager, javax.tools.DiagnosticListener, Iterable, Iterable, Iterable) getTask()} method
+     * blocks until the barrier's number of tasks are being created concurrently.
+     */
+    private static
+    class CountingJavaCompiler implements InvocationHandler {
+
+        final AtomicInteger created = new AtomicInteger();
+        final AtomicInteger closed  = new AtomicInteger();
+
+        final JavaCompiler javaCompiler = (JavaCompiler) Proxy.newProxyInstance(
+            JavaCompiler.class.getClassLoader(),
+            new Class<?>[] { JavaCompiler.class },
+            this
+        );
+
+        @Nullable volatile CyclicBarrier barrier;
+
+        private final JavaCompiler delegate = ToolProvider.getSystemJavaCompiler();
+
+        @Override @Nullable public Object
+        invoke(@Nullable Object proxy, @Nullable Method method, @Nullable Object[] args) throws Throwable {
+            assert method != null;
+
+            // Use identity semantics, so that the pool can tell the compilers of different tests apart.
+            if ("equals".equals(method.getName()) && args != null && args.length == 1) return proxy == args[0];
+            if ("hashCode".equals(method.getName()) && args == null) return System.identityHashCode(proxy);
+
+            CyclicBarrier b = this.barrier;
+            if (b != null && "getTask".equals(method.getName())) b.await(60, TimeUnit.SECONDS);
+
+            Object result = CountingJavaCompiler.forward(this.delegate, method, args);
+
+            if ("getStandardFileManager".equals(method.getName())) {
+                this.created.incrementAndGet();
+                final StandardJavaFileManager fileManager = (StandardJavaFileManager) result;
+                result = Proxy.newProxyInstance(
+                    StandardJavaFileManager.class.getClassLoader(),
+                    new Class<?>[] { StandardJavaFileManager.class },
+                    new InvocationHandler() {
+
+                        @Override @Nullable public Object
+                        invoke(@Nullable Object proxy, @Nullable Method method, @Nullable Object[] args)
+                        throws Throwable {
+                            assert method != null;
+                            if ("close".equals(method.getName())) CountingJavaCompiler.this.closed.incrementAndGet();
+                            return CountingJavaCompiler.forward(fileManager, method, args);
+                        }
+                    }
+                );
+            }
+
+            return result;
+        }
+
+        private static Object
+        forward(Object target, Method method, @Nullable Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException ite) {
+                throw ite.getTargetException();
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.commons.compiler.jdk.tests;
+
+import java.lang.reflect.Method;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.jdk.ClassBodyEvaluator;
+import org.codehaus.commons.compiler.jdk.CookBatch;
+import org.codehaus.commons.compiler.jdk.ExpressionEvaluator;
+import org.junit.Assert;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the {@link CookBatch}.
+ */
+public
+class CookBatchTest {
+
+    @Test public void
+    testCook() throws Exception {
+        CookBatch batch = new CookBatch();
+
+        ExpressionEvaluator ee1 = new ExpressionEvaluator();
+        ee1.setParameters(new String[] { "a", "b" }, new Class<?>[] { int.class, int.class });
+        batch.add(ee1, "a + b");
+
+        ExpressionEvaluator ee2 = new ExpressionEvaluator();
+        batch.add(ee2, "\"foo\".length()");
+
+        batch.cook();
+
+        Assert.assertEquals(7, ee1.evaluate(new Object[] { 3, 4 }));
+        Assert.assertEquals(3, ee2.evaluate(new Object[0]));
+    }
+
+    @Test public void
+    testBrokenMembers() throws Exception {
+        CookBatch batch = new CookBatch();
+
+        ExpressionEvaluator ee1 = new ExpressionEvaluator();
+        batch.add(ee1, "1 +");
+
+        ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+        batch.add(cbe, "public static int meth() { return 42; }");
+
+        ExpressionEvaluator ee2 = new ExpressionEvaluator();
+        batch.add(ee2, "undefinedVariable");
+
+        ExpressionEvaluator ee3 = new ExpressionEvaluator();
+        batch.add(ee3, "\"foo\".length()");
+
+        try {
+            batch.cook();
+            Assert.fail("CompileException expected");
+        } catch (CompileException ce) {
+
+            // The compilation error of the second broken member is attached to that of the first.
+            Assert.assertEquals(1, ce.getSuppressed().length);
+        }
+
+        // The valid members must have been cooked nonetheless.
+        Assert.assertEquals(42, cbe.getClazz().getMethod("meth").invoke(null));
+        Assert.assertEquals(3, ee3.evaluate(new Object[0]));
+
+        // The unique class name that the batch assigned must not stick.
+        Method getClassName = ClassBodyEvaluator.class.getDeclaredMethod("getClassName");
+        getClassName.setAccessible(true);
+        Assert.assertEquals(IClassBodyEvaluator.DEFAULT_CLASS_NAME, getClassName.invoke(cbe));
+    }
+}
@@ -28,8 +28,14 @@
 package org.codehaus.commons.compiler.tests;
 
 import java.io.File;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 import java.util.ResourceBundle;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.codehaus.commons.compiler.AbstractJavaSourceClassLoader;
 import org.codehaus.commons.compiler.ICompilerFactory;
@@ -82,6 +88,50 @@ class JavaSourceClassLoaderTest {
         Assert.assertEquals(7, result);
     }
 
+    @Test public void
+    testConcurrentClassLoading() throws Exception {
+
+        final AbstractJavaSourceClassLoader jscl = this.compilerFactory.newJavaSourceClassLoader(
+            JavaSourceClassLoaderTest.getExtensionsClassLoader()
+        );
+        jscl.setSourcePath(new File[] {
+            new File("../janino/src/main/java"),
+            new File("../commons-compiler/src/main/java"),
+        });
+
+        // Let several threads load (partly the same) classes at the same time.
+        final String[] classNames = {
+            "org.codehaus.janino.ExpressionEvaluator",
+            "org.codehaus.janino.ScriptEvaluator",
+            "org.codehaus.janino.ClassBodyEvaluator",
+            "org.codehaus.janino.SimpleCompiler",
+            "org.codehaus.janino.Compiler",
+            "org.codehaus.janino.Unparser",
+        };
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<Class<?>>> futures = new ArrayList<Future<Class<?>>>();
+            for (int i = 0; i < 12; i++) {
+                final String className = classNames[i % classNames.length];
+                futures.add(executor.submit(new Callable<Class<?>>() {
+                    @Override public Class<?> call() throws Exception { return jscl.loadClass(className); }
+                }));
+            }
+            for (int i = 0; i < futures.size(); i++) {
+                Class<?> c = futures.get(i).get();
+                Assert.assertEquals(classNames[i % classNames.length], c.getName());
+                Assert.assertSame(jscl, c.getClassLoader());
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        // Verify that the concurrently loaded classes work.
+        Object ee = jscl.loadClass("org.codehaus.janino.ExpressionEvaluator").getConstructor().newInstance();
+        ee.getClass().getMethod("cook", String.class).invoke(ee, "7");
+        Assert.assertEquals(7, ee.getClass().getMethod("evaluate", Object[].class).invoke(ee, new Object[] { null }));
+    }
+
     @Test public void
     testCircularSingleTypeImports() throws Exception {
         AbstractJavaSourceClassLoader jscl = this.compilerFactory.newJavaSourceClassLoader(
@@ -433,6 +433,55 @@ class JlsTest extends CommonsCompilerTestSuite {
         this.assertExpressionUncookable   ("for_sandbox_tests.ClassWithFields.privateField       == 4", "Private member cannot be accessed|compiler.err.report.access");
     }
 
+    @Test public void
+    test_6_6_1__Determining_Accessibility_nestmates() throws Exception {
+
+        if (CommonsCompilerTestSuite.JVM_VERSION < 11) return; // Nest-based access control = Java 11+
+
+        // For target version 11+, private members are no longer widened to PACKAGE access, but accessed through
+        // the "NestHost" and "NestMembers" attributes.
+        String cu = (
+            ""
+            + "import java.lang.reflect.Modifier;\n"
+            + "\n"
+            + "public class Main {\n"
+            + "    private int        x = 7;\n"
+            + "    private static int sx = 3;\n"
+            + "    private Main() {}\n"
+            + "    private int        twice(int i)  { return 2 * i; }\n"
+            + "    private static int thrice(int i) { return 3 * i; }\n"
+            + "    class Inner {\n"
+            + "        private int y = 5;\n"
+            + "        int get() { return x + sx + twice(y) + thrice(1); }\n"
+            + "    }\n"
+            + "    static class Nested {\n"
+            + "        private Nested() {}\n"
+            + "        private int z() { return new Main().x; }\n"
+            + "    }\n"
+            + "    public static boolean main() throws Exception {\n"
+            + "        final Main o = new Main();\n"
+            + "        Inner in = o.new Inner();\n"
+            + "        int r = in.get() + in.y + new Nested().z();\n"
+            + "        new Runnable() { public void run() { o.x++; } }.run();\n"
+            + "        class Local { private int l() { return o.twice(o.x); } }\n"
+            + "        r += new Local().l();\n"
+            + "        return (\n"
+            + "            r == 51\n"
+            + "            && Modifier.isPrivate(Main.class.getDeclaredField(\"x\").getModifiers())\n"
+            + "            && Modifier.isPrivate(Main.class.getDeclaredMethod(\"twice\", int.class).getModifiers())\n"
+            + "            && Main.class.getNestMembers().length == 5\n"
+            + "            && Nested.class.getNestHost() == Main.class\n"
+            + "        );\n"
+            + "    }\n"
+            + "}\n"
+        );
+
+        SimpleCompilerTest sct = new SimpleCompilerTest(cu, "Main");
+        sct.setSourceVersion(11);
+        sct.setTargetVersion(11);
+        sct.assertResultTrue();
+    }
+
     @Test public void
     test_7_5__Import_declarations() throws Exception {
 
@@ -1034,6 +1083,33 @@ class JlsTest extends CommonsCompilerTestSuite {
         }
     }
 
+    @Test public void
+    test_9_5__Member_Type_Declarations() throws Exception {
+
+        // A member enum of an interface is implicitly static, and must have its constants.
+        this.assertCompilationUnitMainReturnsTrue((
+            ""
+            + "public\n"
+            + "interface MyInterface {\n"
+            + "    enum Color { RED, GREEN, BLUE; Color next() { return values()[(ordinal() + 1) % 3]; } }\n"
+            + "}\n"
+            + "\n"
+            + "public\n"
+            + "class Main {\n"
+            + "\n"
+            + "    public static boolean\n"
+            + "    main() {\n"
+            + "        return (\n"
+            + "            MyInterface.Color.values().length == 3\n"
+            + "            && MyInterface.Color.valueOf(\"GREEN\").ordinal() == 1\n"
+            + "            && MyInterface.Color.BLUE.next() == MyInterface.Color.RED\n"
+            + "            && MyInterface.Color.class.isEnum()\n"
+            + "        );\n"
+            + "    }\n"
+            + "}"
+        ), "Main");
+    }
+
     @Test public void
     test_9_6__Annotation_Types() throws Exception {
 
@@ -2418,6 +2494,21 @@ class JlsTest extends CommonsCompilerTestSuite {
 
         // ArrayType '::' 'new'
         this.assertScriptExecutable("java.util.function.Consumer<Integer> c1 = int[]::new;");
+
+        this.assertScriptReturnsTrue(
+            "java.util.function.Function<String, Integer> f = String::length; return f.apply(\"abcd\").equals(4);"
+        );
+        this.assertScriptReturnsTrue(
+            "java.util.function.IntSupplier s = \"abc\"::length; return s.getAsInt() == 3;"
+        );
+        this.assertScriptReturnsTrue(
+            ""
+            + "java.util.function.Function<String, StringBuilder> f = StringBuilder::new;\n"
+            + "return f.apply(\"xy\").toString().equals(\"xy\");\n"
+        );
+        this.assertScriptReturnsTrue(
+            "java.util.function.IntFunction<String[]> f = String[]::new; return ((String[]) f.apply(5)).length == 5;"
+        );
     }
 
     @Test public void
@@ -3141,6 +3232,138 @@ class JlsTest extends CommonsCompilerTestSuite {
         this.assertScriptExecutable("java.util.function.Function<String, Integer> f = (var s) -> s.length();\n");
     }
 
+    @Test public void
+    test_15_27_2__Lambda_body() throws Exception {
+
+        if (CommonsCompilerTestSuite.JVM_VERSION < 8) return;
+
+        this.assertScriptReturnsTrue(
+            "java.util.function.IntBinaryOperator op = (int a, int b) -> { int c = a * b; return c + 1; };\n"
+            + "return op.applyAsInt(3, 4) == 13;\n"
+        );
+
+        // Captured local variables must be final or effectively final.
+        this.assertScriptReturnsTrue(
+            "int x = 3;\n"
+            + "java.util.function.IntSupplier s = () -> x * 2;\n"
+            + "java.util.function.IntSupplier t = () -> { int c = x; return c + 1; };\n"
+            + "return s.getAsInt() == 6 && t.getAsInt() == 4;\n"
+        );
+        this.assertScriptUncookable(
+            "int y = 1;\n"
+            + "y++;\n"
+            + "Runnable r = () -> System.out.println(y);\n",
+            "effectively final"
+        );
+
+        // Local classes that are declared in the enclosing blocks are in scope in the lambda body.
+        this.assertScriptReturnsTrue(
+            "final int z = 3;\n"
+            + "class L { int v() { return 7 + z; } }\n"
+            + "java.util.concurrent.Callable<Integer> c = () -> new L().v();\n"
+            + "java.util.function.IntSupplier s = () -> { L l = new L(); return l.v(); };\n"
+            + "return c.call().equals(10) && s.getAsInt() == 10;\n"
+        );
+        this.assertClassBodyMainReturnsTrue(
+            ""
+            + "public static class Holder {\n"
+            + "    private int w = 5;\n"
+            + "    public int m() {\n"
+            + "        class L { int v() { return 7 + w; } }\n"
+            + "        java.util.function.IntSupplier s = () -> new L().v();\n"
+            + "        return s.getAsInt();\n"
+            + "    }\n"
+            + "}\n"
+            + "public static boolean main() { return new Holder().m() == 12; }\n"
+        );
+    }
+
+    @Test public void
+    test_15_27_3__Type_of_a_lambda_expression() throws Exception {
+
+        if (CommonsCompilerTestSuite.JVM_VERSION < 8) return;
+
+        // The parameter types of an implicitly typed lambda are the type arguments of the target type.
+        this.assertScriptReturnsTrue(
+            ""
+            + "java.util.List<String> l = new java.util.ArrayList<String>();\n"
+            + "java.util.Collections.addAll(l, \"a\", \"c\", \"b\");\n"
+            + "java.util.Comparator<String> c = (a, b) -> b.compareTo(a);\n"
+            + "java.util.Collections.sort(l, c);\n"
+            + "return l.toString().equals(\"[c, b, a]\");\n"
+        );
+
+        // "ExecutorService.submit(Callable)" is more specific than "submit(Runnable)" for a value-compatible lambda.
+        this.assertScriptReturnsTrue(
+            "java.util.concurrent.ExecutorService es = java.util.concurrent.Executors.newSingleThreadExecutor();\n"
+            + "try {\n"
+            + "    return es.submit(() -> 7).get().equals(7);\n"
+            + "} finally {\n"
+            + "    es.shutdown();\n"
+            + "}\n"
+        );
+
+        // An invocation of a non-VOID method is value-compatible, ...
+        this.assertScriptReturnsTrue(
+            "java.util.concurrent.ExecutorService es = java.util.concurrent.Executors.newSingleThreadExecutor();\n"
+            + "try {\n"
+            + "    return es.submit(() -> \"foo\".length()).get().equals(3);\n"
+            + "} finally {\n"
+            + "    es.shutdown();\n"
+            + "}\n"
+        );
+
+        // ... but an invocation of a VOID method is not, so "submit(Runnable)" must be chosen.
+        this.assertScriptReturnsTrue(
+            "java.util.concurrent.ExecutorService es = java.util.concurrent.Executors.newSingleThreadExecutor();\n"
+            + "try {\n"
+            + "    return es.submit(() -> System.out.println(\"x\")).get() == null;\n"
+            + "} finally {\n"
+            + "    es.shutdown();\n"
+            + "}\n"
+        );
+
+        // A lambda whose result is not assignment-compatible with the function type's result is not compatible.
+        this.assertClassBodyMainReturnsTrue(
+            ""
+            + "static String g(java.util.function.IntSupplier s)      { return \"int\";          }\n"
+            + "static String g(java.util.function.Supplier<String> s) { return (String) s.get(); }\n"
+            + "static String h(java.util.function.Supplier<String> s) { return (String) s.get(); }\n"
+            + "static String h(java.util.function.IntSupplier s)      { return \"int\";          }\n"
+            + "public static boolean main() {\n"
+            + "    String x = \"y\";\n"
+            + "    return g(() -> \"x\").equals(\"x\") && h(() -> x).equals(\"y\") && g(() -> 7).equals(\"int\");\n"
+            + "}\n"
+        );
+    }
+
+    @Test public void
+    test_15_27_4__Run_time_evaluation_of_lambda_expressions() throws Exception {
+
+        if (CommonsCompilerTestSuite.JVM_VERSION < 8) return;
+
+        // Non-capturing lambdas evaluate to the same instance every time.
+        this.assertScriptReturnsTrue(
+            "Runnable first = null;\n"
+            + "for (int i = 0; i < 2; i++) {\n"
+            + "    Runnable r = () -> {};\n"
+            + "    if (first == null) first = r; else return first == r;\n"
+            + "}\n"
+            + "return false;\n"
+        );
+
+        // Lambdas that reference the enclosing instance.
+        this.assertClassBodyMainReturnsTrue(
+            ""
+            + "public static class Holder {\n"
+            + "    private int v = 5;\n"
+            + "    private int w() { return 1; }\n"
+            + "    public int m() { java.util.function.IntSupplier s = () -> v + w(); return s.getAsInt(); }\n"
+            + "}\n"
+            + "public static boolean main() { return new Holder().m() == 6; }\n"
+        );
+    }
+
     @Test public void
     test_16_2_13__break_yield_continue_return_and_throw_Statements() throws Exception {
         this.assertClassBodyMainReturnsTrue(
@@ -49,6 +49,8 @@ import org.codehaus.commons.nullanalysis.Nullable;
 public abstract
 class AbstractJavaSourceClassLoader extends ClassLoader {
 
+    static { ClassLoader.registerAsParallelCapable(); }
+
     /**
      * @see ClassLoader#defineClass(String, byte[], int, int, ProtectionDomain)
      */
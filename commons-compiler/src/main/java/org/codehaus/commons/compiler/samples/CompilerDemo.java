@@ -31,6 +31,8 @@ import java.nio.charset.Charset;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
 import org.codehaus.commons.compiler.ICompiler;
 import org.codehaus.commons.compiler.util.StringUtil;
+import org.codehaus.commons.compiler.util.resource.JarResourceCreator;
+import org.codehaus.commons.compiler.util.resource.ResourceFinder;
 
 /**
  * A drop-in replacement for the JDK's {@code JAVAC} tool.
@@ -126,7 +128,16 @@ class CompilerDemo {
         compiler.setClassPath(classPath);
         compiler.setExtensionDirectories(extDirs);
         if (bootClassPath != null) compiler.setBootClassPath(bootClassPath);
-        compiler.setDestinationDirectory(destinationDirectory, rebuild);
+
+        // "-d <file>.jar" stores the class files in a JAR file.
+        JarResourceCreator jarResourceCreator = null;
+        if (destinationDirectory != null && destinationDirectory.getName().endsWith(".jar")) {
+            jarResourceCreator = new JarResourceCreator(destinationDirectory);
+            compiler.setClassFileCreator(jarResourceCreator);
+            compiler.setClassFileFinder(ResourceFinder.EMPTY_RESOURCE_FINDER);
+        } else {
+            compiler.setDestinationDirectory(destinationDirectory, rebuild);
+        }
         compiler.setEncoding(encoding);
         compiler.setVerbose(verbose);
         compiler.setDebugSource(debugSource);
@@ -135,7 +146,13 @@ class CompilerDemo {
 
         // Compile source files.
         try {
-            compiler.compile(sourceFiles);
+            try {
+                compiler.compile(sourceFiles);
+            } finally {
+
+                // Also when compilation fails, so that the compression threads terminate and the file is released.
+                if (jarResourceCreator != null) jarResourceCreator.close();
+            }
         } catch (Exception e) {
 
             if (verbose) {
@@ -157,6 +174,7 @@ class CompilerDemo {
         + "%n"
         + "Supported <option>s are:%n"
         + "  -d <output-dir>           Where to save class files%n"
+        + "  -d <file>.jar             Save the class files in a JAR file%n"
         + "  -sourcepath <dirlist>     Where to look for other source files%n"
         + "  -classpath <dirlist>      Where to look for other class files%n"
         + "  -extdirs <dirlist>        Where to look for other class files%n"
@@ -0,0 +1,443 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codehaus.commons.compiler.util.resource;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Calendar;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Writes the created resources into one JAR (or ZIP) file, e.g. to store the class files that a compiler generates
+ * without writing thousands of small files:
+ * <pre>
+ *     JarResourceCreator jrc = new JarResourceCreator(new File("classes.jar"));
+ *     try {
+ *         compiler.setClassFileCreator(jrc);
+ *         compiler.compile(sourceFiles);
+ *     } finally {
+ *         jrc.close();
+ *     }
+ * </pre>
+ * <p>
+ *   When a resource is closed, its contents is compressed on a background thread pool, and is then appended to the
+ *   JAR file, in the order in which the resources were closed. {@link #close()} waits for the pending compressions,
+ *   and writes the central directory of the JAR file. Only then the JAR file is complete.
+ * </p>
+ * <p>
+ *   Resources that are deleted, or created again, after they were written, are not removed from the file, but only
+ *   left out from the central directory; thus they are invisible to {@link JarFile} and to class loaders. Resources
+ *   that are deleted before they were written are not written at all.
+ * </p>
+ * <p>
+ *   The ZIP64 format is not supported, i.e. the JAR file is limited to 65535 entries and 4 GB.
+ * </p>
+ */
+public
+class JarResourceCreator implements ResourceCreator, Closeable {
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private static final int LOCAL_FILE_HEADER_SIGNATURE        = 0x04034b50;
+    private static final int CENTRAL_DIRECTORY_SIGNATURE        = 0x02014b50;
+    private static final int END_OF_CENTRAL_DIRECTORY_SIGNATURE = 0x06054b50;
+    private static final int VERSION                            = 20;     // 2.0; "deflate" compression
+    private static final int FLAG_UTF8                          = 0x0800; // File names are encoded in UTF-8
+    private static final int METHOD_STORED                      = 0;
+    private static final int METHOD_DEFLATED                    = 8;
+
+    private final OutputStream    os;
+    private final ExecutorService executor;
+    private final boolean         ownsExecutor;
+    private final int             maxPending;
+    private final int             dosTime;
+
+    /**
+     * The resources that are not yet appended to the file, in the order in which they were closed.
+     */
+    private final Deque<PendingEntry> pending = new ArrayDeque<PendingEntry>();
+
+    /**
+     * The entries that are already appended to the file, and will appear in the central directory.
+     */
+    private final Map<String, Entry> written = new LinkedHashMap<String, Entry>();
+
+    private long    offset;
+    private boolean closed;
+
+    /**
+     * Equivalent with {@link #JarResourceCreator(OutputStream, Manifest, ExecutorService) JarResourceCreator(new
+     * FileOutputStream(jarFile), null, null)}.
+     */
+    public
+    JarResourceCreator(File jarFile) throws IOException { this(new FileOutputStream(jarFile), null, null); }
+
+    /**
+     * @param os       Receives the JAR file, and is closed by {@link #close()}
+     * @param manifest Iff non-{@code null}, is written as the first entry of the JAR file
+     * @param executor Executes the compression of the resources, and is <em>not</em> shut down by {@link #close()};
+     *                 {@code null} means to use a thread pool that has one thread per processor
+     */
+    public
+    JarResourceCreator(OutputStream os, @Nullable Manifest manifest, @Nullable ExecutorService executor)
+    throws IOException {
+        this.os      = new BufferedOutputStream(os, 65536);
+        this.dosTime = JarResourceCreator.dosTime(System.currentTimeMillis());
+
+        int nThreads = Runtime.getRuntime().availableProcessors();
+        if (executor != null) {
+            this.executor     = executor;
+            this.ownsExecutor = false;
+        } else {
+            this.executor     = Executors.newFixedThreadPool(nThreads, new ThreadFactory() {
+
+                @Override public Thread
+                newThread(Runnable r) {
+                    Thread result = new Thread(r, "JarResourceCreator");
+                    result.setDaemon(true);
+                    return result;
+                }
+            });
+            this.ownsExecutor = true;
+        }
+
+        // Limit the memory that the pending resources consume.
+        this.maxPending = 4 * nThreads;
+
+        if (manifest != null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            manifest.write(baos);
+            this.add(JarFile.MANIFEST_NAME, baos.toByteArray());
+        }
+    }
+
+    @Override public final OutputStream
+    createResource(final String resourceName) throws IOException {
+        if (this.closed) throw new IOException("JAR resource creator is closed");
+
+        return new ByteArrayOutputStream() {
+
+            private boolean resourceClosed;
+
+            @Override public void
+            close() throws IOException {
+                if (this.resourceClosed) return;
+                this.resourceClosed = true;
+                JarResourceCreator.this.add(resourceName, this.toByteArray());
+            }
+        };
+    }
+
+    /**
+     * Does not wait for pending compressions; if the resource is still pending, then its compression is cancelled.
+     *
+     * @return Whether the resource existed
+     */
+    @Override public final synchronized boolean
+    deleteResource(String resourceName) {
+
+        boolean result = this.written.remove(resourceName) != null;
+        for (PendingEntry pe : this.pending) {
+            if (!pe.deleted && pe.name.equals(resourceName)) {
+                pe.deleted = true;
+                pe.future.cancel(false);
+                result = true;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Waits for all pending compressions, writes the central directory, and closes the underlying {@link
+     * OutputStream}.
+     */
+    @Override public final synchronized void
+    close() throws IOException {
+        if (this.closed) return;
+        this.closed = true;
+
+        try {
+            this.writePending(0);
+            this.writeCentralDirectory();
+            this.os.close();
+        } finally {
+            if (this.ownsExecutor) this.executor.shutdown();
+        }
+    }
+
+    private synchronized void
+    add(final String name, final byte[] data) throws IOException {
+        if (this.closed) throw new IOException("JAR resource creator is closed");
+
+        this.pending.add(new PendingEntry(name, this.executor.submit(new Callable<Entry>() {
+
+            @Override public Entry
+            call() { return JarResourceCreator.compress(name, data); }
+        })));
+
+        // Append the resources that are already compressed, and wait if too many are pending.
+        while (!this.pending.isEmpty() && ((PendingEntry) this.pending.getFirst()).future.isDone()) {
+            this.writeFirstPending();
+        }
+        this.writePending(this.maxPending);
+    }
+
+    /**
+     * Appends pending resources to the file, until no more than <var>maxPending</var> remain.
+     */
+    private void
+    writePending(int maxPending) throws IOException {
+        while (this.pending.size() > maxPending) this.writeFirstPending();
+    }
+
+    private void
+    writeFirstPending() throws IOException {
+
+        PendingEntry pe = (PendingEntry) this.pending.removeFirst();
+        if (pe.deleted) return;
+
+        Entry entry;
+        try {
+            entry = (Entry) pe.future.get();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        } catch (ExecutionException ee) {
+            throw new IOException(ee.getCause());
+        }
+
+        byte[] data = entry.data;
+        assert data != null;
+
+        this.writeLocalFileHeader(entry);
+        this.os.write(data, 0, entry.compressedSize);
+        this.offset += entry.compressedSize;
+        entry.data = null; // Free memory.
+
+        // A resource that is created again replaces the preceding one.
+        this.written.remove(entry.name);
+        this.written.put(entry.name, entry);
+        if (this.written.size() > 0xffff) throw new IOException("Too many JAR entries; ZIP64 is not supported");
+    }
+
+    private static Entry
+    compress(String name, byte[] data) {
+
+        CRC32 crc = new CRC32();
+        crc.update(data);
+
+        // Notice: ZIP files require "raw" deflate data, i.e. "nowrap".
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        try {
+            deflater.setInput(data);
+            deflater.finish();
+
+            byte[] buffer = new byte[data.length + (data.length >> 3) + 64];
+            int    size   = 0;
+            while (!deflater.finished()) {
+                if (size == buffer.length) {
+                    byte[] tmp = new byte[2 * buffer.length];
+                    System.arraycopy(buffer, 0, tmp, 0, size);
+                    buffer = tmp;
+                }
+                size += deflater.deflate(buffer, size, buffer.length - size);
+            }
+
+            // Store incompressible data uncompressed.
+            return (
+                size >= data.length
+                ? new Entry(name, JarResourceCreator.METHOD_STORED, crc.getValue(), data, data.length, data.length)
+                : new Entry(name, JarResourceCreator.METHOD_DEFLATED, crc.getValue(), buffer, size, data.length)
+            );
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private void
+    writeLocalFileHeader(Entry entry) throws IOException {
+        entry.localHeaderOffset = this.offset;
+        if (entry.localHeaderOffset > 0xffffffffL) {
+            throw new IOException("JAR file too large; ZIP64 is not supported");
+        }
+
+        this.writeInt(JarResourceCreator.LOCAL_FILE_HEADER_SIGNATURE);
+        this.writeShort(JarResourceCreator.VERSION);          // version needed to extract
+        this.writeShort(JarResourceCreator.FLAG_UTF8);        // general purpose bit flag
+        this.writeShort(entry.method);                        // compression method
+        this.writeInt(this.dosTime);                          // last mod file time and date
+        this.writeInt((int) entry.crc);                       // crc-32
+        this.writeInt(entry.compressedSize);                  // compressed size
+        this.writeInt(entry.uncompressedSize);                // uncompressed size
+        this.writeShort(entry.nameBytes.length);              // file name length
+        this.writeShort(0);                                   // extra field length
+        this.writeBytes(entry.nameBytes);                     // file name
+    }
+
+    private void
+    writeCentralDirectory() throws IOException {
+
+        long centralDirectoryOffset = this.offset;
+        for (Entry entry : this.written.values()) {
+            this.writeInt(JarResourceCreator.CENTRAL_DIRECTORY_SIGNATURE);
+            this.writeShort(JarResourceCreator.VERSION);      // version made by
+            this.writeShort(JarResourceCreator.VERSION);      // version needed to extract
+            this.writeShort(JarResourceCreator.FLAG_UTF8);    // general purpose bit flag
+            this.writeShort(entry.method);                    // compression method
+            this.writeInt(this.dosTime);                      // last mod file time and date
+            this.writeInt((int) entry.crc);                   // crc-32
+            this.writeInt(entry.compressedSize);              // compressed size
+            this.writeInt(entry.uncompressedSize);            // uncompressed size
+            this.writeShort(entry.nameBytes.length);          // file name length
+            this.writeShort(0);                               // extra field length
+            this.writeShort(0);                               // file comment length
+            this.writeShort(0);                               // disk number start
+            this.writeShort(0);                               // internal file attributes
+            this.writeInt(0);                                 // external file attributes
+            this.writeInt((int) entry.localHeaderOffset);     // relative offset of local header
+            this.writeBytes(entry.nameBytes);                 // file name
+        }
+        long centralDirectorySize = this.offset - centralDirectoryOffset;
+        if (this.offset > 0xffffffffL) throw new IOException("JAR file too large; ZIP64 is not supported");
+
+        this.writeInt(JarResourceCreator.END_OF_CENTRAL_DIRECTORY_SIGNATURE);
+        this.writeShort(0);                                   // number of this disk
+        this.writeShort(0);                                   // disk where central directory starts
+        this.writeShort(this.written.size());                 // number of central directory records on this disk
+        this.writeShort(this.written.size());                 // total number of central directory records
+        this.writeInt((int) centralDirectorySize);            // size of central directory
+        this.writeInt((int) centralDirectoryOffset);          // offset of start of central directory
+        this.writeShort(0);                                   // comment length
+    }
+
+    private void
+    writeShort(int value) throws IOException {
+        this.os.write(value);
+        this.os.write(value >> 8);
+        this.offset += 2;
+    }
+
+    private void
+    writeInt(int value) throws IOException {
+        this.os.write(value);
+        this.os.write(value >> 8);
+        this.os.write(value >> 16);
+        this.os.write(value >> 24);
+        this.offset += 4;
+    }
+
+    private void
+    writeBytes(byte[] value) throws IOException {
+        this.os.write(value);
+        this.offset += value.length;
+    }
+
+    /**
+     * @return The given time in MS-DOS format, as used in ZIP files
+     */
+    private static int
+    dosTime(long time) {
+        Calendar c = Calendar.getInstance();
+        c.setTimeInMillis(time);
+
+        int year = c.get(Calendar.YEAR);
+        if (year < 1980) return (1 << 21) | (1 << 16); // 1980-01-01 00:00:00
+
+        return (
+            (year - 1980) << 25
+            | (c.get(Calendar.MONTH) + 1) << 21
+            | c.get(Calendar.DAY_OF_MONTH) << 16
+            | c.get(Calendar.HOUR_OF_DAY) << 11
+            | c.get(Calendar.MINUTE) << 5
+            | c.get(Calendar.SECOND) >> 1
+        );
+    }
+
+    private static final
+    class PendingEntry {
+
+        final String        name;
+        final Future<Entry> future;
+
+        /**
+         * Whether the resource was deleted before it was written.
+         */
+        boolean deleted;
+
+        PendingEntry(String name, Future<Entry> future) {
+            this.name   = name;
+            this.future = future;
+        }
+    }
+
+    private static final
+    class Entry {
+
+        final String name;
+        final byte[] nameBytes;
+        final int    method;
+        final long   crc;
+        final int    compressedSize, uncompressedSize;
+
+        /**
+         * The compressed data; {@code null} after it was written.
+         */
+        @Nullable byte[] data;
+
+        long localHeaderOffset;
+
+        Entry(String name, int method, long crc, byte[] data, int compressedSize, int uncompressedSize) {
+            this.name             = name;
+            this.nameBytes        = name.getBytes(JarResourceCreator.UTF_8);
+            this.method           = method;
+            this.crc              = crc;
+            this.data             = data;
+            this.compressedSize   = compressedSize;
+            this.uncompressedSize = uncompressedSize;
+        }
+    }
+}
@@ -0,0 +1,210 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codehaus.commons.compiler.util.tests;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.Attributes;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarInputStream;
+import java.util.jar.Manifest;
+
+import org.codehaus.commons.compiler.util.resource.JarResourceCreator;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+// SUPPRESS CHECKSTYLE Javadoc:9999
+
+public
+class JarResourceCreatorTest {
+
+    @Rule public final TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test public void
+    testJarResourceCreator() throws Exception {
+
+        Manifest manifest = new Manifest();
+        manifest.getMainAttributes().put(Attributes.Name.MANIFEST_VERSION, "1.0");
+        manifest.getMainAttributes().put(Attributes.Name.MAIN_CLASS, "pkg.Main");
+
+        File               jarFile = this.temporaryFolder.newFile("test.jar");
+        JarResourceCreator jrc     = new JarResourceCreator(new FileOutputStream(jarFile), manifest, null);
+        try {
+            for (int i = 0; i < 1000; i++) {
+                OutputStream os = jrc.createResource("pkg/C" + i + ".class");
+                os.write(JarResourceCreatorTest.contents(i));
+                os.close();
+            }
+
+            // Incompressible data.
+            byte[] random = new byte[10000];
+            new Random(0).nextBytes(random);
+            OutputStream os = jrc.createResource("random.bin");
+            os.write(random);
+            os.close();
+
+            // Delete one resource, and re-create another one.
+            Assert.assertTrue(jrc.deleteResource("pkg/C7.class"));
+            Assert.assertFalse(jrc.deleteResource("pkg/C7.class"));
+            os = jrc.createResource("pkg/C8.class");
+            os.write(new byte[] { 1, 2, 3 });
+            os.close();
+        } finally {
+            jrc.close();
+        }
+
+        JarFile jf = new JarFile(jarFile);
+        try {
+            Manifest m = jf.getManifest();
+            Assert.assertNotNull(m);
+            Assert.assertEquals("pkg.Main", m.getMainAttributes().getValue(Attributes.Name.MAIN_CLASS));
+
+            Assert.assertEquals(1 + 1000 + 1 - 1, jf.size());
+            Assert.assertArrayEquals(
+                JarResourceCreatorTest.contents(0),
+                JarResourceCreatorTest.read(jf, "pkg/C0.class")
+            );
+            Assert.assertArrayEquals(
+                JarResourceCreatorTest.contents(999),
+                JarResourceCreatorTest.read(jf, "pkg/C999.class")
+            );
+            Assert.assertNull(jf.getJarEntry("pkg/C7.class"));
+            Assert.assertArrayEquals(new byte[] { 1, 2, 3 }, JarResourceCreatorTest.read(jf, "pkg/C8.class"));
+
+            JarEntry je = jf.getJarEntry("random.bin");
+            Assert.assertEquals(JarEntry.STORED, je.getMethod());
+            Assert.assertEquals(10000, JarResourceCreatorTest.read(jf, "random.bin").length);
+        } finally {
+            jf.close();
+        }
+
+        // The entries can also be read sequentially.
+        JarInputStream jis = new JarInputStream(new FileInputStream(jarFile));
+        try {
+            Assert.assertNotNull(jis.getManifest());
+            int n = 0;
+            while (jis.getNextJarEntry() != null) n++;
+
+            // Notice: The deleted entry is still in the file, and the re-created entry appears twice.
+            Assert.assertEquals(1000 + 1 + 1, n);
+        } finally {
+            jis.close();
+        }
+    }
+
+    @Test public void
+    testDeletePendingResource() throws Exception {
+
+        // Block the compressions until the resources are deleted.
+        final CountDownLatch latch    = new CountDownLatch(1);
+        ExecutorService      executor = Executors.newSingleThreadExecutor();
+        Future<Void>         blocker  = executor.submit(new Callable<Void>() {
+
+            @Override @Nullable public Void
+            call() throws Exception {
+                latch.await(10, TimeUnit.SECONDS);
+                return null;
+            }
+        });
+
+        File jarFile = this.temporaryFolder.newFile("test.jar");
+        try {
+            JarResourceCreator jrc = new JarResourceCreator(new FileOutputStream(jarFile), null, executor);
+            try {
+                for (String name : new String[] { "a", "b", "a" }) {
+                    OutputStream os = jrc.createResource(name);
+                    os.write(name.getBytes());
+                    os.close();
+                }
+
+                // Deleting a pending resource must not wait for the compressions.
+                Assert.assertTrue(jrc.deleteResource("a"));
+                Assert.assertFalse(jrc.deleteResource("a"));
+                Assert.assertFalse(blocker.isDone());
+            } finally {
+                latch.countDown();
+                jrc.close();
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        JarFile jf = new JarFile(jarFile);
+        try {
+            Assert.assertEquals(1, jf.size());
+            Assert.assertNull(jf.getJarEntry("a"));
+            Assert.assertArrayEquals("b".getBytes(), JarResourceCreatorTest.read(jf, "b"));
+        } finally {
+            jf.close();
+        }
+
+        // The deleted resource was never written.
+        JarInputStream jis = new JarInputStream(new FileInputStream(jarFile));
+        try {
+            Assert.assertEquals("b", jis.getNextJarEntry().getName());
+            Assert.assertNull(jis.getNextJarEntry());
+        } finally {
+            jis.close();
+        }
+    }
+
+    private static byte[]
+    contents(int i) {
+        StringBuilder sb = new StringBuilder();
+        for (int j = 0; j < 100; j++) sb.append("Class number ").append(i).append('\n');
+        return sb.toString().getBytes();
+    }
+
+    private static byte[]
+    read(JarFile jf, String name) throws Exception {
+        JarEntry je = jf.getJarEntry(name);
+        Assert.assertNotNull(name, je);
+
+        InputStream is = jf.getInputStream(je);
+        try {
+            ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+            byte[]                buffer = new byte[4096];
+            for (int n; (n = is.read(buffer)) != -1;) baos.write(buffer, 0, n);
+            return baos.toByteArray();
+        } finally {
+            is.close();
+        }
+    }
+}
@@ -0,0 +1,106 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.UnitCompiler;
+import org.codehaus.janino.util.ClassFile;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the serialization of {@link ClassFile}s into bytecode.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public
+class ClassFileBenchmark {
+
+    private ClassFile[] classFiles;
+    private ByteBuffer  buffer;
+
+    @Setup public void
+    compile() throws Exception {
+
+        List<ClassFile> cfs = new ArrayList<ClassFile>();
+        new UnitCompiler(
+            new Parser(new Scanner(null, new StringReader(Sources.COMPILATION_UNIT))).parseAbstractCompilationUnit(),
+            new ClassLoaderIClassLoader(ClassFileBenchmark.class.getClassLoader())
+        ).compileUnit(false, true, false, cfs);
+
+        this.classFiles = cfs.toArray(new ClassFile[cfs.size()]);
+
+        int length = 0;
+        for (ClassFile cf : this.classFiles) length = Math.max(length, cf.toByteArray().length);
+        this.buffer = ByteBuffer.allocate(length);
+    }
+
+    /**
+     * @return The total number of bytes
+     */
+    @Benchmark public int
+    toByteArray() {
+        int result = 0;
+        for (ClassFile cf : this.classFiles) result += cf.toByteArray().length;
+        return result;
+    }
+
+    /**
+     * Serializes into a reused {@link ByteBuffer}, which avoids the allocation of the byte arrays.
+     *
+     * @return The total number of bytes
+     */
+    @Benchmark public int
+    storeToByteBuffer() {
+        int result = 0;
+        for (ClassFile cf : this.classFiles) {
+            this.buffer.clear();
+            cf.store(this.buffer);
+            result += this.buffer.position();
+        }
+        return result;
+    }
+}
@@ -0,0 +1,105 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.ICompilerFactory;
+import org.codehaus.commons.compiler.IExpressionEvaluator;
+import org.codehaus.commons.compiler.IScriptEvaluator;
+import org.codehaus.commons.compiler.ISimpleCompiler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the end-to-end latency of {@code cook()}, i.e. scanning, parsing, compiling and loading, for each of the
+ * "cookables", and with each {@link ICompilerFactory}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public
+class CookBenchmark {
+
+    @Param({ Sources.JANINO_COMPILER_FACTORY, Sources.JDK_COMPILER_FACTORY }) public String
+    compilerFactory;
+
+    private ICompilerFactory cf;
+
+    @Setup public void
+    setUp() throws Exception {
+        this.cf = CompilerFactoryFactory.getCompilerFactory(
+            this.compilerFactory,
+            CookBenchmark.class.getClassLoader()
+        );
+    }
+
+    @Benchmark public Object
+    cookExpression() throws Exception {
+        IExpressionEvaluator ee = this.cf.newExpressionEvaluator();
+        ee.setParameters(new String[] { "a", "b" }, new Class<?>[] { int.class, int.class });
+        ee.setExpressionType(int.class);
+        ee.cook(Sources.EXPRESSION);
+        return ee.getMethod();
+    }
+
+    @Benchmark public Object
+    cookScript() throws Exception {
+        IScriptEvaluator se = this.cf.newScriptEvaluator();
+        se.setParameters(new String[] { "a", "b" }, new Class<?>[] { int.class, int.class });
+        se.setReturnType(int.class);
+        se.cook(Sources.SCRIPT);
+        return se.getMethod();
+    }
+
+    @Benchmark public Object
+    cookClassBody() throws Exception {
+        IClassBodyEvaluator cbe = this.cf.newClassBodyEvaluator();
+        cbe.cook(Sources.CLASS_BODY);
+        return cbe.getClazz();
+    }
+
+    @Benchmark public Object
+    cookCompilationUnit() throws Exception {
+        ISimpleCompiler sc = this.cf.newSimpleCompiler();
+        sc.cook(Sources.COMPILATION_UNIT);
+        return sc.getClassLoader().loadClass(Sources.CLASS_NAME);
+    }
+}
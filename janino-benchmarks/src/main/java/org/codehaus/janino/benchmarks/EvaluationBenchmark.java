@@ -0,0 +1,126 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.compiler.CompilerFactoryFactory;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.ICompilerFactory;
+import org.codehaus.commons.compiler.IExpressionEvaluator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the execution speed of the generated code, i.e. the quality of the bytecode that each
+ * {@link ICompilerFactory} produces, and the overhead of the different ways to invoke it.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public
+class EvaluationBenchmark {
+
+    /**
+     * The interface that {@link #fastEvaluator} implements.
+     */
+    public
+    interface IntBinaryOperator { int applyAsInt(int a, int b); }
+
+    @Param({ Sources.JANINO_COMPILER_FACTORY, Sources.JDK_COMPILER_FACTORY }) public String
+    compilerFactory;
+
+    private IExpressionEvaluator expressionEvaluator;
+    private IntBinaryOperator    fastEvaluator;
+    private Method               fib;
+
+    private int a = 7, b = 11;
+
+    @Setup public void
+    setUp() throws Exception {
+
+        ICompilerFactory cf = CompilerFactoryFactory.getCompilerFactory(
+            this.compilerFactory,
+            EvaluationBenchmark.class.getClassLoader()
+        );
+
+        this.expressionEvaluator = cf.newExpressionEvaluator();
+        this.expressionEvaluator.setParameters(new String[] { "a", "b" }, new Class<?>[] { int.class, int.class });
+        this.expressionEvaluator.setExpressionType(int.class);
+        this.expressionEvaluator.cook(Sources.EXPRESSION);
+
+        IExpressionEvaluator ee = cf.newExpressionEvaluator();
+        ee.setParentClassLoader(EvaluationBenchmark.class.getClassLoader());
+        this.fastEvaluator = (IntBinaryOperator) ee.createFastEvaluator(
+            Sources.EXPRESSION,
+            IntBinaryOperator.class,
+            "a", "b"
+        );
+
+        IClassBodyEvaluator cbe = cf.newClassBodyEvaluator();
+        cbe.cook(Sources.CLASS_BODY);
+        this.fib = cbe.getClazz().getMethod("fib", int.class);
+    }
+
+    /**
+     * Evaluates the expression through {@link IExpressionEvaluator#evaluate(Object[])}, i.e. through reflection and
+     * with boxing of the arguments and the result.
+     */
+    @Benchmark public Object
+    evaluate() throws Exception {
+        return this.expressionEvaluator.evaluate(new Object[] { this.a, this.b });
+    }
+
+    /**
+     * Evaluates the expression through the interface created by {@link IExpressionEvaluator#createFastEvaluator(
+     * String, Class, String[])}, i.e. without reflection and boxing.
+     */
+    @Benchmark public int
+    fastEvaluate() {
+        return this.fastEvaluator.applyAsInt(this.a, this.b);
+    }
+
+    /**
+     * Executes a loop in a generated method; dominated by the quality of the generated bytecode.
+     */
+    @Benchmark public Object
+    fib() throws Exception {
+        return this.fib.invoke(null, 40);
+    }
+}
@@ -0,0 +1,146 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.benchmarks;
+
+/**
+ * The Java source code that the benchmarks process.
+ */
+final
+class Sources {
+
+    private Sources() {}
+
+    /**
+     * The fully qualified names of the {@link org.codehaus.commons.compiler.ICompilerFactory}s that the factory-based
+     * benchmarks are parametrized with.
+     */
+    static final String
+    JANINO_COMPILER_FACTORY = "org.codehaus.janino.CompilerFactory",
+    JDK_COMPILER_FACTORY    = "org.codehaus.commons.compiler.jdk.CompilerFactory";
+
+    /**
+     * The name of the top-level class declared by {@link #COMPILATION_UNIT}.
+     */
+    static final String CLASS_NAME = "pkg.Benchmarked";
+
+    /**
+     * A compilation unit of moderate size that uses a typical mix of language features: fields, constructors,
+     * loops, arithmetic, string concatenation, arrays, exceptions, member types and anonymous classes.
+     */
+    static final String COMPILATION_UNIT = Sources.compilationUnit(40);
+
+    /**
+     * An expression with two {@code int} parameters "a" and "b".
+     */
+    static final String EXPRESSION = "a * a + 2 * a * b + b * b - (a ^ b) % 7";
+
+    /**
+     * A script with two {@code int} parameters "a" and "b" that returns an {@code int}.
+     */
+    static final String SCRIPT = (
+        ""
+        + "int result = 0;\n"
+        + "for (int i = a; i < b; i++) {\n"
+        + "    if (i % 3 == 0) continue;\n"
+        + "    result += i * i;\n"
+        + "}\n"
+        + "return result;\n"
+    );
+
+    /**
+     * A class body that declares a static method "int fib(int)".
+     */
+    static final String CLASS_BODY = (
+        ""
+        + "public static int\n"
+        + "fib(int n) {\n"
+        + "    int a = 0, b = 1;\n"
+        + "    for (int i = 0; i < n; i++) {\n"
+        + "        int t = a + b;\n"
+        + "        a = b;\n"
+        + "        b = t;\n"
+        + "    }\n"
+        + "    return a;\n"
+        + "}\n"
+    );
+
+    private static String
+    compilationUnit(int methodCount) {
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("package pkg;\n");
+        sb.append("\n");
+        sb.append("import java.util.*;\n");
+        sb.append("\n");
+        sb.append("public class Benchmarked {\n");
+        sb.append("\n");
+        sb.append("    private final int[]        values;\n");
+        sb.append("    private final List<String> names = new ArrayList<String>();\n");
+        sb.append("    private static long        counter;\n");
+        sb.append("\n");
+        sb.append("    public Benchmarked(int size) {\n");
+        sb.append("        this.values = new int[size];\n");
+        sb.append("        for (int i = 0; i < size; i++) this.values[i] = i * 31 % 17;\n");
+        sb.append("    }\n");
+        sb.append("\n");
+        sb.append("    public static class Point {\n");
+        sb.append("        final double x, y;\n");
+        sb.append("        Point(double x, double y) { this.x = x; this.y = y; }\n");
+        sb.append("        double distance(Point that) {\n");
+        sb.append("            double dx = this.x - that.x, dy = this.y - that.y;\n");
+        sb.append("            return Math.sqrt(dx * dx + dy * dy);\n");
+        sb.append("        }\n");
+        sb.append("    }\n");
+        for (int i = 0; i < methodCount; i++) {
+            sb.append("\n");
+            sb.append("    /** Method #").append(i).append(". */\n");
+            sb.append("    public long method").append(i).append("(int n, String s) throws Exception {\n");
+            sb.append("        long sum = ").append(i).append("L;\n");
+            sb.append("        for (int i = 0; i < n && i < this.values.length; i++) {\n");
+            sb.append("            switch (this.values[i] & 3) {\n");
+            sb.append("            case 0:  sum += this.values[i] << 2; break;\n");
+            sb.append("            case 1:  sum -= this.values[i];      break;\n");
+            sb.append("            default: sum ^= (long) i * 0x9E3779B9L;\n");
+            sb.append("            }\n");
+            sb.append("        }\n");
+            sb.append("        try {\n");
+            sb.append("            sum += Integer.parseInt(s.trim());\n");
+            sb.append("        } catch (NumberFormatException nfe) {\n");
+            sb.append("            this.names.add(\"method").append(i).append(": \" + s + '/' + sum);\n");
+            sb.append("        }\n");
+            sb.append("        Runnable r = new Runnable() {\n");
+            sb.append("            public void run() { Benchmarked.counter++; }\n");
+            sb.append("        };\n");
+            sb.append("        r.run();\n");
+            sb.append("        Point p = new Point(sum, n);\n");
+            sb.append("        return sum + (long) p.distance(new Point(0, 0));\n");
+            sb.append("    }\n");
+        }
+        sb.append("}\n");
+
+        return sb.toString();
+    }
+}
@@ -0,0 +1,333 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.commons.compiler.InternalCompilerException;
+import org.codehaus.commons.compiler.util.resource.DirectoryResourceCreator;
+import org.codehaus.commons.compiler.util.resource.FileResource;
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.ResourceCreator;
+import org.codehaus.commons.compiler.util.resource.ResourceFinder;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.Java.AbstractCompilationUnit;
+import org.codehaus.janino.Java.Located;
+import org.codehaus.janino.util.AbstractTraverser;
+
+/**
+ * A persistent, content-addressed cache for the bytecode that a {@link SimpleCompiler} (and thus an {@link
+ * ExpressionEvaluator}, {@link ScriptEvaluator} or {@link ClassBodyEvaluator}) generates, so that a restarted JVM can
+ * load the bytecode instead of compiling the same code again.
+ * <p>
+ *   The cache key is a SHA-256 hash over
+ * </p>
+ * <ul>
+ *   <li>The compilation unit, as produced by the {@link Unparser}; for the evaluators, this includes the synthetic
+ *   class and method declarations, i.e. the class name, the parameter names and types, the return type and so
+ *   forth</li>
+ *   <li>The locations of all AST nodes, iff line number or source file debugging information is generated</li>
+ *   <li>The compilation options (debugging information, target version, {@link JaninoOption}s)</li>
+ *   <li>The JANINO version</li>
+ *   <li>A signature of the class path of the parent class loader (see {@link #setClasspathSignature(String)})</li>
+ * </ul>
+ * <p>
+ *   Each cache entry is stored in one resource, named after the key. Entries that cannot be read (e.g. because
+ *   they were only partially written) are treated as cache misses.
+ * </p>
+ * <p>
+ *   A {@link BytecodeCache} can be shared by many {@link SimpleCompiler}s, also concurrently.
+ * </p>
+ *
+ * @see SimpleCompiler#setBytecodeCache(BytecodeCache)
+ */
+public
+class BytecodeCache {
+
+    private static final Logger LOGGER = Logger.getLogger(BytecodeCache.class.getName());
+
+    private static final int MAGIC = 0x4A4E4F43; // "JNOC"
+
+    private final ResourceFinder  resourceFinder;
+    private final ResourceCreator resourceCreator;
+
+    @Nullable private String classpathSignature;
+
+    private final Map<ClassLoader, String> classpathSignatures = new WeakHashMap<>();
+
+    /**
+     * Stores the cache entries as files in the given <var>directory</var>.
+     */
+    public
+    BytecodeCache(final File directory) {
+        this(
+            new ResourceFinder() {
+
+                @Override @Nullable public Resource
+                findResource(String resourceName) {
+                    File file = new File(directory, resourceName.replace('/', File.separatorChar));
+                    return file.isFile() ? new FileResource(file) : null;
+                }
+
+                @Override public String
+                toString() { return "dir:" + directory; }
+            },
+            new DirectoryResourceCreator(directory)
+        );
+    }
+
+    /**
+     * @param resourceFinder  Finds the cache entries that were previously stored through the <var>resourceCreator</var>
+     * @param resourceCreator Stores new cache entries
+     */
+    public
+    BytecodeCache(ResourceFinder resourceFinder, ResourceCreator resourceCreator) {
+        this.resourceFinder  = resourceFinder;
+        this.resourceCreator = resourceCreator;
+    }
+
+    /**
+     * By default, the class path signature is computed from the class path of the parent class loader of each
+     * compilation: the URLs of all {@link URLClassLoader}s in the class loader chain and the system class path, plus
+     * the sizes and modification times of the respective files, plus the Java version. That is cheap, but does not
+     * notice changes <em>within</em> class directories.
+     * <p>
+     *   Applications that know better (e.g. the version of their domain model) should set their own class path
+     *   signature.
+     * </p>
+     *
+     * @param classpathSignature {@code null} restores the default behavior
+     */
+    public BytecodeCache
+    setClasspathSignature(@Nullable String classpathSignature) {
+        this.classpathSignature = classpathSignature;
+        return this;
+    }
+
+    /**
+     * Computes the cache key for the given compilation unit.
+     *
+     * @param options The compilation options that affect the generated bytecode, in some canonical string form
+     */
+    String
+    key(AbstractCompilationUnit acu, boolean withLocations, String options, ClassLoader parentClassLoader) {
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new InternalCompilerException("SHA-256", nsae);
+        }
+
+        BytecodeCache.update(md, "janino " + BytecodeCache.getJaninoVersion());
+        BytecodeCache.update(md, this.getClasspathSignature(parentClassLoader));
+        BytecodeCache.update(md, options);
+        BytecodeCache.update(md, BytecodeCache.canonicalForm(acu, withLocations));
+
+        byte[]        digest = md.digest();
+        StringBuilder sb     = new StringBuilder(2 * digest.length + 1);
+        for (int i = 0; i < digest.length; i++) {
+            sb.append(Character.forDigit((digest[i] >> 4) & 0xf, 16)).append(Character.forDigit(digest[i] & 0xf, 16));
+            if (i == 0) sb.append('/');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * @return A string that is equal for two compilation units iff they produce the same bytecode (with the same
+     *         options and the same parent class loader)
+     */
+    static String
+    canonicalForm(AbstractCompilationUnit acu, boolean withLocations) {
+
+        StringWriter sw = new StringWriter();
+        Unparser.unparse(acu, sw);
+
+        if (withLocations) {
+            final StringBuffer sb = sw.getBuffer();
+            new AbstractTraverser<RuntimeException>() {
+
+                @Override public void
+                traverseLocated(Located l) { sb.append(l.getLocation()).append('\n'); }
+            }.visitAbstractCompilationUnit(acu);
+        }
+
+        return sw.toString();
+    }
+
+    /**
+     * @return The bytecodes that were previously {@link #put(String, Map)} under the given <var>key</var>, or {@code
+     *         null}
+     */
+    @Nullable Map<String /*className*/, byte[] /*bytecode*/>
+    get(String key) {
+
+        Resource r = this.resourceFinder.findResource(key);
+        if (r == null) return null;
+
+        Map<String, byte[]> result;
+        try {
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(r.open()));
+            try {
+                result = BytecodeCache.read(dis);
+            } finally {
+                try { dis.close(); } catch (IOException ex) {}
+            }
+        } catch (EOFException eofe) {
+            result = null;
+        } catch (IOException ioe) {
+            BytecodeCache.LOGGER.log(Level.FINE, "Reading cache entry \"" + r.getFileName() + "\"", ioe);
+            result = null;
+        }
+        return result;
+    }
+
+    @Nullable private static Map<String /*className*/, byte[] /*bytecode*/>
+    read(DataInputStream dis) throws IOException {
+
+        if (dis.readInt() != BytecodeCache.MAGIC) return null;
+
+        int                 count  = dis.readInt();
+        Map<String, byte[]> result = new LinkedHashMap<>();
+        for (int i = 0; i < count; i++) {
+            String className = dis.readUTF();
+            byte[] bytecode  = new byte[dis.readInt()];
+            dis.readFully(bytecode);
+            result.put(className, bytecode);
+        }
+
+        // Detect partially written entries.
+        if (dis.readInt() != BytecodeCache.MAGIC) return null;
+
+        return result;
+    }
+
+    /**
+     * Stores the given <var>bytecodes</var> under the given <var>key</var>. I/O problems are logged, but otherwise
+     * ignored, because they only affect the performance of later compilations.
+     */
+    void
+    put(String key, Map<String /*className*/, byte[] /*bytecode*/> bytecodes) {
+        try {
+            OutputStream os = this.resourceCreator.createResource(key);
+            try {
+                DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+                dos.writeInt(BytecodeCache.MAGIC);
+                dos.writeInt(bytecodes.size());
+                for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
+                    String className = (String) me.getKey();
+                    byte[] bytecode  = (byte[]) me.getValue();
+                    dos.writeUTF(className);
+                    dos.writeInt(bytecode.length);
+                    dos.write(bytecode);
+                }
+                dos.writeInt(BytecodeCache.MAGIC);
+                dos.flush();
+            } finally {
+                try { os.close(); } catch (IOException ex) {}
+            }
+        } catch (IOException ioe) {
+            BytecodeCache.LOGGER.log(Level.FINE, "Writing cache entry \"" + key + "\"", ioe);
+            this.resourceCreator.deleteResource(key);
+        }
+    }
+
+    private String
+    getClasspathSignature(ClassLoader parentClassLoader) {
+
+        String result = this.classpathSignature;
+        if (result != null) return result;
+
+        synchronized (this.classpathSignatures) {
+
+            result = (String) this.classpathSignatures.get(parentClassLoader);
+            if (result != null) return result;
+
+            StringBuilder sb = new StringBuilder("java ").append(System.getProperty("java.version"));
+            for (ClassLoader cl = parentClassLoader; cl != null; cl = cl.getParent()) {
+                if (cl instanceof URLClassLoader) {
+                    for (URL url : ((URLClassLoader) cl).getURLs()) {
+                        BytecodeCache.appendClasspathEntry(
+                            sb,
+                            url.toString(),
+                            "file".equals(url.getProtocol()) ? new File(url.getPath()) : null
+                        );
+                    }
+                }
+            }
+            String cp = System.getProperty("java.class.path");
+            if (cp != null) {
+                for (String entry : cp.split(File.pathSeparator)) {
+                    BytecodeCache.appendClasspathEntry(sb, entry, new File(entry));
+                }
+            }
+
+            this.classpathSignatures.put(parentClassLoader, (result = sb.toString()));
+            return result;
+        }
+    }
+
+    private static void
+    appendClasspathEntry(StringBuilder sb, String entry, @Nullable File file) {
+        sb.append('\n').append(entry);
+        if (file != null) sb.append(' ').append(file.length()).append(' ').append(file.lastModified());
+    }
+
+    private static String
+    getJaninoVersion() {
+        Package p      = BytecodeCache.class.getPackage();
+        String  result = p == null ? null : p.getImplementationVersion();
+        return result != null ? result : "(unknown)";
+    }
+
+    private static void
+    update(MessageDigest md, String s) {
+        md.update(s.getBytes(StandardCharsets.UTF_8));
+        md.update((byte) 0);
+    }
+
+    @Override public String
+    toString() { return "BytecodeCache(" + this.resourceFinder + ")"; }
+}
@@ -30,9 +30,13 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.commons.compiler.util.resource.DirectoryResourceCreator;
 import org.codehaus.commons.compiler.util.resource.DirectoryResourceFinder;
 import org.codehaus.commons.compiler.util.resource.PathResourceFinder;
@@ -41,6 +45,7 @@ import org.codehaus.commons.compiler.util.resource.ResourceCreator;
 import org.codehaus.commons.compiler.util.resource.ResourceFinder;
 import org.codehaus.commons.nullanalysis.Nullable;
 import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.ClassFileArchive;
 
 /**
  * A {@link org.codehaus.janino.JavaSourceClassLoader} that uses a resource storage provided by the application to
@@ -52,6 +57,12 @@ import org.codehaus.janino.util.ClassFile;
  *   #CachingJavaSourceClassLoader(ClassLoader, ResourceFinder, String, ResourceFinder, ResourceCreator)}.
  * </p>
  * <p>
+ *   Alternatively, the application provides a {@link ClassFileArchive} (see {@link
+ *   #CachingJavaSourceClassLoader(ClassLoader, ResourceFinder, String, ClassFileArchive)}), which stores all cached
+ *   class files in one file, and validates them through hashes of the source file contents instead of modification
+ *   times.
+ * </p>
+ * <p>
  *   See {@link org.codehaus.janino.JavaSourceClassLoader#main(String[])} for an example how to use this class.
  * </p>
  * <p>
@@ -64,9 +75,18 @@ import org.codehaus.janino.util.ClassFile;
  */
 public
 class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
-    private final ResourceFinder  classFileCacheResourceFinder;
-    private final ResourceCreator classFileCacheResourceCreator;
-    private final ResourceFinder  sourceFinder;
+
+    static { ClassLoader.registerAsParallelCapable(); }
+
+    @Nullable private final ResourceFinder   classFileCacheResourceFinder;
+    @Nullable private final ResourceCreator  classFileCacheResourceCreator;
+    @Nullable private final ClassFileArchive classFileArchive;
+    private final ResourceFinder             sourceFinder;
+
+    /**
+     * Caches the hashes of the source files, so that each source file is read at most once.
+     */
+    private final Map<String /*sourceResourceName*/, byte[] /*sourceHash*/> sourceHashes = new ConcurrentHashMap<>();
 
     /**
      * See {@link #CachingJavaSourceClassLoader(ClassLoader, ResourceFinder, String, ResourceFinder, ResourceCreator)}.
@@ -125,6 +145,31 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
         super(parentClassLoader, sourceFinder, characterEncoding);
         this.classFileCacheResourceFinder  = classFileCacheResourceFinder;
         this.classFileCacheResourceCreator = classFileCacheResourceCreator;
+        this.classFileArchive              = null;
+        this.sourceFinder                  = sourceFinder;
+    }
+
+    /**
+     * Caches the class files in the given <var>classFileArchive</var>. A cached class file is regarded as up-to-date
+     * iff the SHA-256 hash of the content of its source file is unchanged, which works reliably even after
+     * checkouts and file copies, which typically spoil the modification times.
+     *
+     * @param parentClassLoader Attempt to load classes through this one before looking for source files
+     * @param sourceFinder      Finds Java source for class {@code pkg.Cls} in resource {@code pkg/Cls.java}
+     * @param characterEncoding Encoding of Java source or {@code null} for platform default encoding
+     * @param classFileArchive  Stores the compiled classes (see class description)
+     */
+    public
+    CachingJavaSourceClassLoader(
+        ClassLoader      parentClassLoader,
+        ResourceFinder   sourceFinder,
+        @Nullable String characterEncoding,
+        ClassFileArchive classFileArchive
+    ) {
+        super(parentClassLoader, sourceFinder, characterEncoding);
+        this.classFileCacheResourceFinder  = null;
+        this.classFileCacheResourceCreator = null;
+        this.classFileArchive              = classFileArchive;
         this.sourceFinder                  = sourceFinder;
     }
 
@@ -137,15 +182,28 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
      */
     @Override @Nullable protected Map<String /*name*/, byte[] /*bytecode*/>
     generateBytecodes(String className) throws ClassNotFoundException {
-        // Check whether a class file resource exists in the cache.
-        {
-            Resource classFileResource = this.classFileCacheResourceFinder.findResource(
+
+        ClassFileArchive cfa = this.classFileArchive;
+        if (cfa != null) return this.generateBytecodes(className, cfa);
+
+        ResourceFinder  classFileCacheResourceFinder  = this.classFileCacheResourceFinder;
+        ResourceCreator classFileCacheResourceCreator = this.classFileCacheResourceCreator;
+        assert classFileCacheResourceFinder != null;
+        assert classFileCacheResourceCreator != null;
+
+        // Check whether a class file resource exists in the cache. (Concurrent compilations may be writing to the
+        // cache, see below.)
+        synchronized (classFileCacheResourceCreator) {
+            Resource classFileResource = classFileCacheResourceFinder.findResource(
                 ClassFile.getClassFileResourceName(className)
             );
             if (classFileResource != null) {
 
                 // Check whether a source file resource exists.
-                Resource sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(className));
+                Resource sourceResource;
+                synchronized (this.sourceFinder) {
+                    sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(className));
+                }
                 if (sourceResource == null) return null;
 
                 // Check whether the class file is up-to-date.
@@ -170,19 +228,63 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
         if (bytecodes == null) return null;
 
         // Write the generated bytecodes to the class file cache.
+        synchronized (classFileCacheResourceCreator) {
+            for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
+                String className2 = (String) me.getKey();
+                byte[] bytecode   = (byte[]) me.getValue();
+
+                try {
+                    CachingJavaSourceClassLoader.writeResource(
+                        classFileCacheResourceCreator,
+                        ClassFile.getClassFileResourceName(className2),
+                        bytecode
+                    );
+                } catch (IOException ex) {
+                    throw new ClassNotFoundException(
+                        "Writing class file to \"" + ClassFile.getClassFileResourceName(className2) + "\"",
+                        ex
+                    );
+                }
+            }
+        }
+
+        return bytecodes;
+    }
+
+    @Nullable private Map<String /*name*/, byte[] /*bytecode*/>
+    generateBytecodes(String className, ClassFileArchive classFileArchive) throws ClassNotFoundException {
+
+        // Check whether the archive holds an up-to-date class file.
+        {
+            byte[] sourceHash = this.getSourceHash(ClassFile.getSourceResourceName(className));
+            if (sourceHash == null) return null;
+
+            byte[] bytecode = classFileArchive.get(className, sourceHash);
+            if (bytecode != null) {
+                Map<String /*name*/, byte[] /*bytecode*/> m = new HashMap<>();
+                m.put(className, bytecode);
+                return m;
+            }
+        }
+
+        // Cache miss... generate the bytecode from source.
+        Map<String /*name*/, byte[] /*bytecode*/> bytecodes = super.generateBytecodes(className);
+        if (bytecodes == null) return null;
+
+        // Append the generated bytecodes to the archive. (Classes that were not declared in "their own" source file,
+        // e.g. secondary top-level classes, cannot be validated and are thus not archived.)
         for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
             String className2 = (String) me.getKey();
             byte[] bytecode   = (byte[]) me.getValue();
 
+            byte[] sourceHash = this.getSourceHash(ClassFile.getSourceResourceName(className2));
+            if (sourceHash == null) continue;
+
             try {
-                CachingJavaSourceClassLoader.writeResource(
-                    this.classFileCacheResourceCreator,
-                    ClassFile.getClassFileResourceName(className2),
-                    bytecode
-                );
+                classFileArchive.put(className2, sourceHash, bytecode);
             } catch (IOException ex) {
                 throw new ClassNotFoundException(
-                    "Writing class file to \"" + ClassFile.getClassFileResourceName(className2) + "\"",
+                    "Writing class file \"" + className2 + "\" to \"" + classFileArchive + "\"",
                     ex
                 );
             }
@@ -191,6 +293,49 @@ class CachingJavaSourceClassLoader extends JavaSourceClassLoader {
         return bytecodes;
     }
 
+    /**
+     * @return The SHA-256 hash of the contents of the source resource, or {@code null} iff the source resource
+     *         does not exist
+     */
+    @Nullable private byte[]
+    getSourceHash(String sourceResourceName) throws ClassNotFoundException {
+
+        byte[] result = (byte[]) this.sourceHashes.get(sourceResourceName);
+        if (result != null) return result;
+
+        Resource sourceResource;
+        synchronized (this.sourceFinder) {
+            sourceResource = this.sourceFinder.findResource(sourceResourceName);
+        }
+        if (sourceResource == null) return null;
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new InternalCompilerException("SHA-256", nsae);
+        }
+
+        try {
+            InputStream is = sourceResource.open();
+            try {
+                byte[] buffer = new byte[8192];
+                for (;;) {
+                    int cnt = is.read(buffer);
+                    if (cnt == -1) break;
+                    md.update(buffer, 0, cnt);
+                }
+            } finally {
+                try { is.close(); } catch (IOException ex) {}
+            }
+        } catch (IOException ex) {
+            throw new ClassNotFoundException("Reading source file \"" + sourceResource.getFileName() + "\"", ex);
+        }
+
+        this.sourceHashes.put(sourceResourceName, (result = md.digest()));
+        return result;
+    }
+
     /**
      * Reads all bytes from the given resource.
      */
@@ -0,0 +1,175 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.codehaus.commons.compiler.InternalCompilerException;
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * A JVM-wide registry of the class loaders that load the classes generated by {@link SimpleCompiler}s, so that
+ * compilations that produce byte-identical classes share one set of {@link Class} objects (and thus Metaspace and
+ * JIT effort), instead of defining the same classes over and over again.
+ * <p>
+ *   Two compilations are regarded as identical iff they have the same parent class loader, and their generated
+ *   classes have the same names and the same bytecode. Notice that the names of the synthetic classes that the
+ *   evaluators generate do not depend on the individual compilation; e.g. two {@link ScriptEvaluator}s that cook the
+ *   same script with the same parameters produce byte-identical classes.
+ * </p>
+ * <p>
+ *   The registry does not keep the class loaders alive; entries are removed as their class loaders are garbage
+ *   collected.
+ * </p>
+ *
+ * @see SimpleCompiler#setCanonicalizeClasses(boolean)
+ */
+final
+class CanonicalClassLoaders {
+
+    private CanonicalClassLoaders() {}
+
+    // parent class loader => digest of the bytecode => class loader
+    private static final Map<ClassLoader, Map<Digest, Entry>> REGISTRY = new WeakHashMap<>();
+
+    private static final ReferenceQueue<ClassLoader> CLEARED = new ReferenceQueue<>();
+
+    /**
+     * A SHA-256 hash over the names and the bytecode of a set of classes.
+     */
+    private static final
+    class Digest {
+
+        private final byte[] value;
+        private final int    hashCode;
+
+        Digest(byte[] value) {
+            this.value    = value;
+            this.hashCode = Arrays.hashCode(value);
+        }
+
+        @Override public boolean
+        equals(@Nullable Object o) { return o instanceof Digest && Arrays.equals(((Digest) o).value, this.value); }
+
+        @Override public int
+        hashCode() { return this.hashCode; }
+    }
+
+    /**
+     * Clears itself when the canonical class loader is garbage collected, and then knows which registry entry to
+     * remove.
+     */
+    private static final
+    class Entry extends WeakReference<ClassLoader> {
+
+        final Map<Digest, Entry> map;
+        final Digest             digest;
+
+        Entry(ClassLoader classLoader, Map<Digest, Entry> map, Digest digest) {
+            super(classLoader, CanonicalClassLoaders.CLEARED);
+            this.map    = map;
+            this.digest = digest;
+        }
+    }
+
+    /**
+     * @param candidate The class loader that loads the given <var>bytecodes</var> (and has the given
+     *                  <var>parent</var>), and that has not yet loaded any classes
+     * @return          A previously registered class loader that loads identical classes, or, iff there is none, the
+     *                  <var>candidate</var>, which is then registered
+     */
+    static ClassLoader
+    canonicalize(ClassLoader parent, Map<String /*className*/, byte[] /*bytecode*/> bytecodes, ClassLoader candidate) {
+
+        Digest digest = CanonicalClassLoaders.digest(bytecodes);
+
+        synchronized (CanonicalClassLoaders.REGISTRY) {
+            CanonicalClassLoaders.expungeClearedEntries();
+
+            Map<Digest, Entry> map = (Map<Digest, Entry>) CanonicalClassLoaders.REGISTRY.get(parent);
+            if (map == null) CanonicalClassLoaders.REGISTRY.put(parent, (map = new HashMap<>()));
+
+            Entry entry = (Entry) map.get(digest);
+            if (entry != null) {
+                ClassLoader result = (ClassLoader) entry.get();
+                if (result != null) {
+                    CompilerStatistics.INSTANCE.classLoaderShared();
+                    return result;
+                }
+            }
+
+            map.put(digest, new Entry(candidate, map, digest));
+            return candidate;
+        }
+    }
+
+    private static void
+    expungeClearedEntries() {
+        for (;;) {
+            Entry e = (Entry) CanonicalClassLoaders.CLEARED.poll();
+            if (e == null) return;
+
+            if (e.map.get(e.digest) == e) e.map.remove(e.digest);
+        }
+    }
+
+    private static Digest
+    digest(Map<String /*className*/, byte[] /*bytecode*/> bytecodes) {
+
+        MessageDigest md;
+        try {
+            md = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new InternalCompilerException("SHA-256", nsae);
+        }
+
+        // Notice: The order of the classes must not matter.
+        for (Map.Entry<String, byte[]> e : new TreeMap<String, byte[]>(bytecodes).entrySet()) {
+            byte[] bytecode = (byte[]) e.getValue();
+
+            md.update(((String) e.getKey()).getBytes(StandardCharsets.UTF_8));
+            md.update((byte) 0);
+            md.update(new byte[] {
+                (byte) (bytecode.length >> 24),
+                (byte) (bytecode.length >> 16),
+                (byte) (bytecode.length >> 8),
+                (byte) bytecode.length,
+            });
+            md.update(bytecode);
+        }
+
+        return new Digest(md.digest());
+    }
+}
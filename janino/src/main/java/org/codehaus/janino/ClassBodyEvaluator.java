@@ -33,6 +33,8 @@ import java.util.ArrayList;
 import java.util.EnumSet;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.CompilerFactoryFactory;
@@ -260,6 +262,64 @@ class ClassBodyEvaluator extends Cookable implements IClassBodyEvaluator {
         return this;
     }
 
+    /**
+     * @see SimpleCompiler#setBytecodeCache(BytecodeCache)
+     */
+    public void
+    setBytecodeCache(@Nullable BytecodeCache bytecodeCache) { this.sc.setBytecodeCache(bytecodeCache); }
+
+    /**
+     * @see SimpleCompiler#setCanonicalizeClasses(boolean)
+     */
+    public void
+    setCanonicalizeClasses(boolean value) { this.sc.setCanonicalizeClasses(value); }
+
+    /**
+     * @see SimpleCompiler#setCompileTimeSandbox(CompileTimeSandbox)
+     */
+    public void
+    setCompileTimeSandbox(@Nullable CompileTimeSandbox sandbox) { this.sc.setCompileTimeSandbox(sandbox); }
+
+    /**
+     * @see SimpleCompiler#setCompilationListener(CompilationListener)
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener listener) { this.sc.setCompilationListener(listener); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the {@link CookExecutor#getDefault() default cook executor}.
+     *
+     * @see #cookAsync(CookExecutor, String)
+     */
+    public Future<Class<?>>
+    cookAsync(String source) { return this.cookAsync(CookExecutor.getDefault(), source); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the <var>cookExecutor</var>. Iff the compilation fails, then
+     * {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException} that wraps the {@link
+     * CompileException}. This object must not be used in any way until the returned {@link Future} is done.
+     *
+     * @return A {@link Future} of the {@link #getClazz() generated class}
+     * @throws java.util.concurrent.RejectedExecutionException The <var>cookExecutor</var> is saturated or shut down
+     */
+    public Future<Class<?>>
+    cookAsync(CookExecutor cookExecutor, final String source) {
+        return cookExecutor.submit(new Callable<Class<?>>() {
+
+            @Override public Class<?>
+            call() throws CompileException {
+                ClassBodyEvaluator.this.cook(source);
+                return ClassBodyEvaluator.this.getClazz();
+            }
+        });
+    }
+
+    /**
+     * @see SimpleCompiler#startPhaseRecording()
+     */
+    @Nullable PhaseRecorder
+    startPhaseRecording() { return this.sc.startPhaseRecording(); }
+
     // ================================= END OF CONFIGURATION SETTERS AND GETTERS =================================
 
     @Override public final void
@@ -273,16 +333,25 @@ class ClassBodyEvaluator extends Cookable implements IClassBodyEvaluator {
         Parser parser = new Parser(scanner);
         parser.setSourceVersion(this.sourceVersion);
 
-        Java.AbstractCompilationUnit.ImportDeclaration[] importDeclarations = this.makeImportDeclarations(parser);
+        PhaseRecorder pr = this.startPhaseRecording();
+        parser.setPhaseRecorder(pr);
 
-        Java.CompilationUnit compilationUnit = new Java.CompilationUnit(scanner.getFileName(), importDeclarations);
+        Java.CompilationUnit compilationUnit;
+        if (pr != null) pr.begin(CompilationListener.Phase.PARSE);
+        try {
+            Java.AbstractCompilationUnit.ImportDeclaration[] importDeclarations = this.makeImportDeclarations(parser);
+
+            compilationUnit = new Java.CompilationUnit(scanner.getFileName(), importDeclarations);
 
-        // Add class declaration.
-        Java.AbstractClassDeclaration
-        acd = this.addPackageMemberClassDeclaration(scanner.location(), compilationUnit);
+            // Add class declaration.
+            Java.AbstractClassDeclaration
+            acd = this.addPackageMemberClassDeclaration(scanner.location(), compilationUnit);
 
-        // Parse class body declarations (member declarations) until EOF.
-        while (!parser.peek(TokenType.END_OF_INPUT)) parser.parseClassBodyDeclaration(acd);
+            // Parse class body declarations (member declarations) until EOF.
+            while (!parser.peek(TokenType.END_OF_INPUT)) parser.parseClassBodyDeclaration(acd);
+        } finally {
+            if (pr != null) pr.end();
+        }
 
         // Compile and load it.
         this.cook(compilationUnit);
@@ -27,9 +27,11 @@ package org.codehaus.janino;
 
 import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Set;
 import java.util.logging.Logger;
 
 import org.codehaus.commons.compiler.CompileException;
@@ -58,7 +60,9 @@ import org.codehaus.janino.util.signature.SignatureParser.ClassTypeSignature;
 import org.codehaus.janino.util.signature.SignatureParser.FieldTypeSignature;
 import org.codehaus.janino.util.signature.SignatureParser.FieldTypeSignatureVisitor;
 import org.codehaus.janino.util.signature.SignatureParser.FormalTypeParameter;
+import org.codehaus.janino.util.signature.SignatureParser.MethodTypeSignature;
 import org.codehaus.janino.util.signature.SignatureParser.SignatureException;
+import org.codehaus.janino.util.signature.SignatureParser.TypeSignature;
 import org.codehaus.janino.util.signature.SignatureParser.TypeVariableSignature;
 
 /**
@@ -589,6 +593,38 @@ class ClassFileIClass extends IClass {
         }
         final IClass[] thrownExceptions = tes == null ? new IClass[0] : tes;
 
+        // Determine which parameters and return type are declared with type variables of the class.
+        final String[] parameterTypeVariableNames = new String[parameterTypes.length];
+        String         rtvn                       = null;
+        for (ClassFile.AttributeInfo ai : ais) {
+            if (!(ai instanceof SignatureAttribute)) continue;
+
+            MethodTypeSignature mts;
+            try {
+                mts = new SignatureParser().decodeMethodTypeSignature(
+                    ((SignatureAttribute) ai).getSignature(this.classFile)
+                );
+            } catch (SignatureException e) {
+                break;
+            }
+
+            Set<String> methodTypeVariableNames = new HashSet<>();
+            for (int i = 0; i < mts.formalTypeParameters.size(); i++) {
+                methodTypeVariableNames.add(((FormalTypeParameter) mts.formalTypeParameters.get(i)).identifier);
+            }
+
+            // Notice: The signature lacks the magic parameters of inner class and enum constructors.
+            List<TypeSignature> pts = mts.parameterTypes;
+            for (int i = 0, j = parameterTypes.length - pts.size(); i < pts.size(); i++, j++) {
+                if (j >= 0) parameterTypeVariableNames[j] = ClassFileIClass.classTypeVariableName(
+                    (TypeSignature) pts.get(i),
+                    methodTypeVariableNames
+                );
+            }
+            rtvn = ClassFileIClass.classTypeVariableName(mts.returnType, methodTypeVariableNames);
+        }
+        final String returnTypeVariableName = rtvn;
+
         // Determine access.
         final Access access = ClassFileIClass.accessFlags2Access(methodInfo.getAccessFlags());
 
@@ -647,6 +683,12 @@ class ClassFileIClass extends IClass {
                 @Override public IClass[]      getParameterTypes2()   { return parameterTypes;                              }
                 @Override public boolean       isVarargs()            { return Mod.isVarargs(methodInfo.getAccessFlags());  }
                 @Override public IClass[]      getThrownExceptions2() { return thrownExceptions;                            }
+
+                @Override public String[]
+                getParameterTypeVariableNames() { return parameterTypeVariableNames; }
+
+                @Override @Nullable public String
+                getReturnTypeVariableName() { return returnTypeVariableName; }
             };
         }
         this.resolvedMethods.put(methodInfo, result);
@@ -656,6 +698,13 @@ class ClassFileIClass extends IClass {
     private final Map<ClassFile.MethodInfo, IInvocable>
     resolvedMethods = new HashMap<>();
 
+    @Nullable private static String
+    classTypeVariableName(TypeSignature ts, Set<String> methodTypeVariableNames) {
+        if (!(ts instanceof TypeVariableSignature)) return null;
+        String result = ((TypeVariableSignature) ts).identifier;
+        return methodTypeVariableNames.contains(result) ? null : result;
+    }
+
     private IField
     resolveField(final ClassFile.FieldInfo fieldInfo) throws ClassNotFoundException {
         IField result = (IField) this.resolvedFields.get(fieldInfo);
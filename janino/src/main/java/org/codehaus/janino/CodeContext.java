@@ -38,6 +38,7 @@ import java.util.Set;
 
 import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener.Phase;
 import org.codehaus.janino.util.ClassFile;
 import org.codehaus.janino.util.ClassFile.ConstantClassInfo;
 import org.codehaus.janino.util.ClassFile.StackMapTableAttribute;
@@ -67,6 +68,8 @@ class CodeContext {
 
     private final ClassFile classFile;
 
+    @Nullable private PhaseRecorder phaseRecorder;
+
     private int                             maxStack;
     private short                           maxLocals;
     private byte[]                          code;
@@ -129,6 +132,12 @@ class CodeContext {
         this.end                    = this.currentInserter;
     }
 
+    /**
+     * @param phaseRecorder Measures the time spent in stack map computation; {@code null} disables measuring
+     */
+    void
+    setPhaseRecorder(@Nullable PhaseRecorder phaseRecorder) { this.phaseRecorder = phaseRecorder; }
+
     /**
      * The {@link ClassFile} this context is related to.
      */
@@ -233,7 +242,7 @@ class CodeContext {
         if (this.currentLocalScope != null) {
             StackMap sm = this.currentInserter.getStackMap();
 
-            if (sm != null && sm.locals().length > 0) {
+            if (sm != null && sm.localsCount() > 0) {
                 int numActiveSlots = 0;
                 int nextLvIndex = 0;
                 for (VerificationTypeInfo slot : sm.locals()) {
@@ -241,7 +250,7 @@ class CodeContext {
                     nextLvIndex += slot.category();
                     numActiveSlots += 1;
                 }
-                int numRemovedSlots = sm.locals().length - numActiveSlots;
+                int numRemovedSlots = sm.localsCount() - numActiveSlots;
                 while (numRemovedSlots-- > 0) sm = sm.popLocal();
                 this.currentInserter.setStackMap(sm);
             }
@@ -285,7 +294,18 @@ class CodeContext {
 
         // Add the "StackMapTable" attribute.
         if (!CodeContext.SUPPRESS_STACK_MAP_TABLE) {
-            StackMapTableAttribute smta = this.newStackMapTableAttribute(initialLocalsCount);
+            PhaseRecorder          pr = this.phaseRecorder;
+            StackMapTableAttribute smta;
+            if (pr == null) {
+                smta = this.newStackMapTableAttribute(initialLocalsCount);
+            } else {
+                pr.begin(Phase.STACK_MAP_COMPUTATION);
+                try {
+                    smta = this.newStackMapTableAttribute(initialLocalsCount);
+                } finally {
+                    pr.end();
+                }
+            }
             if (smta != null) attributes.add(smta);
         }
 
@@ -337,7 +357,7 @@ class CodeContext {
         Offset frame = this.beginning.next;
         Offset previousFrame = null;
 
-        for (; frame != this.end && frame.stackMap.locals().length < initialLocalsCount; frame = frame.next);
+        for (; frame != this.end && frame.stackMap.localsCount() < initialLocalsCount; frame = frame.next);
 
         previousFrame = frame;
         frame = frame.next;
@@ -1106,7 +1126,7 @@ class CodeContext {
 
         if (sm1.equals(sm2)) return sm1;
 
-        if (!Arrays.equals(sm1.operands(), sm2.operands())) {
+        if (!sm1.operandsEqual(sm2)) {
             throw new InternalCompilerException("Inconsistent operand stack: " + sm1 + " vs. " + sm2);
         }
 
@@ -1145,7 +1165,7 @@ class CodeContext {
             }
         }
 
-        return new StackMap((VerificationTypeInfo[]) tmp.toArray(new VerificationTypeInfo[tmp.size()]), sm1.operands());
+        return sm1.withLocals((VerificationTypeInfo[]) tmp.toArray(new VerificationTypeInfo[tmp.size()]));
     }
 
     /**
@@ -1430,8 +1450,7 @@ class CodeContext {
         sm = sm.pushOperand(topOperand);
         ci.setStackMap(sm);
 
-        int ss = 0;
-        for (VerificationTypeInfo vti : sm.operands()) ss += vti.category();
+        int ss = sm.operandsSize();
         if (ss > this.maxStack) this.maxStack = ss;
     }
 
@@ -0,0 +1,108 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Receives the durations of the phases of a compilation, e.g. to find out where the time of {@link
+ * SimpleCompiler#cook(String)} goes.
+ * <p>
+ *   Each phase is reported with its <em>exclusive</em> duration, i.e. without the time of the phases that were
+ *   nested in it; e.g. the time that the {@link Parser} waits for the {@link Scanner} counts as {@link Phase#SCAN},
+ *   and the time that the {@link UnitCompiler} waits for the {@link IClassLoader} as {@link
+ *   Phase#TYPE_RESOLUTION}. Thus the durations of all phases add up to the total compilation time.
+ * </p>
+ * <p>
+ *   The phases up to and including {@link Phase#STACK_MAP_COMPUTATION} are reported when the compilation unit was
+ *   compiled. {@link Phase#CLASS_FILE_SERIALIZATION} and {@link Phase#CLASS_DEFINITION} happen lazily, when the
+ *   bytecode, resp. the classes, are first requested, and are reported then.
+ * </p>
+ * <p>
+ *   Measuring the phases costs a few percent of the compilation time, so it takes place only iff a listener is
+ *   configured.
+ * </p>
+ *
+ * @see SimpleCompiler#setCompilationListener(CompilationListener)
+ * @see JfrCompilationListener
+ */
+public
+interface CompilationListener {
+
+    /**
+     * The phases of a compilation.
+     */
+    enum Phase {
+
+        /**
+         * Tokenization of the source code by the {@link Scanner}; the count is the number of tokens.
+         */
+        SCAN,
+
+        /**
+         * Creation of the syntax tree by the {@link Parser}; the count is the number of compilation units.
+         */
+        PARSE,
+
+        /**
+         * Loading of {@link IClass}es through the {@link IClassLoader}; the count is the number of {@link IClass}es
+         * that were not yet cached by the {@link IClassLoader}.
+         */
+        TYPE_RESOLUTION,
+
+        /**
+         * Generation of bytecode by the {@link UnitCompiler}; the count is the number of compilation units.
+         */
+        CODE_GENERATION,
+
+        /**
+         * Computation of the "StackMapTable" attributes of the methods; the count is the number of methods.
+         */
+        STACK_MAP_COMPUTATION,
+
+        /**
+         * Serialization of the {@link org.codehaus.janino.util.ClassFile}s into bytecode; the count is the number of
+         * class files.
+         */
+        CLASS_FILE_SERIALIZATION,
+
+        /**
+         * Definition of the generated classes in the JVM; the count is the number of classes.
+         */
+        CLASS_DEFINITION
+    }
+
+    /**
+     * Is invoked when a phase of the compilation of a compilation unit has completed.
+     *
+     * @param fileName      The name of the compilation unit, as passed to {@link SimpleCompiler#cook(String,
+     *                      java.io.Reader)}
+     * @param count         How often the phase was executed; see the {@link Phase} constants
+     * @param durationNanos The exclusive duration of the phase, in nanoseconds
+     */
+    void
+    phaseCompleted(@Nullable String fileName, Phase phase, int count, long durationNanos);
+}
@@ -0,0 +1,157 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Decides which classes, methods, fields and constructors untrusted code may reference. Other than the {@link
+ * org.codehaus.commons.compiler.Sandbox}, which restricts the <em>execution</em> of code through the {@link
+ * SecurityManager}, the {@link UnitCompiler} checks the references at <em>compile time</em>, and the generated code
+ * runs without any checks at full speed.
+ * <p>
+ *   A reference is identified by a name like
+ * </p>
+ * <ul>
+ *   <li>{@code "java.lang.Math"} (a class or interface, e.g. in a class literal),</li>
+ *   <li>{@code "java.lang.Math.abs"} (all methods named "abs"),</li>
+ *   <li>{@code "java.lang.Integer.MAX_VALUE"} (a field), or</li>
+ *   <li>{@code "java.io.File.<init>"} (all constructors of a class),</li>
+ * </ul>
+ * <p>
+ *   where the class is the class that <em>declares</em> the member (e.g. {@code "java.lang.Object.getClass"} for
+ *   {@code "abc".getClass()}), and member classes are named like {@code "java.util.Map$Entry"}.
+ * </p>
+ * <p>
+ *   Each rule {@link #allow(String) allows} or {@link #deny(String) denies} a name and all names that it is a prefix
+ *   of, e.g. {@code "java.util"} applies to all classes in package {@code java.util} and its subpackages, {@code
+ *   "java.lang.System"} to the class and all its members. The <em>longest</em> applicable rule determines whether a
+ *   reference is permitted, so a broad rule can be refined by narrower rules:
+ * </p>
+ * <pre>
+ *     new CompileTimeSandbox(false)         // Deny everything that is not explicitly allowed.
+ *         .allow("java.lang")
+ *         .deny("java.lang.reflect")
+ *         .deny("java.lang.System")
+ *         .allow("java.lang.System.currentTimeMillis")
+ *         .deny("java.lang.Class")
+ *         .deny("java.lang.ClassLoader")
+ *         .deny("java.lang.Runtime")
+ *         .deny("java.lang.Thread");
+ * </pre>
+ * <p>
+ *   References to the classes that are being compiled (i.e. that were not loaded from class files or through
+ *   reflection) and to members of arrays are always permitted.
+ * </p>
+ * <p>
+ *   Notice that the sandbox only considers references that appear explicitly in the source code; the code that the
+ *   compiler generates implicitly (e.g. the {@link StringBuilder} invocations for string concatenation) is not
+ *   subject to the rules.
+ * </p>
+ * <p>
+ *   A {@link CompileTimeSandbox} must not be modified while it is in use, but can then be shared by many compilers,
+ *   also concurrently.
+ * </p>
+ *
+ * @see UnitCompiler#setCompileTimeSandbox(CompileTimeSandbox)
+ * @see SimpleCompiler#setCompileTimeSandbox(CompileTimeSandbox)
+ */
+public final
+class CompileTimeSandbox {
+
+    private final boolean              permittedByDefault;
+    private final Map<String, Boolean> rules = new TreeMap<>();
+
+    /**
+     * @param permittedByDefault Whether references that no rule applies to are permitted; {@code false} makes the
+     *                           rules an allowlist, {@code true} a denylist
+     */
+    public
+    CompileTimeSandbox(boolean permittedByDefault) { this.permittedByDefault = permittedByDefault; }
+
+    /**
+     * Permits references to the given name and all names that it is a prefix of, unless a longer rule denies them.
+     *
+     * @return {@code this}
+     */
+    public CompileTimeSandbox
+    allow(String name) {
+        this.rules.put(name, true);
+        return this;
+    }
+
+    /**
+     * Forbids references to the given name and all names that it is a prefix of, unless a longer rule allows them.
+     *
+     * @return {@code this}
+     */
+    public CompileTimeSandbox
+    deny(String name) {
+        this.rules.put(name, false);
+        return this;
+    }
+
+    /**
+     * @param name E.g. {@code "java.lang.Math"} or {@code "java.lang.Math.abs"}
+     * @return     Whether the longest rule that applies to the <var>name</var> permits it
+     */
+    public boolean
+    isPermitted(String name) {
+
+        for (String prefix = name;;) {
+
+            Boolean permitted = (Boolean) this.rules.get(prefix);
+            if (permitted != null) return permitted;
+
+            // Strip the last name component.
+            int idx = Math.max(prefix.lastIndexOf('.'), prefix.lastIndexOf('$'));
+            if (idx == -1) return this.permittedByDefault;
+            prefix = prefix.substring(0, idx);
+        }
+    }
+
+    /**
+     * @param className E.g. {@code "java.util.Map$Entry"}
+     * @return          Whether the given class or interface may be referenced
+     */
+    public boolean
+    isClassPermitted(String className) { return this.isPermitted(className); }
+
+    /**
+     * @param className  E.g. {@code "java.lang.Math"}
+     * @param memberName A method or field name, or {@code "<init>"} for a constructor
+     * @return           Whether the given member may be referenced
+     */
+    public boolean
+    isMemberPermitted(String className, String memberName) { return this.isPermitted(className + '.' + memberName); }
+
+    /**
+     * @return A description of the rules, suitable e.g. as part of a cache key
+     */
+    @Override public String
+    toString() { return "permittedByDefault=" + this.permittedByDefault + ", rules=" + this.rules; }
+}
@@ -39,7 +39,12 @@ import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -50,6 +55,7 @@ import org.codehaus.commons.compiler.ICompiler;
 import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.commons.compiler.WarningHandler;
+import org.codehaus.commons.compiler.io.InputStreams;
 import org.codehaus.commons.compiler.java9.java.lang.module.ModuleFinder;
 import org.codehaus.commons.compiler.java9.java.lang.module.ModuleReference;
 import org.codehaus.commons.compiler.util.Benchmark;
@@ -86,6 +92,13 @@ class Compiler extends AbstractCompiler {
 
     private final List<UnitCompiler> parsedCompilationUnits = new ArrayList<>();
 
+    @Nullable private File dependencyGraphFile;
+
+    /**
+     * During incremental compilation: The class files of the classes that need not be recompiled.
+     */
+    private final Map<String /*className*/, Resource> upToDateClassFiles = new HashMap<>();
+
     /**
      * Initializes a new compiler.
      */
@@ -207,77 +220,280 @@ class Compiler extends AbstractCompiler {
         return this;
     }
 
+    /**
+     * Enables or disables incremental compilation.
+     * <p>
+     *   If a <var>dependencyGraphFile</var> is set, then {@link #compile(Resource[])} records the classes that each
+     *   compilation unit declares and references, and persists that information in the file. Subsequent invocations
+     *   then only recompile the compilation units whose source changed, plus the units that depend on a class whose
+     *   API (non-private members, modifiers, supertypes and constant values) actually changed.
+     * </p>
+     * <p>
+     *   For this to work, each invocation of {@link #compile(Resource[])} must be passed <em>all</em> source resources
+     *   of the project; units that are no longer passed are considered deleted, and their class files are removed.
+     * </p>
+     *
+     * @param dependencyGraphFile {@code null} disables incremental compilation, which is the default
+     */
+    public void
+    setDependencyGraphFile(@Nullable File dependencyGraphFile) { this.dependencyGraphFile = dependencyGraphFile; }
+
     @Override public void
     compile(Resource[] sourceResources) throws CompileException, IOException {
 
         this.benchmark.beginReporting();
         try {
 
-            final IClassLoader
-            iClassLoader = new CompilerIClassLoader(this.sourceFinder, this.classFileFinder, this.getIClassLoader());
+            File dgf = this.dependencyGraphFile;
+            if (dgf == null) {
+                this.compile(sourceResources, new HashMap<String, DependencyGraph.Unit>());
+            } else {
+                this.compileIncrementally(sourceResources, dgf);
+            }
+        } finally {
+            this.benchmark.endReporting("Compiled " + this.parsedCompilationUnits.size() + " compilation unit(s)");
+
+            // Let the ASTs of the compilation units be garbage-collected.
+            if (this.options.contains(JaninoOption.METHOD_BODIES_DISCARDED)) this.parsedCompilationUnits.clear();
+        }
+    }
 
-            // Initialize compile time fields.
-            this.parsedCompilationUnits.clear();
+    /**
+     * Compiles the given source resources, and all the compilation units that are pulled in from the source path.
+     *
+     * @param analyzedUnits Is notified of the generated class files and of the inlined constants of the compilation
+     *                      units with the same file names
+     */
+    private void
+    compile(Resource[] sourceResources, Map<String /*fileName*/, DependencyGraph.Unit> analyzedUnits)
+    throws CompileException, IOException {
 
-            // Parse all source files.
-            for (Resource sourceResource : sourceResources) {
-                Compiler.LOGGER.log(Level.FINE, "Compiling \"{0}\"", sourceResource);
+        final IClassLoader
+        iClassLoader = new CompilerIClassLoader(this.sourceFinder, this.classFileFinder, this.getIClassLoader());
 
-                UnitCompiler uc = new UnitCompiler(
-                    this.parseAbstractCompilationUnit(
-                        sourceResource.getFileName(),                   // fileName
-                        new BufferedInputStream(sourceResource.open()), // inputStream
-                        this.sourceCharset                              // charset
-                    ),
-                    iClassLoader
-                );
-                uc.setTargetVersion(this.targetVersion);
-                uc.setCompileErrorHandler(this.compileErrorHandler);
-                uc.setWarningHandler(this.warningHandler);
-                uc.options(this.options);
+        // Initialize compile time fields.
+        this.parsedCompilationUnits.clear();
 
-                this.parsedCompilationUnits.add(uc);
+        // Parse all source files.
+        for (Resource sourceResource : sourceResources) {
+            Compiler.LOGGER.log(Level.FINE, "Compiling \"{0}\"", sourceResource);
+
+            UnitCompiler uc = new UnitCompiler(
+                this.parseAbstractCompilationUnit(
+                    sourceResource.getFileName(),                   // fileName
+                    new BufferedInputStream(sourceResource.open()), // inputStream
+                    this.sourceCharset                              // charset
+                ),
+                iClassLoader
+            );
+            uc.setTargetVersion(this.targetVersion);
+            uc.setCompileErrorHandler(this.compileErrorHandler);
+            uc.setWarningHandler(this.warningHandler);
+            uc.options(this.options);
+
+            this.parsedCompilationUnits.add(uc);
+        }
+
+        // Compile all parsed compilation units. The vector of parsed CUs may grow while they are being compiled,
+        // but eventually all CUs will be compiled.
+        for (int i = 0; i < this.parsedCompilationUnits.size(); ++i) {
+            UnitCompiler unitCompiler = (UnitCompiler) this.parsedCompilationUnits.get(i);
+
+            final File                           sourceFile;
+            @Nullable final DependencyGraph.Unit analyzedUnit;
+            {
+                Java.AbstractCompilationUnit acu = unitCompiler.getAbstractCompilationUnit();
+                if (acu.fileName == null) throw new InternalCompilerException();
+                sourceFile   = new File(acu.fileName);
+                analyzedUnit = (DependencyGraph.Unit) analyzedUnits.get(acu.fileName);
             }
 
-            // Compile all parsed compilation units. The vector of parsed CUs may grow while they are being compiled,
-            // but eventually all CUs will be compiled.
-            for (int i = 0; i < this.parsedCompilationUnits.size(); ++i) {
-                UnitCompiler unitCompiler = (UnitCompiler) this.parsedCompilationUnits.get(i);
+            unitCompiler.setTargetVersion(this.targetVersion);
+            unitCompiler.setCompileErrorHandler(this.compileErrorHandler);
+            unitCompiler.setWarningHandler(this.warningHandler);
+
+            this.benchmark.beginReporting("Compiling compilation unit \"" + sourceFile + "\"");
+            try {
 
-                final File sourceFile;
-                {
-                    Java.AbstractCompilationUnit acu = unitCompiler.getAbstractCompilationUnit();
-                    if (acu.fileName == null) throw new InternalCompilerException();
-                    sourceFile = new File(acu.fileName);
+                // Compile the compilation unit.
+                unitCompiler.compileUnit(
+                    this.debugSource,
+                    this.debugLines,
+                    this.debugVars,
+                    new ClassFileConsumer() {
+
+                        @Override public void
+                        consume(ClassFile classFile) throws IOException {
+                            Compiler.this.storeClassFile(classFile, sourceFile);
+                            if (analyzedUnit != null) analyzedUnit.addClassFile(classFile);
+                        }
+                    }
+                );
+            } finally {
+                this.benchmark.endReporting();
+            }
+
+            if (analyzedUnit != null) analyzedUnit.addDependencies(unitCompiler.getInlinedConstantDeclaringTypes());
+        }
+    }
+
+    /**
+     * Compiles only those of the <var>sourceResources</var> that changed since the last compilation, plus the ones
+     * that are affected by API changes, and updates the <var>dependencyGraphFile</var>.
+     * <p>
+     *   Works in "waves": The first wave compiles the changed units; each following wave compiles the units that
+     *   depend on a class whose API was changed by the preceding wave. The classes of the units that are not compiled
+     *   in a wave are loaded from their (up-to-date) class files.
+     * </p>
+     */
+    private void
+    compileIncrementally(Resource[] sourceResources, File dependencyGraphFile) throws CompileException, IOException {
+
+        String optionsSignature = (
+            "debugSource="       + this.debugSource
+            + ", debugLines="    + this.debugLines
+            + ", debugVars="     + this.debugVars
+            + ", targetVersion=" + this.targetVersion
+            + ", options="       + this.options
+        );
+        DependencyGraph previous = DependencyGraph.load(dependencyGraphFile, optionsSignature);
+        DependencyGraph current  = new DependencyGraph(optionsSignature);
+
+        // Determine which units changed (or are new).
+        Map<String /*fileName*/, Resource> sources      = new LinkedHashMap<>();
+        Map<String /*fileName*/, byte[]>   sourceHashes = new HashMap<>();
+        Set<String /*fileName*/>           toCompile    = new LinkedHashSet<>();
+        for (Resource sourceResource : sourceResources) {
+            String fileName   = sourceResource.getFileName();
+            byte[] sourceHash = DependencyGraph.hash(Compiler.readAll(sourceResource));
+            sources.put(fileName, sourceResource);
+            sourceHashes.put(fileName, sourceHash);
+
+            DependencyGraph.Unit pu = previous.getUnit(fileName);
+            if (
+                pu == null
+                || !Arrays.equals(pu.sourceHash, sourceHash)
+                || !this.classFilesExist(pu)
+            ) {
+                toCompile.add(fileName);
+            } else {
+                current.putUnit(pu);
+            }
+        }
+
+        // Remove the class files of units that no longer exist; their dependents must be recompiled.
+        {
+            Set<String> removedClasses = new HashSet<>();
+            for (DependencyGraph.Unit pu : previous.getUnits()) {
+                if (sources.containsKey(pu.fileName)) continue;
+                for (String className : pu.classes.keySet()) {
+                    this.deleteClassFile(className, new File(pu.fileName));
+                    removedClasses.add(className);
                 }
+            }
+            toCompile.addAll(current.getDependentUnits(previous.addSubtypes(removedClasses)));
+        }
 
-                unitCompiler.setTargetVersion(this.targetVersion);
-                unitCompiler.setCompileErrorHandler(this.compileErrorHandler);
-                unitCompiler.setWarningHandler(this.warningHandler);
+        int unitCount = 0;
+        while (!toCompile.isEmpty()) {
 
-                this.benchmark.beginReporting("Compiling compilation unit \"" + sourceFile + "\"");
-                try {
+            // The classes of the units that are not compiled in this wave are loaded from their class files.
+            this.upToDateClassFiles.clear();
+            for (DependencyGraph.Unit u : current.getUnits()) {
+                if (toCompile.contains(u.fileName)) continue;
+                for (String className : u.classes.keySet()) {
+                    Resource classFileResource = this.findClassFile(className, new File(u.fileName));
+                    if (classFileResource != null) this.upToDateClassFiles.put(className, classFileResource);
+                }
+            }
 
-                    // Compile the compilation unit.
-                    unitCompiler.compileUnit(
-                        this.debugSource,
-                        this.debugLines,
-                        this.debugVars,
-                        new ClassFileConsumer() {
+            Resource[]                        wave          = new Resource[toCompile.size()];
+            Map<String, DependencyGraph.Unit> analyzedUnits = new HashMap<>();
+            {
+                int i = 0;
+                for (String fileName : toCompile) {
+                    wave[i++] = (Resource) sources.get(fileName);
+                    analyzedUnits.put(fileName, new DependencyGraph.Unit(
+                        fileName,
+                        (byte[]) sourceHashes.get(fileName)
+                    ));
+                }
+            }
 
-                            @Override public void
-                            consume(ClassFile classFile) throws IOException {
-                                Compiler.this.storeClassFile(classFile, sourceFile);
-                            }
-                        }
-                    );
-                } finally {
-                    this.benchmark.endReporting();
+            try {
+                this.compile(wave, analyzedUnits);
+            } finally {
+                this.upToDateClassFiles.clear();
+            }
+            unitCount += this.parsedCompilationUnits.size();
+
+            // Determine the API changes of this wave.
+            Set<String> apiChanges = new HashSet<>();
+            for (String fileName : toCompile) {
+                DependencyGraph.Unit nu = (DependencyGraph.Unit) analyzedUnits.get(fileName);
+                DependencyGraph.Unit ou = current.getUnit(fileName);
+                if (ou == null) ou = previous.getUnit(fileName);
+
+                if (ou != null) {
+                    for (String className : ou.classes.keySet()) {
+                        if (!nu.classes.containsKey(className)) this.deleteClassFile(className, new File(fileName));
+                    }
                 }
+                apiChanges.addAll(nu.getApiChanges(ou));
+                current.putUnit(nu);
             }
+
+            Set<String> next = current.getDependentUnits(current.addSubtypes(apiChanges));
+            next.removeAll(toCompile);
+            toCompile = next;
+        }
+
+        current.store(dependencyGraphFile);
+
+        this.benchmark.report("Compilation units recompiled incrementally", Integer.valueOf(unitCount));
+    }
+
+    /**
+     * @return Whether all class files of the <var>unit</var> exist
+     */
+    private boolean
+    classFilesExist(DependencyGraph.Unit unit) throws IOException {
+        for (String className : unit.classes.keySet()) {
+            if (this.findClassFile(className, new File(unit.fileName)) == null) return false;
+        }
+        return true;
+    }
+
+    @Nullable private Resource
+    findClassFile(String className, File sourceFile) throws IOException {
+
+        if (this.classFileFinder != ICompiler.FIND_NEXT_TO_SOURCE_FILE) {
+            return this.classFileFinder.findResource(ClassFile.getClassFileResourceName(className));
+        }
+
+        File classFile = Compiler.getClassFile(className, sourceFile, null);
+        return classFile.exists() ? new FileResource(classFile) : null;
+    }
+
+    private void
+    deleteClassFile(String className, File sourceFile) {
+        if (this.classFileCreator != ICompiler.CREATE_NEXT_TO_SOURCE_FILE) {
+            this.classFileCreator.deleteResource(ClassFile.getClassFileResourceName(className));
+        } else {
+            Compiler.getClassFile(className, sourceFile, null).delete();
+        }
+    }
+
+    private static byte[]
+    readAll(Resource resource) throws IOException {
+        InputStream is = resource.open();
+        byte[]      result;
+        try {
+            result = InputStreams.readAll(is);
         } finally {
-            this.benchmark.endReporting("Compiled " + this.parsedCompilationUnits.size() + " compilation unit(s)");
+            try { is.close(); } catch (IOException e) {}
         }
+        return result;
     }
 
     /**
@@ -570,6 +786,12 @@ class Compiler extends AbstractCompiler {
                 if (idx == -1) break;
             }
 
+            // Check the class files that are known to be up-to-date.
+            {
+                Resource classFileResource = (Resource) Compiler.this.upToDateClassFiles.get(className);
+                if (classFileResource != null) return this.defineIClassFromClassFileResource(classFileResource);
+            }
+
             // Search source path for uncompiled class.
             final Resource sourceResource = this.sourceFinder.findResource(ClassFile.getSourceResourceName(className));
             if (sourceResource == null) return null;
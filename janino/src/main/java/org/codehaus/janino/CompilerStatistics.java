@@ -0,0 +1,140 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.InstanceAlreadyExistsException;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.codehaus.commons.compiler.util.SystemProperties;
+
+/**
+ * Cumulative counters of all compilations of the {@link SimpleCompiler} (and thus of the {@link ClassBodyEvaluator},
+ * the {@link ScriptEvaluator} and the {@link ExpressionEvaluator}) in this JVM. The counters are always maintained;
+ * they can be read through {@link #INSTANCE}, or, after {@link #registerMBean()}, through JMX under the name {@value
+ * #OBJECT_NAME}.
+ * <p>
+ *   Alternatively, set the system property "{@code org.codehaus.janino.CompilerStatistics.registerMBean}" to {@code
+ *   true} to register the MBean when the class is initialized.
+ * </p>
+ */
+public final
+class CompilerStatistics implements CompilerStatisticsMBean {
+
+    /**
+     * The name under which {@link #registerMBean()} registers the {@link #INSTANCE}.
+     */
+    public static final String OBJECT_NAME = "org.codehaus.janino:type=CompilerStatistics";
+
+    /**
+     * The counters of this JVM.
+     */
+    public static final CompilerStatistics INSTANCE = new CompilerStatistics();
+
+    static {
+        if (SystemProperties.getBooleanClassProperty(CompilerStatistics.class, "registerMBean")) {
+            try {
+                CompilerStatistics.registerMBean();
+            } catch (JMException jme) {
+                throw new ExceptionInInitializerError(jme);
+            }
+        }
+    }
+
+    private final AtomicLong compileCount       = new AtomicLong();
+    private final AtomicLong compileTimeNanos   = new AtomicLong();
+    private final AtomicLong classesDefined     = new AtomicLong();
+    private final AtomicLong bytesGenerated     = new AtomicLong();
+    private final AtomicLong iClassCacheHits    = new AtomicLong();
+    private final AtomicLong iClassCacheMisses  = new AtomicLong();
+    private final AtomicLong classLoadersShared = new AtomicLong();
+    private final AtomicLong bytecodeCacheHits  = new AtomicLong();
+
+    private CompilerStatistics() {}
+
+    /**
+     * Registers the {@link #INSTANCE} with the platform {@link MBeanServer} under the name {@value #OBJECT_NAME};
+     * does nothing if it is already registered.
+     */
+    public static void
+    registerMBean() throws JMException {
+
+        MBeanServer mbs = ManagementFactory.getPlatformMBeanServer();
+        ObjectName  on  = new ObjectName(CompilerStatistics.OBJECT_NAME);
+        if (mbs.isRegistered(on)) return;
+
+        try {
+            mbs.registerMBean(CompilerStatistics.INSTANCE, on);
+        } catch (InstanceAlreadyExistsException iaee) {
+            ; // Another thread was faster.
+        }
+    }
+
+    @Override public long getCompileCount()        { return this.compileCount.get();                 }
+    @Override public long getCompileTimeMillis()   { return this.compileTimeNanos.get() / 1000000L;  }
+    @Override public long getClassesDefinedCount() { return this.classesDefined.get();               }
+    @Override public long getBytesGenerated()      { return this.bytesGenerated.get();               }
+    @Override public long getIClassCacheHits()     { return this.iClassCacheHits.get();              }
+    @Override public long getIClassCacheMisses()   { return this.iClassCacheMisses.get();            }
+    @Override public long getClassLoadersShared()  { return this.classLoadersShared.get();           }
+    @Override public long getBytecodeCacheHits()   { return this.bytecodeCacheHits.get();            }
+
+    @Override public void
+    reset() {
+        this.compileCount.set(0);
+        this.compileTimeNanos.set(0);
+        this.classesDefined.set(0);
+        this.bytesGenerated.set(0);
+        this.iClassCacheHits.set(0);
+        this.iClassCacheMisses.set(0);
+        this.classLoadersShared.set(0);
+        this.bytecodeCacheHits.set(0);
+    }
+
+    void
+    compiled(long durationNanos, long iClassCacheHits, long iClassCacheMisses) {
+        this.compileCount.incrementAndGet();
+        this.compileTimeNanos.addAndGet(durationNanos);
+        this.iClassCacheHits.addAndGet(iClassCacheHits);
+        this.iClassCacheMisses.addAndGet(iClassCacheMisses);
+    }
+
+    void
+    serialized(int byteCount) { this.bytesGenerated.addAndGet(byteCount); }
+
+    void
+    classDefined() { this.classesDefined.incrementAndGet(); }
+
+    void
+    classLoaderShared() { this.classLoadersShared.incrementAndGet(); }
+
+    void
+    bytecodeCacheHit() { this.bytecodeCacheHits.incrementAndGet(); }
+}
@@ -0,0 +1,82 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+/**
+ * The management interface of {@link CompilerStatistics}.
+ */
+public
+interface CompilerStatisticsMBean {
+
+    /**
+     * @return The number of compilation units that were compiled (excluding those whose bytecode was found in the
+     *         {@link BytecodeCache}, or that shared the result of an identical compilation in flight)
+     */
+    long getCompileCount();
+
+    /**
+     * @return The total time spent in compiling compilation units, in milliseconds
+     */
+    long getCompileTimeMillis();
+
+    /**
+     * @return The number of generated classes that were defined in the JVM
+     */
+    long getClassesDefinedCount();
+
+    /**
+     * @return The total size of the generated bytecode, in bytes
+     */
+    long getBytesGenerated();
+
+    /**
+     * @return How often an {@link IClass} was found in the cache of the {@link IClassLoader}
+     */
+    long getIClassCacheHits();
+
+    /**
+     * @return How often an {@link IClass} had to be loaded by the {@link IClassLoader}
+     */
+    long getIClassCacheMisses();
+
+    /**
+     * @return How often a compilation reused the classes of an identical, previous compilation
+     * @see    SimpleCompiler#setCanonicalizeClasses(boolean)
+     */
+    long getClassLoadersShared();
+
+    /**
+     * @return How often the bytecode of a compilation unit was found in the {@link BytecodeCache}, so that it was not
+     *         compiled
+     * @see    SimpleCompiler#setBytecodeCache(BytecodeCache)
+     */
+    long getBytecodeCacheHits();
+
+    /**
+     * Resets all counters to zero.
+     */
+    void reset();
+}
@@ -0,0 +1,224 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Executes the asynchronous "cooking" of {@link SimpleCompiler}s, {@link ClassBodyEvaluator}s, {@link
+ * ScriptEvaluator}s and {@link ExpressionEvaluator}s, e.g. {@link ExpressionEvaluator#cookAsync(CookExecutor,
+ * String)}, so that the calling thread does not stall while the code is being compiled.
+ * <p>
+ *   Identical compilations (same compilation unit, same options, same parent class loader) that are in flight at
+ *   the same time on the same {@link CookExecutor} are compiled only once: The later ones wait for the first one and
+ *   then load the same bytecode, each into its own class loader.
+ * </p>
+ * <p>
+ *   By default, a {@link CookExecutor} has a fixed number of threads and a bounded queue; when the queue is full,
+ *   the asynchronous methods throw a {@link RejectedExecutionException}. To use virtual threads (Java 21+), pass
+ *   their {@link ThreadFactory}:
+ * </p>
+ * <pre>
+ *     new CookExecutor(Thread.ofVirtual().name("cook-", 0).factory(), 100, 1000)
+ * </pre>
+ */
+public final
+class CookExecutor {
+
+    @Nullable private static CookExecutor defaultInstance;
+
+    private final ExecutorService executorService;
+
+    private final ConcurrentMap<Object, InFlight> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * An in-flight compilation.
+     */
+    private static final
+    class InFlight {
+
+        final CountDownLatch done = new CountDownLatch(1);
+
+        // Set before "done" is counted down; null if the compilation failed.
+        @Nullable Map<String /*className*/, byte[] /*bytecode*/> bytecodes;
+    }
+
+    /**
+     * Runs the compilations in up to <var>threadCount</var> daemon threads, and queues up to
+     * <var>queueCapacity</var> pending compilations.
+     */
+    public
+    CookExecutor(int threadCount, int queueCapacity) {
+        this(new ThreadFactory() {
+
+            private final AtomicInteger threadNumber = new AtomicInteger();
+
+            @Override public Thread
+            newThread(Runnable r) {
+                Thread result = new Thread(r, "janino-cook-" + this.threadNumber.incrementAndGet());
+                result.setDaemon(true);
+                return result;
+            }
+        }, threadCount, queueCapacity);
+    }
+
+    /**
+     * Runs the compilations in up to <var>threadCount</var> threads created by the <var>threadFactory</var>, and
+     * queues up to <var>queueCapacity</var> pending compilations. Idle threads terminate after one minute.
+     */
+    public
+    CookExecutor(ThreadFactory threadFactory, int threadCount, int queueCapacity) {
+        this(CookExecutor.newThreadPoolExecutor(threadFactory, threadCount, queueCapacity));
+    }
+
+    /**
+     * Runs the compilations through the given <var>executorService</var>; it is up to that {@link ExecutorService}
+     * whether and how the number of concurrent compilations is bounded.
+     */
+    public
+    CookExecutor(ExecutorService executorService) { this.executorService = executorService; }
+
+    /**
+     * @return The {@link CookExecutor} that is used when no {@link CookExecutor} is specified; it has one thread per
+     *         available processor and a queue of 1000 compilations
+     */
+    public static synchronized CookExecutor
+    getDefault() {
+
+        CookExecutor result = CookExecutor.defaultInstance;
+        if (result != null) return result;
+
+        return (CookExecutor.defaultInstance = new CookExecutor(Runtime.getRuntime().availableProcessors(), 1000));
+    }
+
+    /**
+     * Initiates an orderly shutdown of the underlying {@link ExecutorService}.
+     *
+     * @see ExecutorService#shutdown()
+     */
+    public void
+    shutdown() { this.executorService.shutdown(); }
+
+    /**
+     * Executes the given <var>task</var> through the underlying {@link ExecutorService}.
+     *
+     * @throws RejectedExecutionException The queue is full, or this {@link CookExecutor} was shut down
+     */
+    <T> Future<T>
+    submit(final Callable<T> task) {
+        return this.executorService.submit(new Callable<T>() {
+
+            @Override public T
+            call() throws Exception {
+                CookExecutor previous = (CookExecutor) CookExecutor.CURRENT.get();
+                CookExecutor.CURRENT.set(CookExecutor.this);
+                try {
+                    return task.call();
+                } finally {
+                    CookExecutor.CURRENT.set(previous);
+                }
+            }
+        });
+    }
+
+    /**
+     * @return The {@link CookExecutor} that executes the current thread's task, or {@code null}
+     */
+    @Nullable static CookExecutor
+    current() { return (CookExecutor) CookExecutor.CURRENT.get(); }
+
+    private static final ThreadLocal<CookExecutor> CURRENT = new ThreadLocal<>();
+
+    /**
+     * Registers a compilation with the given <var>key</var> as in flight, or waits until the identical compilation
+     * that is already in flight completes.
+     *
+     * @return {@code null} iff the caller must do the compilation, and then invoke {@link #completed(Object, Map)};
+     *         otherwise the bytecode that the identical compilation produced
+     */
+    @Nullable Map<String /*className*/, byte[] /*bytecode*/>
+    join(Object key) {
+
+        InFlight inFlight = (InFlight) this.inFlight.putIfAbsent(key, new InFlight());
+        if (inFlight == null) return null;
+
+        try {
+            inFlight.done.await();
+        } catch (InterruptedException ie) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        // Notice: If the identical compilation failed, then the caller compiles on its own, which reproduces the
+        // compilation errors.
+        return inFlight.bytecodes;
+    }
+
+    /**
+     * Marks the compilation with the given <var>key</var> as completed, and wakes up the identical compilations that
+     * wait for it.
+     *
+     * @param bytecodes {@code null} iff the compilation failed
+     */
+    void
+    completed(Object key, @Nullable Map<String /*className*/, byte[] /*bytecode*/> bytecodes) {
+
+        InFlight inFlight = (InFlight) this.inFlight.remove(key);
+        assert inFlight != null;
+
+        inFlight.bytecodes = bytecodes;
+        inFlight.done.countDown();
+    }
+
+    private static ExecutorService
+    newThreadPoolExecutor(ThreadFactory threadFactory, int threadCount, int queueCapacity) {
+
+        ThreadPoolExecutor result = new ThreadPoolExecutor(
+            threadCount,                                      // corePoolSize
+            threadCount,                                      // maximumPoolSize
+            1, TimeUnit.MINUTES,                              // keepAliveTime, unit
+            new ArrayBlockingQueue<Runnable>(queueCapacity),  // workQueue
+            threadFactory                                     // threadFactory
+        );
+        result.allowCoreThreadTimeOut(true);
+
+        return result;
+    }
+}
@@ -0,0 +1,471 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.commons.compiler.InternalCompilerException;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.ClassFile.AttributeInfo;
+import org.codehaus.janino.util.ClassFile.ConstantClassInfo;
+import org.codehaus.janino.util.ClassFile.ConstantPoolInfo;
+import org.codehaus.janino.util.ClassFile.ConstantUtf8Info;
+import org.codehaus.janino.util.ClassFile.ConstantValueAttribute;
+import org.codehaus.janino.util.ClassFile.ExceptionsAttribute;
+import org.codehaus.janino.util.ClassFile.FieldInfo;
+import org.codehaus.janino.util.ClassFile.MethodInfo;
+import org.codehaus.janino.util.ClassFile.SignatureAttribute;
+
+/**
+ * The state that {@link Compiler} keeps between incremental compilations: For each compilation unit the hash of its
+ * source code, the classes that it declares (together with a hash of their API), and the classes that its generated
+ * code references.
+ * <p>
+ *   Class names are always in "dotted" form, e.g. {@code "pkg.Outer$Inner"}.
+ * </p>
+ *
+ * @see Compiler#setDependencyGraphFile(File)
+ */
+final
+class DependencyGraph {
+
+    private static final Logger LOGGER = Logger.getLogger(DependencyGraph.class.getName());
+
+    private static final int MAGIC   = 0x4A4E4F44;
+    private static final int VERSION = 1;
+
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final String            optionsSignature;
+    private final Map<String, Unit> units = new LinkedHashMap<>();
+
+    /**
+     * @param optionsSignature Identifies the compiler options that the persisted state is valid for
+     */
+    DependencyGraph(String optionsSignature) { this.optionsSignature = optionsSignature; }
+
+    /**
+     * Reads the graph that was previously {@link #store(File) stored} in the <var>file</var>.
+     *
+     * @return An empty graph iff the <var>file</var> does not exist, is unreadable, or was stored with a different
+     *         <var>optionsSignature</var>
+     */
+    static DependencyGraph
+    load(File file, String optionsSignature) {
+
+        if (!file.isFile()) return new DependencyGraph(optionsSignature);
+
+        DependencyGraph result;
+        try {
+            DataInputStream dis = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try {
+                result = DependencyGraph.read(dis, optionsSignature);
+            } finally {
+                try { dis.close(); } catch (IOException e) {}
+            }
+        } catch (IOException ioe) {
+            DependencyGraph.LOGGER.log(Level.FINE, "Ignoring unreadable dependency graph \"" + file + "\"", ioe);
+            result = null;
+        }
+
+        return result != null ? result : new DependencyGraph(optionsSignature);
+    }
+
+    @Nullable private static DependencyGraph
+    read(DataInputStream dis, String optionsSignature) throws IOException {
+
+        if (dis.readInt() != DependencyGraph.MAGIC || dis.readInt() != DependencyGraph.VERSION) return null;
+        if (!dis.readUTF().equals(optionsSignature)) return null;
+
+        DependencyGraph result = new DependencyGraph(optionsSignature);
+        for (int i = dis.readInt(); i > 0; i--) {
+            Unit unit = new Unit(dis.readUTF(), DependencyGraph.readBytes(dis));
+            for (int j = dis.readInt(); j > 0; j--) {
+                String       className  = dis.readUTF();
+                byte[]       apiHash    = DependencyGraph.readBytes(dis);
+                List<String> supertypes = new ArrayList<>();
+                for (int k = dis.readInt(); k > 0; k--) supertypes.add(dis.readUTF());
+                unit.classes.put(className, new ClassInfo(apiHash, supertypes));
+            }
+            for (int j = dis.readInt(); j > 0; j--) unit.dependencies.add(dis.readUTF());
+            result.units.put(unit.fileName, unit);
+        }
+        return result;
+    }
+
+    /**
+     * Writes this graph to the <var>file</var>, so that it can later be {@link #load(File, String) loaded}.
+     */
+    void
+    store(File file) throws IOException {
+
+        OutputStream os = new FileOutputStream(file);
+        try {
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+
+            dos.writeInt(DependencyGraph.MAGIC);
+            dos.writeInt(DependencyGraph.VERSION);
+            dos.writeUTF(this.optionsSignature);
+
+            dos.writeInt(this.units.size());
+            for (Unit unit : this.units.values()) {
+                dos.writeUTF(unit.fileName);
+                DependencyGraph.writeBytes(unit.sourceHash, dos);
+                dos.writeInt(unit.classes.size());
+                for (Map.Entry<String, ClassInfo> e : unit.classes.entrySet()) {
+                    ClassInfo ci = (ClassInfo) e.getValue();
+                    dos.writeUTF((String) e.getKey());
+                    DependencyGraph.writeBytes(ci.apiHash, dos);
+                    dos.writeInt(ci.supertypes.size());
+                    for (String supertype : ci.supertypes) dos.writeUTF(supertype);
+                }
+                dos.writeInt(unit.dependencies.size());
+                for (String dependency : unit.dependencies) dos.writeUTF(dependency);
+            }
+            dos.flush();
+        } catch (IOException ioe) {
+            try { os.close(); } catch (IOException e) {}
+            os = null;
+            file.delete();
+            throw ioe;
+        } finally {
+            if (os != null) os.close();
+        }
+    }
+
+    /**
+     * @return The unit with the given <var>fileName</var>, or {@code null}
+     */
+    @Nullable Unit
+    getUnit(String fileName) { return (Unit) this.units.get(fileName); }
+
+    /**
+     * @return All units of this graph
+     */
+    Collection<Unit>
+    getUnits() { return Collections.unmodifiableCollection(this.units.values()); }
+
+    /**
+     * Adds the <var>unit</var>, replacing any unit with the same file name.
+     */
+    void
+    putUnit(Unit unit) { this.units.put(unit.fileName, unit); }
+
+    /**
+     * A change of the API of a class implicitly changes the API of its subtypes (through inherited members).
+     *
+     * @return The <var>classNames</var>, plus the names of all their direct and indirect subtypes in this graph
+     */
+    Set<String>
+    addSubtypes(Set<String> classNames) {
+
+        Set<String> result = new HashSet<>(classNames);
+        for (boolean again = true; again;) {
+            again = false;
+            for (Unit unit : this.units.values()) {
+                for (Map.Entry<String, ClassInfo> e : unit.classes.entrySet()) {
+                    String className = (String) e.getKey();
+                    if (result.contains(className)) continue;
+                    for (String supertype : ((ClassInfo) e.getValue()).supertypes) {
+                        if (result.contains(supertype)) {
+                            result.add(className);
+                            again = true;
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The file names of the units that depend on any of the classes named <var>classNames</var>, excluding
+     *         the units that declare them
+     */
+    Set<String>
+    getDependentUnits(Set<String> classNames) {
+
+        Set<String> result = new LinkedHashSet<>();
+        for (Unit unit : this.units.values()) {
+            for (String dependency : unit.dependencies) {
+                if (classNames.contains(dependency) && !unit.classes.containsKey(dependency)) {
+                    result.add(unit.fileName);
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return The SHA-256 hash of the <var>data</var>
+     */
+    static byte[]
+    hash(byte[] data) { return DependencyGraph.newDigest().digest(data); }
+
+    /**
+     * One compilation unit, as seen by the incremental compilation.
+     */
+    static final
+    class Unit {
+
+        /**
+         * The {@link org.codehaus.commons.compiler.util.resource.Resource#getFileName()} of the source resource.
+         */
+        final String fileName;
+
+        /**
+         * The hash of the unit's source code.
+         */
+        final byte[] sourceHash;
+
+        /**
+         * The classes declared by the unit.
+         */
+        final Map<String /*className*/, ClassInfo> classes = new LinkedHashMap<>();
+
+        /**
+         * The classes that the unit's generated code references, including the types that declare inlined constants.
+         */
+        final Set<String /*className*/> dependencies = new HashSet<>();
+
+        Unit(String fileName, byte[] sourceHash) {
+            this.fileName   = fileName;
+            this.sourceHash = sourceHash;
+        }
+
+        /**
+         * Records the class declared by the <var>classFile</var>, and the classes that it references.
+         */
+        void
+        addClassFile(ClassFile classFile) {
+
+            List<String> supertypes = new ArrayList<>();
+            if (classFile.superclass != 0) {
+                supertypes.add(DependencyGraph.className(classFile.getConstantClassInfo(classFile.superclass), classFile));
+            }
+            for (short i : classFile.interfaces) {
+                supertypes.add(DependencyGraph.className(classFile.getConstantClassInfo(i), classFile));
+            }
+
+            this.classes.put(
+                classFile.getThisClassName(),
+                new ClassInfo(DependencyGraph.apiHash(classFile), supertypes)
+            );
+
+            for (int i = 1; i < classFile.getConstantPoolSize(); i++) {
+                ConstantPoolInfo cpi = classFile.getConstantPoolInfo((short) i);
+                if (cpi instanceof ConstantClassInfo) {
+                    String name = ((ConstantClassInfo) cpi).getName(classFile);
+                    if (name.startsWith("[")) {
+                        DependencyGraph.addClassNames(name, this.dependencies);
+                    } else {
+                        this.dependencies.add(name.replace('/', '.'));
+                    }
+                } else
+                if (cpi instanceof ConstantUtf8Info) {
+
+                    // Field descriptors, method descriptors and signatures.
+                    String s = ((ConstantUtf8Info) cpi).getString();
+                    if (s.startsWith("(") || s.startsWith("[") || s.startsWith("L") || s.startsWith("<")) {
+                        DependencyGraph.addClassNames(s, this.dependencies);
+                    }
+                }
+                if (cpi.isWide()) i++;
+            }
+        }
+
+        /**
+         * @param typeDescriptors E.g. {@code "Lpkg/Outer$Inner;"}
+         */
+        void
+        addDependencies(Collection<String> typeDescriptors) {
+            for (String td : typeDescriptors) DependencyGraph.addClassNames(td, this.dependencies);
+        }
+
+        /**
+         * @return The names of the classes that were added, removed, or changed their API, compared with the
+         *         <var>previous</var> state of this unit
+         */
+        Set<String>
+        getApiChanges(@Nullable Unit previous) {
+
+            if (previous == null) return new HashSet<>(this.classes.keySet());
+
+            Set<String> result = new HashSet<>();
+            for (Map.Entry<String, ClassInfo> e : this.classes.entrySet()) {
+                ClassInfo pci = (ClassInfo) previous.classes.get(e.getKey());
+                ClassInfo ci  = (ClassInfo) e.getValue();
+                if (
+                    pci == null
+                    || !Arrays.equals(pci.apiHash, ci.apiHash)
+                    || !pci.supertypes.equals(ci.supertypes)
+                ) result.add((String) e.getKey());
+            }
+            for (String className : previous.classes.keySet()) {
+                if (!this.classes.containsKey(className)) result.add(className);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * What incremental compilation needs to know about a declared class.
+     */
+    static final
+    class ClassInfo {
+
+        /**
+         * The hash of the non-private members and their modifiers, descriptors, signatures, thrown exceptions and
+         * constant values.
+         */
+        final byte[] apiHash;
+
+        /**
+         * The superclass and the implemented interfaces.
+         */
+        final List<String> supertypes;
+
+        ClassInfo(byte[] apiHash, List<String> supertypes) {
+            this.apiHash    = apiHash;
+            this.supertypes = supertypes;
+        }
+    }
+
+    private static byte[]
+    apiHash(ClassFile classFile) {
+
+        List<String> members = new ArrayList<>();
+        for (FieldInfo fi : classFile.fieldInfos) {
+            if ((fi.getAccessFlags() & Mod.PRIVATE) != 0) continue;
+            StringBuilder sb = new StringBuilder("F ").append(fi.getAccessFlags()).append(' ');
+            sb.append(fi.getName(classFile)).append(' ').append(fi.getDescriptor(classFile));
+            DependencyGraph.appendApiAttributes(fi.getAttributes(), classFile, sb);
+            members.add(sb.toString());
+        }
+        for (MethodInfo mi : classFile.methodInfos) {
+            if ((mi.getAccessFlags() & Mod.PRIVATE) != 0) continue;
+            StringBuilder sb = new StringBuilder("M ").append(mi.getAccessFlags()).append(' ');
+            sb.append(mi.getName()).append(' ').append(mi.getDescriptor());
+            DependencyGraph.appendApiAttributes(mi.getAttributes(), classFile, sb);
+            members.add(sb.toString());
+        }
+        Collections.sort(members);
+
+        StringBuilder sb = new StringBuilder().append(classFile.accessFlags);
+        SignatureAttribute sa = classFile.getSignatureAttribute();
+        if (sa != null) sb.append(' ').append(sa.getSignature(classFile));
+        for (String member : members) sb.append('\n').append(member);
+
+        return DependencyGraph.hash(sb.toString().getBytes(DependencyGraph.UTF_8));
+    }
+
+    private static void
+    appendApiAttributes(AttributeInfo[] attributes, ClassFile classFile, StringBuilder sb) {
+        for (AttributeInfo ai : attributes) {
+            if (ai instanceof ConstantValueAttribute) {
+                sb.append(" = ").append(((ConstantValueAttribute) ai).getConstantValue(classFile).getValue(classFile));
+            } else
+            if (ai instanceof SignatureAttribute) {
+                sb.append(" : ").append(((SignatureAttribute) ai).getSignature(classFile));
+            } else
+            if (ai instanceof ExceptionsAttribute) {
+                sb.append(" throws");
+                for (ConstantClassInfo cci : ((ExceptionsAttribute) ai).getExceptions(classFile)) {
+                    sb.append(' ').append(cci.getName(classFile));
+                }
+            }
+        }
+    }
+
+    private static String
+    className(ConstantClassInfo cci, ClassFile classFile) { return cci.getName(classFile).replace('/', '.'); }
+
+    /**
+     * Extracts the class names from a descriptor or signature, e.g. {@code "(ILpkg/A;[Lpkg/B;)V"} or {@code
+     * "Ljava/util/List<Lpkg/C;>;"}. Strings that are no descriptors may yield spurious names, which is harmless.
+     */
+    private static void
+    addClassNames(String s, Set<String> result) {
+        for (int i = 0; i < s.length(); i++) {
+            if (s.charAt(i) != 'L') continue;
+            int j = i + 1;
+            for (; j < s.length(); j++) {
+                char c = s.charAt(j);
+                if (c == ';' || c == '<') break;
+            }
+            if (j > i + 1) result.add(s.substring(i + 1, j).replace('/', '.'));
+            i = j;
+        }
+    }
+
+    private static MessageDigest
+    newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new InternalCompilerException("SHA-256", nsae);
+        }
+    }
+
+    private static byte[]
+    readBytes(DataInputStream dis) throws IOException {
+        byte[] result = new byte[dis.readShort() & 0xffff];
+        dis.readFully(result);
+        return result;
+    }
+
+    private static void
+    writeBytes(byte[] ba, DataOutputStream dos) throws IOException {
+        dos.writeShort(ba.length);
+        dos.write(ba);
+    }
+}
@@ -0,0 +1,542 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.compiler.IClassBodyEvaluator;
+import org.codehaus.commons.compiler.InternalCompilerException;
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * A set of expressions, scripts and class bodies that were compiled ahead of time into one file, and can be loaded
+ * at runtime without scanning, parsing or compiling any of them.
+ * <p>
+ *   At build time, fill a {@link Builder} with the "catalog" of known expressions, scripts and class bodies, and
+ *   {@link Builder#write(File) write} the bundle. At runtime, {@link #load(File, ClassLoader) load} the bundle (the
+ *   file is memory-mapped, and only its index is read) and get the evaluators through {@link
+ *   #getExpressionEvaluator(String, Class, String...)}, {@link #getScriptEvaluator(String, Class, String...)} and
+ *   {@link #getClassBodyInstance(String, Class, Class...)}. Each generated class is defined only when it is requested
+ *   for the first time.
+ * </p>
+ * <p>
+ *   Bundle file layout (all integers are big-endian, all strings are a 4-byte length, followed by that many bytes of
+ *   UTF-8):
+ * </p>
+ * <pre>
+ *   int    magic (0x4A4E4F42, "JNOB")
+ *   int    version (2)
+ *   int    entryCount
+ *   {
+ *     byte   kind ('E', 'S' or 'C')
+ *     string key
+ *     string className
+ *   } * entryCount
+ *   int    classCount
+ *   {
+ *     string className
+ *     int    length
+ *   } * classCount
+ *   byte[] classFiles (concatenated, in the order of the preceding class table)
+ * </pre>
+ */
+public final
+class EvaluatorBundle {
+
+    private static final int MAGIC   = 0x4A4E4F42;
+    private static final int VERSION = 2;
+
+    private static final byte KIND_EXPRESSION = 'E';
+    private static final byte KIND_SCRIPT     = 'S';
+    private static final byte KIND_CLASS_BODY = 'C';
+
+    /**
+     * Compiles a catalog of expressions, scripts and class bodies and writes them into a bundle file.
+     */
+    public static final
+    class Builder {
+
+        private ClassLoader parentClassLoader = Thread.currentThread().getContextClassLoader();
+        private String[]    defaultImports    = new String[0];
+        private String      classNamePrefix   = IClassBodyEvaluator.DEFAULT_CLASS_NAME + "_";
+
+        private final Map<String /*key*/, Entry>              entries   = new LinkedHashMap<>();
+        private final Map<String /*className*/, byte[] /*bc*/> bytecodes = new LinkedHashMap<>();
+
+        /**
+         * The class loader through which the parameter, return, extended and implemented types of the evaluators are
+         * resolved. At runtime, the bundle must be loaded with a parent class loader that loads the <em>same</em>
+         * types.
+         */
+        public Builder
+        setParentClassLoader(@Nullable ClassLoader parentClassLoader) {
+            this.parentClassLoader = (
+                parentClassLoader != null
+                ? parentClassLoader
+                : Thread.currentThread().getContextClassLoader()
+            );
+            return this;
+        }
+
+        /**
+         * @see IClassBodyEvaluator#setDefaultImports(String...)
+         */
+        public Builder
+        setDefaultImports(String... defaultImports) {
+            this.defaultImports = defaultImports.clone();
+            return this;
+        }
+
+        /**
+         * The generated classes are named <var>classNamePrefix</var>{@code 0}, <var>classNamePrefix</var>{@code 1},
+         * and so forth; the default is {@code "SC_"}.
+         */
+        public Builder
+        setClassNamePrefix(String classNamePrefix) {
+            this.classNamePrefix = classNamePrefix;
+            return this;
+        }
+
+        /**
+         * Compiles the <var>expression</var> like {@link ExpressionEvaluator#createFastEvaluator(String, Class,
+         * String...)}, and adds it to the bundle. Adding the same expression (with the same interface and parameter
+         * names) twice has no effect.
+         */
+        public Builder
+        addExpression(String expression, Class<?> interfaceToImplement, String... parameterNames)
+        throws CompileException {
+
+            String key = EvaluatorBundle.key(
+                EvaluatorBundle.KIND_EXPRESSION,
+                expression,
+                new Class<?>[] { interfaceToImplement },
+                parameterNames
+            );
+            if (this.entries.containsKey(key)) return this;
+
+            ExpressionEvaluator ee = new ExpressionEvaluator();
+            ee.setParentClassLoader(this.parentClassLoader);
+            ee.setDefaultImports(this.defaultImports);
+            ee.setClassName(this.nextClassName());
+            ee.createFastEvaluator(expression, interfaceToImplement, parameterNames);
+
+            this.add(
+                key,
+                EvaluatorBundle.KIND_EXPRESSION,
+                ee.getMethod().getDeclaringClass().getName(),
+                ee.getBytecodes()
+            );
+            return this;
+        }
+
+        /**
+         * Compiles the <var>script</var> like {@link ScriptEvaluator#createFastEvaluator(String, Class, String...)},
+         * and adds it to the bundle. Adding the same script (with the same interface and parameter names) twice has
+         * no effect.
+         */
+        public Builder
+        addScript(String script, Class<?> interfaceToImplement, String... parameterNames) throws CompileException {
+
+            String key = EvaluatorBundle.key(
+                EvaluatorBundle.KIND_SCRIPT,
+                script,
+                new Class<?>[] { interfaceToImplement },
+                parameterNames
+            );
+            if (this.entries.containsKey(key)) return this;
+
+            ScriptEvaluator se = new ScriptEvaluator();
+            se.setParentClassLoader(this.parentClassLoader);
+            se.setDefaultImports(this.defaultImports);
+            se.setClassName(this.nextClassName());
+            se.createFastEvaluator(script, interfaceToImplement, parameterNames);
+
+            this.add(key, EvaluatorBundle.KIND_SCRIPT, se.getMethod().getDeclaringClass().getName(), se.getBytecodes());
+            return this;
+        }
+
+        /**
+         * Compiles the <var>classBody</var> like {@link ClassBodyEvaluator#cook(String)}, and adds it to the bundle.
+         * Adding the same class body (with the same extended class and implemented interfaces) twice has no effect.
+         */
+        public Builder
+        addClassBody(String classBody, @Nullable Class<?> extendedClass, Class<?>... implementedInterfaces)
+        throws CompileException {
+
+            String key = EvaluatorBundle.key(
+                EvaluatorBundle.KIND_CLASS_BODY,
+                classBody,
+                EvaluatorBundle.cat(extendedClass, implementedInterfaces),
+                new String[0]
+            );
+            if (this.entries.containsKey(key)) return this;
+
+            ClassBodyEvaluator cbe = new ClassBodyEvaluator();
+            cbe.setParentClassLoader(this.parentClassLoader);
+            cbe.setDefaultImports(this.defaultImports);
+            cbe.setClassName(this.nextClassName());
+            cbe.setExtendedClass(extendedClass);
+            cbe.setImplementedInterfaces(implementedInterfaces);
+            cbe.cook(classBody);
+
+            this.add(key, EvaluatorBundle.KIND_CLASS_BODY, cbe.getClazz().getName(), cbe.getBytecodes());
+            return this;
+        }
+
+        /**
+         * Writes the bundle into the given <var>file</var>.
+         */
+        public void
+        write(File file) throws IOException {
+            OutputStream os = new FileOutputStream(file);
+            try {
+                this.write(os);
+                os.close();
+                os = null;
+            } finally {
+                if (os != null) try { os.close(); } catch (IOException ex) {}
+            }
+        }
+
+        /**
+         * Writes the bundle to the given {@link OutputStream}; the <var>os</var> is flushed, but not closed.
+         */
+        public void
+        write(OutputStream os) throws IOException {
+
+            DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(os));
+
+            dos.writeInt(EvaluatorBundle.MAGIC);
+            dos.writeInt(EvaluatorBundle.VERSION);
+
+            dos.writeInt(this.entries.size());
+            for (Map.Entry<String, Entry> me : this.entries.entrySet()) {
+                Entry e = me.getValue();
+                dos.writeByte(e.kind);
+                EvaluatorBundle.writeString(dos, me.getKey());
+                EvaluatorBundle.writeString(dos, e.className);
+            }
+
+            dos.writeInt(this.bytecodes.size());
+            for (Map.Entry<String, byte[]> me : this.bytecodes.entrySet()) {
+                EvaluatorBundle.writeString(dos, me.getKey());
+                dos.writeInt(me.getValue().length);
+            }
+            for (byte[] bytecode : this.bytecodes.values()) dos.write(bytecode);
+
+            dos.flush();
+        }
+
+        private String
+        nextClassName() { return this.classNamePrefix + this.entries.size(); }
+
+        private void
+        add(String key, byte kind, String className, Map<String, byte[]> bytecodes) {
+            this.entries.put(key, new Entry(kind, className));
+            this.bytecodes.putAll(bytecodes);
+        }
+    }
+
+    /**
+     * Maps the given bundle <var>file</var> into memory and reads its index. The class files remain in the mapped
+     * memory until they are defined, which happens when the respective evaluator is requested for the first time.
+     *
+     * @param parentClassLoader Must load the same types as the {@link Builder#setParentClassLoader(ClassLoader)} that
+     *                          was used when the bundle was built
+     */
+    public static EvaluatorBundle
+    load(File file, @Nullable ClassLoader parentClassLoader) throws IOException {
+        FileInputStream fis = new FileInputStream(file);
+        ByteBuffer      bb;
+        try {
+            FileChannel fc = fis.getChannel();
+            bb = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+        } finally {
+            try { fis.close(); } catch (IOException ex) {}
+        }
+        return EvaluatorBundle.load(bb, parentClassLoader);
+    }
+
+    /**
+     * Reads a bundle from the given {@link InputStream}; the <var>is</var> is read until end-of-input, but not closed.
+     *
+     * @param parentClassLoader Must load the same types as the {@link Builder#setParentClassLoader(ClassLoader)} that
+     *                          was used when the bundle was built
+     */
+    public static EvaluatorBundle
+    load(InputStream is, @Nullable ClassLoader parentClassLoader) throws IOException {
+        ByteArrayOutputStream baos   = new ByteArrayOutputStream();
+        byte[]                buffer = new byte[8192];
+        for (;;) {
+            int cnt = is.read(buffer);
+            if (cnt == -1) break;
+            baos.write(buffer, 0, cnt);
+        }
+        return EvaluatorBundle.load(ByteBuffer.wrap(baos.toByteArray()), parentClassLoader);
+    }
+
+    private static EvaluatorBundle
+    load(ByteBuffer data, @Nullable ClassLoader parentClassLoader) throws IOException {
+        try {
+            if (data.getInt() != EvaluatorBundle.MAGIC) throw new IOException("Not an evaluator bundle");
+
+            int version = data.getInt();
+            if (version != EvaluatorBundle.VERSION) {
+                throw new IOException("Unsupported evaluator bundle version " + version);
+            }
+
+            int                entryCount = data.getInt();
+            Map<String, Entry> entries    = new HashMap<>(2 * entryCount);
+            for (int i = 0; i < entryCount; i++) {
+                byte   kind = data.get();
+                String key  = EvaluatorBundle.readString(data);
+                entries.put(key, new Entry(kind, EvaluatorBundle.readString(data)));
+            }
+
+            int          classCount = data.getInt();
+            List<String> names      = new ArrayList<>(classCount);
+            int[]        lengths    = new int[classCount];
+            for (int i = 0; i < classCount; i++) {
+                names.add(EvaluatorBundle.readString(data));
+                lengths[i] = data.getInt();
+            }
+
+            Map<String, int[] /*offset, length*/> classes = new HashMap<>(2 * classCount);
+            int                                   offset  = data.position();
+            for (int i = 0; i < classCount; i++) {
+                if (offset + lengths[i] > data.limit()) throw new IOException("Evaluator bundle is truncated");
+                classes.put(names.get(i), new int[] { offset, lengths[i] });
+                offset += lengths[i];
+            }
+
+            ClassLoader pcl = (
+                parentClassLoader != null
+                ? parentClassLoader
+                : Thread.currentThread().getContextClassLoader()
+            );
+
+            return new EvaluatorBundle(entries, new BundleClassLoader(data, classes, pcl));
+        } catch (BufferUnderflowException bue) {
+            throw new IOException("Evaluator bundle is truncated", bue);
+        }
+    }
+
+    private final Map<String /*key*/, Entry> entries;
+    private final BundleClassLoader          classLoader;
+
+    private
+    EvaluatorBundle(Map<String, Entry> entries, BundleClassLoader classLoader) {
+        this.entries     = entries;
+        this.classLoader = classLoader;
+    }
+
+    /**
+     * @return A new instance of the class that was generated for the <var>expression</var> by {@link
+     *         Builder#addExpression(String, Class, String...)}, or {@code null} iff the bundle does not contain that
+     *         expression (with that interface and those parameter names)
+     */
+    @Nullable public <T> T
+    getExpressionEvaluator(String expression, Class<T> interfaceToImplement, String... parameterNames) {
+        return this.newInstance(EvaluatorBundle.key(
+            EvaluatorBundle.KIND_EXPRESSION,
+            expression,
+            new Class<?>[] { interfaceToImplement },
+            parameterNames
+        ), interfaceToImplement);
+    }
+
+    /**
+     * @return A new instance of the class that was generated for the <var>script</var> by {@link
+     *         Builder#addScript(String, Class, String...)}, or {@code null} iff the bundle does not contain that
+     *         script (with that interface and those parameter names)
+     */
+    @Nullable public <T> T
+    getScriptEvaluator(String script, Class<T> interfaceToImplement, String... parameterNames) {
+        return this.newInstance(EvaluatorBundle.key(
+            EvaluatorBundle.KIND_SCRIPT,
+            script,
+            new Class<?>[] { interfaceToImplement },
+            parameterNames
+        ), interfaceToImplement);
+    }
+
+    /**
+     * @return A new instance of the class that was generated for the <var>classBody</var> by {@link
+     *         Builder#addClassBody(String, Class, Class...)}, or {@code null} iff the bundle does not contain that
+     *         class body (with that extended class and those implemented interfaces)
+     */
+    @Nullable public Object
+    getClassBodyInstance(String classBody, @Nullable Class<?> extendedClass, Class<?>... implementedInterfaces) {
+        return this.newInstance(EvaluatorBundle.key(
+            EvaluatorBundle.KIND_CLASS_BODY,
+            classBody,
+            EvaluatorBundle.cat(extendedClass, implementedInterfaces),
+            new String[0]
+        ), Object.class);
+    }
+
+    /**
+     * @return The keys of all entries of this bundle; mainly useful for diagnostics
+     */
+    public Set<String>
+    keys() { return Collections.unmodifiableSet(this.entries.keySet()); }
+
+    /**
+     * @return The {@link ClassLoader} that defines the bundled classes
+     */
+    public ClassLoader
+    getClassLoader() { return this.classLoader; }
+
+    @Nullable private <T> T
+    newInstance(String key, Class<T> type) {
+
+        Entry e = this.entries.get(key);
+        if (e == null) return null;
+
+        Class<?> c = e.clazz;
+        if (c == null) {
+            try {
+                c = (e.clazz = this.classLoader.loadClass(e.className));
+            } catch (ClassNotFoundException cnfe) {
+                throw new InternalCompilerException("Bundled class \"" + e.className + "\" is missing", cnfe);
+            }
+        }
+
+        try {
+            return type.cast(c.getDeclaredConstructor().newInstance());
+        } catch (InvocationTargetException ite) {
+            Throwable te = ite.getTargetException();
+            throw new InternalCompilerException(te.toString(), te);
+        } catch (ReflectiveOperationException roe) {
+            throw new InternalCompilerException(roe.toString(), roe);
+        }
+    }
+
+    private static String
+    key(byte kind, String text, Class<?>[] types, String[] parameterNames) {
+        StringBuilder sb = new StringBuilder().append((char) kind);
+        for (Class<?> t : types) sb.append(' ').append(t == null ? "-" : t.getName());
+        sb.append(" (");
+        for (int i = 0; i < parameterNames.length; i++) {
+            if (i > 0) sb.append(", ");
+            sb.append(parameterNames[i]);
+        }
+        return sb.append(")\n").append(text).toString();
+    }
+
+    private static Class<?>[]
+    cat(@Nullable Class<?> first, Class<?>[] following) {
+        Class<?>[] result = new Class<?>[1 + following.length];
+        result[0] = first;
+        System.arraycopy(following, 0, result, 1, following.length);
+        return result;
+    }
+
+    private static void
+    writeString(DataOutputStream dos, String s) throws IOException {
+        byte[] ba = s.getBytes(StandardCharsets.UTF_8);
+        dos.writeInt(ba.length);
+        dos.write(ba);
+    }
+
+    private static String
+    readString(ByteBuffer bb) {
+        byte[] ba = new byte[bb.getInt()];
+        bb.get(ba);
+        return new String(ba, StandardCharsets.UTF_8);
+    }
+
+    private static final
+    class Entry {
+
+        final byte   kind;
+        final String className;
+
+        /**
+         * Set when the class is loaded for the first time.
+         */
+        @Nullable volatile Class<?> clazz;
+
+        Entry(byte kind, String className) {
+            this.kind      = kind;
+            this.className = className;
+        }
+
+        @Override public String
+        toString() { return this.className; }
+    }
+
+    /**
+     * Defines the bundled classes directly from the (memory-mapped) bundle data.
+     */
+    private static final
+    class BundleClassLoader extends ClassLoader {
+
+        private final ByteBuffer                                          data;
+        private final Map<String /*className*/, int[] /*offset, length*/> classes;
+
+        BundleClassLoader(ByteBuffer data, Map<String, int[]> classes, ClassLoader parent) {
+            super(parent);
+            this.data    = data;
+            this.classes = classes;
+        }
+
+        @Override protected Class<?>
+        findClass(@Nullable String name) throws ClassNotFoundException {
+            assert name != null;
+
+            int[] ol = this.classes.get(name);
+            if (ol == null) throw new ClassNotFoundException(name);
+
+            ByteBuffer bb = this.data.duplicate();
+            bb.limit(ol[0] + ol[1]);
+            bb.position(ol[0]);
+
+            return this.defineClass(name, bb, null);
+        }
+    }
+}
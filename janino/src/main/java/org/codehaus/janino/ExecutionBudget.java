@@ -0,0 +1,225 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Limits the number of "steps" and the wall-clock time that code may consume, e.g. to stop runaway user scripts.
+ * <p>
+ *   Only code that was compiled with option {@link JaninoOption#EXECUTION_BUDGET_INSTRUMENTED} honors the
+ *   budget: The {@link UnitCompiler} then instruments each method entry and each loop iteration (i.e. each backward
+ *   branch) to count one step. When the number of steps or the deadline is exceeded, the instrumented code throws an
+ *   {@link ExecutionBudgetExceededException}.
+ * </p>
+ * <p>
+ *   A budget is bound to the current thread:
+ * </p>
+ * <pre>
+ *     ScriptEvaluator se = new ScriptEvaluator();
+ *     se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_INSTRUMENTED));
+ *     se.cook(untrustedScript);
+ *     ...
+ *     ExecutionBudget budget = ExecutionBudget.start(1000000, 100, TimeUnit.MILLISECONDS);
+ *     try {
+ *         se.evaluate(arguments);
+ *     } finally {
+ *         budget.close();
+ *     }
+ * </pre>
+ * <p>
+ *   Instrumented code that executes while no budget is started runs without limits.
+ * </p>
+ * <p>
+ *   Budgets can be nested, but a nested budget never extends its enclosing budget: Its steps and its deadline are
+ *   capped at the remaining steps and the deadline of the enclosing budget, and the steps that it executed are
+ *   charged to the enclosing budget when it is closed. Thus untrusted code cannot escape its budget by starting a
+ *   budget of its own.
+ * </p>
+ * <p>
+ *   The overhead is small: The instrumentation decrements a counter, and only every {@value #CHECK_INTERVAL} steps
+ *   checks the budget and the clock.
+ * </p>
+ */
+public final
+class ExecutionBudget implements AutoCloseable {
+
+    /**
+     * The number of steps between two checks of the deadline.
+     */
+    public static final int CHECK_INTERVAL = 1024;
+
+    private static final ThreadLocal<ExecutionBudget>
+    CURRENT = new ThreadLocal<ExecutionBudget>() {
+
+        @Override protected ExecutionBudget
+        initialValue() { return new ExecutionBudget(Long.MAX_VALUE, Long.MAX_VALUE, null); }
+    };
+
+    private final long                      maxSteps;
+    private final long                      deadline; // In terms of System.nanoTime(); Long.MAX_VALUE means "none"
+    @Nullable private final ExecutionBudget previous;
+    private final Thread                    thread;
+
+    /**
+     * The number of steps that were accounted for in previous checkpoints.
+     */
+    private long stepsBeforeInterval;
+
+    /**
+     * The number of steps that were allotted for the current interval, and the number of steps that remain in it.
+     */
+    private int interval, remainingInInterval;
+
+    private
+    ExecutionBudget(long maxSteps, long deadline, @Nullable ExecutionBudget previous) {
+        this.maxSteps = maxSteps;
+        this.deadline = deadline;
+        this.previous = previous;
+        this.thread   = Thread.currentThread();
+
+        this.interval            = (int) Math.min(ExecutionBudget.CHECK_INTERVAL, maxSteps);
+        this.remainingInInterval = this.interval;
+    }
+
+    /**
+     * Starts a new budget for the current thread, which is effective until it is {@link #close() closed}. Budgets can
+     * be nested; a nested budget is capped at the remaining steps and the deadline of the enclosing budget.
+     *
+     * @param maxSteps {@link Long#MAX_VALUE} means "unlimited"
+     * @param timeout  {@link Long#MAX_VALUE} means "unlimited"
+     */
+    public static ExecutionBudget
+    start(long maxSteps, long timeout, TimeUnit unit) {
+
+        if (maxSteps < 0) throw new IllegalArgumentException("maxSteps");
+        if (timeout < 0) throw new IllegalArgumentException("timeout");
+
+        long deadline = Long.MAX_VALUE;
+        if (timeout != Long.MAX_VALUE) {
+            long now = System.nanoTime();
+            deadline = now + Math.min(unit.toNanos(timeout), Long.MAX_VALUE - now);
+        }
+
+        // A nested budget must not extend the enclosing budget.
+        ExecutionBudget previous = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        maxSteps = Math.min(maxSteps, Math.max(0, previous.maxSteps - previous.getExecutedSteps()));
+        deadline = Math.min(deadline, previous.deadline);
+
+        ExecutionBudget result = new ExecutionBudget(maxSteps, deadline, previous);
+        ExecutionBudget.CURRENT.set(result);
+        return result;
+    }
+
+    /**
+     * Re-activates the budget that was effective when this budget was started, and charges the steps that were
+     * executed under this budget to that budget. Budgets that were started within this budget, but not closed (e.g.
+     * by untrusted code), are closed as well.
+     *
+     * @throws IllegalStateException This budget is not an effective budget of the current thread, e.g. because it was
+     *                               already closed
+     */
+    @Override public void
+    close() {
+
+        ExecutionBudget previous = this.previous;
+        if (Thread.currentThread() != this.thread || previous == null) {
+            throw new IllegalStateException("Not a started execution budget of the current thread");
+        }
+
+        ExecutionBudget current = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        for (ExecutionBudget b = current; b != this; b = b.previous) {
+            if (b == null) throw new IllegalStateException("Not an effective execution budget of the current thread");
+        }
+
+        // Close the budgets that were left open, and charge the steps of each budget to its enclosing budget.
+        for (ExecutionBudget b = current; b != previous; b = b.previous) {
+            assert b != null && b.previous != null;
+            b.previous.charge(b.getExecutedSteps());
+        }
+        ExecutionBudget.CURRENT.set(previous);
+    }
+
+    /**
+     * @return The number of steps that were executed since this budget was started
+     */
+    public long
+    getExecutedSteps() { return this.stepsBeforeInterval + (this.interval - this.remainingInInterval); }
+
+    /**
+     * Invoked by instrumented code on each method entry.
+     *
+     * @return The budget of the current thread
+     */
+    public static ExecutionBudget
+    current() {
+        ExecutionBudget result = (ExecutionBudget) ExecutionBudget.CURRENT.get();
+        result.step();
+        return result;
+    }
+
+    /**
+     * Invoked by instrumented code on each loop iteration.
+     *
+     * @throws ExecutionBudgetExceededException The number of steps or the deadline of the budget is exceeded
+     */
+    public void
+    step() { if (--this.remainingInInterval < 0) this.checkpoint(); }
+
+    /**
+     * Accounts for <var>steps</var> additional steps; the next {@link #step()} checks the budget.
+     */
+    private void
+    charge(long steps) {
+        this.stepsBeforeInterval = this.getExecutedSteps() + steps;
+        this.interval            = 0;
+        this.remainingInInterval = 0;
+    }
+
+    private void
+    checkpoint() {
+
+        // Account for the steps of the interval that just ended.
+        this.stepsBeforeInterval += this.interval;
+        this.remainingInInterval = 0;
+
+        if (this.stepsBeforeInterval >= this.maxSteps) {
+            this.interval = 0;
+            throw new ExecutionBudgetExceededException("Code executed more than " + this.maxSteps + " steps");
+        }
+        if (this.deadline != Long.MAX_VALUE && System.nanoTime() - this.deadline > 0) {
+            this.interval = 0;
+            throw new ExecutionBudgetExceededException("Code exceeded its time limit");
+        }
+
+        // Start the next interval; notice that this step counts as the first one of the interval.
+        long remainingSteps = this.maxSteps - this.stepsBeforeInterval;
+        this.interval            = (int) Math.min(ExecutionBudget.CHECK_INTERVAL, remainingSteps);
+        this.remainingInInterval = this.interval - 1;
+    }
+}
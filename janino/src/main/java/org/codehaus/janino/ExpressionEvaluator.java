@@ -34,6 +34,8 @@ import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Cookable;
@@ -318,6 +320,102 @@ class ExpressionEvaluator extends MultiCookable implements IExpressionEvaluator
         return this;
     }
 
+    /**
+     * @see SimpleCompiler#setBytecodeCache(BytecodeCache)
+     */
+    public void
+    setBytecodeCache(@Nullable BytecodeCache bytecodeCache) { this.se.setBytecodeCache(bytecodeCache); }
+
+    /**
+     * @see SimpleCompiler#setCanonicalizeClasses(boolean)
+     */
+    public void
+    setCanonicalizeClasses(boolean value) { this.se.setCanonicalizeClasses(value); }
+
+    /**
+     * @see SimpleCompiler#setCompileTimeSandbox(CompileTimeSandbox)
+     */
+    public void
+    setCompileTimeSandbox(@Nullable CompileTimeSandbox sandbox) { this.se.setCompileTimeSandbox(sandbox); }
+
+    /**
+     * @see SimpleCompiler#setCompilationListener(CompilationListener)
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener listener) { this.se.setCompilationListener(listener); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the {@link CookExecutor#getDefault() default cook executor}.
+     *
+     * @see #cookAsync(CookExecutor, String)
+     */
+    public Future<Method>
+    cookAsync(String source) { return this.cookAsync(CookExecutor.getDefault(), source); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the <var>cookExecutor</var>. Iff the compilation fails, then
+     * {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException} that wraps the {@link
+     * CompileException}. This object must not be used in any way until the returned {@link Future} is done.
+     *
+     * @return A {@link Future} of the {@link #getMethod() generated method}
+     * @throws java.util.concurrent.RejectedExecutionException The <var>cookExecutor</var> is saturated or shut down
+     */
+    public Future<Method>
+    cookAsync(CookExecutor cookExecutor, final String source) {
+        return cookExecutor.submit(new Callable<Method>() {
+
+            @Override public Method
+            call() throws CompileException {
+                ExpressionEvaluator.this.cook(source);
+                return ExpressionEvaluator.this.getMethod();
+            }
+        });
+    }
+
+    /**
+     * Creates the fast evaluator in a thread of the {@link CookExecutor#getDefault() default cook executor}.
+     *
+     * @see #createFastEvaluatorAsync(CookExecutor, String, Class, String[])
+     */
+    public <T> Future<T>
+    createFastEvaluatorAsync(String expression, Class<? extends T> interfaceToImplement, String... parameterNames) {
+        return this.createFastEvaluatorAsync(
+            CookExecutor.getDefault(),
+            expression,
+            interfaceToImplement,
+            parameterNames
+        );
+    }
+
+    /**
+     * Does the same as {@link #createFastEvaluator(String, Class, String[])}, but in a thread of the
+     * <var>cookExecutor</var>. Iff the compilation fails, then {@link Future#get()} throws an {@link
+     * java.util.concurrent.ExecutionException} that wraps the {@link CompileException}. This object must not be used
+     * in any way until the returned {@link Future} is done.
+     *
+     * @return A {@link Future} of the fast evaluator
+     * @throws java.util.concurrent.RejectedExecutionException The <var>cookExecutor</var> is saturated or shut down
+     */
+    public <T> Future<T>
+    createFastEvaluatorAsync(
+        CookExecutor             cookExecutor,
+        final String             expression,
+        final Class<? extends T> interfaceToImplement,
+        final String...          parameterNames
+    ) {
+        return cookExecutor.submit(new Callable<T>() {
+
+            @Override public T
+            call() throws CompileException {
+                return ExpressionEvaluator.this.<T>createFastEvaluator(
+                    expression,
+                    interfaceToImplement,
+                    parameterNames
+                );
+            }
+        });
+    }
+
     @Override public void
     setDefaultExpressionType(Class<?> defaultExpressionType) { this.se.setDefaultReturnType(defaultExpressionType); }
 
@@ -454,35 +552,44 @@ class ExpressionEvaluator extends MultiCookable implements IExpressionEvaluator
 
         String fileName = parsers.length >= 1 ? parsers[0].getScanner().getFileName() : null;
 
-        // Parse import declarations.
-        final Java.AbstractCompilationUnit.ImportDeclaration[]
-        importDeclarations = this.se.parseImports(parsers.length == 1 ? parsers[0] : null);
+        PhaseRecorder pr = this.se.startPhaseRecording();
+        for (Parser p : parsers) p.setPhaseRecorder(pr);
 
-        Java.BlockStatement[][]   statementss   = new Java.BlockStatement[count][];
-        Java.MethodDeclarator[][] localMethodss = new Java.MethodDeclarator[count][];
+        final Java.AbstractCompilationUnit.ImportDeclaration[] importDeclarations;
+        Java.BlockStatement[][]                                statementss   = new Java.BlockStatement[count][];
+        Java.MethodDeclarator[][]                              localMethodss = new Java.MethodDeclarator[count][];
 
-        // Create methods with one block each.
-        for (int i = 0; i < parsers.length; ++i) {
+        if (pr != null) pr.begin(CompilationListener.Phase.PARSE);
+        try {
 
-            Class<?> et     = this.se.getReturnType(i);
-            Parser   parser = parsers[i];
+            // Parse import declarations.
+            importDeclarations = this.se.parseImports(parsers.length == 1 ? parsers[0] : null);
 
-            // Parse the expression.
-            Java.Rvalue value = parser.parseExpression();
+            // Create methods with one block each.
+            for (int i = 0; i < parsers.length; ++i) {
 
-            Java.BlockStatement statement;
-            if (et == void.class) {
-                statement = new Java.ExpressionStatement(value);
-            } else {
-                statement = new Java.ReturnStatement(parser.location(), value);
-            }
+                Class<?> et     = this.se.getReturnType(i);
+                Parser   parser = parsers[i];
 
-            if (!parser.peek(TokenType.END_OF_INPUT)) {
-                throw new CompileException("Unexpected token \"" + parser.peek() + "\"", parser.location());
-            }
+                // Parse the expression.
+                Java.Rvalue value = parser.parseExpression();
 
-            statementss[i]   = new Java.BlockStatement[] { statement };
-            localMethodss[i] = new Java.MethodDeclarator[0];
+                Java.BlockStatement statement;
+                if (et == void.class) {
+                    statement = new Java.ExpressionStatement(value);
+                } else {
+                    statement = new Java.ReturnStatement(parser.location(), value);
+                }
+
+                if (!parser.peek(TokenType.END_OF_INPUT)) {
+                    throw new CompileException("Unexpected token \"" + parser.peek() + "\"", parser.location());
+                }
+
+                statementss[i]   = new Java.BlockStatement[] { statement };
+                localMethodss[i] = new Java.MethodDeclarator[0];
+            }
+        } finally {
+            if (pr != null) pr.end();
         }
 
         this.se.cook(fileName, importDeclarations, statementss, localMethodss);
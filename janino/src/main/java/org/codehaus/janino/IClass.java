@@ -287,34 +287,116 @@ class IClass implements ITypeVariableOrIClass, IGenericDeclaration {
         if (this.iMethodCache != null) return this.iMethodCache;
 
         List<IMethod> iMethods = new ArrayList<>();
-        this.getIMethods(iMethods);
+        this.getIMethods(iMethods, new HashSet<String>());
         return (this.iMethodCache = (IMethod[]) iMethods.toArray(new IMethod[iMethods.size()]));
     }
     @Nullable private IMethod[] iMethodCache;
 
+    /**
+     * The subtypes that have cached methods that they inherit from this type; see {@link #invalidateMethodCaches()}.
+     */
+    private final Set<IClass> methodCacheDependents = new HashSet<>();
+
+    /**
+     * @param seen The names and descriptors of the methods in <var>result</var>; used to skip overridden methods
+     */
     private void
-    getIMethods(List<IMethod> result) throws CompileException {
-        IMethod[] ms = this.getDeclaredIMethods();
+    getIMethods(List<IMethod> result, Set<String> seen) throws CompileException {
 
-        SCAN_DECLARED_METHODS:
-        for (IMethod candidate : ms) {
-            MethodDescriptor candidateDescriptor = candidate.getDescriptor();
-            String           candidateName       = candidate.getName();
+        for (IMethod candidate : this.getDeclaredIMethods()) {
 
             // Check if a method with the same name and descriptor has been added before.
-            for (IMethod oldMethod : result) {
-                if (
-                    candidateName.equals(oldMethod.getName())
-                    && candidateDescriptor.equals(oldMethod.getDescriptor())
-                ) continue SCAN_DECLARED_METHODS;
-            }
-            result.add(candidate);
+            if (seen.add(candidate.getName() + candidate.getDescriptor())) result.add(candidate);
+        }
+        IClass sc = this.getSuperclass();
+        if (sc != null) {
+            sc.getIMethods(result, seen);
+            sc.methodCacheDependents.add(this);
         }
+
+        for (IClass ii : this.getInterfaces()) {
+            ii.getIMethods(result, seen);
+            ii.methodCacheDependents.add(this);
+        }
+    }
+
+    /**
+     * Returns the methods with the given name that are declared in the class or interface, its superclasses and its
+     * superinterfaces, in that order. Notice that, other than {@link #getIMethods()}, the result includes overridden
+     * methods.
+     *
+     * @return an array of {@link IMethod}s that must not be modified
+     */
+    public final IMethod[]
+    getIMethods(String methodName) throws CompileException {
+
+        IMethod[] result = (IMethod[]) this.iMethodsByNameCache.get(methodName);
+        if (result != null) return result;
+
+        List<IMethod> l = new ArrayList<>(Arrays.asList(this.getDeclaredIMethods(methodName)));
+
         IClass sc = this.getSuperclass();
-        if (sc != null) sc.getIMethods(result);
+        if (sc != null) {
+            l.addAll(Arrays.asList(sc.getIMethods(methodName)));
+            sc.methodCacheDependents.add(this);
+        }
+
+        for (IClass ii : this.getInterfaces()) {
+            l.addAll(Arrays.asList(ii.getIMethods(methodName)));
+            ii.methodCacheDependents.add(this);
+        }
 
-        for (IClass ii : this.getInterfaces()) ii.getIMethods(result);
+        result = l.isEmpty() ? IClass.NO_IMETHODS : (IMethod[]) l.toArray(new IMethod[l.size()]);
+        this.iMethodsByNameCache.put(methodName, result);
+        return result;
     }
+    private final Map<String /*methodName*/, IMethod[]> iMethodsByNameCache = new HashMap<>();
+
+    /**
+     * Returns the subset of {@link #getIMethods(String)} that can possibly be invoked with <var>arity</var>
+     * arguments, i.e. the fixed-arity methods with exactly <var>arity</var> parameters, and the variable-arity methods
+     * with at most <var>arity</var>{@code + 1} parameters.
+     *
+     * @return an array of {@link IMethod}s that must not be modified
+     */
+    public final IMethod[]
+    getIMethods(String methodName, int arity) throws CompileException {
+
+        IMethod[][] byArity = (IMethod[][]) this.iMethodsByArityCache.get(methodName);
+        if (byArity == null) {
+            IMethod[] ms = this.getIMethods(methodName);
+
+            // Notice: A parameter count of -1 means "unknown", because the parameter types cannot be resolved.
+            int[] parameterCounts   = new int[ms.length];
+            int   maxParameterCount = -1;
+            for (int i = 0; i < ms.length; i++) {
+                try {
+                    parameterCounts[i] = ms[i].getParameterTypes().length;
+                } catch (CompileException ce) {
+                    parameterCounts[i] = -1;
+                }
+                maxParameterCount = Math.max(maxParameterCount, parameterCounts[i]);
+            }
+
+            // The last element applies to all arities beyond "maxParameterCount", i.e. to varargs methods only.
+            byArity = new IMethod[maxParameterCount + 2][];
+            for (int i = 0; i < byArity.length; i++) {
+                List<IMethod> l = new ArrayList<>();
+                for (int j = 0; j < ms.length; j++) {
+                    int parameterCount = parameterCounts[j];
+                    if (
+                        parameterCount == -1
+                        || (ms[j].isVarargs() ? parameterCount - 1 <= i : parameterCount == i)
+                    ) l.add(ms[j]);
+                }
+                byArity[i] = l.isEmpty() ? IClass.NO_IMETHODS : (IMethod[]) l.toArray(new IMethod[l.size()]);
+            }
+            this.iMethodsByArityCache.put(methodName, byArity);
+        }
+
+        return byArity[Math.min(arity, byArity.length - 1)];
+    }
+    private final Map<String /*methodName*/, IMethod[][] /*arity=>methods*/> iMethodsByArityCache = new HashMap<>();
 
     private static final IMethod[] NO_IMETHODS = new IMethod[0];
 
@@ -1228,6 +1310,25 @@ class IClass implements ITypeVariableOrIClass, IGenericDeclaration {
             return getDeclaringIClass().findITypeVariable(name);
         }
 
+        /**
+         * Because JANINO erases generic types, this is the only way to relate the parameter types of a method to the
+         * type arguments of a parameterized type, e.g. "{@code T}" of "{@code Consumer<T>.accept(T t)}".
+         *
+         * @return For each parameter, the name of the type variable <em>of the declaring class</em> that is the
+         *         declared type of the parameter, or {@code null}; the default implementation returns only {@code
+         *         null}s
+         */
+        public String[]
+        getParameterTypeVariableNames() throws CompileException { return new String[this.getParameterTypes().length]; }
+
+        /**
+         * @return The name of the type variable <em>of the declaring class</em> that is the declared return type of
+         *         this method, or {@code null}
+         * @see    #getParameterTypeVariableNames()
+         */
+        @Nullable public String
+        getReturnTypeVariableName() throws CompileException { return null; }
+
         @Override public MethodDescriptor
         getDescriptor2() throws CompileException {
             return new MethodDescriptor(
@@ -1371,11 +1472,26 @@ class IClass implements ITypeVariableOrIClass, IGenericDeclaration {
 
     /**
      * This class caches the declared methods in order to minimize the invocations of {@link #getDeclaredIMethods2()}.
+     * Also invalidates the caches of the inherited methods of all subtypes that inherited methods from this type.
      */
     public void
     invalidateMethodCaches() {
         this.declaredIMethodsCache = null;
         this.declaredIMethodCache  = null;
+        this.invalidateInheritedMethodCaches();
+    }
+
+    private void
+    invalidateInheritedMethodCaches() {
+        this.iMethodCache = null;
+        this.iMethodsByNameCache.clear();
+        this.iMethodsByArityCache.clear();
+
+        IClass[] dependents = (IClass[]) this.methodCacheDependents.toArray(
+            new IClass[this.methodCacheDependents.size()]
+        );
+        this.methodCacheDependents.clear();
+        for (IClass dependent : dependents) dependent.invalidateInheritedMethodCaches();
     }
 
     public static IClass
@@ -40,6 +40,7 @@ import org.codehaus.commons.compiler.util.resource.JarDirectoriesResourceFinder;
 import org.codehaus.commons.compiler.util.resource.PathResourceFinder;
 import org.codehaus.commons.compiler.util.resource.ResourceFinder;
 import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener.Phase;
 import org.codehaus.janino.IClass.IConstructor;
 import org.codehaus.janino.IClass.IMethod;
 
@@ -290,11 +291,17 @@ class IClassLoader {
         synchronized (this) {
 
             // Class could not be loaded before?
-            if (this.unloadableIClasses.contains(fieldDescriptor)) return null;
+            if (this.unloadableIClasses.contains(fieldDescriptor)) {
+                this.iClassCacheHits++;
+                return null;
+            }
 
             // Class already loaded?
             result = (IClass) this.loadedIClasses.get(fieldDescriptor);
-            if (result != null) return result;
+            if (result != null) {
+                this.iClassCacheHits++;
+                return result;
+            }
 
             // Special handling for array types.
             if (Descriptor.isArrayReference(fieldDescriptor)) {
@@ -314,7 +321,18 @@ class IClassLoader {
             // Load the class through the {@link #findIClass(String)} method implemented by the derived class.
             // By contract, {@link findIClass(String)} <em>must</em> invoke {@link #defineIClass(IClass)}!
             IClassLoader.LOGGER.log(Level.FINE, "About to call \"findIClass({0})\"", fieldDescriptor);
-            result = this.findIClass(fieldDescriptor);
+            this.iClassCacheMisses++;
+            PhaseRecorder pr = this.phaseRecorder;
+            if (pr == null) {
+                result = this.findIClass(fieldDescriptor);
+            } else {
+                pr.begin(Phase.TYPE_RESOLUTION);
+                try {
+                    result = this.findIClass(fieldDescriptor);
+                } finally {
+                    pr.end();
+                }
+            }
             if (result == null) {
                 if (this.loadedIClasses.containsKey(fieldDescriptor)) {
                     throw new InternalCompilerException((
@@ -533,7 +551,30 @@ class IClassLoader {
         return icl;
     }
 
+    /**
+     * @param phaseRecorder Measures the time spent in {@link #findIClass(String)}; {@code null} disables measuring
+     */
+    void
+    setPhaseRecorder(@Nullable PhaseRecorder phaseRecorder) { this.phaseRecorder = phaseRecorder; }
+
+    /**
+     * @return How often {@link #loadIClass(String)} found the {@link IClass} (or the fact that it cannot be loaded)
+     *         in the cache of this {@link IClassLoader}
+     */
+    long
+    getIClassCacheHits() { return this.iClassCacheHits; }
+
+    /**
+     * @return How often {@link #loadIClass(String)} had to invoke {@link #findIClass(String)}
+     */
+    long
+    getIClassCacheMisses() { return this.iClassCacheMisses; }
+
     private final IClassLoader                       parentIClassLoader;
     private final Map<String /*descriptor*/, IClass> loadedIClasses     = new HashMap<>();
     private final Set<String /*descriptor*/>         unloadableIClasses = new HashSet<>();
+    @Nullable private PhaseRecorder                  phaseRecorder;
+
+    // Guarded by "this".
+    private long iClassCacheHits, iClassCacheMisses;
 }
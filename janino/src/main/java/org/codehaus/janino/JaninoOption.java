@@ -46,4 +46,23 @@ enum JaninoOption {
      * Contrary to the JLS, allow <em>any</em> expression as a resource in a TRY-with-resources statement.
      */
     EXPRESSIONS_IN_TRY_WITH_RESOURCES_ALLOWED,
+
+    /**
+     * Instrument each method entry and each loop iteration of the generated code, so that the code honors the {@link
+     * ExecutionBudget} of the current thread.
+     */
+    EXECUTION_BUDGET_INSTRUMENTED,
+
+    /**
+     * Instrument each statement of the generated code to count its executions in the {@link LineProfile} of its class.
+     */
+    LINE_PROFILING_INSTRUMENTED,
+
+    /**
+     * Discard the body of each method and constructor of a top-level or member type as soon as its bytecode is
+     * generated, and release the compilation units when the compilation is complete. Only the "skeleton" of the
+     * compilation units (type declarations, field declarations and method signatures) is retained while other units
+     * are being compiled. Reduces the memory footprint of large compilations.
+     */
+    METHOD_BODIES_DISCARDED,
 }
@@ -112,6 +112,11 @@ class Java {
 
     /**
      * Abstract implementation of {@link Locatable}.
+     * <p>
+     *   To save memory, the location is not stored as a {@link Location} object, but as the file name (which is shared
+     *   by all nodes of a compilation unit) plus the line and column number, packed into one {@code long}. {@link
+     *   #getLocation()} creates the {@link Location} object on demand.
+     * </p>
      */
     public abstract static
     class Located implements Locatable {
@@ -121,22 +126,38 @@ class Java {
          */
         public static final Located NOWHERE = new Located(Location.NOWHERE) {};
 
-        private final Location location;
+        @Nullable private final String fileName;
+        private final long             lineAndColumn;
 
         protected
         Located(Location location) {
             //assert location != null;
-            this.location = location;
+            this.fileName      = location.getFileName();
+            this.lineAndColumn = (long) location.getLineNumber() << 32 | (location.getColumnNumber() & 0xffffffffL);
         }
 
+        /**
+         * @return The line number of this node's location, or -1; equivalent with {@code
+         *         getLocation().getLineNumber()}, but does not create a {@link Location}
+         */
+        public int
+        getLineNumber() { return (int) (this.lineAndColumn >> 32); }
+
+        /**
+         * @return The column number of this node's location, or -1; equivalent with {@code
+         *         getLocation().getColumnNumber()}, but does not create a {@link Location}
+         */
+        public int
+        getColumnNumber() { return (int) this.lineAndColumn; }
+
         // Implement "Locatable".
 
         @Override public Location
-        getLocation() { return this.location; }
+        getLocation() { return new Location(this.fileName, this.getLineNumber(), this.getColumnNumber()); }
 
         @Override public void
         throwCompileException(String message) throws CompileException {
-            throw new CompileException(message, this.location);
+            throw new CompileException(message, this.getLocation());
         }
     }
 
@@ -156,6 +177,12 @@ class Java {
          */
         public final ImportDeclaration[] importDeclarations;
 
+        /**
+         * The method bodies and initializers that the parser has not yet parsed; see {@link
+         * Parser#setMethodBodiesDeferred(boolean)}.
+         */
+        final List<Parser.DeferredBody> deferredBodies = new ArrayList<>();
+
         public
         AbstractCompilationUnit(@Nullable String fileName, ImportDeclaration[] importDeclarations) {
             this.fileName           = fileName;
@@ -2400,6 +2427,12 @@ class Java {
          */
         @Nullable IType returnType;
 
+        /**
+         * Set by "compile()" when the {@link #statements} were cleared after code generation; see {@link
+         * JaninoOption#METHOD_BODIES_DISCARDED}.
+         */
+        boolean bodyDiscarded;
+
         // Implement DocCommentable.
 
         @Override @Nullable public String
@@ -2752,6 +2785,12 @@ class Java {
          */
         @Nullable IClass.IMethod iMethod;
 
+        /**
+         * If this is the synthetic method that implements a lambda expression: That lambda expression; set by the
+         * {@link UnitCompiler}.
+         */
+        @Nullable LambdaExpression lambdaExpression;
+
         public boolean isStatic()       { return Java.hasAccessModifier(this.getModifiers(), "static");       }
         public boolean isDefault()      { return Java.hasAccessModifier(this.getModifiers(), "default");      }
         public boolean isAbstract()     { return Java.hasAccessModifier(this.getModifiers(), "abstract");     }
@@ -5866,6 +5905,31 @@ class Java {
             this.body       = body;
         }
 
+        // Compile time members.
+
+        /**
+         * The functional interface type that this lambda expression implements; set by the {@link UnitCompiler}
+         * from the assignment or invocation context.
+         */
+        @Nullable IType targetType;
+
+        /**
+         * The type arguments of the declared target type, e.g. "{@code String, Integer}" for a local variable
+         * declared as "{@code Function<String, Integer>}"; set by the {@link UnitCompiler}.
+         */
+        @Nullable TypeArgument[] targetTypeArguments;
+
+        /**
+         * The synthetic method that implements the lambda body; generated once, on the first compilation.
+         */
+        @Nullable MethodDeclarator implementation;
+
+        /**
+         * The names of the enclosing local variables that the lambda body captures; determined together with the
+         * {@link #implementation}.
+         */
+        @Nullable String[] capturedVariables;
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(RvalueVisitor<R, EX> rvv) throws EX { return rvv.visitLambdaExpression(this); }
 
@@ -6184,6 +6248,19 @@ class Java {
             this.methodName = methodName;
         }
 
+        // Compile time members.
+
+        /**
+         * The functional interface type that this method reference implements; set by the {@link UnitCompiler}.
+         */
+        @Nullable IType targetType;
+
+        /**
+         * The type arguments of the declared target type, e.g. "{@code String, Integer}" for a local variable
+         * declared as "{@code Function<String, Integer>}"; set by the {@link UnitCompiler}.
+         */
+        @Nullable TypeArgument[] targetTypeArguments;
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(RvalueVisitor<R, EX> rvv) throws EX { return rvv.visitMethodReference(this); }
 
@@ -6215,6 +6292,19 @@ class Java {
             this.typeArguments = typeArguments;
         }
 
+        // Compile time members.
+
+        /**
+         * The functional interface type that this method reference implements; set by the {@link UnitCompiler}.
+         */
+        @Nullable IType targetType;
+
+        /**
+         * The type arguments of the declared target type, e.g. "{@code String, Integer}" for a local variable
+         * declared as "{@code Function<String, Integer>}"; set by the {@link UnitCompiler}.
+         */
+        @Nullable TypeArgument[] targetTypeArguments;
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(RvalueVisitor<R, EX> rvv) throws EX { return rvv.visitInstanceCreationReference(this); }
 
@@ -6240,6 +6330,24 @@ class Java {
             this.type = type;
         }
 
+        // Compile time members.
+
+        /**
+         * The functional interface type that this method reference implements; set by the {@link UnitCompiler}.
+         */
+        @Nullable IType targetType;
+
+        /**
+         * The type arguments of the declared target type, e.g. "{@code String, Integer}" for a local variable
+         * declared as "{@code Function<String, Integer>}"; set by the {@link UnitCompiler}.
+         */
+        @Nullable TypeArgument[] targetTypeArguments;
+
+        /**
+         * The synthetic method "{@code (int length) -> new T[length]}"; generated once, on the first compilation.
+         */
+        @Nullable MethodDeclarator implementation;
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(RvalueVisitor<R, EX> rvv) throws EX { return rvv.visitArrayCreationReference(this); }
 
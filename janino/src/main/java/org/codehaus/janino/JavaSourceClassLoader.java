@@ -28,10 +28,16 @@ package org.codehaus.janino;
 import java.io.File;
 import java.io.Reader;
 import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.codehaus.commons.compiler.AbstractJavaSourceClassLoader;
 import org.codehaus.commons.compiler.CompileException;
@@ -42,6 +48,7 @@ import org.codehaus.commons.compiler.lang.ClassLoaders;
 import org.codehaus.commons.compiler.util.Disassembler;
 import org.codehaus.commons.compiler.util.resource.DirectoryResourceFinder;
 import org.codehaus.commons.compiler.util.resource.PathResourceFinder;
+import org.codehaus.commons.compiler.util.resource.Resource;
 import org.codehaus.commons.compiler.util.resource.ResourceFinder;
 import org.codehaus.commons.nullanalysis.Nullable;
 import org.codehaus.janino.UnitCompiler.ClassFileConsumer;
@@ -58,12 +65,23 @@ import org.codehaus.janino.util.ClassFile;
  *   Notice that this class loader does not support resoures in the sense of {@link ClassLoader#getResource(String)},
  *   {@link ClassLoader#getResourceAsStream(String)} nd {@link ClassLoader#getResources(String)}.
  * </p>
+ * <p>
+ *   This class loader is parallel capable (see {@link ClassLoader#registerAsParallelCapable()}), i.e. it locks per
+ *   class name, so that threads can load classes concurrently. Because the {@link JavaSourceIClassLoader} and the
+ *   {@link UnitCompiler}s are not thread-safe, each compilation exclusively uses one {@link JavaSourceIClassLoader};
+ *   when that is busy, a concurrent compilation uses another one (which parses the compilation units that it needs
+ *   again). The source finder is locked while it finds a resource. If the {@link JavaSourceIClassLoader} was passed
+ *   to {@link #JavaSourceClassLoader(ClassLoader, JavaSourceIClassLoader)}, then no other can be created, so only one
+ *   thread at a time compiles.
+ * </p>
  *
  * @see ClassLoaders
  */
 public
 class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
 
+    static { ClassLoader.registerAsParallelCapable(); }
+
     public
     JavaSourceClassLoader() { this(ClassLoader.getSystemClassLoader()); }
 
@@ -126,7 +144,8 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
             sourceFinder,                                  // sourceFinder
             characterEncoding,                             // characterEncoding
             new ClassLoaderIClassLoader(parentClassLoader) // parentIClassLoader
-        ));
+        ), true);
+        this.sourceCharset = characterEncoding == null ? Charset.defaultCharset() : Charset.forName(characterEncoding);
     }
 
     /**
@@ -134,18 +153,44 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
      */
     public
     JavaSourceClassLoader(ClassLoader parentClassLoader, JavaSourceIClassLoader iClassLoader) {
+        this(parentClassLoader, iClassLoader, false);
+    }
+
+    private
+    JavaSourceClassLoader(
+        ClassLoader            parentClassLoader,
+        JavaSourceIClassLoader iClassLoader,
+        boolean                concurrentCompilation
+    ) {
         super(parentClassLoader);
-        this.iClassLoader = iClassLoader;
+        this.concurrentCompilation   = concurrentCompilation;
+        this.firstCompilationContext = new CompilationContext(iClassLoader);
+        if (concurrentCompilation) {
+            ResourceFinder sourceFinder = iClassLoader.getSourceFinder();
+            iClassLoader.setSourceFinder(JavaSourceClassLoader.synchronizedResourceFinder(sourceFinder));
+        }
+        this.compilationContexts.add(this.firstCompilationContext);
+        this.idleCompilationContexts.add(this.firstCompilationContext);
     }
 
     @Override public void
     setSourcePath(File[] sourcePath) { this.setSourceFinder(new PathResourceFinder(sourcePath)); }
 
     @Override public void
-    setSourceFinder(ResourceFinder sourceFinder) { this.iClassLoader.setSourceFinder(sourceFinder); }
+    setSourceFinder(ResourceFinder sourceFinder) {
+        if (this.concurrentCompilation) sourceFinder = JavaSourceClassLoader.synchronizedResourceFinder(sourceFinder);
+        synchronized (this.idleCompilationContexts) {
+            for (CompilationContext cc : this.compilationContexts) cc.iClassLoader.setSourceFinder(sourceFinder);
+        }
+    }
 
     @Override public void
-    setSourceCharset(Charset charset) { this.iClassLoader.setSourceCharset(charset); }
+    setSourceCharset(Charset charset) {
+        synchronized (this.idleCompilationContexts) {
+            this.sourceCharset = charset;
+            for (CompilationContext cc : this.compilationContexts) cc.iClassLoader.setSourceCharset(charset);
+        }
+    }
 
     @Override public void
     setDebuggingInfo(boolean debugSource, boolean debugLines, boolean debugVars) {
@@ -155,23 +200,40 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
     }
 
     public void
-    setTargetVersion(int version) { this.iClassLoader.setTargetVersion(version); }
+    setTargetVersion(int version) {
+        synchronized (this.idleCompilationContexts) {
+            this.targetVersion = version;
+            for (CompilationContext cc : this.compilationContexts) cc.iClassLoader.setTargetVersion(version);
+        }
+    }
 
     /**
+     * Notice that the <var>compileErrorHandler</var> may be invoked by concurrent compilations.
+     *
      * @see UnitCompiler#setCompileErrorHandler
      */
     public void
     setCompileErrorHandler(@Nullable ErrorHandler compileErrorHandler) {
-        this.iClassLoader.setCompileErrorHandler(compileErrorHandler);
+        synchronized (this.idleCompilationContexts) {
+            this.compileErrorHandler = compileErrorHandler;
+            for (CompilationContext cc : this.compilationContexts) {
+                cc.iClassLoader.setCompileErrorHandler(compileErrorHandler);
+            }
+        }
     }
 
     /**
+     * Notice that the <var>warningHandler</var> may be invoked by concurrent compilations.
+     *
      * @see Parser#setWarningHandler(WarningHandler)
      * @see UnitCompiler#setCompileErrorHandler
      */
     public void
     setWarningHandler(@Nullable WarningHandler warningHandler) {
-        this.iClassLoader.setWarningHandler(warningHandler);
+        synchronized (this.idleCompilationContexts) {
+            this.warningHandler = warningHandler;
+            for (CompilationContext cc : this.compilationContexts) cc.iClassLoader.setWarningHandler(warningHandler);
+        }
     }
 
     /**
@@ -179,7 +241,7 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
      *
      * @throws ClassNotFoundException
      */
-    @Override protected /*synchronized <- No need to synchronize, because 'loadClass()' is synchronized */ Class<?>
+    @Override protected /*synchronized <- No need to synchronize, because 'loadClass()' locks the class name */ Class<?>
     findClass(@Nullable String name) throws ClassNotFoundException {
         assert name != null;
 
@@ -187,15 +249,13 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
         byte[] bytecode = (byte[]) this.precompiledClasses.remove(name);
         if (bytecode == null) {
 
-            // Read, scan, parse and compile the right compilation unit.
-            {
-                Map<String /*name*/, byte[] /*bytecode*/> bytecodes = this.generateBytecodes(name);
-                if (bytecodes == null) throw new ClassNotFoundException(name);
-                this.precompiledClasses.putAll(bytecodes);
-            }
+            // Read, scan, parse and compile the right compilation unit. ("loadClass()" locks the class name, so no
+            // other thread compiles for the same class name in the meantime.)
+            Map<String /*name*/, byte[] /*bytecode*/> bytecodes = this.generateBytecodes(name);
+            if (bytecodes == null) throw new ClassNotFoundException(name);
 
             // Now the bytecode for our class should be available.
-            bytecode = (byte[]) this.precompiledClasses.remove(name);
+            bytecode = (byte[]) bytecodes.remove(name);
             if (bytecode == null) {
                 throw new InternalCompilerException(
                     "SNO: Scanning, parsing and compiling class \""
@@ -203,37 +263,114 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
                     + "\" did not create a class file!?"
                 );
             }
+
+            // Keep the other classes for later, unless a concurrent compilation has produced and defined them already.
+            for (Map.Entry<String, byte[]> me : bytecodes.entrySet()) {
+                String className = (String) me.getKey();
+                if (this.findLoadedClass(className) == null) {
+                    this.precompiledClasses.putIfAbsent(className, (byte[]) me.getValue());
+                }
+            }
         }
 
         if (Boolean.getBoolean("disasm")) Disassembler.disassembleToStdout(bytecode);
 
-        return this.defineBytecode(name, bytecode);
+        Class<?> result = this.defineBytecode(name, bytecode);
+
+        // A concurrent compilation may have produced the bytecode for the same class.
+        this.precompiledClasses.remove(name);
+
+        return result;
     }
 
-    private final Set<UnitCompiler> compiledUnitCompilers = new HashSet<>();
+    /**
+     * A {@link JavaSourceIClassLoader}, and the {@link UnitCompiler}s of that {@link JavaSourceIClassLoader} that
+     * were compiled already. Is used by only one compilation at a time.
+     */
+    private static
+    class CompilationContext {
+
+        final JavaSourceIClassLoader iClassLoader;
+        final Set<UnitCompiler>      compiledUnitCompilers = new HashSet<>();
+
+        CompilationContext(JavaSourceIClassLoader iClassLoader) { this.iClassLoader = iClassLoader; }
+    }
+
+    /**
+     * Whether {@link CompilationContext}s can be created as needed, so that compilations run concurrently.
+     */
+    private final boolean concurrentCompilation;
+
+    /**
+     * The {@link CompilationContext} of the {@link JavaSourceIClassLoader} that was passed to the constructor.
+     */
+    private final CompilationContext firstCompilationContext;
+
+    /**
+     * All {@link CompilationContext}s that were created; guarded by the lock of the {@link
+     * #idleCompilationContexts}.
+     */
+    private final List<CompilationContext> compilationContexts = new ArrayList<>();
+
+    /**
+     * The {@link CompilationContext}s that are currently not used by a compilation; guarded by its own lock.
+     */
+    private final Deque<CompilationContext> idleCompilationContexts = new ArrayDeque<>();
 
     /**
      * This {@link Map} keeps those classes which were already compiled, but not yet defined i.e. which were not yet
      * passed to {@link ClassLoader#defineClass(java.lang.String, byte[], int, int)}.
      */
-    private final Map<String /*name*/, byte[] /*bytecode*/> precompiledClasses = new HashMap<>();
+    private final ConcurrentMap<String /*name*/, byte[] /*bytecode*/> precompiledClasses = new ConcurrentHashMap<>();
 
     /**
      * Finds, scans, parses the right compilation unit. Compile the parsed compilation unit to bytecode. This may cause
      * more compilation units being scanned and parsed. Continue until all compilation units are compiled.
+     * <p>
+     *   May be invoked by concurrent threads (for different class names).
+     * </p>
      *
      * @return String name =&gt; byte[] bytecode, or {@code null} if no source code could be found
      * @throws ClassNotFoundException on compilation problems
      */
     @Nullable protected Map<String /*name*/, byte[] /*bytecode*/>
     generateBytecodes(String name) throws ClassNotFoundException {
-        if (this.iClassLoader.loadIClass(Descriptor.fromClassName(name)) == null) return null;
+
+        if (!this.concurrentCompilation) {
+
+            // Only one thread at a time may compile.
+            CompilationContext cc = this.firstCompilationContext;
+            synchronized (cc.iClassLoader) {
+                return this.generateBytecodes(name, cc);
+            }
+        }
+
+        CompilationContext cc;
+        synchronized (this.idleCompilationContexts) {
+            cc = this.idleCompilationContexts.poll();
+            if (cc == null) {
+                cc = new CompilationContext(this.newJavaSourceIClassLoader());
+                this.compilationContexts.add(cc);
+            }
+        }
+        try {
+            return this.generateBytecodes(name, cc);
+        } finally {
+            synchronized (this.idleCompilationContexts) {
+                this.idleCompilationContexts.push(cc);
+            }
+        }
+    }
+
+    @Nullable private Map<String /*name*/, byte[] /*bytecode*/>
+    generateBytecodes(String name, CompilationContext cc) throws ClassNotFoundException {
+        if (cc.iClassLoader.loadIClass(Descriptor.fromClassName(name)) == null) return null;
 
         final Map<String /*className*/, byte[] /*bytecode*/> bytecodes = new HashMap<>();
         COMPILE_UNITS:
         for (;;) {
-            for (UnitCompiler uc : this.iClassLoader.getUnitCompilers()) {
-                if (!this.compiledUnitCompilers.contains(uc)) {
+            for (UnitCompiler uc : cc.iClassLoader.getUnitCompilers()) {
+                if (!cc.compiledUnitCompilers.contains(uc)) {
                     try {
                         uc.compileUnit(
                             this.debugSource,
@@ -250,7 +387,7 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
                     } catch (CompileException ex) {
                         throw new ClassNotFoundException(ex.getMessage(), ex);
                     }
-                    this.compiledUnitCompilers.add(uc);
+                    cc.compiledUnitCompilers.add(uc);
                     continue COMPILE_UNITS;
                 }
             }
@@ -272,7 +409,50 @@ class JavaSourceClassLoader extends AbstractJavaSourceClassLoader {
         ));
     }
 
-    private final JavaSourceIClassLoader iClassLoader;
+    /**
+     * @return A {@link ResourceFinder} that locks the <var>delegate</var> while finding a resource, because the
+     *         <var>delegate</var> is shared by concurrent compilations
+     */
+    private static ResourceFinder
+    synchronizedResourceFinder(final ResourceFinder delegate) {
+        return new ResourceFinder() {
+
+            @Override @Nullable public Resource
+            findResource(String resourceName) {
+                synchronized (delegate) {
+                    return delegate.findResource(resourceName);
+                }
+            }
+
+            @Override public String
+            toString() { return delegate.toString(); }
+        };
+    }
+
+    /**
+     * @return A new {@link JavaSourceIClassLoader} that is configured like the existing ones
+     */
+    private JavaSourceIClassLoader
+    newJavaSourceIClassLoader() {
+
+        JavaSourceIClassLoader result = new JavaSourceIClassLoader(
+            this.firstCompilationContext.iClassLoader.getSourceFinder(), // sourceFinder
+            null,                                                        // sourceCharsetName
+            new ClassLoaderIClassLoader(this.getParent())                // parentIClassLoader
+        );
+        if (this.sourceCharset != null) result.setSourceCharset(this.sourceCharset);
+        result.setTargetVersion(this.targetVersion);
+        result.setCompileErrorHandler(this.compileErrorHandler);
+        result.setWarningHandler(this.warningHandler);
+        return result;
+    }
+
+    // The settings for JavaSourceIClassLoaders that are created later; guarded by the lock of the
+    // "idleCompilationContexts".
+    @Nullable private Charset        sourceCharset;
+    private int                      targetVersion = -1;
+    @Nullable private ErrorHandler   compileErrorHandler;
+    @Nullable private WarningHandler warningHandler;
 
     private boolean debugSource = Boolean.getBoolean(Scanner.SYSTEM_PROPERTY_SOURCE_DEBUGGING_ENABLE);
     private boolean debugLines  = this.debugSource;
@@ -68,6 +68,7 @@ class JavaSourceIClassLoader extends IClassLoader {
     private int                      targetVersion = -1;
     @Nullable private ErrorHandler   compileErrorHandler;
     @Nullable private WarningHandler warningHandler;
+    private boolean                  methodBodiesDeferred = true;
 
     public
     JavaSourceIClassLoader(
@@ -136,6 +137,16 @@ class JavaSourceIClassLoader extends IClassLoader {
         this.warningHandler = warningHandler;
     }
 
+    /**
+     * Whether the bodies of methods and initializers are parsed only when the compilation unit is actually compiled;
+     * the default is {@code true}. Compilation units that are only needed for type-checking other compilation units
+     * are parsed much faster that way.
+     *
+     * @see Parser#setMethodBodiesDeferred(boolean)
+     */
+    public void
+    setMethodBodiesDeferred(boolean value) { this.methodBodiesDeferred = value; }
+
     /**
      * @return A reference to the currently effective compilation options; changes to it take
      *         effect immediately
@@ -244,6 +255,7 @@ class JavaSourceIClassLoader extends IClassLoader {
             Parser parser = new Parser(scanner);
             parser.setSourceVersion(this.sourceVersion);
             parser.setWarningHandler(this.warningHandler);
+            parser.setMethodBodiesDeferred(this.methodBodiesDeferred);
 
             return parser.parseAbstractCompilationUnit();
         } finally {
@@ -0,0 +1,174 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.lang.annotation.Annotation;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener.Phase;
+
+/**
+ * Reports each {@link Phase} of each compilation as a Java Flight Recorder event, named e.g. "{@code
+ * org.codehaus.janino.Parse}", with the fields "{@code compilationUnit}", "{@code count}" and "{@code phaseDuration}".
+ * The events are in the category "Janino", and are enabled by default.
+ * <p>
+ *   Because JANINO runs on JREs that have no JFR, the event types are created dynamically through reflection; on a
+ *   JRE without JFR (before Java 9), {@link #isAvailable()} returns {@code false} and this listener does nothing.
+ * </p>
+ * <p>
+ *   Alternatively, set the system property "{@code org.codehaus.janino.SimpleCompiler.jfr}" to {@code true} to
+ *   report the phases of <em>all</em> compilations to JFR.
+ * </p>
+ */
+public final
+class JfrCompilationListener implements CompilationListener {
+
+    private static final Logger LOGGER = Logger.getLogger(JfrCompilationListener.class.getName());
+
+    /**
+     * The "{@code jdk.jfr.EventFactory}" for each {@link Phase}, or {@code null} if JFR is not available.
+     */
+    @Nullable private static final Object[] EVENT_FACTORIES;
+
+    @Nullable private static final Method NEW_EVENT, SET, COMMIT;
+
+    static {
+        Object[] eventFactories = null;
+        Method   newEvent = null, set = null, commit = null;
+        try {
+            Class<?> eventFactoryClass      = Class.forName("jdk.jfr.EventFactory");
+            Class<?> annotationElementClass = Class.forName("jdk.jfr.AnnotationElement");
+            Class<?> valueDescriptorClass   = Class.forName("jdk.jfr.ValueDescriptor");
+            Class<?> eventClass             = Class.forName("jdk.jfr.Event");
+
+            Constructor<?> annotationElementConstructor = annotationElementClass.getConstructor(
+                Class.class,
+                Object.class
+            );
+            Constructor<?> valueDescriptorConstructor   = valueDescriptorClass.getConstructor(
+                Class.class,
+                String.class,
+                List.class
+            );
+            Method create = eventFactoryClass.getMethod("create", List.class, List.class);
+
+            Class<? extends Annotation> nameAnnotation       = JfrCompilationListener.annotationClass("Name");
+            Class<? extends Annotation> labelAnnotation      = JfrCompilationListener.annotationClass("Label");
+            Class<? extends Annotation> categoryAnnotation   = JfrCompilationListener.annotationClass("Category");
+            Class<? extends Annotation> timespanAnnotation   = JfrCompilationListener.annotationClass("Timespan");
+            Class<? extends Annotation> stackTraceAnnotation = JfrCompilationListener.annotationClass("StackTrace");
+
+            List<?> fields = Arrays.asList(
+                valueDescriptorConstructor.newInstance(String.class, "compilationUnit", Collections.singletonList(
+                    annotationElementConstructor.newInstance(labelAnnotation, "Compilation Unit")
+                )),
+                valueDescriptorConstructor.newInstance(int.class, "count", Collections.singletonList(
+                    annotationElementConstructor.newInstance(labelAnnotation, "Count")
+                )),
+                valueDescriptorConstructor.newInstance(long.class, "phaseDuration", Arrays.asList(
+                    annotationElementConstructor.newInstance(labelAnnotation, "Phase Duration"),
+                    annotationElementConstructor.newInstance(timespanAnnotation, "NANOSECONDS")
+                ))
+            );
+
+            Phase[] phases = Phase.values();
+            eventFactories = new Object[phases.length];
+            for (Phase phase : phases) {
+                String name = JfrCompilationListener.camelCase(phase.name());
+                eventFactories[phase.ordinal()] = create.invoke(null, Arrays.asList(
+                    annotationElementConstructor.newInstance(nameAnnotation, "org.codehaus.janino." + name),
+                    annotationElementConstructor.newInstance(labelAnnotation, "Janino " + name),
+                    annotationElementConstructor.newInstance(categoryAnnotation, new String[] { "Janino" }),
+                    annotationElementConstructor.newInstance(stackTraceAnnotation, false)
+                ), fields);
+            }
+
+            newEvent = eventFactoryClass.getMethod("newEvent");
+            set      = eventClass.getMethod("set", int.class, Object.class);
+            commit   = eventClass.getMethod("commit");
+        } catch (ClassNotFoundException cnfe) {
+            eventFactories = null;
+        } catch (Exception e) {
+            JfrCompilationListener.LOGGER.log(Level.WARNING, "Creating the JFR event types", e);
+            eventFactories = null;
+        }
+        EVENT_FACTORIES = eventFactories;
+        NEW_EVENT       = newEvent;
+        SET             = set;
+        COMMIT          = commit;
+    }
+
+    /**
+     * @return Whether this JRE supports JFR
+     */
+    public static boolean
+    isAvailable() { return JfrCompilationListener.EVENT_FACTORIES != null; }
+
+    @Override public void
+    phaseCompleted(@Nullable String fileName, Phase phase, int count, long durationNanos) {
+
+        Object[] efs = JfrCompilationListener.EVENT_FACTORIES;
+        if (efs == null) return;
+
+        Method newEvent = JfrCompilationListener.NEW_EVENT, set = JfrCompilationListener.SET;
+        Method commit   = JfrCompilationListener.COMMIT;
+        assert newEvent != null && set != null && commit != null;
+
+        try {
+            Object event = newEvent.invoke(efs[phase.ordinal()]);
+            set.invoke(event, 0, fileName);
+            set.invoke(event, 1, count);
+            set.invoke(event, 2, durationNanos);
+            commit.invoke(event);
+        } catch (Exception e) {
+            JfrCompilationListener.LOGGER.log(Level.FINE, "Committing a JFR event", e);
+        }
+    }
+
+    @SuppressWarnings("unchecked") private static Class<? extends Annotation>
+    annotationClass(String simpleName) throws ClassNotFoundException {
+        return (Class<? extends Annotation>) Class.forName("jdk.jfr." + simpleName);
+    }
+
+    /**
+     * "STACK_MAP_COMPUTATION" => "StackMapComputation"
+     */
+    private static String
+    camelCase(String constantName) {
+        StringBuilder sb = new StringBuilder();
+        for (String word : constantName.split("_")) {
+            sb.append(word.charAt(0)).append(word.substring(1).toLowerCase());
+        }
+        return sb.toString();
+    }
+}
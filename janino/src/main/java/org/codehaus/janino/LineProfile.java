@@ -0,0 +1,192 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+package org.codehaus.janino;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.TreeMap;
+import java.util.WeakHashMap;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * Counts how often the statements on each source line of a class are executed, e.g. to find the hot parts of user
+ * scripts.
+ * <p>
+ *   Only classes that were compiled with option {@link JaninoOption#LINE_PROFILING_INSTRUMENTED} are profiled: The
+ *   {@link UnitCompiler} then gives each generated class a synthetic static field that holds its {@link LineProfile},
+ *   and instruments each statement to increment the counter of the line where the statement starts. Thus, if a line
+ *   holds more than one statement, its counter is the sum of their execution counts.
+ * </p>
+ * <pre>
+ *     ScriptEvaluator se = new ScriptEvaluator();
+ *     se.options(EnumSet.of(JaninoOption.LINE_PROFILING_INSTRUMENTED));
+ *     se.cook(script);
+ *     se.evaluate(arguments);
+ *     ...
+ *     long[] counts = LineProfile.forClass(se.getMethod().getDeclaringClass()).getCounts();
+ * </pre>
+ * <p>
+ *   The counters are incremented without synchronization, so that the overhead of the instrumentation is small. If
+ *   the code is executed by many threads concurrently, some increments may be lost; the counts are still good enough
+ *   to tell the hot lines from the cold ones.
+ * </p>
+ * <p>
+ *   Profiles do not prevent the garbage collection of their classes.
+ * </p>
+ */
+public final
+class LineProfile {
+
+    private static final Map<Class<?>, LineProfile> PROFILES = new WeakHashMap<Class<?>, LineProfile>();
+
+    /**
+     * Indexed by line number.
+     */
+    private volatile long[] counts = new long[64];
+
+    private
+    LineProfile() {}
+
+    /**
+     * Invoked by the class initializer of each instrumented class.
+     *
+     * @return The profile of the given class
+     */
+    public static LineProfile
+    register(Class<?> clasS) {
+        synchronized (LineProfile.PROFILES) {
+            LineProfile result = (LineProfile) LineProfile.PROFILES.get(clasS);
+            if (result == null) LineProfile.PROFILES.put(clasS, (result = new LineProfile()));
+            return result;
+        }
+    }
+
+    /**
+     * @return The profile of the given class, or {@code null} iff the class was not compiled with option {@link
+     *         JaninoOption#LINE_PROFILING_INSTRUMENTED}, or was not yet initialized
+     */
+    @Nullable public static LineProfile
+    forClass(Class<?> clasS) {
+        synchronized (LineProfile.PROFILES) {
+            return (LineProfile) LineProfile.PROFILES.get(clasS);
+        }
+    }
+
+    /**
+     * @return The profiles of all profiled classes that are currently loaded
+     */
+    public static Map<Class<?>, LineProfile>
+    getProfiles() {
+        synchronized (LineProfile.PROFILES) {
+            return new HashMap<Class<?>, LineProfile>(LineProfile.PROFILES);
+        }
+    }
+
+    /**
+     * Resets the counters of all profiled classes to zero.
+     */
+    public static void
+    resetAll() {
+        List<LineProfile> profiles;
+        synchronized (LineProfile.PROFILES) {
+            profiles = new ArrayList<LineProfile>(LineProfile.PROFILES.values());
+        }
+        for (LineProfile p : profiles) p.reset();
+    }
+
+    /**
+     * Invoked by instrumented code before each statement.
+     */
+    public void
+    hit(int lineNumber) {
+        long[] c = this.counts;
+        if (lineNumber >= c.length) c = this.grow(lineNumber);
+        c[lineNumber]++;
+    }
+
+    private synchronized long[]
+    grow(int lineNumber) {
+        long[] c = this.counts;
+        if (lineNumber >= c.length) {
+            this.counts = (c = Arrays.copyOf(c, Math.max(lineNumber + 1, 2 * c.length)));
+        }
+        return c;
+    }
+
+    /**
+     * @return A snapshot of the counters, indexed by line number; element 0 is always zero
+     */
+    public long[]
+    getCounts() {
+        long[] c = this.counts;
+
+        int length = c.length;
+        while (length > 0 && c[length - 1] == 0) length--;
+        return Arrays.copyOf(c, length);
+    }
+
+    /**
+     * @return The counter of the given line
+     */
+    public long
+    getCount(int lineNumber) {
+        long[] c = this.counts;
+        return lineNumber >= 0 && lineNumber < c.length ? c[lineNumber] : 0;
+    }
+
+    /**
+     * @return The counters that are not zero, in the order of the line numbers; the key is the line number
+     */
+    public Map<Integer, Long>
+    getNonZeroCounts() {
+        Map<Integer, Long> result = new TreeMap<Integer, Long>();
+        long[]             c      = this.counts;
+        for (int i = 0; i < c.length; i++) {
+            if (c[i] != 0) result.put(i, c[i]);
+        }
+        return result;
+    }
+
+    /**
+     * Resets all counters of this profile to zero.
+     */
+    public synchronized void
+    reset() { this.counts = new long[this.counts.length]; }
+
+    @Override public String
+    toString() {
+        StringBuilder sb = new StringBuilder();
+        for (Entry<Integer, Long> e : this.getNonZeroCounts().entrySet()) {
+            if (sb.length() > 0) sb.append(", ");
+            sb.append("line ").append(e.getKey()).append(": ").append(e.getValue());
+        }
+        return sb.toString();
+    }
+}
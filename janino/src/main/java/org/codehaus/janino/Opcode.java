@@ -351,6 +351,11 @@ class Opcode {
      */
     public static final short SD_INVOKEINTERFACE = 16;
 
+    /**
+     * This element of {@link #OPCODE_PROPERTIES} represents the INVOKEDYNAMIC opcode.
+     */
+    public static final short SD_INVOKEDYNAMIC = 17;
+
     /**
      * This element of {@link #OPCODE_PROPERTIES} represents the MULTIANEWARRAY opcode.
      */
@@ -675,7 +680,7 @@ class Opcode {
         /*INVOKESPECIAL*/   Opcode.SD_INVOKESPECIAL | Opcode.OP1_CP2,
         /*INVOKESTATIC*/    Opcode.SD_INVOKESTATIC | Opcode.OP1_CP2,
         /*INVOKEINTERFACE*/ Opcode.SD_INVOKEINTERFACE | Opcode.OP1_CP2 | Opcode.OP2_SB | Opcode.OP3_SB,
-        /*UNUSED*/          Opcode.INVALID_OPCODE,
+        /*INVOKEDYNAMIC*/   Opcode.SD_INVOKEDYNAMIC | Opcode.OP1_CP2 | Opcode.OP2_SB | Opcode.OP3_SB,
         /*NEW*/             Opcode.SD_P1 | Opcode.OP1_CP2,
         /*NEWARRAY*/        Opcode.SD_P0 | Opcode.OP1_UB,
         /*ANEWARRAY*/       Opcode.SD_P0 | Opcode.OP1_CP2,
@@ -26,9 +26,11 @@
 package org.codehaus.janino;
 
 import java.io.IOException;
+import java.io.StringReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 
@@ -218,6 +220,21 @@ class Parser {
     public AbstractCompilationUnit
     parseAbstractCompilationUnit() throws CompileException, IOException {
 
+        if (!this.methodBodiesDeferred) return this.parseAbstractCompilationUnit2();
+
+        List<DeferredBody> dbs = (this.deferredBodies = new ArrayList<>());
+        try {
+            AbstractCompilationUnit result = this.parseAbstractCompilationUnit2();
+            result.deferredBodies.addAll(dbs);
+            return result;
+        } finally {
+            this.deferredBodies = null;
+        }
+    }
+
+    private AbstractCompilationUnit
+    parseAbstractCompilationUnit2() throws CompileException, IOException {
+
         String     docComment = this.doc();
         Modifier[] modifiers  = this.parseModifiers();
 
@@ -927,7 +944,11 @@ class Parser {
                 throw this.compileException("Only access flag \"static\" allowed on initializer");
             }
 
-            Initializer initializer = new Initializer(this.location(), modifiers, this.parseBlock());
+            Initializer initializer = new Initializer(
+                this.location(),
+                modifiers,
+                this.deferredBodies != null ? this.parseDeferredBlock() : this.parseBlock()
+            );
 
             classDeclaration.addInitializer(initializer);
             return;
@@ -1257,7 +1278,7 @@ class Parser {
                     throw this.compileException("Modifier \"default\" not allowed on member enum declaration");
                 }
                 interfaceDeclaration.addMemberTypeDeclaration(
-                    (MemberTypeDeclaration) this.parseClassDeclarationRest(
+                    (MemberTypeDeclaration) this.parseEnumDeclarationRest(
                         docComment,                              // docComment
                         this.classModifiers(modifiers),          // modifiers
                         ClassDeclarationContext.TYPE_DECLARATION // context
@@ -1555,18 +1576,24 @@ class Parser {
         );
 
         List<BlockStatement> statements;
+        List<Token>          deferredBodyTokens = null;
         if (this.peekRead(";")) {
             statements = null;
         } else {
             if (Parser.hasAccessModifier(modifiers, "abstract", "native")) {
                 throw this.compileException("Abstract or native method must not have a body");
             }
-            this.read("{");
-            statements = this.parseBlockStatements();
-            this.read("}");
+            if (this.deferredBodies != null) {
+                deferredBodyTokens = this.readBlockTokens();
+                statements         = new ArrayList<>();
+            } else {
+                this.read("{");
+                statements = this.parseBlockStatements();
+                this.read("}");
+            }
         }
 
-        return new MethodDeclarator(
+        final MethodDeclarator result = new MethodDeclarator(
             location,         // location
             docComment,       // docComment
             (                 // modifiers
@@ -1586,6 +1613,23 @@ class Parser {
             defaultValue,     // defaultValue
             statements        // statements
         );
+
+        if (deferredBodyTokens != null) {
+            assert this.deferredBodies != null;
+            assert statements != null;
+
+            final List<BlockStatement> body = statements;
+            this.deferredBodies.add(new DeferredBody(deferredBodyTokens, this.sourceVersion, this.warningHandler) {
+
+                @Override void
+                setStatements(List<BlockStatement> statements) {
+                    body.addAll(statements);
+                    for (BlockStatement bs : statements) bs.setEnclosingScope(result);
+                }
+            });
+        }
+
+        return result;
     }
 
     private int
@@ -1841,6 +1885,111 @@ class Parser {
         return block;
     }
 
+    /**
+     * Reads the tokens of a block without parsing them, and records them in the {@link #deferredBodies}.
+     */
+    private Block
+    parseDeferredBlock() throws CompileException, IOException {
+
+        List<Token> tokens = this.readBlockTokens();
+
+        final Block result = new Block(((Token) tokens.get(0)).getLocation());
+
+        assert this.deferredBodies != null;
+        this.deferredBodies.add(new DeferredBody(tokens, this.sourceVersion, this.warningHandler) {
+
+            @Override void
+            setStatements(List<BlockStatement> statements) { result.addStatements(statements); }
+        });
+
+        return result;
+    }
+
+    /**
+     * Reads the tokens of a block, from the opening brace through the matching closing brace, without parsing them.
+     */
+    private List<Token>
+    readBlockTokens() throws CompileException, IOException {
+
+        List<Token> result = new ArrayList<>();
+
+        Token t = this.peek();
+        this.read("{");
+        result.add(t);
+
+        for (int depth = 1; depth > 0;) {
+            t = this.read();
+            if (t.type == TokenType.END_OF_INPUT) throw this.compileException("\"}\" expected");
+
+            if ("{".equals(t.value)) {
+                depth++;
+            } else
+            if ("}".equals(t.value)) {
+                depth--;
+            }
+            result.add(t);
+        }
+
+        return result;
+    }
+
+    /**
+     * The tokens of a method body or an initializer that {@link #parseAbstractCompilationUnit()} did not parse; see
+     * {@link #setMethodBodiesDeferred(boolean)}.
+     */
+    abstract static
+    class DeferredBody {
+
+        private final List<Token>              tokens;
+        private final int                      sourceVersion;
+        @Nullable private final WarningHandler warningHandler;
+
+        DeferredBody(List<Token> tokens, int sourceVersion, @Nullable WarningHandler warningHandler) {
+            this.tokens         = tokens;
+            this.sourceVersion  = sourceVersion;
+            this.warningHandler = warningHandler;
+        }
+
+        /**
+         * Parses the tokens, and passes the resulting statements to {@link #setStatements(List)}.
+         */
+        void
+        parse(@Nullable String fileName) throws CompileException {
+            try {
+                Scanner scanner = new Scanner(fileName, new StringReader(""));
+                Parser  parser  = new Parser(scanner, new TokenStreamImpl(scanner, this.tokens));
+                parser.setSourceVersion(this.sourceVersion);
+                parser.setWarningHandler(this.warningHandler);
+
+                parser.read("{");
+                List<BlockStatement> statements = parser.parseBlockStatements();
+                parser.read("}");
+
+                this.setStatements(statements);
+            } catch (IOException ioe) {
+                throw new InternalCompilerException("IOException despite StringReader", ioe);
+            }
+        }
+
+        /**
+         * Attaches the parsed statements to the method declarator or initializer block.
+         */
+        abstract void setStatements(List<BlockStatement> statements);
+    }
+
+    /**
+     * Parses the method bodies and initializers that {@link #parseAbstractCompilationUnit()} skipped (see {@link
+     * #setMethodBodiesDeferred(boolean)}), so that the compilation unit is complete. Does nothing if the compilation
+     * unit has no deferred bodies (anymore).
+     */
+    public static void
+    parseDeferredBodies(AbstractCompilationUnit acu) throws CompileException {
+        for (Iterator<DeferredBody> it = acu.deferredBodies.iterator(); it.hasNext();) {
+            ((DeferredBody) it.next()).parse(acu.fileName);
+            it.remove();
+        }
+    }
+
     /**
      * <pre>
      *   BlockStatements := { BlockStatement }
@@ -3959,6 +4108,32 @@ class Parser {
 
     private int sourceVersion = -1;
 
+    /**
+     * Iff {@code true}, then {@link #parseAbstractCompilationUnit()} does not parse the bodies of methods and the
+     * initializers, but only reads their tokens by matching the braces. This makes parsing considerably cheaper when
+     * only the declarations of the compilation unit are needed, e.g. for type-checking <em>other</em> compilation
+     * units.
+     * <p>
+     *   Until they are parsed with {@link #parseDeferredBodies(AbstractCompilationUnit)}, the method bodies and
+     *   initializers appear empty. {@link UnitCompiler#compileUnit(boolean, boolean, boolean,
+     *   UnitCompiler.ClassFileConsumer)} parses them automatically. (Constructor bodies are always parsed
+     *   immediately.)
+     * </p>
+     * <p>
+     *   The default is {@code false}.
+     * </p>
+     */
+    public void
+    setMethodBodiesDeferred(boolean value) { this.methodBodiesDeferred = value; }
+
+    private boolean methodBodiesDeferred;
+
+    /**
+     * Where the bodies go that {@link #parseAbstractCompilationUnit()} defers; non-{@code null} only while it is
+     * executing.
+     */
+    @Nullable private List<DeferredBody> deferredBodies;
+
     /**
      * By default, warnings are discarded, but an application my install a {@link WarningHandler}.
      * <p>
@@ -3978,6 +4153,19 @@ class Parser {
     // Used for elaborate warning handling.
     @Nullable private WarningHandler warningHandler;
 
+    /**
+     * Measures the time spent in the {@link Scanner}, iff this parser reads its tokens through the default {@link
+     * TokenStream}.
+     *
+     * @param phaseRecorder {@code null} disables measuring
+     */
+    void
+    setPhaseRecorder(@Nullable PhaseRecorder phaseRecorder) {
+        if (this.tokenStream instanceof TokenStreamImpl) {
+            ((TokenStreamImpl) this.tokenStream).setPhaseRecorder(phaseRecorder);
+        }
+    }
+
     private void
     warning(String handle, String message) throws CompileException {
         this.warning(handle, message, this.location());
@@ -0,0 +1,95 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino;
+
+import java.util.Arrays;
+
+import org.codehaus.commons.compiler.InternalCompilerException;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener.Phase;
+
+/**
+ * Measures the exclusive durations of the (possibly nested) {@link Phase}s of one compilation. Every {@link
+ * #begin(Phase)} must be followed by exactly one {@link #end()}, typically in a {@code finally} clause.
+ * <p>
+ *   Not thread-safe; a {@link PhaseRecorder} must only be used by one compilation at a time.
+ * </p>
+ */
+final
+class PhaseRecorder {
+
+    private static final Phase[] PHASES = Phase.values();
+
+    private final long[] nanos  = new long[PhaseRecorder.PHASES.length];
+    private final int[]  counts = new int[PhaseRecorder.PHASES.length];
+
+    private Phase[] stack = new Phase[8];
+    private int     depth;
+    private long    timestamp;
+
+    /**
+     * Enters the given <var>phase</var>; the time until the matching {@link #end()}, except the time spent in nested
+     * phases, is attributed to it.
+     */
+    void
+    begin(Phase phase) {
+
+        long now = System.nanoTime();
+        if (this.depth > 0) this.nanos[this.stack[this.depth - 1].ordinal()] += now - this.timestamp;
+
+        if (this.depth == this.stack.length) this.stack = (Phase[]) Arrays.copyOf(this.stack, 2 * this.depth);
+        this.stack[this.depth++] = phase;
+        this.counts[phase.ordinal()]++;
+        this.timestamp = now;
+    }
+
+    /**
+     * Leaves the phase that was most recently {@link #begin(Phase) entered}.
+     */
+    void
+    end() {
+
+        if (this.depth == 0) throw new InternalCompilerException("Unbalanced \"PhaseRecorder.end()\"");
+
+        long now = System.nanoTime();
+        this.nanos[this.stack[--this.depth].ordinal()] += now - this.timestamp;
+        this.timestamp = now;
+    }
+
+    /**
+     * Reports all phases that were executed since the previous report to the <var>listener</var>, and resets them.
+     */
+    void
+    report(@Nullable String fileName, CompilationListener listener) {
+        for (Phase phase : PhaseRecorder.PHASES) {
+            int i = phase.ordinal();
+            if (this.counts[i] == 0) continue;
+            listener.phaseCompleted(fileName, phase, this.counts[i], this.nanos[i]);
+            this.counts[i] = 0;
+            this.nanos[i]  = 0;
+        }
+    }
+}
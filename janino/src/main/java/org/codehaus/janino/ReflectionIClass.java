@@ -44,11 +44,17 @@ import org.codehaus.commons.nullanalysis.Nullable;
 
 /**
  * Wraps a {@link java.lang.Class} in an {@link org.codehaus.janino.IClass}.
+ * <p>
+ *   The reflection metadata of the wrapped class (its members, their descriptors and modifiers, and the values of its
+ *   constants) is retrieved only once per JVM and shared by all {@link ReflectionIClass}es, i.e. by all {@link
+ *   IClassLoader}s; see {@link ClassMetadata}.
+ * </p>
  */
 class ReflectionIClass extends IClass {
 
-    private final Class<?>     clazz;
-    private final IClassLoader iClassLoader;
+    private final Class<?>      clazz;
+    private final ClassMetadata metadata;
+    private final IClassLoader  iClassLoader;
 
     /**
      * @param iClassLoader Required to load other {@link IClass}es on {@code get...()}
@@ -56,6 +62,7 @@ class ReflectionIClass extends IClass {
     ReflectionIClass(Class<?> clazz, IClassLoader iClassLoader) {
         this.clazz        = clazz;
         clazz.getTypeParameters();
+        this.metadata     = (ClassMetadata) ReflectionIClass.METADATA.get(clazz);
         this.iClassLoader = iClassLoader;
     }
 
@@ -124,17 +131,17 @@ class ReflectionIClass extends IClass {
 
     @Override protected IConstructor[]
     getDeclaredIConstructors2() {
-        Constructor<?>[] constructors = this.clazz.getDeclaredConstructors();
+        Constructor<?>[] constructors = this.metadata.constructors;
         IConstructor[]   result       = new IConstructor[constructors.length];
         for (int i = 0; i < constructors.length; ++i) {
-            result[i] = new ReflectionIConstructor(constructors[i]);
+            result[i] = new ReflectionIConstructor(constructors[i], this.metadata.constructorDescriptors[i]);
         }
         return result;
     }
 
     @Override protected IMethod[]
     getDeclaredIMethods2() {
-        Method[] methods  = this.clazz.getDeclaredMethods();
+        Method[] methods  = this.metadata.methods;
 
         if (methods.length == 0 && this.clazz.isArray()) {
 
@@ -154,14 +161,23 @@ class ReflectionIClass extends IClass {
             } };
         }
 
-        return this.methodsToIMethods(methods);
+        IMethod[] result = new IMethod[methods.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = new ReflectionIMethod(methods[i], this.metadata.methodDescriptors[i]);
+        }
+        return result;
     }
 
     @Override protected IField[]
-    getDeclaredIFields2() { return this.fieldsToIFields(this.clazz.getDeclaredFields()); }
+    getDeclaredIFields2() {
+        Field[]  fields = this.metadata.fields;
+        IField[] result = new IField[fields.length];
+        for (int i = 0; i < fields.length; ++i) result[i] = new ReflectionIField(i);
+        return result;
+    }
 
     @Override protected IClass[]
-    getDeclaredIClasses2() { return this.classesToIClasses(this.clazz.getDeclaredClasses()); }
+    getDeclaredIClasses2() { return this.classesToIClasses(this.metadata.declaredClasses); }
 
     @Override @Nullable protected IClass
     getDeclaringIClass2() {
@@ -191,15 +207,15 @@ class ReflectionIClass extends IClass {
         return componentType == null ? null : this.classToIClass(componentType);
     }
 
-    @Override protected IClass[] getInterfaces2() { return this.classesToIClasses(this.clazz.getInterfaces()); }
-    @Override protected String   getDescriptor2() { return Descriptor.fromClassName(this.clazz.getName());     }
+    @Override protected IClass[] getInterfaces2() { return this.classesToIClasses(this.metadata.interfaces); }
+    @Override protected String   getDescriptor2() { return this.metadata.descriptor;                          }
 
-    @Override public Access  getAccess()   { return ReflectionIClass.modifiers2Access(this.clazz.getModifiers()); }
-    @Override public boolean isFinal()     { return Modifier.isFinal(this.clazz.getModifiers());                  }
-    @Override public boolean isEnum()      { return this.clazz.isEnum();                                          }
-    @Override public boolean isInterface() { return this.clazz.isInterface();                                     }
-    @Override public boolean isAbstract()  { return Modifier.isAbstract(this.clazz.getModifiers());               }
-    @Override public boolean isArray()     { return this.clazz.isArray();                                         }
+    @Override public Access  getAccess()   { return ReflectionIClass.modifiers2Access(this.metadata.modifiers); }
+    @Override public boolean isFinal()     { return Modifier.isFinal(this.metadata.modifiers);                  }
+    @Override public boolean isEnum()      { return this.clazz.isEnum();                                        }
+    @Override public boolean isInterface() { return this.clazz.isInterface();                                   }
+    @Override public boolean isAbstract()  { return Modifier.isAbstract(this.metadata.modifiers);               }
+    @Override public boolean isArray()     { return this.clazz.isArray();                                       }
 
     @Override public boolean
     isPrimitive() { return this.clazz.isPrimitive(); }
@@ -322,7 +338,10 @@ class ReflectionIClass extends IClass {
     private
     class ReflectionIConstructor extends IConstructor {
 
-        ReflectionIConstructor(Constructor<?> constructor) { this.constructor = constructor; }
+        ReflectionIConstructor(Constructor<?> constructor, MethodDescriptor descriptor) {
+            this.constructor = constructor;
+            this.descriptor  = descriptor;
+        }
 
         // Implement IMember.
         @Override public Access
@@ -382,27 +401,24 @@ class ReflectionIClass extends IClass {
         }
 
         @Override public MethodDescriptor
-        getDescriptor2() {
-            Class<?>[] parameterTypes       = this.constructor.getParameterTypes();
-            String[]   parameterDescriptors = new String[parameterTypes.length];
-            for (int i = 0; i < parameterDescriptors.length; ++i) {
-                parameterDescriptors[i] = Descriptor.fromClassName(parameterTypes[i].getName());
-            }
-            return new MethodDescriptor(Descriptor.VOID, parameterDescriptors);
-        }
+        getDescriptor2() { return this.descriptor; }
 
         @Override public IClass[]
         getThrownExceptions2() {
             return ReflectionIClass.this.classesToIClasses(this.constructor.getExceptionTypes());
         }
 
-        final Constructor<?> constructor;
+        final Constructor<?>           constructor;
+        private final MethodDescriptor descriptor;
     }
 
     public
     class ReflectionIMethod extends IMethod {
 
-        ReflectionIMethod(Method method) { this.method = method; }
+        ReflectionIMethod(Method method, MethodDescriptor descriptor) {
+            this.method     = method;
+            this.descriptor = descriptor;
+        }
 
         // Implement IMember.
         @Override public Access
@@ -447,13 +463,45 @@ class ReflectionIClass extends IClass {
         @Override public IClass[]
         getThrownExceptions2() { return ReflectionIClass.this.classesToIClasses(this.method.getExceptionTypes()); }
 
-        private final Method method;
+        @Override public String[]
+        getParameterTypeVariableNames() {
+            Type[]   gpts   = this.method.getGenericParameterTypes();
+            String[] result = new String[gpts.length];
+            for (int i = 0; i < gpts.length; i++) result[i] = ReflectionIClass.classTypeVariableName(gpts[i]);
+            return result;
+        }
+
+        @Override @Nullable public String
+        getReturnTypeVariableName() {
+            return ReflectionIClass.classTypeVariableName(this.method.getGenericReturnType());
+        }
+
+        @Override public MethodDescriptor
+        getDescriptor2() { return this.descriptor; }
+
+        private final Method           method;
+        private final MethodDescriptor descriptor;
+    }
+
+    /**
+     * @return The name of the <var>type</var>, iff it is a type variable declared by a class (and not by a method)
+     */
+    @Nullable private static String
+    classTypeVariableName(Type type) {
+        return (
+            type instanceof TypeVariable && ((TypeVariable<?>) type).getGenericDeclaration() instanceof Class
+            ? ((TypeVariable<?>) type).getName()
+            : null
+        );
     }
 
     private
     class ReflectionIField extends IField {
 
-        ReflectionIField(Field field) { this.field = field; }
+        ReflectionIField(int index) {
+            this.index = index;
+            this.field = ReflectionIClass.this.metadata.fields[index];
+        }
 
         // Implement IMember.
         @Override public Access
@@ -494,28 +542,13 @@ class ReflectionIClass extends IClass {
          *   Notice that enum constants are <em>not</em> constant expression (despite the similarity of names).
          * </p>
          */
-        @Override public Object
+        @Override @Nullable public Object
         getConstantValue() throws CompileException {
-            int      mod   = this.field.getModifiers();
-            Class<?> clazz = this.field.getType();
-            if (
-                Modifier.isStatic(mod)
-                && Modifier.isFinal(mod)
-                && (clazz.isPrimitive() || clazz == String.class)
-            ) {
-                try {
-                    return this.field.get(null);
-                } catch (IllegalAccessException ex) {
-                    throw new CompileException( // SUPPRESS CHECKSTYLE AvoidHidingCause
-                        "Field \"" + this.field.getName() + "\" is not accessible",
-                        (Location) null
-                    );
-                }
-            }
-            return IClass.NOT_CONSTANT;
+            return ReflectionIClass.this.metadata.getConstantValue(this.index);
         }
 
-        final Field field;
+        private final int index;
+        final Field       field;
     }
 
     /**
@@ -549,22 +582,130 @@ class ReflectionIClass extends IClass {
         return result;
     }
 
-    private IMethod[]
-    methodsToIMethods(Method[] methods) {
+    /**
+     * Maps each {@link Class} to its {@link ClassMetadata}. Notice that a {@link ClassValue} does not prevent the
+     * class (and its class loader) from being garbage-collected.
+     */
+    private static final ClassValue<ClassMetadata>
+    METADATA = new ClassValue<ClassMetadata>() {
 
-        IMethod[] result = new IMethod[methods.length];
-        for (int i = 0; i < result.length; i++) result[i] = new ReflectionIMethod(methods[i]);
+        @Override protected ClassMetadata
+        computeValue(@Nullable Class<?> type) {
+            assert type != null;
+            return new ClassMetadata(type);
+        }
+    };
 
-        return result;
-    }
+    /**
+     * The immutable reflection metadata of one {@link Class}. Retrieving this information through the reflection API
+     * is relatively expensive, because each invocation of e.g. {@link Class#getDeclaredMethods()} copies all the
+     * {@link Method} objects.
+     */
+    static final
+    class ClassMetadata {
+
+        final String             descriptor;
+        final int                modifiers;
+        final Class<?>[]         interfaces;
+        final Class<?>[]         declaredClasses;
+        final Constructor<?>[]   constructors;
+        final MethodDescriptor[] constructorDescriptors;
+        final Method[]           methods;
+        final MethodDescriptor[] methodDescriptors;
+        final Field[]            fields;
 
-    private IField[]
-    fieldsToIFields(Field[] fields) {
+        /**
+         * The lazily computed constant values of the {@link #fields}; {@code null} means "not yet computed". (Computing
+         * them eagerly would initialize the class.) Races are benign, because the values are immutable and always the
+         * same.
+         */
+        private final Object[] constantValues;
+
+        ClassMetadata(Class<?> clazz) {
+            this.descriptor      = Descriptor.fromClassName(clazz.getName());
+            this.modifiers       = clazz.getModifiers();
+            this.interfaces      = clazz.getInterfaces();
+            this.declaredClasses = clazz.getDeclaredClasses();
+
+            this.constructors           = clazz.getDeclaredConstructors();
+            this.constructorDescriptors = new MethodDescriptor[this.constructors.length];
+            for (int i = 0; i < this.constructors.length; i++) {
+                this.constructorDescriptors[i] = new MethodDescriptor(
+                    Descriptor.VOID,
+                    ClassMetadata.getDescriptors(this.constructors[i].getParameterTypes())
+                );
+            }
 
-        IField[] result = new IField[fields.length];
-        for (int i = 0; i < fields.length; ++i) result[i] = new ReflectionIField(fields[i]);
+            this.methods           = clazz.getDeclaredMethods();
+            this.methodDescriptors = new MethodDescriptor[this.methods.length];
+            for (int i = 0; i < this.methods.length; i++) {
+                Method m = this.methods[i];
+                this.methodDescriptors[i] = new MethodDescriptor(
+                    Descriptor.fromClassName(m.getReturnType().getName()),
+                    ClassMetadata.getDescriptors(m.getParameterTypes())
+                );
+            }
 
-        return result;
+            this.fields         = clazz.getDeclaredFields();
+            this.constantValues = new Object[this.fields.length];
+        }
+
+        /**
+         * This implementation of {@link IClass.IField#getConstantValue()} is not completely correct:
+         * <ul>
+         *   <li>
+         *     It treats non-static fields as non-constant
+         *   </li>
+         *   <li>
+         *     Even fields with a <em>non-constant</em> initializer are identified as constant. (The value of that
+         *     field may be different in a different JVM instance -- the classical example is {@link
+         *     java.io.File#separator}.)
+         *   </li>
+         * </ul>
+         * <p>
+         *   Notice that enum constants are <em>not</em> constant expression (despite the similarity of names).
+         * </p>
+         *
+         * @return The value of the constant field with the given index, or {@link IClass#NOT_CONSTANT}
+         */
+        @Nullable Object
+        getConstantValue(int index) throws CompileException {
+
+            Object result = this.constantValues[index];
+            if (result == null) {
+                result = IClass.NOT_CONSTANT;
+
+                Field    field = this.fields[index];
+                int      mod   = field.getModifiers();
+                Class<?> type  = field.getType();
+                if (
+                    Modifier.isStatic(mod)
+                    && Modifier.isFinal(mod)
+                    && (type.isPrimitive() || type == String.class)
+                ) {
+                    try {
+                        result = field.get(null);
+                    } catch (IllegalAccessException ex) {
+                        throw new CompileException( // SUPPRESS CHECKSTYLE AvoidHidingCause
+                            "Field \"" + field.getName() + "\" is not accessible",
+                            (Location) null
+                        );
+                    }
+                    if (result == null) result = ClassMetadata.NULL;
+                }
+                this.constantValues[index] = result;
+            }
+
+            return result == ClassMetadata.NULL ? null : result;
+        }
+        private static final Object NULL = new Object();
+
+        private static String[]
+        getDescriptors(Class<?>[] classes) {
+            String[] result = new String[classes.length];
+            for (int i = 0; i < classes.length; i++) result[i] = Descriptor.fromClassName(classes[i].getName());
+            return result;
+        }
     }
 
     private static Access
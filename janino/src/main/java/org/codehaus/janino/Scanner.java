@@ -252,10 +252,24 @@ class Scanner {
     close() throws IOException { this.in.close(); }
 
     /**
-     * @return The {@link Location} of the previously read (or peeked) token.
+     * @return The {@link Location} of the previously read (or peeked) token; repeated invocations for the same token
+     *         return the same object
      */
     public Location
-    location() { return new Location(this.fileName, this.tokenLineNumber, this.tokenColumnNumber); }
+    location() {
+
+        if (this.tokenLocation != null) return this.tokenLocation;
+
+        return (this.tokenLocation = new Location(this.fileName, this.tokenLineNumber, this.tokenColumnNumber));
+    }
+
+    /**
+     * @return The line number and the column number of the previously read (or peeked) token, packed into one {@code
+     *         long} (line number in the upper 32 bits); equivalent with {@link #location()}, but does not create a
+     *         {@link Location}
+     */
+    public long
+    lineAndColumn() { return (long) this.tokenLineNumber << 32 | (this.tokenColumnNumber & 0xffffffffL); }
 
     private Token
     token(TokenType type, String value) {
@@ -286,6 +300,7 @@ class Scanner {
 
         this.tokenLineNumber   = this.nextCharLineNumber;
         this.tokenColumnNumber = this.nextCharColumnNumber;
+        this.tokenLocation     = null;
 
         this.sb.setLength(0);
 
@@ -814,6 +829,11 @@ class Scanner {
      */
     private int tokenColumnNumber;
 
+    /**
+     * The {@link Location} of the previously produced token, created lazily by {@link #location()}.
+     */
+    @Nullable private Location tokenLocation;
+
     private static final Set<String> JAVA_KEYWORDS = new HashSet<>(Arrays.asList(
 
         // SUPPRESS CHECKSTYLE WrapMethod:16
@@ -41,6 +41,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Cookable;
@@ -180,6 +182,99 @@ class ScriptEvaluator extends MultiCookable implements IScriptEvaluator {
         return this;
     }
 
+    /**
+     * @see SimpleCompiler#setBytecodeCache(BytecodeCache)
+     */
+    public void
+    setBytecodeCache(@Nullable BytecodeCache bytecodeCache) { this.cbe.setBytecodeCache(bytecodeCache); }
+
+    /**
+     * @see SimpleCompiler#setCanonicalizeClasses(boolean)
+     */
+    public void
+    setCanonicalizeClasses(boolean value) { this.cbe.setCanonicalizeClasses(value); }
+
+    /**
+     * @see SimpleCompiler#setCompileTimeSandbox(CompileTimeSandbox)
+     */
+    public void
+    setCompileTimeSandbox(@Nullable CompileTimeSandbox sandbox) { this.cbe.setCompileTimeSandbox(sandbox); }
+
+    /**
+     * @see SimpleCompiler#setCompilationListener(CompilationListener)
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener listener) { this.cbe.setCompilationListener(listener); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the {@link CookExecutor#getDefault() default cook executor}.
+     *
+     * @see #cookAsync(CookExecutor, String)
+     */
+    public Future<Method>
+    cookAsync(String source) { return this.cookAsync(CookExecutor.getDefault(), source); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the <var>cookExecutor</var>. Iff the compilation fails, then
+     * {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException} that wraps the {@link
+     * CompileException}. This object must not be used in any way until the returned {@link Future} is done.
+     *
+     * @return A {@link Future} of the {@link #getMethod() generated method}
+     * @throws java.util.concurrent.RejectedExecutionException The <var>cookExecutor</var> is saturated or shut down
+     */
+    public Future<Method>
+    cookAsync(CookExecutor cookExecutor, final String source) {
+        return cookExecutor.submit(new Callable<Method>() {
+
+            @Override public Method
+            call() throws CompileException {
+                ScriptEvaluator.this.cook(source);
+                return ScriptEvaluator.this.getMethod();
+            }
+        });
+    }
+
+    /**
+     * Creates the fast evaluator in a thread of the {@link CookExecutor#getDefault() default cook executor}.
+     *
+     * @see #createFastEvaluatorAsync(CookExecutor, String, Class, String[])
+     */
+    public <T> Future<T>
+    createFastEvaluatorAsync(String script, Class<T> interfaceToImplement, String... parameterNames) {
+        return this.createFastEvaluatorAsync(CookExecutor.getDefault(), script, interfaceToImplement, parameterNames);
+    }
+
+    /**
+     * Does the same as {@link #createFastEvaluator(String, Class, String[])}, but in a thread of the
+     * <var>cookExecutor</var>. Iff the compilation fails, then {@link Future#get()} throws an {@link
+     * java.util.concurrent.ExecutionException} that wraps the {@link CompileException}. This object must not be used
+     * in any way until the returned {@link Future} is done.
+     *
+     * @return A {@link Future} of the fast evaluator
+     * @throws java.util.concurrent.RejectedExecutionException The <var>cookExecutor</var> is saturated or shut down
+     */
+    public <T> Future<T>
+    createFastEvaluatorAsync(
+        CookExecutor    cookExecutor,
+        final String    script,
+        final Class<T>  interfaceToImplement,
+        final String... parameterNames
+    ) {
+        return cookExecutor.submit(new Callable<T>() {
+
+            @Override public T
+            call() throws CompileException {
+                return ScriptEvaluator.this.<T>createFastEvaluator(script, interfaceToImplement, parameterNames);
+            }
+        });
+    }
+
+    /**
+     * @see SimpleCompiler#startPhaseRecording()
+     */
+    @Nullable PhaseRecorder
+    startPhaseRecording() { return this.cbe.startPhaseRecording(); }
+
     /**
      * @throws IllegalArgumentException <var>count</var> is different from previous invocations of
      *                                  this method
@@ -690,24 +785,35 @@ class ScriptEvaluator extends MultiCookable implements IScriptEvaluator {
 
         final Parser parser = count == 1 ? parsers[0] : null;
 
-        // Create compilation unit.
-        Java.AbstractCompilationUnit.ImportDeclaration[]
-        importDeclarations = this.parseImports(parser);
+        PhaseRecorder pr = this.startPhaseRecording();
+        for (Parser p : parsers) p.setPhaseRecorder(pr);
 
-        Java.BlockStatement[][]   statementss   = new Java.BlockStatement[count][];
-        Java.MethodDeclarator[][] localMethodss = new Java.MethodDeclarator[count][];
+        Java.AbstractCompilationUnit.ImportDeclaration[] importDeclarations;
+        Java.BlockStatement[][]                          statementss   = new Java.BlockStatement[count][];
+        Java.MethodDeclarator[][]                        localMethodss = new Java.MethodDeclarator[count][];
 
-        // Create methods with one block each.
-        for (int i = 0; i < count; ++i) {
+        if (pr != null) pr.begin(CompilationListener.Phase.PARSE);
+        try {
+
+            // Create compilation unit.
+            importDeclarations = this.parseImports(parser);
 
-            // Create the statements of the method.
-            List<Java.BlockStatement>   statements   = new ArrayList<>();
-            List<Java.MethodDeclarator> localMethods = new ArrayList<>();
+            // Create methods with one block each.
+            for (int i = 0; i < count; ++i) {
 
-            this.makeStatements(i, parsers[i], statements, localMethods);
+                // Create the statements of the method.
+                List<Java.BlockStatement>   statements   = new ArrayList<>();
+                List<Java.MethodDeclarator> localMethods = new ArrayList<>();
 
-            statementss[i]   = (BlockStatement[])   statements.toArray(new Java.BlockStatement[statements.size()]);
-            localMethodss[i] = (MethodDeclarator[]) localMethods.toArray(new Java.MethodDeclarator[localMethods.size()]);
+                this.makeStatements(i, parsers[i], statements, localMethods);
+
+                statementss[i]   = (BlockStatement[]) statements.toArray(new Java.BlockStatement[statements.size()]);
+                localMethodss[i] = (MethodDeclarator[]) localMethods.toArray(
+                    new Java.MethodDeclarator[localMethods.size()]
+                );
+            }
+        } finally {
+            if (pr != null) pr.end();
         }
 
         this.cook(
@@ -33,11 +33,14 @@ import java.lang.reflect.Method;
 import java.security.AccessController;
 import java.security.PrivilegedAction;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 import org.codehaus.commons.compiler.CompileException;
@@ -69,6 +72,17 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
     private static final Logger LOGGER = Logger.getLogger(SimpleCompiler.class.getName());
 
+    /**
+     * Reports the phases of all compilations to Java Flight Recorder iff the system property "{@code
+     * org.codehaus.janino.SimpleCompiler.jfr}" is {@code true}.
+     */
+    @Nullable private static final CompilationListener
+    JFR_COMPILATION_LISTENER = (
+        SystemProperties.getBooleanClassProperty(SimpleCompiler.class, "jfr")
+        ? new JfrCompilationListener()
+        : null
+    );
+
     private ClassLoader parentClassLoader = Thread.currentThread().getContextClassLoader();
 
     // Set while "cook()"ing.
@@ -86,6 +100,22 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
     private EnumSet<JaninoOption> options = EnumSet.noneOf(JaninoOption.class);
 
+    @Nullable private BytecodeCache       bytecodeCache;
+    @Nullable private CompileTimeSandbox  compileTimeSandbox;
+    @Nullable private CompilationListener compilationListener;
+
+    private boolean canonicalizeClasses = SystemProperties.getBooleanClassProperty(
+        SimpleCompiler.class,
+        "canonicalizeClasses"
+    );
+
+    // Set while "cook()"ing, iff a compilation listener is configured.
+    @Nullable private PhaseRecorder phaseRecorder;
+    private long                    cookStartNanos;
+
+    // The name of the compilation unit; for reporting the phases that happen after cooking.
+    @Nullable private String fileName;
+
     /**
      * {@code Null} before cooking, non-{@code null} after cooking.
      */
@@ -226,19 +256,35 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
     public void
     cook(Scanner scanner) throws CompileException, IOException {
 
-        Parser parser = new Parser(scanner);
-        parser.setSourceVersion(this.sourceVersion);
-        parser.setWarningHandler(this.warningHandler);
-
-        AbstractCompilationUnit acu;
+        CompilationListener cl = this.getEffectiveCompilationListener();
+        PhaseRecorder       pr = this.startPhaseRecording();
         try {
-            acu = parser.parseAbstractCompilationUnit();
-        } catch (CompileException ce) {
-            this.classFiles = Collections.emptyList(); // Mark this SimpleCompiler as "cooked".
-            throw ce;
-        }
 
-        this.compileToClassLoader(acu);
+            Parser parser = new Parser(scanner);
+            parser.setSourceVersion(this.sourceVersion);
+            parser.setWarningHandler(this.warningHandler);
+            parser.setPhaseRecorder(pr);
+
+            AbstractCompilationUnit acu;
+            if (pr != null) pr.begin(CompilationListener.Phase.PARSE);
+            try {
+                acu = parser.parseAbstractCompilationUnit();
+            } catch (CompileException ce) {
+                this.classFiles = Collections.emptyList(); // Mark this SimpleCompiler as "cooked".
+                if (pr != null) {
+                    pr.end();
+                    assert cl != null;
+                    pr.report(scanner.getFileName(), cl);
+                }
+                throw ce;
+            }
+            if (pr != null) pr.end();
+
+            this.compileToClassLoader(acu);
+        } finally {
+            this.phaseRecorder  = null;
+            this.cookStartNanos = 0;
+        }
     }
 
     /**
@@ -251,14 +297,84 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
         this.assertUncooked();
 
+        long startNanos = this.cookStartNanos != 0 ? this.cookStartNanos : System.nanoTime();
+
+        this.fileName = abstractCompilationUnit.fileName;
+
+        CompilationListener cl = this.getEffectiveCompilationListener();
+        PhaseRecorder       pr = this.phaseRecorder;
+        if (cl != null && pr == null) pr = new PhaseRecorder();
+
         IClassLoader icl = (this.classLoaderIClassLoader = new ClassLoaderIClassLoader(this.parentClassLoader));
+        icl.setPhaseRecorder(pr);
+
+        // Non-null iff this compilation is registered as "in flight" with a cook executor.
+        CookExecutor cookExecutor = null;
+        Object       inFlightKey  = null;
+
+        // Non-null iff the compilation succeeded.
+        Map<String, byte[]> result = null;
+
+        // Whether the compilation unit was actually compiled (and not loaded from the cache or shared).
+        boolean compiled = false;
         try {
 
+            // Check the bytecode cache. (Notice that computing the cache key requires the "classLoaderIClassLoader",
+            // because it resolves the types created by "classToType()".)
+            String        options  = (
+                "debugSource=" + this.debugSource
+                + ", debugLines=" + this.debugLines
+                + ", debugVars=" + this.debugVars
+                + ", targetVersion=" + this.targetVersion
+                + ", options=" + this.options
+                + ", sandbox=" + this.compileTimeSandbox
+            );
+            BytecodeCache bc       = this.bytecodeCache;
+            String        cacheKey = null;
+            if (bc != null) {
+                cacheKey = bc.key(
+                    abstractCompilationUnit,
+                    this.debugSource || this.debugLines,
+                    options,
+                    this.parentClassLoader
+                );
+
+                Map<String, byte[]> bytecodes = bc.get(cacheKey);
+                if (bytecodes != null) {
+                    CompilerStatistics.INSTANCE.bytecodeCacheHit();
+                    this.getBytecodesCache = bytecodes;
+                    this.classFiles        = Collections.emptyList();
+                    return;
+                }
+            }
+
+            // When cooking asynchronously, share the result of an identical compilation that is in flight.
+            CookExecutor ce = CookExecutor.current();
+            if (ce != null) {
+                Object key = Arrays.asList(
+                    BytecodeCache.canonicalForm(abstractCompilationUnit, this.debugSource || this.debugLines),
+                    options,
+                    this.parentClassLoader
+                );
+
+                Map<String, byte[]> bytecodes = ce.join(key);
+                if (bytecodes != null) {
+                    this.getBytecodesCache = bytecodes;
+                    this.classFiles        = Collections.emptyList();
+                    return;
+                }
+                cookExecutor = ce;
+                inFlightKey  = key;
+            }
+
             // Compile compilation unit to class files.
+            compiled = true;
             UnitCompiler unitCompiler = new UnitCompiler(abstractCompilationUnit, icl).options(this.options);
             unitCompiler.setTargetVersion(this.targetVersion);
+            unitCompiler.setCompileTimeSandbox(this.compileTimeSandbox);
             unitCompiler.setCompileErrorHandler(this.compileErrorHandler);
             unitCompiler.setWarningHandler(this.warningHandler);
+            unitCompiler.setPhaseRecorder(pr);
 
             final Collection<ClassFile> cfs = new ArrayList<>();
             unitCompiler.compileUnit(this.debugSource, this.debugLines, this.debugVars, new ClassFileConsumer() {
@@ -275,16 +391,43 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
             });
 
             this.classFiles = cfs;
+
+            Map<String, byte[]> bytecodes = this.getBytecodes();
+            if (bc != null) {
+                assert cacheKey != null;
+                bc.put(cacheKey, bytecodes);
+            }
+            result = bytecodes;
         } catch (CompileException ce) {
             this.classFiles = Collections.emptyList(); // Mark this SimpleCompiler as "cooked".
             throw ce;
         } finally {
+            if (cookExecutor != null) {
+                assert inFlightKey != null;
+                cookExecutor.completed(inFlightKey, result);
+            }
+
             this.classLoaderIClassLoader = null;
+            this.phaseRecorder           = null;
+            this.cookStartNanos          = 0;
+
+            if (compiled) {
+                CompilerStatistics.INSTANCE.compiled(
+                    System.nanoTime() - startNanos,
+                    icl.getIClassCacheHits(),
+                    icl.getIClassCacheMisses()
+                );
+            }
+            if (pr != null) {
+                assert cl != null;
+                pr.report(this.fileName, cl);
+            }
         }
     }
 
     /**
-     * @return The {@link ClassFile}s that were generated during cooking
+     * @return The {@link ClassFile}s that were generated during cooking; empty if the bytecode was loaded from the
+     *         {@link #setBytecodeCache(BytecodeCache) bytecode cache}
      */
     public ClassFile[]
     getClassFiles() {
@@ -318,9 +461,27 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
     private Map<String /*className*/, byte[] /*bytecode*/>
     getBytecodes2() {
 
-        Map<String /*className*/, byte[] /*bytecode*/> result = new HashMap<>();
-        for (ClassFile cf : this.getClassFiles()) {
-            result.put(cf.getThisClassName(), cf.toByteArray());
+        ClassFile[] cfs        = this.getClassFiles();
+        long        startNanos = System.nanoTime();
+
+        Map<String /*className*/, byte[] /*bytecode*/> result    = new HashMap<>();
+        int                                            byteCount = 0;
+        for (ClassFile cf : cfs) {
+            byte[] ba = cf.toByteArray();
+            result.put(cf.getThisClassName(), ba);
+            byteCount += ba.length;
+        }
+
+        CompilerStatistics.INSTANCE.serialized(byteCount);
+
+        CompilationListener cl = this.getEffectiveCompilationListener();
+        if (cl != null && cfs.length > 0) {
+            cl.phaseCompleted(
+                this.fileName,
+                CompilationListener.Phase.CLASS_FILE_SERIALIZATION,
+                cfs.length,
+                System.nanoTime() - startNanos
+            );
         }
 
         return result;
@@ -329,14 +490,22 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
     @Override public ClassLoader
     getClassLoader() {
         if (this.getClassLoaderCache != null) return this.getClassLoaderCache;
-        return (this.getClassLoaderCache = this.getClassLoader2());
+
+        ClassLoader result = this.getClassLoader2();
+        if (this.canonicalizeClasses) {
+            result = CanonicalClassLoaders.canonicalize(this.parentClassLoader, this.getBytecodes(), result);
+        }
+
+        return (this.getClassLoaderCache = result);
     }
     @Nullable private ClassLoader getClassLoaderCache;
 
     private ClassLoader
     getClassLoader2() {
 
-        final Map<String, byte[]> bytecode = this.getBytecodes();
+        final Map<String, byte[]>           bytecode = this.getBytecodes();
+        @Nullable final CompilationListener cl       = this.getEffectiveCompilationListener();
+        @Nullable final String              fileName = this.fileName;
 
         // Create a ClassLoader that loads the generated classes.
         return (ClassLoader) AccessController.doPrivileged(new PrivilegedAction<ClassLoader>() {
@@ -346,7 +515,27 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
                 return new ByteArrayClassLoader(
                     bytecode,                             // classes
                     SimpleCompiler.this.parentClassLoader // parent
-                );
+                ) {
+
+                    @Override protected Class<?>
+                    findClass(@Nullable String name) throws ClassNotFoundException {
+
+                        long     startNanos = System.nanoTime();
+                        Class<?> result     = super.findClass(name);
+
+                        CompilerStatistics.INSTANCE.classDefined();
+                        if (cl != null) {
+                            cl.phaseCompleted(
+                                fileName,
+                                CompilationListener.Phase.CLASS_DEFINITION,
+                                1,
+                                System.nanoTime() - startNanos
+                            );
+                        }
+
+                        return result;
+                    }
+                };
             }
         });
     }
@@ -367,7 +556,19 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
 
         if (this.getClass() != that.getClass()) return false;
 
-        return this.assertCooked().equals(that.assertCooked());
+        Collection<ClassFile> thisClassFiles = this.assertCooked(), thatClassFiles = that.assertCooked();
+
+        // Bytecode that was loaded from the bytecode cache has no class files; compare the bytecode instead.
+        if (thisClassFiles.isEmpty() || thatClassFiles.isEmpty()) {
+            Map<String, byte[]> thisBytecodes = this.getBytecodes(), thatBytecodes = that.getBytecodes();
+            if (!thisBytecodes.keySet().equals(thatBytecodes.keySet())) return false;
+            for (Map.Entry<String, byte[]> me : thisBytecodes.entrySet()) {
+                if (!Arrays.equals((byte[]) me.getValue(), (byte[]) thatBytecodes.get(me.getKey()))) return false;
+            }
+            return true;
+        }
+
+        return thisClassFiles.equals(thatClassFiles);
     }
 
     @Override public int
@@ -399,6 +600,117 @@ class SimpleCompiler extends Cookable implements ISimpleCompiler {
         return this;
     }
 
+    /**
+     * Sets the cache that is checked before each compilation, and that receives the bytecode after each compilation.
+     *
+     * @param bytecodeCache {@code null} disables caching (which is the default)
+     */
+    public void
+    setBytecodeCache(@Nullable BytecodeCache bytecodeCache) { this.bytecodeCache = bytecodeCache; }
+
+    /**
+     * Iff {@code true}, then {@link #getClassLoader()} returns the class loader of a previous compilation <em>in this
+     * JVM</em> that generated byte-identical classes (with the same parent class loader), if any, so that the same
+     * {@link Class} objects are reused instead of being defined again. This saves Metaspace and JIT effort when the
+     * same code is cooked many times.
+     * <p>
+     *   Notice that the reused classes share their static fields, and that the {@link CompilationListener} of the
+     *   previous compilation is notified when the classes are defined.
+     * </p>
+     * <p>
+     *   The default is the value of the system property "{@code
+     *   org.codehaus.janino.SimpleCompiler.canonicalizeClasses}", or {@code false}.
+     * </p>
+     */
+    public void
+    setCanonicalizeClasses(boolean value) { this.canonicalizeClasses = value; }
+
+    /**
+     * Restricts the classes, methods, fields and constructors that the compiled code may reference. Other than the
+     * {@link org.codehaus.commons.compiler.Sandbox}, this imposes no overhead on the execution of the generated code.
+     *
+     * @param sandbox {@code null} permits all references (which is the default)
+     * @see           UnitCompiler#setCompileTimeSandbox(CompileTimeSandbox)
+     */
+    public void
+    setCompileTimeSandbox(@Nullable CompileTimeSandbox sandbox) { this.compileTimeSandbox = sandbox; }
+
+    /**
+     * Reports the durations of the phases of the compilation to the given <var>listener</var>. If the system property
+     * "{@code org.codehaus.janino.SimpleCompiler.jfr}" is {@code true}, then the phases are <em>also</em> reported
+     * to Java Flight Recorder.
+     *
+     * @param listener {@code null} disables the reporting (which is the default)
+     * @see            CompilerStatistics
+     */
+    public void
+    setCompilationListener(@Nullable CompilationListener listener) { this.compilationListener = listener; }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the {@link CookExecutor#getDefault() default cook executor}.
+     *
+     * @see #cookAsync(CookExecutor, String)
+     */
+    public Future<ClassLoader>
+    cookAsync(String source) { return this.cookAsync(CookExecutor.getDefault(), source); }
+
+    /**
+     * Cooks the given <var>source</var> in a thread of the <var>cookExecutor</var>. Iff the compilation fails, then
+     * {@link Future#get()} throws an {@link java.util.concurrent.ExecutionException} that wraps the {@link
+     * CompileException}. This object must not be used in any way until the returned {@link Future} is done.
+     *
+     * @return A {@link Future} of the {@link #getClassLoader() class loader} of the compiled classes
+     * @throws java.util.concurrent.RejectedExecutionException The <var>cookExecutor</var> is saturated or shut down
+     */
+    public Future<ClassLoader>
+    cookAsync(CookExecutor cookExecutor, final String source) {
+        return cookExecutor.submit(new Callable<ClassLoader>() {
+
+            @Override public ClassLoader
+            call() throws CompileException {
+                SimpleCompiler.this.cook(source);
+                return SimpleCompiler.this.getClassLoader();
+            }
+        });
+    }
+
+    /**
+     * Notifies this {@link SimpleCompiler} that parsing begins, so that the parse time counts as compilation time,
+     * and the parse phases are reported together with the other phases by the next {@link
+     * #cook(Java.AbstractCompilationUnit)}.
+     *
+     * @return The {@link PhaseRecorder} to measure the parse phases with, or {@code null} iff no {@link
+     *         CompilationListener} is configured
+     */
+    @Nullable PhaseRecorder
+    startPhaseRecording() {
+
+        this.cookStartNanos = System.nanoTime();
+
+        return (
+            this.getEffectiveCompilationListener() == null
+            ? (this.phaseRecorder = null)
+            : (this.phaseRecorder = new PhaseRecorder())
+        );
+    }
+
+    @Nullable private CompilationListener
+    getEffectiveCompilationListener() {
+
+        final CompilationListener cl1 = this.compilationListener, cl2 = SimpleCompiler.JFR_COMPILATION_LISTENER;
+        if (cl1 == null) return cl2;
+        if (cl2 == null) return cl1;
+
+        return new CompilationListener() {
+
+            @Override public void
+            phaseCompleted(@Nullable String fileName, Phase phase, int count, long durationNanos) {
+                cl1.phaseCompleted(fileName, phase, count, durationNanos);
+                cl2.phaseCompleted(fileName, phase, count, durationNanos);
+            }
+        };
+    }
+
     /**
      * Wraps a reflection {@link Class} in a {@link Java.Type} object.
      */
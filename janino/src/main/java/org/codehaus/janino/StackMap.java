@@ -31,17 +31,63 @@ import org.codehaus.commons.compiler.InternalCompilerException;
 import org.codehaus.commons.nullanalysis.Nullable;
 import org.codehaus.janino.util.ClassFile.StackMapTableAttribute.VerificationTypeInfo;
 
+/**
+ * An immutable pair of a local variable stack and an operand stack.
+ * <p>
+ *   Both stacks are represented as singly linked lists that start at the top element; a "push" or "pop" creates a new
+ *   {@link StackMap} that shares all other elements with the original one. Thus the stack map that the {@link
+ *   CodeContext} maintains for practically every instruction costs only one or two small objects, and the stacks are
+ *   materialized as arrays only where a complete frame is needed (at branch targets and in the "StackMapTable"
+ *   attribute).
+ * </p>
+ */
 class StackMap {
 
     /**
-     * Elements are never changed. Notice that, according to the JVMS, each local variable or operend, including those
-     * of type LONG and DOUBLE, is represented by <em>one</em> {@link VerificationTypeInfo} object
+     * One element of a stack, together with all elements below it. Elements are never changed. Notice that,
+     * according to the JVMS, each local variable or operand, including those of type LONG and DOUBLE, is represented
+     * by <em>one</em> {@link VerificationTypeInfo} object.
      */
-    private final VerificationTypeInfo[] locals, operands;
+    private static final
+    class Element {
+
+        final VerificationTypeInfo vti;
+        @Nullable final Element    below;
+
+        /**
+         * The number of elements in the stack, including this one.
+         */
+        final int size;
+
+        /**
+         * The sum of the {@link VerificationTypeInfo#category() categories} of the elements, including this one.
+         */
+        final int categories;
+
+        /**
+         * Consistent with {@link Arrays#hashCode(Object[])} of the stack, materialized as an array.
+         */
+        final int hashCode;
+
+        Element(VerificationTypeInfo vti, @Nullable Element below) {
+            this.vti        = vti;
+            this.below      = below;
+            this.size       = below == null ? 1 : below.size + 1;
+            this.categories = (below == null ? 0 : below.categories) + vti.category();
+            this.hashCode   = 31 * (below == null ? 1 : below.hashCode) + vti.hashCode();
+        }
+    }
+
+    @Nullable private final Element locals, operands;
 
     StackMap(VerificationTypeInfo[] locals, VerificationTypeInfo[] operands) {
-        this.locals    = (VerificationTypeInfo[]) locals.clone();
-        this.operands  = (VerificationTypeInfo[]) operands.clone();
+        this(StackMap.toElement(locals), StackMap.toElement(operands));
+    }
+
+    private
+    StackMap(@Nullable Element locals, @Nullable Element operands) {
+        this.locals   = locals;
+        this.operands = operands;
     }
 
     // -----------------------
@@ -51,24 +97,46 @@ class StackMap {
      *         operand stack
      */
     StackMap
-    pushLocal(VerificationTypeInfo local) {
-        return new StackMap(StackMap.addToArray(this.locals, local), this.operands);
-    }
+    pushLocal(VerificationTypeInfo local) { return new StackMap(new Element(local, this.locals), this.operands); }
 
     /**
      * @return A {@link StackMap} with a local variable stack with one element less, and the same operand stack
      */
     StackMap
-    popLocal() { return new StackMap(StackMap.removeLastFromArray(this.locals), this.operands); }
+    popLocal() {
+        Element l = this.locals;
+        if (l == null) throw new InternalCompilerException("Local variable stack underflow");
+        return new StackMap(l.below, this.operands);
+    }
 
     /**
      * @return The top element of the local variable stack
      */
     VerificationTypeInfo
-    peekLocal() { return this.locals[this.locals.length - 1]; }
+    peekLocal() {
+        Element l = this.locals;
+        if (l == null) throw new InternalCompilerException("Local variable stack underflow");
+        return l.vti;
+    }
 
+    /**
+     * @return A new array that contains the local variable stack, bottom element first
+     */
     VerificationTypeInfo[]
-    locals() { return (VerificationTypeInfo[]) this.locals.clone(); }
+    locals() { return StackMap.toArray(this.locals); }
+
+    /**
+     * @return The number of elements on the local variable stack
+     */
+    int
+    localsCount() { return StackMap.size(this.locals); }
+
+    /**
+     * @return A {@link StackMap} with the given local variable stack (bottom element first), and the same operand
+     *         stack
+     */
+    StackMap
+    withLocals(VerificationTypeInfo[] locals) { return new StackMap(StackMap.toElement(locals), this.operands); }
 
     // -----------------------
 
@@ -78,62 +146,95 @@ class StackMap {
      */
     StackMap
     pushOperand(VerificationTypeInfo operand) {
-        return new StackMap(this.locals, StackMap.addToArray(this.operands, operand));
+        return new StackMap(this.locals, new Element(operand, this.operands));
     }
 
     /**
      * @return A {@link StackMap} with the same local variable stack, and an operand stack with one element less
      */
     StackMap
-    popOperand() { return new StackMap(this.locals, StackMap.removeLastFromArray(this.operands)); }
+    popOperand() {
+        Element o = this.operands;
+        if (o == null) throw new InternalCompilerException("Operand stack underflow");
+        return new StackMap(this.locals, o.below);
+    }
 
     /**
      * @return The top element of the operand stack
      */
     VerificationTypeInfo
     peekOperand() {
-        if (this.operands.length == 0) throw new InternalCompilerException("Operand stack underflow");
-        return this.operands[this.operands.length - 1];
+        Element o = this.operands;
+        if (o == null) throw new InternalCompilerException("Operand stack underflow");
+        return o.vti;
     }
 
+    /**
+     * @return A new array that contains the operand stack, bottom element first
+     */
     VerificationTypeInfo[]
-    operands() { return (VerificationTypeInfo[]) this.operands.clone(); }
+    operands() { return StackMap.toArray(this.operands); }
 
-    // -----------------------
+    /**
+     * @return The size of the operand stack in words, i.e. the sum of the categories of the operands
+     */
+    int
+    operandsSize() {
+        Element o = this.operands;
+        return o == null ? 0 : o.categories;
+    }
 
-    private static VerificationTypeInfo[]
-    addToArray(VerificationTypeInfo[] original, VerificationTypeInfo value) {
-        int                    l      = original.length;
-        VerificationTypeInfo[] result = new VerificationTypeInfo[l + 1];
+    /**
+     * @return Whether the operand stacks of {@code this} and <var>that</var> are equal
+     */
+    boolean
+    operandsEqual(StackMap that) { return StackMap.equals(this.operands, that.operands); }
 
-        int i;
-        for (i = 0; i < l; i++) result[i] = original[i];
-        result[i] = value;
+    // -----------------------
 
+    @Nullable private static Element
+    toElement(VerificationTypeInfo[] vtis) {
+        Element result = null;
+        for (VerificationTypeInfo vti : vtis) result = new Element(vti, result);
         return result;
     }
 
     private static VerificationTypeInfo[]
-    removeLastFromArray(VerificationTypeInfo[] original) {
-        int                    l      = original.length - 1;
-        VerificationTypeInfo[] result = new VerificationTypeInfo[l];
+    toArray(@Nullable Element e) {
+        VerificationTypeInfo[] result = new VerificationTypeInfo[StackMap.size(e)];
+        for (int i = result.length - 1; e != null; e = e.below) result[i--] = e.vti;
+        return result;
+    }
 
-        for (int i = 0; i < l; i++) result[i] = original[i];
+    private static int
+    size(@Nullable Element e) { return e == null ? 0 : e.size; }
 
-        return result;
+    private static boolean
+    equals(@Nullable Element e1, @Nullable Element e2) {
+        for (;; e1 = e1.below, e2 = e2.below) {
+
+            // Shared (or both empty) stacks are equal; this is the common case.
+            if (e1 == e2) return true;
+
+            if (e1 == null || e2 == null) return false;
+            if (e1.size != e2.size || e1.hashCode != e2.hashCode || !e1.vti.equals(e2.vti)) return false;
+        }
     }
 
     @Override public String
-    toString() { return "locals=" + Arrays.toString(this.locals) + ", stack=" + Arrays.toString(this.operands); }
+    toString() { return "locals=" + Arrays.toString(this.locals()) + ", stack=" + Arrays.toString(this.operands()); }
 
     @Override public int
-    hashCode() { return Arrays.hashCode(this.locals) ^ Arrays.hashCode(this.operands); }
+    hashCode() {
+        Element l = this.locals, o = this.operands;
+        return (l == null ? 1 : l.hashCode) ^ (o == null ? 1 : o.hashCode);
+    }
 
     @Override public boolean
     equals(@Nullable Object obj) {
         if (obj == this) return true;
         if (!(obj instanceof StackMap)) return false;
         StackMap that = (StackMap) obj;
-        return Arrays.equals(this.locals, that.locals) && Arrays.equals(this.operands, that.operands);
+        return StackMap.equals(this.locals, that.locals) && StackMap.equals(this.operands, that.operands);
     }
 }
@@ -26,11 +26,14 @@
 package org.codehaus.janino;
 
 import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
 
 import org.codehaus.commons.compiler.CompileException;
 import org.codehaus.commons.compiler.Location;
 import org.codehaus.commons.compiler.WarningHandler;
 import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CompilationListener.Phase;
 
 /**
  * Standard implementation for the {@link TokenStream}.
@@ -43,6 +46,16 @@ class TokenStreamImpl implements TokenStream {
     public
     TokenStreamImpl(Scanner scanner) { (this.scanner = scanner).setIgnoreWhiteSpace(true); }
 
+    /**
+     * Produces the given, previously scanned <var>tokens</var>, and then the tokens of the <var>scanner</var>.
+     */
+    TokenStreamImpl(Scanner scanner, List<Token> tokens) {
+        this(scanner);
+        this.replayedTokens = tokens.iterator();
+    }
+
+    @Nullable private Iterator<Token> replayedTokens;
+
     /**
      * The optional JAVADOC comment preceding the {@link #nextToken}.
      */
@@ -51,8 +64,22 @@ class TokenStreamImpl implements TokenStream {
     private Token
     produceToken() throws CompileException, IOException {
 
+        Iterator<Token> rt = this.replayedTokens;
+        if (rt != null && rt.hasNext()) return (Token) rt.next();
+
         for (;;) {
-            Token token = this.scanner.produce();
+            Token token;
+            PhaseRecorder pr = this.phaseRecorder;
+            if (pr == null) {
+                token = this.scanner.produce();
+            } else {
+                pr.begin(Phase.SCAN);
+                try {
+                    token = this.scanner.produce();
+                } finally {
+                    pr.end();
+                }
+            }
 
             switch (token.type) {
 
@@ -334,6 +361,14 @@ class TokenStreamImpl implements TokenStream {
     // Used for elaborate warning handling.
     @Nullable private WarningHandler warningHandler;
 
+    /**
+     * @param phaseRecorder Measures the time spent in the {@link Scanner}; {@code null} disables measuring
+     */
+    void
+    setPhaseRecorder(@Nullable PhaseRecorder phaseRecorder) { this.phaseRecorder = phaseRecorder; }
+
+    @Nullable private PhaseRecorder phaseRecorder;
+
     @Override public String
     toString() { return this.nextToken + "/" + this.nextButOneToken + "/" + this.scanner.location(); }
 
@@ -36,6 +36,7 @@ import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
@@ -59,6 +60,7 @@ import org.codehaus.commons.nullanalysis.Nullable;
 import org.codehaus.janino.CodeContext.BasicBlock;
 import org.codehaus.janino.CodeContext.Inserter;
 import org.codehaus.janino.CodeContext.Offset;
+import org.codehaus.janino.CompilationListener.Phase;
 import org.codehaus.janino.IClass.IAnnotation;
 import org.codehaus.janino.IClass.IConstructor;
 import org.codehaus.janino.IClass.IField;
@@ -89,6 +91,7 @@ import org.codehaus.janino.Java.Assignment;
 import org.codehaus.janino.Java.Atom;
 import org.codehaus.janino.Java.BinaryOperation;
 import org.codehaus.janino.Java.Block;
+import org.codehaus.janino.Java.BlockLambdaBody;
 import org.codehaus.janino.Java.BlockStatement;
 import org.codehaus.janino.Java.BooleanLiteral;
 import org.codehaus.janino.Java.BooleanRvalue;
@@ -117,17 +120,21 @@ import org.codehaus.janino.Java.EnclosingScopeOfTypeDeclaration;
 import org.codehaus.janino.Java.EnumConstant;
 import org.codehaus.janino.Java.EnumDeclaration;
 import org.codehaus.janino.Java.ExpressionStatement;
+import org.codehaus.janino.Java.ExpressionLambdaBody;
 import org.codehaus.janino.Java.FieldAccess;
 import org.codehaus.janino.Java.FieldAccessExpression;
 import org.codehaus.janino.Java.FieldDeclaration;
 import org.codehaus.janino.Java.FieldDeclarationOrInitializer;
 import org.codehaus.janino.Java.FloatingPointLiteral;
+import org.codehaus.janino.Java.FormalLambdaParameters;
 import org.codehaus.janino.Java.ForEachStatement;
 import org.codehaus.janino.Java.ForStatement;
 import org.codehaus.janino.Java.FunctionDeclarator;
 import org.codehaus.janino.Java.FunctionDeclarator.FormalParameter;
 import org.codehaus.janino.Java.FunctionDeclarator.FormalParameters;
+import org.codehaus.janino.Java.IdentifierLambdaParameters;
 import org.codehaus.janino.Java.IfStatement;
+import org.codehaus.janino.Java.InferredLambdaParameters;
 import org.codehaus.janino.Java.Initializer;
 import org.codehaus.janino.Java.InnerClassDeclaration;
 import org.codehaus.janino.Java.Instanceof;
@@ -216,11 +223,14 @@ import org.codehaus.janino.Visitor.BlockStatementVisitor;
 import org.codehaus.janino.Visitor.ElementValueVisitor;
 import org.codehaus.janino.Visitor.FunctionDeclaratorVisitor;
 import org.codehaus.janino.Visitor.ImportVisitor;
+import org.codehaus.janino.Visitor.LambdaBodyVisitor;
+import org.codehaus.janino.Visitor.LambdaParametersVisitor;
 import org.codehaus.janino.Visitor.LvalueVisitor;
 import org.codehaus.janino.Visitor.RvalueVisitor;
 import org.codehaus.janino.Visitor.TryStatementResourceVisitor;
 import org.codehaus.janino.Visitor.TypeDeclarationVisitor;
 import org.codehaus.janino.Visitor.TypeVisitor;
+import org.codehaus.janino.util.AbstractTraverser;
 import org.codehaus.janino.util.Annotatable;
 import org.codehaus.janino.util.ClassFile;
 import org.codehaus.janino.util.ClassFile.ClassFileException;
@@ -257,6 +267,12 @@ class UnitCompiler {
      */
     private static final int STRING_CONCAT_LIMIT = 3;
 
+    /**
+     * The name of the synthetic static field that holds the {@link LineProfile} of each class that was compiled with
+     * {@link JaninoOption#LINE_PROFILING_INSTRUMENTED}.
+     */
+    private static final String LINE_PROFILE_FIELD_NAME = "line$profile";
+
     /**
      * Special value for the <var>orientation</var> parameter of the {@link #compileBoolean(Java.Rvalue,
      * CodeContext.Offset, boolean)} methods, indicating that the code should be generated such that execution branches
@@ -278,7 +294,15 @@ class UnitCompiler {
     /**
      * Java version to compile for.
      */
-    private int targetVersion = -1;
+    private int     targetVersion = -1;
+    private boolean targetVersionDefaulted;
+
+    /**
+     * The nested types that were compiled so far, grouped by their top-level type; see {@link
+     * #addNestHostAttribute(AbstractTypeDeclaration, ClassFile)}.
+     */
+    private final Map<TypeDeclaration /*nestHost*/, List<String> /*nestMemberFds*/>
+    nestMembers = new HashMap<>();
 
     public
     UnitCompiler(AbstractCompilationUnit abstractCompilationUnit, IClassLoader iClassLoader) {
@@ -310,12 +334,38 @@ class UnitCompiler {
     public void
     setTargetVersion(int version) { this.targetVersion = version; }
 
+    /**
+     * Configures which classes, methods, fields and constructors the compiled code may reference; violations are
+     * reported as compile errors.
+     *
+     * @param sandbox {@code null} permits all references (which is the default)
+     */
+    public void
+    setCompileTimeSandbox(@Nullable CompileTimeSandbox sandbox) { this.compileTimeSandbox = sandbox; }
+
+    /**
+     * @param phaseRecorder Measures the time spent in code generation and stack map computation; {@code null}
+     *                      disables measuring
+     */
+    void
+    setPhaseRecorder(@Nullable PhaseRecorder phaseRecorder) { this.phaseRecorder = phaseRecorder; }
+
     /**
      * @return The {@link AbstractCompilationUnit} that this {@link UnitCompiler} compiles
      */
     public AbstractCompilationUnit
     getAbstractCompilationUnit() { return this.abstractCompilationUnit; }
 
+    /**
+     * Constant values of fields are inlined into the generated code, so the class files do not reflect such a
+     * dependency.
+     *
+     * @return The descriptors of the types that declare the constant fields whose values were inlined while compiling
+     *         this unit
+     */
+    public Set<String>
+    getInlinedConstantDeclaringTypes() { return Collections.unmodifiableSet(this.inlinedConstantDeclaringTypes); }
+
     /**
      * Generates a set of {@link ClassFile} objects which represent the classes and interfaces declared in the
      * compilation unit.
@@ -356,8 +406,21 @@ class UnitCompiler {
             throw new IllegalStateException("\"UnitCompiler.compileUnit()\" is not reentrant");
         }
         this.storesClassFiles = storesClassFiles;
+
+        PhaseRecorder pr = this.phaseRecorder;
+        if (pr != null) pr.begin(Phase.CODE_GENERATION);
         try {
 
+            // Parse the method bodies that the parser has skipped; see "Parser.setMethodBodiesDeferred()".
+            if (!this.abstractCompilationUnit.deferredBodies.isEmpty()) {
+                if (pr != null) pr.begin(Phase.PARSE);
+                try {
+                    Parser.parseDeferredBodies(this.abstractCompilationUnit);
+                } finally {
+                    if (pr != null) pr.end();
+                }
+            }
+
             this.abstractCompilationUnit.accept(new AbstractCompilationUnitVisitor<Void, CompileException>() {
 
                 @Override @Nullable public Void visitCompilationUnit(CompilationUnit cu)                throws CompileException { UnitCompiler.this.compile2(cu);  return null; }
@@ -374,6 +437,7 @@ class UnitCompiler {
             }
         } finally {
             this.storesClassFiles = null;
+            if (pr != null) pr.end();
         }
     }
 
@@ -525,6 +589,7 @@ class UnitCompiler {
 
         // Create "ClassFile" object.
         ClassFile cf = this.newClassFile(accessFlags, iClass, iClass.getSuperclass(), iClass.getInterfaces());
+        this.addNestHostAttribute(cd, cf);
 
         // Add class annotations with retention != SOURCE.
         this.compileAnnotations(cd.getAnnotations(), cf, cf);
@@ -909,6 +974,8 @@ class UnitCompiler {
             );
         }
 
+        this.addNestMembersAttribute(cd, cf);
+
         // Add the generated class file to a thread-local store.
         this.addClassFile(cf);
     }
@@ -927,6 +994,43 @@ class UnitCompiler {
         }
     }
 
+    /**
+     * @return Whether private members are left PRIVATE and accessed directly from within their nest (JVMS11 5.4.4),
+     *         instead of being made accessible for enclosing and enclosed types by widening them to PACKAGE access
+     */
+    private boolean
+    usesNestmates() { return this.getTargetVersion() >= 11; }
+
+    /**
+     * If the <var>td</var> is a nested type (member, local or anonymous), and the target version supports nestmates,
+     * adds a {@code NestHost} attribute to its class file, and remembers it as a nest member of its top-level type.
+     */
+    private void
+    addNestHostAttribute(AbstractTypeDeclaration td, ClassFile cf) throws CompileException {
+
+        if (!this.usesNestmates() || td instanceof PackageMemberTypeDeclaration) return;
+
+        Scope s = td.getEnclosingScope();
+        while (!(s instanceof PackageMemberTypeDeclaration)) s = s.getEnclosingScope();
+        TypeDeclaration nestHost = (TypeDeclaration) s;
+
+        cf.addNestHostAttribute(this.resolve(nestHost).getDescriptor());
+
+        List<String> nestMemberFds = (List<String>) this.nestMembers.get(nestHost);
+        if (nestMemberFds == null) this.nestMembers.put(nestHost, (nestMemberFds = new ArrayList<>()));
+        nestMemberFds.add(this.resolve(td).getDescriptor());
+    }
+
+    /**
+     * If the <var>td</var> is a top-level type with nested types, adds a {@code NestMembers} attribute to its class
+     * file. Must be invoked after all nested types were compiled.
+     */
+    private void
+    addNestMembersAttribute(AbstractTypeDeclaration td, ClassFile cf) {
+        List<String> nestMemberFds = (List<String>) this.nestMembers.remove(td);
+        if (nestMemberFds != null) cf.addNestMembersAttribute(nestMemberFds);
+    }
+
     /**
      * Creates and adds {@link ClassFile.FieldInfo}s to the <var>cf</var> for all fields declared by the <var>fd</var>.
      */
@@ -950,7 +1054,7 @@ class UnitCompiler {
             short accessFlags = this.accessFlags(fd.modifiers);
 
             ClassFile.FieldInfo fi;
-            if (fd.isPrivate()) {
+            if (fd.isPrivate() && !this.usesNestmates()) {
 
                 // To make the private field accessible for enclosing types, enclosed types and types enclosed by the
                 // same type, it is modified as follows:
@@ -1057,6 +1161,7 @@ class UnitCompiler {
             this.iClassLoader.TYPE_java_lang_Object,
             rawInterfaces
         );
+        this.addNestHostAttribute(id, cf);
 
         // Add interface annotations with retention != SOURCE.
         this.compileAnnotations(id.getAnnotations(), cf, cf);
@@ -1093,6 +1198,8 @@ class UnitCompiler {
 
         this.compileDeclaredMemberTypes(id, cf);
 
+        this.addNestMembersAttribute(id, cf);
+
         // Add the generated class file to a thread-local store.
         this.addClassFile(cf);
     }
@@ -1353,7 +1460,8 @@ class UnitCompiler {
     }
 
     /**
-     * Creates class/interface initialization method iff there is any initialization code.
+     * Creates class/interface initialization method iff there is any initialization code, or iff {@link
+     * JaninoOption#LINE_PROFILING_INSTRUMENTED} is configured.
      *
      * @param td         The type declaration
      * @param cf         The class file into which to put the method
@@ -1366,8 +1474,24 @@ class UnitCompiler {
         List<BlockStatement> statements
     ) throws CompileException {
 
+        // With line profiling, the class/interface initialization method registers the line profile.
+        boolean lineProfiled = this.options.contains(JaninoOption.LINE_PROFILING_INSTRUMENTED);
+        if (lineProfiled) {
+            cf.addFieldInfo(
+                (short) (                                              // accessFlags
+                    (td instanceof InterfaceDeclaration ? Mod.PUBLIC : Mod.PRIVATE)
+                    | Mod.STATIC
+                    | Mod.FINAL
+                    | Mod.SYNTHETIC
+                ),
+                UnitCompiler.LINE_PROFILE_FIELD_NAME,                  // fieldName
+                Descriptor.fromClassName(LineProfile.class.getName()), // fieldTypeFD
+                null                                                   // constantValue
+            );
+        }
+
         // Create class/interface initialization method iff there is any initialization code.
-        if (this.generatesCode2(statements)) {
+        if (lineProfiled || this.generatesCode2(statements)) {
             MethodDeclarator md = new MethodDeclarator(
                 td.getLocation(),                                                   // location
                 null,                                                               // docComment
@@ -1535,6 +1659,7 @@ class UnitCompiler {
 
         final CodeContext codeContext      = new CodeContext(mi.getClassFile());
         final CodeContext savedCodeContext = this.replaceCodeContext(codeContext);
+        codeContext.setPhaseRecorder(this.phaseRecorder);
         try {
             codeContext.saveLocalVariables();
 
@@ -1571,6 +1696,8 @@ class UnitCompiler {
     private boolean
     compile(BlockStatement bs) throws CompileException {
 
+        this.profileLine(bs);
+
         try {
             Boolean result = (Boolean) bs.accept(new BlockStatementVisitor<Boolean, CompileException>() {
                 @Override public Boolean visitInitializer(Initializer i)                                                throws CompileException { return UnitCompiler.this.compile2(i);    }
@@ -1688,6 +1815,7 @@ class UnitCompiler {
 
         // Compile body.
         ds.whereToContinue = null;
+        this.stepExecutionBudget(ds);
         if (!this.compile(ds.body) && ds.whereToContinue == null) {
             this.warning("DSNTC", "\"do\" statement never tests its condition", ds.getLocation());
 
@@ -1753,7 +1881,8 @@ class UnitCompiler {
             fs.whereToContinue = null;
             this.codeContext.currentInserter().setStackMap(smBeforeBody);
             final CodeContext.Offset bodyOffset = this.getCodeContext().newBasicBlock();
-            boolean                  bodyCcn    = this.compile(fs.body);
+            this.stepExecutionBudget(fs);
+            boolean bodyCcn = this.compile(fs.body);
             if (fs.whereToContinue != null) fs.whereToContinue.set();
 
             // Compile update.
@@ -1824,6 +1953,7 @@ class UnitCompiler {
                 this.store(fes, elementLv);
 
                 // Compile the body.
+                this.stepExecutionBudget(fes);
                 boolean bodyCcn = this.compile(fes.body);
                 if (fes.whereToContinue != null) fes.whereToContinue.set();
 
@@ -1909,6 +2039,7 @@ class UnitCompiler {
 
                 this.store(fes, elementLv);
 
+                this.stepExecutionBudget(fes);
                 boolean bodyCcn = this.compile(fes.body);
                 if (fes.whereToContinue != null) fes.whereToContinue.set();
 
@@ -1998,6 +2129,7 @@ class UnitCompiler {
             this.codeContext.pushInserter(bodyInserter);
             this.codeContext.currentInserter().setStackMap(smBeforeBody);
 
+            this.stepExecutionBudget(ws);
             this.compile(ws.body); // Return value (CCN) is ignored.
 
             if (ws.whereToContinue != null) {
@@ -2023,6 +2155,7 @@ class UnitCompiler {
 
         // Compile body.
         Offset wtc = (cs.whereToContinue = this.getCodeContext().newBasicBlock());
+        this.stepExecutionBudget(cs);
         if (this.compile(body)) this.gotO(cs, wtc);
         cs.whereToContinue = null;
 
@@ -2041,7 +2174,8 @@ class UnitCompiler {
         // Compile body.
         cs.whereToContinue = null;
         final CodeContext.Offset bodyOffset = this.getCodeContext().newBasicBlock();
-        boolean                  bodyCcn    = this.compile(body);
+        this.stepExecutionBudget(cs);
+        boolean bodyCcn = this.compile(body);
 
         // Compile the "update".
         if (cs.whereToContinue != null) cs.whereToContinue.set();
@@ -2546,6 +2680,9 @@ class UnitCompiler {
                 if (!declaringIClass.isInterface() && !fd.isStatic()) this.load(vd, declaringIClass, 0);
 
                 IClass fieldType = this.getRawType(fd.type);
+                if (initializer instanceof Rvalue && vd.brackets == 0) {
+                    UnitCompiler.setTargetTypeArguments((Rvalue) initializer, fd.type);
+                }
                 this.compile(initializer, UnitCompiler.this.iClassLoader.getArrayIClass(fieldType, vd.brackets));
 
                 // No need to check accessibility here.
@@ -2689,7 +2826,8 @@ class UnitCompiler {
     }
 
     /**
-     * Finds a local class declared in any block enclosing the given block statement.
+     * Finds a local class declared in any block enclosing the given block statement. For the body of the synthetic
+     * method that implements a lambda expression, the blocks enclosing the lambda expression are searched, too.
      */
     @Nullable private static LocalClassDeclaration
     findLocalClassDeclaration(Scope s, String name) {
@@ -2720,6 +2858,10 @@ class UnitCompiler {
                 }
             }
             s = es;
+            if (s instanceof MethodDeclarator) {
+                LambdaExpression le = ((MethodDeclarator) s).lambdaExpression;
+                if (le != null) s = le.getEnclosingScope();
+            }
         }
 
         return null;
@@ -2738,6 +2880,9 @@ class UnitCompiler {
 
                 ArrayInitializerOrRvalue initializer = vd.initializer;
                 if (initializer != null) {
+                    if (initializer instanceof Rvalue && vd.brackets == 0) {
+                        UnitCompiler.setTargetTypeArguments((Rvalue) initializer, lvds.type);
+                    }
                     this.compile(initializer, lv.type);
                     this.store(lvds, lv);
                 }
@@ -2761,6 +2906,7 @@ class UnitCompiler {
 
             @Override @Nullable public Void
             visitRvalue(Rvalue rhs) throws CompileException {
+                UnitCompiler.setTargetType(rhs, arrayType);
                 UnitCompiler.this.assignmentConversion(
                     aiorv,                                  // locatable
                     UnitCompiler.this.compileGetValue(rhs), // sourceType
@@ -2845,6 +2991,8 @@ class UnitCompiler {
             this.compileError("Method must return a value", rs.getLocation());
             return false;
         }
+        UnitCompiler.setTargetType(orv, returnType);
+        UnitCompiler.setTargetTypeArguments(orv, enclosingFunction.type);
         IType type = this.compileGetValue(orv);
         this.assignmentConversion(
             rs,                        // locatable
@@ -3338,6 +3486,10 @@ class UnitCompiler {
     compile2(FunctionDeclarator fd, final ClassFile classFile) throws CompileException {
         ClassFile.MethodInfo mi;
 
+        if (fd.bodyDiscarded) {
+            throw new InternalCompilerException(fd.getLocation(), "Body of \"" + fd + "\" was already discarded");
+        }
+
         if (this.getTargetVersion() < 8 && fd instanceof MethodDeclarator && ((MethodDeclarator) fd).isDefault()) {
             this.compileError((
                 ""
@@ -3351,6 +3503,7 @@ class UnitCompiler {
                 fd instanceof MethodDeclarator
                 && !((MethodDeclarator) fd).isStatic()
                 && !(fd.getDeclaringType() instanceof InterfaceDeclaration)
+                && !this.usesNestmates()
             ) {
 
                 // To make the non-static private method invocable for enclosing types, enclosed types and types
@@ -3382,7 +3535,8 @@ class UnitCompiler {
                 // To make the static private class method or private constructor invocable for enclosing types,
                 // enclosed types and types enclosed by the same type, it is modified as follows:
                 //  + Access is changed from PRIVATE to PACKAGE
-                if (!(fd.getDeclaringType() instanceof InterfaceDeclaration)) {
+                // (Not necessary for nestmates, which may access each other's private members.)
+                if (!(fd.getDeclaringType() instanceof InterfaceDeclaration) && !this.usesNestmates()) {
                     accessFlags = UnitCompiler.changeAccessibility(accessFlags, Mod.PACKAGE);
                 }
 
@@ -3522,10 +3676,15 @@ class UnitCompiler {
 
         // Create CodeContext.
         final CodeContext codeContext = new CodeContext(mi.getClassFile());
+        codeContext.setPhaseRecorder(this.phaseRecorder);
 
-        CodeContext savedCodeContext = this.replaceCodeContext(codeContext);
+        CodeContext       savedCodeContext         = this.replaceCodeContext(codeContext);
+        LocalVariableSlot savedExecutionBudgetSlot = this.executionBudgetSlot;
+        IClass            savedLineProfiledIClass  = this.lineProfiledIClass;
         try {
             this.getCodeContext().saveLocalVariables();
+            this.executionBudgetSlot = null;
+            this.lineProfiledIClass  = null;
 
             if (fd instanceof MethodDeclarator) {
                 MethodDeclarator md = (MethodDeclarator) fd;
@@ -3575,6 +3734,9 @@ class UnitCompiler {
             this.buildLocalVariableMap(fd);
             this.codeContext.newOffset();
 
+            this.enterExecutionBudget(fd);
+            this.enterLineProfile(fd);
+
             // Compile the constructor preamble.
             if (fd instanceof ConstructorDeclarator) {
                 ConstructorDeclarator cd = (ConstructorDeclarator) fd;
@@ -3664,6 +3826,8 @@ class UnitCompiler {
         } finally {
             this.getCodeContext().restoreLocalVariables();
             this.replaceCodeContext(savedCodeContext);
+            this.executionBudgetSlot = savedExecutionBudgetSlot;
+            this.lineProfiledIClass  = savedLineProfiledIClass;
         }
 
         // Don't continue code attribute generation if we had compile errors.
@@ -3694,6 +3858,194 @@ class UnitCompiler {
         } catch (Error e) {
             throw new InternalCompilerException(fd.getLocation(), null, e);
         }
+
+        if (this.options.contains(JaninoOption.METHOD_BODIES_DISCARDED)) UnitCompiler.discardBody(fd);
+    }
+
+    /**
+     * Releases the statements of the <var>fd</var>, so that they can be garbage-collected. Bodies of functions that
+     * are declared in local or anonymous classes are left alone, because these classes may be compiled more than once
+     * (see JANINO-143); they are released together with the body of the enclosing function, anyway.
+     */
+    private static void
+    discardBody(FunctionDeclarator fd) {
+
+        List<? extends BlockStatement> statements = fd.statements;
+        if (statements == null) return;
+
+        for (TypeDeclaration td = fd.getDeclaringType(); !(td instanceof PackageMemberTypeDeclaration);) {
+            if (!(td instanceof MemberTypeDeclaration)) return;
+            td = ((MemberTypeDeclaration) td).getDeclaringType();
+        }
+
+        try {
+            statements.clear();
+        } catch (UnsupportedOperationException uoe) {
+
+            // The statement list was not created by the parser, but by the application; leave it alone.
+            return;
+        }
+        fd.bodyDiscarded = true;
+    }
+
+    /**
+     * Iff {@link JaninoOption#EXECUTION_BUDGET_INSTRUMENTED} is configured, generates code that fetches the {@link
+     * ExecutionBudget} of the current thread into a local variable, and accounts for the invocation of the function.
+     */
+    private void
+    enterExecutionBudget(FunctionDeclarator fd) throws CompileException {
+        if (!this.options.contains(JaninoOption.EXECUTION_BUDGET_INSTRUMENTED)) return;
+
+        IClass ebIClass = this.getExecutionBudgetIClass(fd);
+        this.invokeMethod(fd, UnitCompiler.getExecutionBudgetMethod(ebIClass, "current", fd));
+        LocalVariableSlot slot = (this.executionBudgetSlot = this.allocateLocalVariableSlot(ebIClass, null));
+        this.store(fd, ebIClass, slot.getSlotIndex());
+    }
+
+    /**
+     * Iff {@link JaninoOption#EXECUTION_BUDGET_INSTRUMENTED} is configured, generates code that accounts for one loop
+     * iteration.
+     */
+    private void
+    stepExecutionBudget(Locatable locatable) throws CompileException {
+        if (!this.options.contains(JaninoOption.EXECUTION_BUDGET_INSTRUMENTED)) return;
+
+        IClass            ebIClass = this.getExecutionBudgetIClass(locatable);
+        LocalVariableSlot slot     = this.executionBudgetSlot;
+        if (slot == null) {
+
+            // Not within a function; "ExecutionBudget.current()" accounts for one step.
+            this.invokeMethod(locatable, UnitCompiler.getExecutionBudgetMethod(ebIClass, "current", locatable));
+            this.pop(locatable, ebIClass);
+        } else {
+            this.load(locatable, ebIClass, slot.getSlotIndex());
+            this.invokeMethod(locatable, UnitCompiler.getExecutionBudgetMethod(ebIClass, "step", locatable));
+        }
+    }
+
+    private IClass
+    getExecutionBudgetIClass(Locatable locatable) throws CompileException {
+
+        IClass result = this.executionBudgetIClass;
+        if (result != null) return result;
+
+        return (this.executionBudgetIClass = this.loadRuntimeIClass(
+            ExecutionBudget.class,
+            JaninoOption.EXECUTION_BUDGET_INSTRUMENTED,
+            locatable
+        ));
+    }
+    @Nullable private IClass executionBudgetIClass;
+
+    private static IClass.IMethod
+    getExecutionBudgetMethod(IClass ebIClass, String methodName, Locatable locatable) throws CompileException {
+        return UnitCompiler.getRuntimeMethod(ebIClass, methodName, new IClass[0], locatable);
+    }
+
+    /**
+     * Iff {@link JaninoOption#LINE_PROFILING_INSTRUMENTED} is configured, remembers that the statements of the function
+     * are to be profiled. For the class initialization method, also generates code that registers the {@link
+     * LineProfile} of the class, and stores it in the synthetic static field of the class.
+     */
+    private void
+    enterLineProfile(FunctionDeclarator fd) throws CompileException {
+        if (!this.options.contains(JaninoOption.LINE_PROFILING_INSTRUMENTED)) return;
+
+        IClass declaringIClass = this.resolve(fd.getDeclaringType());
+        if (fd.name.equals("<clinit>")) {
+            IClass lpIClass = this.getLineProfileIClass(fd);
+            this.consT(fd, declaringIClass);
+            this.invokeMethod(fd, UnitCompiler.getRuntimeMethod(
+                lpIClass,
+                "register",
+                new IClass[] { this.iClassLoader.TYPE_java_lang_Class },
+                fd
+            ));
+            this.putfield(fd, declaringIClass, UnitCompiler.LINE_PROFILE_FIELD_NAME, lpIClass, true);
+        }
+        this.lineProfiledIClass = declaringIClass;
+    }
+
+    /**
+     * Iff {@link JaninoOption#LINE_PROFILING_INSTRUMENTED} is configured, generates code that increments the counter of
+     * the line where the given statement starts.
+     */
+    private void
+    profileLine(BlockStatement bs) throws CompileException {
+
+        IClass lineProfiledIClass = this.lineProfiledIClass;
+        if (lineProfiledIClass == null) return;
+
+        // Statements that merely contain other statements are not counted themselves, and the initialization of a
+        // FOR statement counts as part of the FOR statement.
+        if (
+            bs instanceof Block
+            || bs instanceof LabeledStatement
+            || bs instanceof Initializer
+            || !this.generatesCode(bs)
+        ) return;
+        Scope es = bs.getEnclosingScope();
+        if (es instanceof ForStatement && ((ForStatement) es).init == bs) return;
+
+        int lineNumber = bs.getLocation().getLineNumber();
+        if (lineNumber <= 0) return;
+
+        IClass lpIClass = this.getLineProfileIClass(bs);
+        this.getfield(bs, lineProfiledIClass, UnitCompiler.LINE_PROFILE_FIELD_NAME, lpIClass, true);
+        this.consT(bs, lineNumber);
+        this.invokeMethod(bs, UnitCompiler.getRuntimeMethod(lpIClass, "hit", new IClass[] { IClass.INT }, bs));
+    }
+
+    private IClass
+    getLineProfileIClass(Locatable locatable) throws CompileException {
+
+        IClass result = this.lineProfileIClass;
+        if (result != null) return result;
+
+        return (this.lineProfileIClass = this.loadRuntimeIClass(
+            LineProfile.class,
+            JaninoOption.LINE_PROFILING_INSTRUMENTED,
+            locatable
+        ));
+    }
+    @Nullable private IClass lineProfileIClass;
+
+    /**
+     * Loads a class that instrumented code requires at runtime.
+     */
+    private IClass
+    loadRuntimeIClass(Class<?> clasS, JaninoOption option, Locatable locatable) throws CompileException {
+
+        IClass result;
+        try {
+            result = this.iClassLoader.loadIClass(Descriptor.fromClassName(clasS.getName()));
+        } catch (ClassNotFoundException cnfe) {
+            throw new CompileException("Loading \"" + clasS.getName() + "\"", locatable.getLocation(), cnfe);
+        }
+        if (result == null) {
+            throw new CompileException((
+                "Class \""
+                + clasS.getName()
+                + "\" must be on the class path for option \""
+                + option
+                + "\""
+            ), locatable.getLocation());
+        }
+
+        return result;
+    }
+
+    private static IClass.IMethod
+    getRuntimeMethod(IClass iClass, String methodName, IClass[] parameterTypes, Locatable locatable)
+    throws CompileException {
+        IClass.IMethod result = iClass.findIMethod(methodName, parameterTypes);
+        if (result == null) {
+            throw new CompileException(
+                "\"" + iClass + "\" has no method \"" + methodName + "\"",
+                locatable.getLocation()
+            );
+        }
+        return result;
     }
 
     private int getTargetVersion() {
@@ -3715,7 +4067,8 @@ class UnitCompiler {
 
                 // Because the generation of the StackMapTable attribute is still experimental, we still produce
                 // only Java 6 .class files by default:
-                this.targetVersion = 6;
+                this.targetVersion          = 6;
+                this.targetVersionDefaulted = true;
             }
         }
 
@@ -4096,6 +4449,7 @@ class UnitCompiler {
         // "Simple" assignment ("=")?
         if (a.operator == "=") { // SUPPRESS CHECKSTYLE StringLiteralEquality
             this.compileContext(a.lhs);
+            UnitCompiler.setTargetType(a.rhs, this.getType(a.lhs));
             this.assignmentConversion(
                 a,                           // locatable
                 this.compileGetValue(a.rhs), // sourceType
@@ -4801,24 +5155,1461 @@ class UnitCompiler {
         return currentIClass;
     }
 
-    @SuppressWarnings("static-method") private IClass
-    compileGet2(LambdaExpression le) throws CompileException {
-        throw UnitCompiler.compileException(le, "Compilation of lambda expression NYI");
-    }
+    private IType
+    compileGet2(LambdaExpression le) throws CompileException {
+
+        IType          targetType = le.targetType;
+        IClass.IMethod sam        = this.getFunctionalInterfaceMethod(le, targetType, "lambda expression");
+        if (sam == null || targetType == null) return this.consT(le, (Object) null);
+
+        int arity = UnitCompiler.getLambdaParameterCount(le);
+        if (arity != sam.getParameterTypes().length) {
+            this.compileError((
+                "Lambda expression has "
+                + arity
+                + " parameter(s), but \""
+                + sam
+                + "\" has "
+                + sam.getParameterTypes().length
+            ), le.getLocation());
+            return this.consT(le, (Object) null);
+        }
+
+        this.checkInvokedynamicAvailable(le);
+
+        MethodDeclarator md = le.implementation;
+        if (md == null) md = (le.implementation = this.lambdaImplementation(le, sam));
+
+        String[] capturedVariables = le.capturedVariables;
+        assert capturedVariables != null;
+
+        this.compileSyntheticMethod(md);
+
+        IClass declaringIClass = this.resolve(md.getDeclaringType());
+
+        // Push "this" and the values of the captured local variables onto the operand stack.
+        List<IClass> capturedTypes = new ArrayList<>();
+        if (!md.isStatic()) {
+            this.referenceThis(le, declaringIClass);
+            capturedTypes.add(declaringIClass);
+        }
+        BlockStatement ebs = UnitCompiler.getEnclosingBlockStatement(le.getEnclosingScope());
+        assert ebs != null;
+        for (String name : capturedVariables) {
+            LocalVariable lv = ebs.findLocalVariable(name);
+            assert lv != null;
+            capturedTypes.add(UnitCompiler.rawTypeOf(this.load(le, lv)));
+        }
+
+        IClass.IMethod implementation      = this.toIMethod(md);
+        IClass[]       implParameterTypes  = implementation.getParameterTypes();
+        ClassFile      cf                  = this.getCodeContext().getClassFile();
+        byte           implementationKind;
+        short          implementationIndex;
+        if (md.isStatic()) {
+            implementationKind  = ClassFile.REF_invokeStatic;
+            implementationIndex = this.addConstantMethodrefInfo(declaringIClass, md.name, implementation.getDescriptor());
+        } else
+        if (this.usesNestmates()) {
+            implementationKind  = ClassFile.REF_invokeSpecial;
+            implementationIndex = this.addConstantMethodrefInfo(declaringIClass, md.name, implementation.getDescriptor());
+        } else
+        {
+
+            // "compile(FunctionDeclarator)" has made the private instance method static and appended "$" to its name.
+            implementationKind  = ClassFile.REF_invokeStatic;
+            implementationIndex = cf.addConstantMethodrefInfo(
+                declaringIClass.getDescriptor(),
+                md.name + '$',
+                implementation.getDescriptor().prependParameter(declaringIClass.getDescriptor()).toString()
+            );
+        }
+
+        this.invokeLambdaMetafactory(
+            le,                                                                           // locatable
+            UnitCompiler.rawTypeOf(targetType),                                           // functionalInterface
+            sam,                                                                          // sam
+            (IClass[]) capturedTypes.toArray(new IClass[capturedTypes.size()]),           // capturedTypes
+            cf.addConstantMethodHandleInfo(implementationKind, implementationIndex),       // implementation
+            this.instantiatedMethodDescriptor(                                            // instantiatedMd
+                sam,
+                (IClass[]) Arrays.copyOfRange(
+                    implParameterTypes,
+                    capturedVariables.length,
+                    implParameterTypes.length
+                ),
+                implementation.getReturnType()
+            )
+        );
+
+        return targetType;
+    }
+
+    private IType
+    compileGet2(MethodReference mr) throws CompileException {
+
+        IType          targetType = mr.targetType;
+        IClass.IMethod sam        = this.getFunctionalInterfaceMethod(mr, targetType, "method reference");
+        if (sam == null || targetType == null) return this.consT(mr, (Object) null);
+
+        IClass.IMethod method = this.findMethodReferenceTarget(mr, sam, true);
+        if (method == null) return this.consT(mr, (Object) null);
+
+        this.checkPermitted(method, mr.getLocation());
+        this.checkInvokedynamicAvailable(mr);
+
+        IClass    declaringIClass = method.getDeclaringIClass();
+        ClassFile cf              = this.getCodeContext().getClassFile();
+
+        // Evaluate the bound receiver (JLS8 15.13.3), and check it for NULL through "Object.getClass()", like JAVAC
+        // does.
+        IClass[]   capturedTypes;
+        IClass     receiverType;
+        if (this.isType(mr.lhs)) {
+            capturedTypes = new IClass[0];
+            receiverType  = UnitCompiler.rawTypeOf(this.getType(mr.lhs));
+        } else
+        {
+            receiverType = UnitCompiler.rawTypeOf(this.compileGetValue(this.toRvalueOrCompileException(mr.lhs)));
+            if (receiverType.isPrimitive()) {
+                this.compileError(
+                    "Cannot reference a method of primitive type \"" + receiverType + "\"",
+                    mr.getLocation()
+                );
+            }
+            this.dup(mr);
+            this.invoke(
+                mr,                                                                    // locatable
+                Opcode.INVOKEVIRTUAL,                                                  // opcode
+                this.iClassLoader.TYPE_java_lang_Object,                               // declaringIClass
+                "getClass",                                                            // methodName
+                new MethodDescriptor(                                                  // methodDescriptor
+                    this.iClassLoader.TYPE_java_lang_Class.getDescriptor(),
+                    new String[0]
+                ),
+                false                                                                  // useInterfaceMethodRef
+            );
+            this.pop(mr, this.iClassLoader.TYPE_java_lang_Class);
+            capturedTypes = new IClass[] { receiverType };
+        }
+
+        byte  referenceKind;
+        short referenceIndex;
+        if (method.isStatic()) {
+            referenceKind  = ClassFile.REF_invokeStatic;
+            referenceIndex = this.addConstantMethodrefInfo(declaringIClass, method.getName(), method.getDescriptor());
+        } else
+        if (declaringIClass.isInterface()) {
+            referenceKind  = ClassFile.REF_invokeInterface;
+            referenceIndex = cf.addConstantInterfaceMethodrefInfo(
+                declaringIClass.getDescriptor(),
+                method.getName(),
+                method.getDescriptor().toString()
+            );
+        } else
+        if (method.getAccess() == Access.PRIVATE && !this.usesNestmates()) {
+
+            // "compile(FunctionDeclarator)" has made the private instance method static and appended "$" to its name.
+            referenceKind  = ClassFile.REF_invokeStatic;
+            referenceIndex = cf.addConstantMethodrefInfo(
+                declaringIClass.getDescriptor(),
+                method.getName() + '$',
+                method.getDescriptor().prependParameter(declaringIClass.getDescriptor()).toString()
+            );
+        } else
+        {
+            referenceKind  = ClassFile.REF_invokeVirtual;
+            referenceIndex = cf.addConstantMethodrefInfo(
+                declaringIClass.getDescriptor(),
+                method.getName(),
+                method.getDescriptor().toString()
+            );
+        }
+
+        // For an unbound receiver, the first parameter of the function type is the receiver.
+        IClass[] parameterTypes = method.getParameterTypes();
+        if (!method.isStatic() && capturedTypes.length == 0) {
+            IClass[] tmp = new IClass[parameterTypes.length + 1];
+            tmp[0] = receiverType;
+            System.arraycopy(parameterTypes, 0, tmp, 1, parameterTypes.length);
+            parameterTypes = tmp;
+        }
+
+        this.invokeLambdaMetafactory(
+            mr,                                                                   // locatable
+            UnitCompiler.rawTypeOf(targetType),                                   // functionalInterface
+            sam,                                                                  // sam
+            capturedTypes,                                                        // capturedTypes
+            cf.addConstantMethodHandleInfo(referenceKind, referenceIndex),        // implementation
+            this.instantiatedMethodDescriptor(sam, parameterTypes, method.getReturnType()) // instantiatedMd
+        );
+
+        return targetType;
+    }
+
+    private IType
+    compileGet2(ClassInstanceCreationReference cicr) throws CompileException {
+
+        IType          targetType = cicr.targetType;
+        IClass.IMethod sam        = this.getFunctionalInterfaceMethod(cicr, targetType, "constructor reference");
+        if (sam == null || targetType == null) return this.consT(cicr, (Object) null);
+
+        IClass.IConstructor constructor = this.findConstructorReferenceTarget(cicr, sam, true);
+        if (constructor == null) return this.consT(cicr, (Object) null);
+
+        this.checkPermitted(constructor, cicr.getLocation());
+        this.checkInvokedynamicAvailable(cicr);
+
+        IClass    type = constructor.getDeclaringIClass();
+        ClassFile cf   = this.getCodeContext().getClassFile();
+
+        this.invokeLambdaMetafactory(
+            cicr,                                                    // locatable
+            UnitCompiler.rawTypeOf(targetType),                      // functionalInterface
+            sam,                                                     // sam
+            new IClass[0],                                           // capturedTypes
+            cf.addConstantMethodHandleInfo(                          // implementation
+                ClassFile.REF_newInvokeSpecial,
+                cf.addConstantMethodrefInfo(type.getDescriptor(), "<init>", constructor.getDescriptor().toString())
+            ),
+            this.instantiatedMethodDescriptor(sam, constructor.getParameterTypes(), type) // instantiatedMd
+        );
+
+        return targetType;
+    }
+
+    private IType
+    compileGet2(ArrayCreationReference acr) throws CompileException {
+
+        IType          targetType = acr.targetType;
+        IClass.IMethod sam        = this.getFunctionalInterfaceMethod(acr, targetType, "array constructor reference");
+        if (sam == null || targetType == null) return this.consT(acr, (Object) null);
+
+        if (!this.isArrayCreationReferenceCompatible(acr, sam)) {
+            this.compileError(
+                "Array constructor reference \"" + acr + "\" is not compatible with \"" + sam + "\"",
+                acr.getLocation()
+            );
+            return this.consT(acr, (Object) null);
+        }
+
+        this.checkInvokedynamicAvailable(acr);
+
+        // Generate the synthetic method "static T[] lambda$...(int length) { return new T[length]; }".
+        MethodDeclarator md = acr.implementation;
+        if (md == null) {
+            Location loc        = acr.getLocation();
+            IClass   arrayIClass = this.getRawType(acr.type);
+            IClass   ct          = arrayIClass.getComponentType();
+            assert ct != null;
+
+            md = (acr.implementation = new MethodDeclarator(
+                loc,                                                         // location
+                null,                                                        // docComment
+                this.syntheticMethodModifiers(acr, false),                  // modifiers
+                null,                                                        // typeParameters
+                new SimpleType(loc, arrayIClass),                            // type
+                this.syntheticMethodName(acr),                               // name
+                new FormalParameters(loc, new FormalParameter[] {            // formalParameters
+                    new FormalParameter(loc, new Modifier[0], new SimpleType(loc, IClass.INT), "length"),
+                }, false),
+                new Type[0],                                                 // thrownExceptions
+                null,                                                        // defaultValue
+                Collections.singletonList(new ReturnStatement(loc, new NewArray( // statements
+                    loc,                                                     // location
+                    new SimpleType(loc, ct),                                 // type
+                    new Rvalue[] { new AmbiguousName(loc, new String[] { "length" }) }, // dimExprs
+                    0                                                        // dims
+                )))
+            ));
+            md.setDeclaringType(UnitCompiler.getEnclosingTypeBodyDeclaration(acr).getDeclaringType());
+        }
+
+        this.compileSyntheticMethod(md);
+
+        IClass.IMethod implementation  = this.toIMethod(md);
+        IClass         declaringIClass = this.resolve(md.getDeclaringType());
+        ClassFile      cf              = this.getCodeContext().getClassFile();
+        short          implementationIndex = this.addConstantMethodrefInfo(
+            declaringIClass,
+            md.name,
+            implementation.getDescriptor()
+        );
+
+        this.invokeLambdaMetafactory(
+            acr,                                                                          // locatable
+            UnitCompiler.rawTypeOf(targetType),                                           // functionalInterface
+            sam,                                                                          // sam
+            new IClass[0],                                                                // capturedTypes
+            cf.addConstantMethodHandleInfo(ClassFile.REF_invokeStatic, implementationIndex), // implementation
+            this.instantiatedMethodDescriptor(                                            // instantiatedMd
+                sam,
+                implementation.getParameterTypes(),
+                implementation.getReturnType()
+            )
+        );
+
+        return targetType;
+    }
+
+    /**
+     * @return The index of a "CONSTANT_Methodref_info" or "CONSTANT_InterfaceMethodref_info", depending on the
+     *         <var>declaringIClass</var>
+     */
+    private short
+    addConstantMethodrefInfo(IClass declaringIClass, String methodName, MethodDescriptor methodMd) {
+        return (
+            declaringIClass.isInterface()
+            ? this.addConstantInterfaceMethodrefInfo(declaringIClass, methodName, methodMd.toString())
+            : this.addConstantMethodrefInfo(declaringIClass, methodName, methodMd.toString())
+        );
+    }
+
+    /**
+     * Records the type of the assignment or invocation context on the lambda expressions and method references that
+     * need it (JLS8 15.27.3, 15.13.2); descends into parenthesized and conditional expressions.
+     */
+    private static void
+    setTargetType(Rvalue rv, IType targetType) {
+        if (rv instanceof ParenthesizedExpression) {
+            UnitCompiler.setTargetType(((ParenthesizedExpression) rv).value, targetType);
+        } else
+        if (rv instanceof ConditionalExpression) {
+            UnitCompiler.setTargetType(((ConditionalExpression) rv).mhs, targetType);
+            UnitCompiler.setTargetType(((ConditionalExpression) rv).rhs, targetType);
+        } else
+        if (rv instanceof LambdaExpression) {
+            ((LambdaExpression) rv).targetType = targetType;
+        } else
+        if (rv instanceof MethodReference) {
+            ((MethodReference) rv).targetType = targetType;
+        } else
+        if (rv instanceof ClassInstanceCreationReference) {
+            ((ClassInstanceCreationReference) rv).targetType = targetType;
+        } else
+        if (rv instanceof ArrayCreationReference) {
+            ((ArrayCreationReference) rv).targetType = targetType;
+        }
+    }
+
+    /**
+     * Records the type arguments of the <var>declaredType</var> of a variable, method or cast on the lambda
+     * expressions and method references that it is the target type of. (JANINO erases type arguments when it resolves
+     * types, so they are not available through the target type.)
+     */
+    private static void
+    setTargetTypeArguments(Rvalue rv, Type declaredType) {
+
+        TypeArgument[] typeArguments = (
+            declaredType instanceof ReferenceType
+            ? ((ReferenceType) declaredType).typeArguments
+            : null
+        );
+        if (typeArguments == null) return;
+
+        if (rv instanceof ParenthesizedExpression) {
+            UnitCompiler.setTargetTypeArguments(((ParenthesizedExpression) rv).value, declaredType);
+        } else
+        if (rv instanceof ConditionalExpression) {
+            UnitCompiler.setTargetTypeArguments(((ConditionalExpression) rv).mhs, declaredType);
+            UnitCompiler.setTargetTypeArguments(((ConditionalExpression) rv).rhs, declaredType);
+        } else
+        if (rv instanceof LambdaExpression) {
+            ((LambdaExpression) rv).targetTypeArguments = typeArguments;
+        } else
+        if (rv instanceof MethodReference) {
+            ((MethodReference) rv).targetTypeArguments = typeArguments;
+        } else
+        if (rv instanceof ClassInstanceCreationReference) {
+            ((ClassInstanceCreationReference) rv).targetTypeArguments = typeArguments;
+        } else
+        if (rv instanceof ArrayCreationReference) {
+            ((ArrayCreationReference) rv).targetTypeArguments = typeArguments;
+        }
+    }
+
+    /**
+     * @return Whether <var>rv</var> is a lambda expression or method reference (possibly parenthesized) that has not
+     *         yet been given a target type
+     */
+    private static boolean
+    isUntargetedFunctionalExpression(Rvalue rv) {
+        while (rv instanceof ParenthesizedExpression) rv = ((ParenthesizedExpression) rv).value;
+        return (
+            (rv instanceof LambdaExpression && ((LambdaExpression) rv).targetType == null)
+            || (rv instanceof MethodReference && ((MethodReference) rv).targetType == null)
+            || (
+                rv instanceof ClassInstanceCreationReference
+                && ((ClassInstanceCreationReference) rv).targetType == null
+            )
+            || (rv instanceof ArrayCreationReference && ((ArrayCreationReference) rv).targetType == null)
+        );
+    }
+
+    /**
+     * Reports a compile error if the <var>targetType</var> is not a functional interface (JLS8 9.8).
+     *
+     * @param what E.g. "lambda expression"
+     * @return     The single abstract method of the <var>targetType</var>, or {@code null}
+     */
+    @Nullable private IClass.IMethod
+    getFunctionalInterfaceMethod(Locatable locatable, @Nullable IType targetType, String what)
+    throws CompileException {
+
+        if (targetType == null) {
+            this.compileError("Target type of " + what + " cannot be determined", locatable.getLocation());
+            return null;
+        }
+
+        IClass.IMethod result = this.findFunctionalInterfaceMethod(UnitCompiler.rawTypeOf(targetType));
+        if (result == null) {
+            this.compileError(
+                "Target type \"" + targetType + "\" of " + what + " is not a functional interface",
+                locatable.getLocation()
+            );
+        }
+        return result;
+    }
+
+    /**
+     * @return The single abstract method of the functional interface <var>type</var> (JLS8 9.8), or {@code null} iff
+     *         <var>type</var> is not a functional interface
+     */
+    @Nullable private IClass.IMethod
+    findFunctionalInterfaceMethod(IClass type) throws CompileException {
+
+        if (!type.isInterface()) return null;
+
+        // Notice: "getIMethods()" lists the declared methods before the inherited ones, so default methods that
+        // override abstract methods of superinterfaces are seen first.
+        IClass.IMethod result = null;
+        Set<String>    seen   = new HashSet<>();
+        for (IClass.IMethod m : type.getIMethods()) {
+            if (m.isStatic()) continue;
+
+            IClass[] pts       = m.getParameterTypes();
+            String   signature = m.getName() + Arrays.toString(pts);
+            if (!seen.add(signature) || !m.isAbstract()) continue;
+
+            // Abstract methods that redeclare public methods of "Object" don't count (JLS8 9.8).
+            IClass.IMethod om = this.iClassLoader.TYPE_java_lang_Object.findIMethod(m.getName(), pts);
+            if (om != null && om.getAccess() == Access.PUBLIC) continue;
+
+            if (result != null) return null;
+            result = m;
+        }
+        return result;
+    }
+
+    /**
+     * @return The parameter types of the function type (JLS8 9.9), i.e. the parameter types of the <var>sam</var>,
+     *         with the <var>targetTypeArguments</var> substituted where possible
+     */
+    private IClass[]
+    getFunctionTypeParameterTypes(
+        @Nullable IType          targetType,
+        @Nullable TypeArgument[] targetTypeArguments,
+        IClass.IMethod           sam
+    ) throws CompileException {
+        IClass[] result = (IClass[]) sam.getParameterTypes().clone();
+        if (targetType == null || targetTypeArguments == null) return result;
+
+        String[] parameterTypeVariableNames = sam.getParameterTypeVariableNames();
+        for (int i = 0; i < result.length; i++) {
+            IClass ta = this.getTypeArgument(
+                UnitCompiler.rawTypeOf(targetType),
+                targetTypeArguments,
+                sam,
+                parameterTypeVariableNames[i]
+            );
+            if (ta != null && result[i].isAssignableFrom(ta)) result[i] = ta;
+        }
+        return result;
+    }
+
+    /**
+     * @return The return type of the function type (JLS8 9.9)
+     * @see    #getFunctionTypeParameterTypes(IType, TypeArgument[], IClass.IMethod)
+     */
+    private IClass
+    getFunctionTypeReturnType(
+        @Nullable IType          targetType,
+        @Nullable TypeArgument[] targetTypeArguments,
+        IClass.IMethod           sam
+    ) throws CompileException {
+        IClass result = sam.getReturnType();
+        if (targetType == null || targetTypeArguments == null) return result;
+
+        IClass ta = this.getTypeArgument(
+            UnitCompiler.rawTypeOf(targetType),
+            targetTypeArguments,
+            sam,
+            sam.getReturnTypeVariableName()
+        );
+        return ta != null && result.isAssignableFrom(ta) ? ta : result;
+    }
+
+    /**
+     * @return The (raw) type argument for the type variable named <var>typeVariableName</var> of the functional
+     *         interface that declares the <var>sam</var>, or {@code null}; wildcards are replaced with their bounds
+     */
+    @Nullable private IClass
+    getTypeArgument(
+        IClass           rawTargetType,
+        TypeArgument[]   targetTypeArguments,
+        IClass.IMethod   sam,
+        @Nullable String typeVariableName
+    ) throws CompileException {
+
+        // Only if the SAM is declared by the functional interface itself (and not inherited from a superinterface),
+        // its type variables correspond with the type arguments.
+        if (typeVariableName == null || sam.getDeclaringIClass() != rawTargetType) return null;
+
+        ITypeVariable[] tvs = rawTargetType.getITypeVariables();
+        if (tvs.length != targetTypeArguments.length) return null;
+
+        for (int i = 0; i < tvs.length; i++) {
+            if (!tvs[i].getName().equals(typeVariableName)) continue;
+
+            TypeArgument ta = targetTypeArguments[i];
+            if (ta instanceof Wildcard) {
+                ReferenceType rt = ((Wildcard) ta).referenceType;
+                return rt == null ? null : this.getRawType(rt);
+            }
+            return this.getRawType((Type) ta);
+        }
+        return null;
+    }
+
+    /**
+     * Reports a compile error if the class file version does not support INVOKEDYNAMIC. If no target version was
+     * configured explicitly, then the target version is raised to 8 instead.
+     */
+    private void
+    checkInvokedynamicAvailable(Locatable locatable) throws CompileException {
+
+        if (this.getTargetVersion() < 8) {
+            if (!this.targetVersionDefaulted) {
+                this.compileError(
+                    "Lambda expressions and method references only available for target version 8+",
+                    locatable.getLocation()
+                );
+                return;
+            }
+            this.targetVersion = 8;
+        }
+
+        ClassFile cf = this.getCodeContext().getClassFile();
+        if (cf.getMajorVersion() < ClassFile.MAJOR_VERSION_JDK_1_8) {
+            cf.setVersion(ClassFile.MAJOR_VERSION_JDK_1_8, ClassFile.MINOR_VERSION_JDK_1_8);
+        }
+    }
+
+    /**
+     * Generates an INVOKEDYNAMIC instruction that bootstraps through {@code LambdaMetafactory.metafactory()}, and
+     * leaves an instance of the <var>functionalInterface</var> on the operand stack. Non-capturing call sites
+     * evaluate to the same instance on every execution.
+     *
+     * @param capturedTypes  The types of the captured values, which must be on the operand stack
+     * @param implementation The "CONSTANT_MethodHandle_info" of the method that implements the <var>sam</var>
+     * @param instantiatedMd The descriptor of the <var>sam</var>, specialized as far as the implementation permits
+     */
+    private void
+    invokeLambdaMetafactory(
+        Locatable        locatable,
+        IClass           functionalInterface,
+        IClass.IMethod   sam,
+        IClass[]         capturedTypes,
+        short            implementation,
+        MethodDescriptor instantiatedMd
+    ) throws CompileException {
+        ClassFile cf = this.getCodeContext().getClassFile();
+
+        short bootstrapMethodAttrIndex = cf.addBootstrapMethod(
+            cf.addConstantMethodHandleInfo(ClassFile.REF_invokeStatic, cf.addConstantMethodrefInfo(
+                "Ljava/lang/invoke/LambdaMetafactory;",
+                "metafactory",
+                UnitCompiler.METAFACTORY_MD
+            )),
+            new short[] {
+                cf.addConstantMethodTypeInfo(sam.getDescriptor().toString()),
+                implementation,
+                cf.addConstantMethodTypeInfo(instantiatedMd.toString()),
+            }
+        );
+
+        String[] capturedFds = new String[capturedTypes.length];
+        for (int i = 0; i < capturedTypes.length; i++) capturedFds[i] = capturedTypes[i].getDescriptor();
+
+        this.addLineNumberOffset(locatable);
+
+        for (int i = capturedFds.length - 1; i >= 0; i--) {
+            this.getCodeContext().popOperandAssignableTo(capturedFds[i]);
+        }
+
+        this.write(Opcode.INVOKEDYNAMIC);
+        this.writeShort(cf.addConstantInvokeDynamicInfo(
+            bootstrapMethodAttrIndex,
+            sam.getName(),
+            new MethodDescriptor(functionalInterface.getDescriptor(), capturedFds).toString()
+        ));
+        this.writeByte(0);
+        this.writeByte(0);
+
+        this.getCodeContext().pushOperand(functionalInterface.getDescriptor());
+    }
+    private static final String METAFACTORY_MD = (
+        "("
+        + "Ljava/lang/invoke/MethodHandles$Lookup;"
+        + "Ljava/lang/String;"
+        + "Ljava/lang/invoke/MethodType;"
+        + "Ljava/lang/invoke/MethodType;"
+        + "Ljava/lang/invoke/MethodHandle;"
+        + "Ljava/lang/invoke/MethodType;"
+        + ")Ljava/lang/invoke/CallSite;"
+    );
+
+    /**
+     * Computes the "instantiated method type" for the {@code LambdaMetafactory}: Because JANINO erases all generic
+     * types, the <var>sam</var>'s parameter and return types are narrowed to the implementation's types where that is
+     * possible, so that the metafactory generates the casts that JAVAC would generate for the type arguments.
+     */
+    private MethodDescriptor
+    instantiatedMethodDescriptor(IClass.IMethod sam, IClass[] implParameterTypes, IClass implReturnType)
+    throws CompileException {
+
+        IClass[] samParameterTypes = sam.getParameterTypes();
+        String[] parameterFds      = new String[samParameterTypes.length];
+        for (int i = 0; i < samParameterTypes.length; i++) {
+            IClass spt = samParameterTypes[i];
+            if (!spt.isPrimitive()) {
+                IClass ipt = implParameterTypes[i];
+                if (ipt.isPrimitive()) ipt = this.isBoxingConvertible(ipt);
+                if (ipt != null && spt.isAssignableFrom(ipt)) spt = ipt;
+            }
+            parameterFds[i] = spt.getDescriptor();
+        }
+
+        IClass samReturnType = sam.getReturnType();
+        if (samReturnType != IClass.VOID && !samReturnType.isPrimitive()) {
+            IClass irt = implReturnType.isPrimitive() ? this.isBoxingConvertible(implReturnType) : implReturnType;
+            if (irt != null && samReturnType.isAssignableFrom(irt)) samReturnType = irt;
+        }
+
+        return new MethodDescriptor(samReturnType.getDescriptor(), parameterFds);
+    }
+
+    /**
+     * Compiles the synthetic method that implements a lambda expression or method reference into the current class
+     * file, unless that has been done before (which happens, e.g., for FINALLY clauses, which are compiled more than
+     * once).
+     */
+    private void
+    compileSyntheticMethod(MethodDeclarator md) throws CompileException {
+        ClassFile cf = this.getCodeContext().getClassFile();
+        for (ClassFile.MethodInfo mi : cf.methodInfos) {
+            String name = mi.getName();
+            if (name.equals(md.name) || name.equals(md.name + '$')) return;
+        }
+        this.compile(md, cf);
+    }
+
+    /**
+     * Creates the synthetic method that implements the body of the <var>le</var> (JLS8 15.27.4), and determines the
+     * local variables that the <var>le</var> captures. The captured local variables become the leading parameters of
+     * the method, followed by the lambda parameters. If the body refers to the enclosing instance, then the method is a
+     * (private) instance method, otherwise a static method.
+     */
+    private MethodDeclarator
+    lambdaImplementation(final LambdaExpression le, final IClass.IMethod sam) throws CompileException {
+
+        final Location            loc = le.getLocation();
+        final BlockStatement      ebs = UnitCompiler.getEnclosingBlockStatement(le.getEnclosingScope());
+        final TypeBodyDeclaration tbd = UnitCompiler.getEnclosingTypeBodyDeclaration(le);
+        assert ebs != null;
+
+        final IClass[] samParameterTypes = this.getFunctionTypeParameterTypes(
+            le.targetType,
+            le.targetTypeArguments,
+            sam
+        );
+
+        // Implicitly typed lambda parameters get the parameter types of the function type.
+        FormalParameter[] lambdaParameters = (FormalParameter[]) le.parameters.accept(
+            new LambdaParametersVisitor<FormalParameter[], RuntimeException>() {
+
+                @Override public FormalParameter[]
+                visitIdentifierLambdaParameters(IdentifierLambdaParameters ilp) {
+                    return new FormalParameter[] {
+                        UnitCompiler.lambdaParameter(loc, new Modifier[0], samParameterTypes[0], ilp.identifier),
+                    };
+                }
+
+                @Override public FormalParameter[]
+                visitFormalLambdaParameters(FormalLambdaParameters flp) {
+                    FormalParameter[] result = new FormalParameter[flp.formalParameters.parameters.length];
+                    for (int i = 0; i < result.length; i++) {
+                        FormalParameter fp = flp.formalParameters.parameters[i];
+                        result[i] = (
+                            fp.type instanceof ReferenceType
+                            && Arrays.equals(((ReferenceType) fp.type).identifiers, new String[] { "var" })
+                            ? UnitCompiler.lambdaParameter(
+                                fp.getLocation(),
+                                fp.modifiers,
+                                samParameterTypes[i],
+                                fp.name
+                            )
+                            : fp
+                        );
+                    }
+                    return result;
+                }
+
+                @Override public FormalParameter[]
+                visitInferredLambdaParameters(InferredLambdaParameters ilp) {
+                    FormalParameter[] result = new FormalParameter[ilp.names.length];
+                    for (int i = 0; i < result.length; i++) {
+                        result[i] = UnitCompiler.lambdaParameter(
+                            loc,
+                            new Modifier[0],
+                            samParameterTypes[i],
+                            ilp.names[i]
+                        );
+                    }
+                    return result;
+                }
+            }
+        );
+        assert lambdaParameters != null;
+
+        // Determine the local variables that the body references, and whether it references the current instance.
+        final Set<String> capturedVariables = new LinkedHashSet<>();
+        final Set<String> declaredNames     = new HashSet<>();
+        for (FormalParameter fp : lambdaParameters) declaredNames.add(fp.name);
+        final boolean[] needsThis = new boolean[1];
+        final AbstractTypeDeclaration atd = (AbstractTypeDeclaration) tbd.getDeclaringType();
+        final boolean staticContext = UnitCompiler.isStaticContext(tbd);
+        UnitCompiler.traverseLambdaBody(le, new AbstractTraverser<CompileException>() {
+
+            @Override public void
+            traverseLambdaExpression(LambdaExpression le2) throws CompileException {
+                for (String name : UnitCompiler.getLambdaParameterNames(le2)) declaredNames.add(name);
+                UnitCompiler.traverseLambdaBody(le2, this);
+                super.traverseLambdaExpression(le2);
+            }
+
+            @Override public void
+            traverseLocalVariableDeclarationStatement(LocalVariableDeclarationStatement lvds)
+            throws CompileException {
+                for (VariableDeclarator vd : lvds.variableDeclarators) declaredNames.add(vd.name);
+                super.traverseLocalVariableDeclarationStatement(lvds);
+            }
+
+            @Override public void
+            traverseAmbiguousName(AmbiguousName an) throws CompileException {
+                String name = an.identifiers[0];
+                if (ebs.findLocalVariable(name) != null) {
+                    capturedVariables.add(name);
+                } else
+                if (
+                    !staticContext
+                    && !declaredNames.contains(name)
+                    && UnitCompiler.this.mayDesignateInstanceMember(atd, name, false, an.getLocation())
+                ) {
+                    needsThis[0] = true;
+                }
+                super.traverseAmbiguousName(an);
+            }
+
+            @Override public void
+            traverseMethodInvocation(MethodInvocation mi) throws CompileException {
+                if (
+                    !staticContext
+                    && mi.target == null
+                    && UnitCompiler.this.mayDesignateInstanceMember(atd, mi.methodName, true, mi.getLocation())
+                ) needsThis[0] = true;
+                super.traverseMethodInvocation(mi);
+            }
+
+            @Override public void
+            traverseNewClassInstance(NewClassInstance nci) throws CompileException {
+                LocalClassDeclaration lcd = (
+                    nci.qualification == null
+                    && nci.type instanceof ReferenceType
+                    && ((ReferenceType) nci.type).identifiers.length == 1
+                    ? UnitCompiler.findLocalClassDeclaration(
+                        le.getEnclosingScope(),
+                        ((ReferenceType) nci.type).identifiers[0]
+                    )
+                    : null
+                );
+                if (lcd != null) {
+
+                    // A local class of the enclosing blocks accesses the local variables of the enclosing function
+                    // through synthetic fields ("val$..."), which its instantiation initializes.
+                    for (String sfn : lcd.getSyntheticFields().keySet()) {
+                        if (sfn.startsWith("val$") && ebs.findLocalVariable(sfn.substring(4)) != null) {
+                            capturedVariables.add(sfn.substring(4));
+                        }
+                    }
+                    if (!staticContext && UnitCompiler.this.resolve(lcd).getOuterIClass() != null) needsThis[0] = true;
+                } else
+                if (
+                    !staticContext
+                    && nci.qualification == null
+                    && UnitCompiler.this.needsEnclosingInstance(nci, atd)
+                ) needsThis[0] = true;
+                super.traverseNewClassInstance(nci);
+            }
+
+            @Override public void
+            traverseThisReference(ThisReference tr) throws CompileException {
+                needsThis[0] = true;
+                super.traverseThisReference(tr);
+            }
+
+            @Override public void
+            traverseQualifiedThisReference(QualifiedThisReference qtr) throws CompileException {
+                needsThis[0] = true;
+                super.traverseQualifiedThisReference(qtr);
+            }
+
+            @Override public void
+            traverseSuperclassMethodInvocation(SuperclassMethodInvocation smi) throws CompileException {
+                needsThis[0] = true;
+                super.traverseSuperclassMethodInvocation(smi);
+            }
+
+            @Override public void
+            traverseSuperclassFieldAccessExpression(SuperclassFieldAccessExpression scfae) throws CompileException {
+                needsThis[0] = true;
+                super.traverseSuperclassFieldAccessExpression(scfae);
+            }
+
+            @Override public void
+            traverseNewAnonymousClassInstance(NewAnonymousClassInstance naci) throws CompileException {
+                if (!staticContext) needsThis[0] = true;
+                super.traverseNewAnonymousClassInstance(naci);
+            }
+
+            @Override public void
+            traverseLocalClassDeclarationStatement(LocalClassDeclarationStatement lcds) throws CompileException {
+                if (!staticContext) needsThis[0] = true;
+                super.traverseLocalClassDeclarationStatement(lcds);
+            }
+        });
+
+        if (needsThis[0] && atd instanceof InterfaceDeclaration) {
+            this.compileError("Lambda expressions that reference the current instance of an interface NYI", loc);
+            needsThis[0] = false;
+        }
+
+        // Captured local variables must be final or effectively final (JLS8 15.27.2).
+        le.capturedVariables = (String[]) capturedVariables.toArray(new String[capturedVariables.size()]);
+        List<FormalParameter> parameters = new ArrayList<>();
+        for (String name : le.capturedVariables) {
+            LocalVariable lv = ebs.findLocalVariable(name);
+            assert lv != null;
+            this.checkEffectivelyFinal(name, lv, tbd, loc);
+            parameters.add(new FormalParameter(
+                loc,
+                UnitCompiler.accessModifiers(loc, "final"),
+                new SimpleType(loc, UnitCompiler.rawTypeOf(lv.type)),
+                name
+            ));
+        }
+        parameters.addAll(Arrays.asList(lambdaParameters));
+
+        // Wrap the lambda body in a method body.
+        final IClass   samReturnType = this.getFunctionTypeReturnType(le.targetType, le.targetTypeArguments, sam);
+        BlockStatement body          = (BlockStatement) le.body.accept(
+            new LambdaBodyVisitor<BlockStatement, CompileException>() {
+
+                @Override public BlockStatement
+                visitBlockLambdaBody(BlockLambdaBody blb) { return blb.block; }
+
+                @Override public BlockStatement
+                visitExpressionLambdaBody(ExpressionLambdaBody elb) throws CompileException {
+                    return (
+                        samReturnType == IClass.VOID
+                        ? new ExpressionStatement(elb.expression)
+                        : new ReturnStatement(elb.expression.getLocation(), elb.expression)
+                    );
+                }
+            }
+        );
+        assert body != null;
+
+        IClass[] thrownExceptions     = sam.getThrownExceptions();
+        Type[]   thrownExceptionTypes = new Type[thrownExceptions.length];
+        for (int i = 0; i < thrownExceptions.length; i++) {
+            thrownExceptionTypes[i] = new SimpleType(loc, thrownExceptions[i]);
+        }
+
+        MethodDeclarator result = new MethodDeclarator(
+            loc,                                                  // location
+            null,                                                 // docComment
+            this.syntheticMethodModifiers(le, needsThis[0]),      // modifiers
+            null,                                                 // typeParameters
+            new SimpleType(loc, samReturnType),                   // type
+            this.syntheticMethodName(le),                         // name
+            new FormalParameters(                                 // formalParameters
+                loc,
+                (FormalParameter[]) parameters.toArray(new FormalParameter[parameters.size()]),
+                false
+            ),
+            thrownExceptionTypes,                                 // thrownExceptions
+            null,                                                 // defaultValue
+            Collections.singletonList(body)                       // statements
+        );
+        result.setDeclaringType(atd);
+        result.lambdaExpression = le;
+        return result;
+    }
+
+    /**
+     * @return The modifiers of the synthetic method that implements a lambda expression or method reference
+     */
+    private Modifier[]
+    syntheticMethodModifiers(Rvalue rv, boolean instance) {
+        Location loc = rv.getLocation();
+        return (
+            UnitCompiler.getEnclosingTypeBodyDeclaration(rv).getDeclaringType() instanceof InterfaceDeclaration
+            ? UnitCompiler.accessModifiers(loc, "public", "static")
+            : instance
+            ? UnitCompiler.accessModifiers(loc, "private")
+            : UnitCompiler.accessModifiers(loc, "private", "static")
+        );
+    }
+
+    /**
+     * @return A name like "{@code lambda$meth$0}" that is unique in the current class file
+     */
+    private String
+    syntheticMethodName(Rvalue rv) {
+
+        TypeBodyDeclaration tbd = UnitCompiler.getEnclosingTypeBodyDeclaration(rv);
+
+        String functionName;
+        if (tbd instanceof FunctionDeclarator) {
+            functionName = ((FunctionDeclarator) tbd).name;
+            if ("<init>".equals(functionName)) {
+                functionName = "new";
+            } else
+            if ("<clinit>".equals(functionName)) {
+                functionName = "static";
+            } else
+            if (functionName.startsWith("lambda$")) {
+                functionName = functionName.substring(7, functionName.lastIndexOf('$'));
+            }
+        } else
+        {
+            functionName = UnitCompiler.isStaticContext(tbd) ? "static" : "new";
+        }
+
+        Set<String> methodNames = new HashSet<>();
+        for (ClassFile.MethodInfo mi : this.getCodeContext().getClassFile().methodInfos) methodNames.add(mi.getName());
+
+        for (int i = 0;; i++) {
+            String result = "lambda$" + functionName + '$' + i;
+            if (!methodNames.contains(result) && !methodNames.contains(result + '$')) return result;
+        }
+    }
+
+    /**
+     * Reports a compile error unless the local variable <var>lv</var> is final or effectively final (JLS8 4.12.4).
+     * Local variables that are declared without an initializer may be assigned more than once, which is more lenient
+     * than the JLS.
+     */
+    private void
+    checkEffectivelyFinal(final String name, final LocalVariable lv, TypeBodyDeclaration tbd, Location location)
+    throws CompileException {
+
+        if (lv.finaL) return;
+
+        final boolean[] hasInitializer = { true };
+        final boolean[] isAssigned     = new boolean[1];
+        final boolean[] isModified     = new boolean[1];
+        new AbstractTraverser<CompileException>() {
+
+            @Override public void
+            traverseLocalVariableDeclarationStatement(LocalVariableDeclarationStatement lvds)
+            throws CompileException {
+                for (VariableDeclarator vd : lvds.variableDeclarators) {
+                    if (vd.localVariable == lv && vd.initializer == null) hasInitializer[0] = false;
+                }
+                super.traverseLocalVariableDeclarationStatement(lvds);
+            }
+
+            @Override public void
+            traverseAssignment(Assignment a) throws CompileException {
+                if (UnitCompiler.designatesLocalVariable(a.lhs, name, lv)) {
+                    if (a.operator == "=") { // SUPPRESS CHECKSTYLE StringLiteralEquality
+                        isAssigned[0] = true;
+                    } else {
+                        isModified[0] = true;
+                    }
+                }
+                super.traverseAssignment(a);
+            }
+
+            @Override public void
+            traverseCrement(Crement c) throws CompileException {
+                if (UnitCompiler.designatesLocalVariable(c.operand, name, lv)) isModified[0] = true;
+                super.traverseCrement(c);
+            }
+
+            @Override public void
+            traverseLambdaExpression(LambdaExpression le) throws CompileException {
+                UnitCompiler.traverseLambdaBody(le, this);
+                super.traverseLambdaExpression(le);
+            }
+        }.visitTypeBodyDeclaration(tbd);
+
+        if (isModified[0] || (isAssigned[0] && hasInitializer[0])) {
+            this.compileError(
+                (
+                    "Local variable \""
+                    + name
+                    + "\" referenced from a lambda expression must be final or effectively final"
+                ),
+                location
+            );
+        }
+    }
+
+    /**
+     * @return Whether the <var>lvalue</var> is a simple name that refers to the local variable <var>lv</var>; {@code
+     *         true} if that cannot be determined
+     */
+    private static boolean
+    designatesLocalVariable(Lvalue lvalue, String name, LocalVariable lv) {
+
+        if (!(lvalue instanceof AmbiguousName)) return false;
+
+        String[] identifiers = ((AmbiguousName) lvalue).identifiers;
+        if (identifiers.length != 1 || !identifiers[0].equals(name)) return false;
+
+        Scope s = lvalue.getEnclosingScopeOrNull();
+        if (s == null) return true;
+
+        BlockStatement bs = UnitCompiler.getEnclosingBlockStatement(s);
+        return bs == null || bs.findLocalVariable(name) == lv;
+    }
+
+    /**
+     * @return Whether the simple <var>name</var> of a field or method, used in the body of <var>td</var>, possibly
+     *         designates a member of the current instance or of an enclosing instance
+     */
+    private boolean
+    mayDesignateInstanceMember(TypeDeclaration td, String name, boolean method, Location location)
+    throws CompileException {
+
+        for (TypeDeclaration t : UnitCompiler.getOuterClasses(td)) {
+            IClass iClass = this.resolve(t);
+
+            if (method) {
+                boolean found = false;
+                for (IClass.IMethod m : iClass.getIMethods(name)) {
+                    if (!m.isStatic()) return true;
+                    found = true;
+                }
+                if (found) return false;
+            } else
+            {
+                IClass.IField f = this.findIField(iClass, name, location);
+                if (f != null) return !f.isStatic();
+
+                // Local and anonymous classes access the local variables of the enclosing function through synthetic
+                // fields ("val$...").
+                if (t instanceof LocalClassDeclaration || t instanceof AnonymousClassDeclaration) return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the unqualified class instance creation <var>nci</var>, used in the body of <var>td</var>,
+     *         possibly instantiates an inner class that needs the current instance as its enclosing instance
+     */
+    private boolean
+    needsEnclosingInstance(NewClassInstance nci, TypeDeclaration td) throws CompileException {
+
+        IType it = nci.iType;
+        if (it != null) return UnitCompiler.rawTypeOf(it).getOuterIClass() != null;
+
+        if (!(nci.type instanceof ReferenceType)) return false;
+        String[] identifiers = ((ReferenceType) nci.type).identifiers;
+
+        if (identifiers.length > 1) {
+            IClass iClass = this.findTypeByName(nci.getLocation(), Java.join(identifiers, "."));
+            return iClass != null && iClass.getOuterIClass() != null;
+        }
+
+        for (TypeDeclaration t : UnitCompiler.getOuterClasses(td)) {
+            IClass[] memberTypes = this.resolve(t).findMemberType(identifiers[0]);
+            if (memberTypes.length > 0) return memberTypes[0].getOuterIClass() != null;
+        }
+        return false;
+    }
+
+    /**
+     * Traverses the body of the <var>le</var>, which {@link AbstractTraverser} does not do by itself.
+     */
+    private static void
+    traverseLambdaBody(LambdaExpression le, final AbstractTraverser<CompileException> traverser)
+    throws CompileException {
+        le.body.accept(new LambdaBodyVisitor<Void, CompileException>() {
+
+            @Override @Nullable public Void
+            visitBlockLambdaBody(BlockLambdaBody blb) throws CompileException {
+                traverser.visitBlockStatement(blb.block);
+                return null;
+            }
+
+            @Override @Nullable public Void
+            visitExpressionLambdaBody(ExpressionLambdaBody elb) throws CompileException {
+                traverser.visitAtom(elb.expression);
+                return null;
+            }
+        });
+    }
+
+    private static FormalParameter
+    lambdaParameter(Location location, Modifier[] modifiers, IClass type, String name) {
+        return new FormalParameter(location, modifiers, new SimpleType(location, type), name);
+    }
+
+    private static String[]
+    getLambdaParameterNames(LambdaExpression le) {
+        String[] result = (String[]) le.parameters.accept(new LambdaParametersVisitor<String[], RuntimeException>() {
+
+            @Override public String[]
+            visitIdentifierLambdaParameters(IdentifierLambdaParameters ilp) { return new String[] { ilp.identifier }; }
+
+            @Override public String[]
+            visitFormalLambdaParameters(FormalLambdaParameters flp) {
+                String[] result = new String[flp.formalParameters.parameters.length];
+                for (int i = 0; i < result.length; i++) result[i] = flp.formalParameters.parameters[i].name;
+                return result;
+            }
+
+            @Override public String[]
+            visitInferredLambdaParameters(InferredLambdaParameters ilp) { return ilp.names; }
+        });
+        assert result != null;
+        return result;
+    }
+
+    private static int
+    getLambdaParameterCount(LambdaExpression le) { return UnitCompiler.getLambdaParameterNames(le).length; }
+
+    @Nullable private static BlockStatement
+    getEnclosingBlockStatement(Scope s) {
+        for (;;) {
+            if (s instanceof BlockStatement) return (BlockStatement) s;
+            if (s instanceof TypeDeclaration || s instanceof CompilationUnit) return null;
+            s = s.getEnclosingScope();
+        }
+    }
+
+    private static TypeBodyDeclaration
+    getEnclosingTypeBodyDeclaration(Rvalue rv) {
+        Scope s = rv.getEnclosingScope();
+        while (!(s instanceof TypeBodyDeclaration)) s = s.getEnclosingScope();
+        return (TypeBodyDeclaration) s;
+    }
+
+    /**
+     * Determines the method that the <var>mr</var> refers to, when its function type is that of <var>sam</var> (JLS8
+     * 15.13.1). Because JANINO erases all generic types, parameter types of the <var>sam</var> that are supertypes of
+     * the method's parameter types are also accepted.
+     *
+     * @param reportErrors Whether to report a compile error iff the method cannot be determined
+     * @return             {@code null} iff the method cannot be determined
+     */
+    @Nullable private IClass.IMethod
+    findMethodReferenceTarget(MethodReference mr, IClass.IMethod sam, boolean reportErrors) throws CompileException {
+
+        IClass[]       samParameterTypes = this.getFunctionTypeParameterTypes(
+            mr.targetType,
+            mr.targetTypeArguments,
+            sam
+        );
+        IClass.IMethod result;
+        if (this.isType(mr.lhs)) {
+            IClass type = UnitCompiler.rawTypeOf(this.getType(mr.lhs));
+
+            // "ReferenceType::staticMethod" or "ReferenceType::instanceMethod", where the first parameter of the
+            // function type is the receiver.
+            IClass.IMethod staticMethod   = this.findMethodReferenceTarget2(mr, type, samParameterTypes, true);
+            IClass.IMethod instanceMethod = null;
+            if (
+                samParameterTypes.length > 0
+                && !samParameterTypes[0].isPrimitive()
+                && (
+                    type.isAssignableFrom(samParameterTypes[0])
+                    || samParameterTypes[0].isAssignableFrom(type)
+                )
+            ) {
+                instanceMethod = this.findMethodReferenceTarget2(
+                    mr,
+                    type,
+                    (IClass[]) Arrays.copyOfRange(samParameterTypes, 1, samParameterTypes.length),
+                    false
+                );
+            }
+            if (staticMethod != null && instanceMethod != null) {
+                if (reportErrors) {
+                    this.compileError(
+                        (
+                            "Method reference \""
+                            + mr
+                            + "\" is ambiguous: \""
+                            + staticMethod
+                            + "\" vs. \""
+                            + instanceMethod
+                            + "\""
+                        ),
+                        mr.getLocation()
+                    );
+                }
+                return null;
+            }
+            result = staticMethod != null ? staticMethod : instanceMethod;
+        } else
+        if (mr.lhs instanceof Package) {
+            if (reportErrors) {
+                this.compileError("\"" + mr.lhs + "\" is neither a type nor an expression", mr.getLocation());
+            }
+            return null;
+        } else
+        {
+            IClass type = UnitCompiler.rawTypeOf(this.getType(this.toRvalueOrCompileException(mr.lhs)));
+
+            // "Primary::instanceMethod".
+            result = this.findMethodReferenceTarget2(mr, type, samParameterTypes, false);
+        }
+
+        if (result == null) {
+            if (reportErrors) {
+                this.compileError(
+                    "No method \"" + mr.methodName + "\" in \"" + mr.lhs + "\" is applicable for \"" + sam + "\"",
+                    mr.getLocation()
+                );
+            }
+            return null;
+        }
+
+        if (result.isVarargs() && result.argsNeedAdjust()) {
+            if (reportErrors) this.compileError("Method reference to variable arity method NYI", mr.getLocation());
+            return null;
+        }
+
+        if (sam.getReturnType() != IClass.VOID && result.getReturnType() == IClass.VOID) {
+            if (reportErrors) {
+                this.compileError(
+                    "Method \"" + result + "\" returns VOID, but \"" + sam + "\" returns a value",
+                    mr.getLocation()
+                );
+            }
+            return null;
+        }
+
+        return result;
+    }
+
+    @Nullable private IClass.IMethod
+    findMethodReferenceTarget2(MethodReference mr, IClass type, IClass[] argumentTypes, boolean statiC)
+    throws CompileException {
+
+        List<IClass.IMethod> l = new ArrayList<>();
+        for (IClass.IMethod m : this.getIMethods(type, mr.methodName, argumentTypes.length)) {
+            if (m.isStatic() == statiC) l.add(m);
+        }
+        if (l.isEmpty()) return null;
+
+        return (IClass.IMethod) this.findMostSpecificErasedIInvocable(
+            mr,
+            (IClass.IInvocable[]) l.toArray(new IClass.IInvocable[l.size()]),
+            argumentTypes
+        );
+    }
+
+    /**
+     * Like {@link #findMostSpecificIInvocable(Locatable, IInvocable[], IClass[], boolean, Scope)}, but if no
+     * invocable is applicable, then the invocable with the right arity that accepts the <var>argumentTypes</var>
+     * after narrowing reference conversion is chosen, iff there is exactly one such invocable. (The argument types
+     * originate from an erased functional interface method, so a narrowing conversion is what the type arguments
+     * would have expressed.)
+     */
+    @Nullable private IClass.IInvocable
+    findMostSpecificErasedIInvocable(Rvalue rv, IClass.IInvocable[] iInvocables, IClass[] argumentTypes)
+    throws CompileException {
+
+        Scope             scope  = rv.getEnclosingScope();
+        IClass.IInvocable result = this.findMostSpecificIInvocable(rv, iInvocables, argumentTypes, false, scope);
+        if (result == null) result = this.findMostSpecificIInvocable(rv, iInvocables, argumentTypes, true, scope);
+        if (result != null) return result;
+
+        NEXT_INVOCABLE:
+        for (IClass.IInvocable ii : iInvocables) {
+            IClass[] pts = ii.getParameterTypes();
+            if (pts.length != argumentTypes.length || !this.isAccessible(ii, scope)) continue;
+            for (int i = 0; i < pts.length; i++) {
+                IClass pt = pts[i].isPrimitive() ? this.isBoxingConvertible(pts[i]) : pts[i];
+                if (
+                    pt == null
+                    || (
+                        !this.isMethodInvocationConvertible(argumentTypes[i], pts[i], true)
+                        && !argumentTypes[i].isAssignableFrom(pt)
+                    )
+                ) continue NEXT_INVOCABLE;
+            }
+            if (result != null) return null;
+            result = ii;
+        }
+        return result;
+    }
+
+    /**
+     * @param reportErrors Whether to report a compile error iff the constructor cannot be determined
+     * @return             The constructor that the <var>cicr</var> refers to, when its function type is that of
+     *                     <var>sam</var>, or {@code null}
+     */
+    @Nullable private IClass.IConstructor
+    findConstructorReferenceTarget(ClassInstanceCreationReference cicr, IClass.IMethod sam, boolean reportErrors)
+    throws CompileException {
+
+        IClass type = this.getRawType(cicr.type);
+        if (type.isInterface() || type.isAbstract()) {
+            if (reportErrors) this.compileError("\"" + type + "\" cannot be instantiated", cicr.getLocation());
+            return null;
+        }
+        if (type.getOuterIClass() != null) {
+            if (reportErrors) this.compileError("Constructor reference to inner class NYI", cicr.getLocation());
+            return null;
+        }
+
+        IClass.IConstructor result = (IClass.IConstructor) this.findMostSpecificErasedIInvocable(
+            cicr,
+            type.getDeclaredIConstructors(),
+            this.getFunctionTypeParameterTypes(cicr.targetType, cicr.targetTypeArguments, sam)
+        );
+        if (result == null) {
+            if (reportErrors) {
+                this.compileError(
+                    "No constructor of \"" + type + "\" is applicable for \"" + sam + "\"",
+                    cicr.getLocation()
+                );
+            }
+            return null;
+        }
+        if (result.isVarargs() && result.argsNeedAdjust()) {
+            if (reportErrors) {
+                this.compileError("Constructor reference to variable arity constructor NYI", cicr.getLocation());
+            }
+            return null;
+        }
+        return result;
+    }
+
+    private boolean
+    isArrayCreationReferenceCompatible(ArrayCreationReference acr, IClass.IMethod sam) throws CompileException {
+        IClass[] pts = sam.getParameterTypes();
+        IClass   rt  = sam.getReturnType();
+        return (
+            pts.length == 1
+            && (
+                this.isMethodInvocationConvertible(pts[0], IClass.INT, true)
+                || pts[0].isAssignableFrom(this.iClassLoader.TYPE_java_lang_Integer)
+            )
+            && (rt == IClass.VOID || rt.isAssignableFrom(this.getRawType(acr.type)))
+        );
+    }
+
+    /**
+     * Checks whether the lambda expression or method reference <var>rv</var> is compatible with the functional
+     * interface method <var>sam</var>, as far as that can be determined without a target type (JLS8 15.12.2.1).
+     */
+    private boolean
+    isPotentiallyCompatible(Rvalue rv, final IClass.IMethod sam) throws CompileException {
+
+        while (rv instanceof ParenthesizedExpression) rv = ((ParenthesizedExpression) rv).value;
+
+        final boolean samIsVoid = sam.getReturnType() == IClass.VOID;
+
+        if (rv instanceof LambdaExpression) {
+            LambdaExpression le = (LambdaExpression) rv;
+            if (UnitCompiler.getLambdaParameterCount(le) != sam.getParameterTypes().length) return false;
+
+            Boolean result = (Boolean) le.body.accept(new LambdaBodyVisitor<Boolean, RuntimeException>() {
+
+                @Override public Boolean
+                visitBlockLambdaBody(BlockLambdaBody blb) {
+                    return samIsVoid != UnitCompiler.hasReturnWithValue(blb.block);
+                }
+
+                @Override public Boolean
+                visitExpressionLambdaBody(ExpressionLambdaBody elb) {
+                    return !samIsVoid || UnitCompiler.isStatementExpression(elb.expression);
+                }
+            });
+            assert result != null;
+            return result;
+        }
+
+        if (rv instanceof MethodReference) {
+            return this.findMethodReferenceTarget((MethodReference) rv, sam, false) != null;
+        }
+
+        if (rv instanceof ClassInstanceCreationReference) {
+            return this.findConstructorReferenceTarget((ClassInstanceCreationReference) rv, sam, false) != null;
+        }
+
+        if (rv instanceof ArrayCreationReference) {
+            return this.isArrayCreationReferenceCompatible((ArrayCreationReference) rv, sam);
+        }
+
+        return false;
+    }
+
+    /**
+     * @return Whether the <var>block</var> contains a "{@code return <var>expression</var>;}" statement (that does not
+     *         belong to a nested class or lambda expression)
+     */
+    private static boolean
+    hasReturnWithValue(Block block) {
+        final boolean[] result = new boolean[1];
+        new AbstractTraverser<RuntimeException>() {
+
+            @Override public void
+            traverseReturnStatement(ReturnStatement rs) {
+                if (rs.returnValue != null) result[0] = true;
+            }
 
-    @SuppressWarnings("static-method") private IClass
-    compileGet2(MethodReference mr) throws CompileException {
-        throw UnitCompiler.compileException(mr, "Compilation of method reference NYI");
-    }
+            @Override public void
+            traverseAnonymousClassDeclaration(AnonymousClassDeclaration acd) {}
 
-    @SuppressWarnings("static-method") private IClass
-    compileGet2(ClassInstanceCreationReference cicr) throws CompileException {
-        throw UnitCompiler.compileException(cicr, "Compilation of class instance creation reference NYI");
+            @Override public void
+            traverseLocalClassDeclarationStatement(LocalClassDeclarationStatement lcds) {}
+        }.visitBlockStatement(block);
+        return result[0];
     }
 
-    @SuppressWarnings("static-method") private IClass
-    compileGet2(ArrayCreationReference acr) throws CompileException {
-        throw UnitCompiler.compileException(acr, "Compilation of array creation reference NYI");
+    /**
+     * @return Whether the <var>rv</var> is a "statement expression" (JLS8 14.8)
+     */
+    private static boolean
+    isStatementExpression(Rvalue rv) {
+        return (
+            rv instanceof Assignment
+            || rv instanceof Crement
+            || rv instanceof MethodInvocation
+            || rv instanceof SuperclassMethodInvocation
+            || rv instanceof NewClassInstance
+            || rv instanceof NewAnonymousClassInstance
+        );
     }
 
     private IType
@@ -4841,6 +6632,7 @@ class UnitCompiler {
         }
         assert type instanceof IClass;
         IClass iClass = (IClass) type;
+        this.checkPermitted(iClass, cl.getLocation());
 
         if (iClass.isPrimitive()) {
 
@@ -4879,6 +6671,7 @@ class UnitCompiler {
             int lhsCs = this.compileContext(a.lhs);
             // Convert RHS value to LHS type.
             IType lhsType = this.getType(a.lhs);
+            UnitCompiler.setTargetType(a.rhs, lhsType);
             IType rhsType = this.compileGetValue(a.rhs);
             this.assignmentConversion(a, rhsType, lhsType, this.getConstantValue(a.rhs));
             // Duplicate RHS value below LHS context.
@@ -5195,6 +6988,8 @@ class UnitCompiler {
 
         // JLS7 5.5 Casting Conversion.
         IType tt = this.getType(c.targetType);
+        UnitCompiler.setTargetType(c.value, tt);
+        UnitCompiler.setTargetTypeArguments(c.value, c.targetType);
         IType vt = this.compileGetValue(c.value);
 
         if (this.tryCastConversion(c, vt, tt, this.getConstantValue2(c.value))) return tt;
@@ -5355,6 +7150,7 @@ class UnitCompiler {
         }
 
         for (int i = 0; i < adjustedArgs.length; ++i) {
+            UnitCompiler.setTargetType(adjustedArgs[i], parameterTypes[i]);
             this.assignmentConversion(
                 mi,                                    // location
                 this.compileGetValue(adjustedArgs[i]), // sourceType
@@ -5364,7 +7160,12 @@ class UnitCompiler {
         }
         // Invoke!
         this.checkAccessible(iMethod, mi.getEnclosingScope(), mi.getLocation());
-        if (!iMethod.getDeclaringIClass().isInterface() && !iMethod.isStatic() && iMethod.getAccess() == Access.PRIVATE) {
+        if (
+            !iMethod.getDeclaringIClass().isInterface()
+            && !iMethod.isStatic()
+            && iMethod.getAccess() == Access.PRIVATE
+            && !this.usesNestmates()
+        ) {
 
             // In order to make a non-static private method invocable for enclosing types, enclosed types and types
             // enclosed by the same type, "compile(FunctionDeclarator)" modifies it on-the-fly as follows:
@@ -5496,6 +7297,7 @@ class UnitCompiler {
         // TODO: adjust args
         IClass[] parameterTypes = iMethod.getParameterTypes();
         for (int i = 0; i < scmi.arguments.length; ++i) {
+            UnitCompiler.setTargetType(scmi.arguments[i], parameterTypes[i]);
             this.assignmentConversion(
                 scmi,                                    // locatable
                 this.compileGetValue(scmi.arguments[i]), // sourceType
@@ -5639,6 +7441,7 @@ class UnitCompiler {
             naci.arguments,          // arguments
             acd                      // contextScope
         );
+        this.checkPermitted(superclassIConstructor, naci.getLocation());
 
         Location loc           = naci.getLocation();
         Rvalue   qualification = naci.qualification;
@@ -5961,10 +7764,13 @@ class UnitCompiler {
         return this.getConstantValue(this.toRvalueOrCompileException(this.reclassify(an)));
     }
 
-    @SuppressWarnings("static-method")
     @Nullable private Object
     getConstantValue2(FieldAccess fa) throws CompileException {
-        return fa.field.getConstantValue();
+        Object result = fa.field.getConstantValue();
+        if (result != UnitCompiler.NOT_CONSTANT) {
+            this.inlinedConstantDeclaringTypes.add(fa.field.getDeclaringIClass().getDescriptor());
+        }
+        return result;
     }
 
     @Nullable private Object
@@ -7220,24 +9026,34 @@ class UnitCompiler {
         return this.getIClass(tr);
     }
 
-    @SuppressWarnings("static-method") private IClass
+    private IType
     getType2(LambdaExpression le) throws CompileException {
-        throw UnitCompiler.compileException(le, "Compilation of lambda expression NYI");
+        return this.getTargetTypeOrObject(le, le.targetType, "lambda expression");
     }
 
-    @SuppressWarnings("static-method") private IClass
+    private IType
     getType2(MethodReference mr) throws CompileException {
-        throw UnitCompiler.compileException(mr, "Compilation of method reference NYI");
+        return this.getTargetTypeOrObject(mr, mr.targetType, "method reference");
     }
 
-    @SuppressWarnings("static-method") private IClass
+    private IType
     getType2(ClassInstanceCreationReference cicr) throws CompileException {
-        throw UnitCompiler.compileException(cicr, "Compilation of class instance creation reference NYI");
+        return this.getTargetTypeOrObject(cicr, cicr.targetType, "constructor reference");
     }
 
-    @SuppressWarnings("static-method") private IClass
+    private IType
     getType2(ArrayCreationReference acr) throws CompileException {
-        throw UnitCompiler.compileException(acr, "Compilation of array creation reference NYI");
+        return this.getTargetTypeOrObject(acr, acr.targetType, "array constructor reference");
+    }
+
+    /**
+     * The type of a lambda expression or method reference is the type of its assignment or invocation context.
+     */
+    private IType
+    getTargetTypeOrObject(Locatable locatable, @Nullable IType targetType, String what) throws CompileException {
+        if (targetType != null) return targetType;
+        this.compileError("Target type of " + what + " cannot be determined", locatable.getLocation());
+        return this.iClassLoader.TYPE_java_lang_Object;
     }
 
     private IType
@@ -8316,6 +10132,7 @@ class UnitCompiler {
             arguments,     // arguments
             scope          // contextScope
         );
+        this.checkPermitted(iConstructor, locatable.getLocation());
 
         // Check exceptions that the constructor may throw.
         IClass[] thrownExceptions = iConstructor.getThrownExceptions();
@@ -8517,6 +10334,7 @@ class UnitCompiler {
         }
 
         for (int i = 0; i < arguments.length; ++i) {
+            UnitCompiler.setTargetType(arguments[i], parameterTypes[i]);
             this.assignmentConversion(
                 locatable,                          // locatable
                 this.compileGetValue(arguments[i]), // sourceType
@@ -8838,6 +10656,7 @@ class UnitCompiler {
         {
             IClass.IField field = this.findIField(UnitCompiler.rawTypeOf(lhsType), rhs, location);
             if (field != null) {
+                this.checkPermitted(field, location);
                 // 6.5.2.2.2.2 TYPE.FIELD
                 // 6.5.2.2.3.2 EXPRESSION.FIELD
                 FieldAccess fa = new FieldAccess(
@@ -9008,6 +10827,7 @@ class UnitCompiler {
                 final IClass                  etd               = this.resolve(enclosingTypeDecl);
                 final IClass.IField           f                 = this.findIField(etd, identifier, location);
                 if (f != null) {
+                    this.checkPermitted(f, location);
                     if (f.isStatic()) {
                         this.warning("IASF", (
                             "Implicit access to static field \""
@@ -9079,6 +10899,7 @@ class UnitCompiler {
         for (IField f : Iterables.filterByClass(this.importSingleStatic(identifier), IField.class)) {
 
             if (this.isAccessible(f, scope)) {
+                this.checkPermitted(f, location);
 
                 FieldAccess fieldAccess = new FieldAccess(
                     location,
@@ -9094,6 +10915,7 @@ class UnitCompiler {
         for (IField f : Iterables.filterByClass(this.importStaticOnDemand(identifier), IField.class)) {
 
             if (this.isAccessible(f, scope)) {
+                this.checkPermitted(f, location);
 
                 FieldAccess fieldAccess = new FieldAccess(
                     location,
@@ -9286,6 +11108,7 @@ class UnitCompiler {
                     toString() { return "???"; }
                 };
             } else {
+                this.checkPermitted(iField, fae.getLocation());
                 value = new FieldAccess(
                     fae.getLocation(),
                     fae.lhs,
@@ -9340,6 +11163,7 @@ class UnitCompiler {
                 toString() { return "???"; }
             };
         } else {
+            this.checkPermitted(iField, scfae.getLocation());
             value = new FieldAccess(
                 scfae.getLocation(),
                 lhs,
@@ -9441,6 +11265,7 @@ class UnitCompiler {
 
         assert iMethod != null; // Don't know why JAVAC thinks "iMethod" could be null here!?
 
+        this.checkPermitted(iMethod, mi.getLocation());
         this.checkThrownExceptions(mi, iMethod);
         return iMethod;
     }
@@ -9456,28 +11281,184 @@ class UnitCompiler {
     findIMethod(IType targetType, Invocation invocation) throws CompileException {
 
         IClass rawTargetType = UnitCompiler.rawTypeOf(targetType);
+        String methodName    = invocation.methodName;
+        Rvalue[] arguments   = invocation.arguments;
+        Scope contextScope   = invocation.getEnclosingScope();
 
-        // Get all methods.
-        List<IClass.IMethod> ms = new ArrayList<>();
-        this.getIMethods(rawTargetType, invocation.methodName, ms);
+        // Get the methods that could possibly be invoked with that many arguments.
+        IClass.IMethod[] ms = this.getIMethods(rawTargetType, methodName, arguments.length);
+        if (ms.length == 0) {
 
-        // Interfaces inherit the methods declared in 'Object'.
-        if (rawTargetType.isInterface()) {
-            IClass.IMethod[] oms = this.iClassLoader.TYPE_java_lang_Object.getDeclaredIMethods(invocation.methodName);
-            for (IMethod om : oms) {
-                if (!om.isStatic() && om.getAccess() == Access.PUBLIC) ms.add(om);
+            // Get all methods with that name, so that a meaningful compile error can be reported.
+            ms = this.getIMethods(rawTargetType, methodName, -1);
+            if (ms.length == 0) return null;
+
+            return (IClass.IMethod) this.findMostSpecificIInvocable(invocation, ms, arguments, contextScope);
+        }
+
+        // Determine arguments' types.
+        IClass[] argumentTypes = this.getArgumentTypes(arguments, ms);
+
+        // Have we resolved an identical invocation before?
+        MethodInvocationKey key = new MethodInvocationKey(
+            rawTargetType,
+            methodName,
+            argumentTypes,
+            UnitCompiler.getEnclosingTypeDeclaration(contextScope)
+        );
+        MethodResolution mr = (MethodResolution) this.resolvedMethodInvocations.get(key);
+        if (mr != null && Arrays.equals(mr.candidates, ms)) {
+            if (mr.method.isVarargs()) mr.method.setArgsNeedAdjust(mr.argsNeedAdjust);
+            return mr.method;
+        }
+
+        // Choose the most specific method.
+        int errorCount = this.compileErrorCount;
+        IClass.IMethod
+        result = (IClass.IMethod) this.findMostSpecificIInvocable(invocation, ms, argumentTypes, false, contextScope);
+        if (result == null) {
+            result = (IClass.IMethod) this.findMostSpecificIInvocable(invocation, ms, argumentTypes, true, contextScope);
+        }
+        if (result == null) {
+
+            // Report the compile error against all methods with that name.
+            return (IClass.IMethod) this.findMostSpecificIInvocable(
+                invocation,
+                this.getIMethods(rawTargetType, methodName, -1),
+                argumentTypes,
+                contextScope
+            );
+        }
+
+        // Memorize the resolution, unless it caused compile errors.
+        if (this.compileErrorCount == errorCount) {
+            this.resolvedMethodInvocations.put(key, new MethodResolution(
+                ms,
+                result,
+                result.isVarargs() && result.argsNeedAdjust()
+            ));
+        }
+
+        return result;
+    }
+
+    /**
+     * Maps resolved method invocations to the methods that they invoke.
+     */
+    private final Map<MethodInvocationKey, MethodResolution>
+    resolvedMethodInvocations = new HashMap<>();
+
+    /**
+     * The outcome of {@link #findIMethod(IType, Invocation)}. The memoized resolution is only valid as long as the
+     * target type has the same candidate methods; these change when methods are added to the type or to one of its
+     * supertypes, see {@link IClass#invalidateMethodCaches()}.
+     */
+    private static final
+    class MethodResolution {
+
+        final IClass.IMethod[] candidates;
+        final IClass.IMethod   method;
+
+        /**
+         * Whether the arguments of the invocation of the varargs {@link #method} need to be wrapped in an array; see
+         * {@link IClass.IInvocable#argsNeedAdjust()}.
+         */
+        final boolean argsNeedAdjust;
+
+        MethodResolution(IClass.IMethod[] candidates, IClass.IMethod method, boolean argsNeedAdjust) {
+            this.candidates     = candidates;
+            this.method         = method;
+            this.argsNeedAdjust = argsNeedAdjust;
+        }
+    }
+
+    /**
+     * Everything that determines the outcome of {@link #findIMethod(IType, Invocation)}: The target type, the method
+     * name, the argument types and the type declaration that encloses the invocation (because it determines which
+     * methods are accessible). All {@link IClass}es are compared by identity.
+     */
+    private static final
+    class MethodInvocationKey {
+
+        private final IClass                    targetType;
+        private final String                    methodName;
+        private final IClass[]                  argumentTypes;
+        @Nullable private final TypeDeclaration context;
+        private final int                       hashCode;
+
+        MethodInvocationKey(
+            IClass                    targetType,
+            String                    methodName,
+            IClass[]                  argumentTypes,
+            @Nullable TypeDeclaration context
+        ) {
+            this.targetType    = targetType;
+            this.methodName    = methodName;
+            this.argumentTypes = argumentTypes;
+            this.context       = context;
+
+            int hc = System.identityHashCode(targetType) * 31 + methodName.hashCode();
+            for (IClass at : argumentTypes) hc = hc * 31 + System.identityHashCode(at);
+            this.hashCode = hc * 31 + System.identityHashCode(context);
+        }
+
+        @Override public int
+        hashCode() { return this.hashCode; }
+
+        @Override public boolean
+        equals(@Nullable Object o) {
+            if (!(o instanceof MethodInvocationKey)) return false;
+            MethodInvocationKey that = (MethodInvocationKey) o;
+            if (
+                this.hashCode != that.hashCode
+                || this.targetType != that.targetType
+                || this.context != that.context
+                || this.argumentTypes.length != that.argumentTypes.length
+                || !this.methodName.equals(that.methodName)
+            ) return false;
+            for (int i = 0; i < this.argumentTypes.length; i++) {
+                if (this.argumentTypes[i] != that.argumentTypes[i]) return false;
             }
+            return true;
         }
+    }
+
+    /**
+     * @return The innermost {@link TypeDeclaration} that encloses the <var>scope</var>, or {@code null}
+     */
+    @Nullable private static TypeDeclaration
+    getEnclosingTypeDeclaration(Scope scope) {
+        for (Scope s = scope; !(s instanceof CompilationUnit); s = s.getEnclosingScope()) {
+            if (s instanceof TypeDeclaration) return (TypeDeclaration) s;
+        }
+        return null;
+    }
 
-        if (ms.size() == 0) return null;
+    /**
+     * @param arity {@code -1} means "any number of arguments"
+     * @return      The methods with the given name that the <var>type</var> declares or inherits, and that could be
+     *              invoked with <var>arity</var> arguments; see {@link IClass#getIMethods(String, int)}
+     */
+    private IClass.IMethod[]
+    getIMethods(IClass type, String methodName, int arity) throws CompileException {
 
-        // Determine arguments' types, choose the most specific method.
-        return (IClass.IMethod) this.findMostSpecificIInvocable(
-            invocation,                                                   // locatable
-            (IClass.IMethod[]) ms.toArray(new IClass.IMethod[ms.size()]), // iInvocables
-            invocation.arguments,                                         // arguments
-            invocation.getEnclosingScope()                                // contextScope
+        IClass.IMethod[] ms = arity == -1 ? type.getIMethods(methodName) : type.getIMethods(methodName, arity);
+        if (!type.isInterface()) return ms;
+
+        // Interfaces inherit the methods declared in 'Object'.
+        IClass objecT = this.iClassLoader.TYPE_java_lang_Object;
+        IClass.IMethod[] oms = (
+            arity == -1
+            ? objecT.getDeclaredIMethods(methodName)
+            : objecT.getIMethods(methodName, arity)
         );
+        if (oms.length == 0) return ms;
+
+        List<IClass.IMethod> result = new ArrayList<>(Arrays.asList(ms));
+        for (IMethod om : oms) {
+            if (!om.isStatic() && om.getAccess() == Access.PUBLIC) result.add(om);
+        }
+        return (IClass.IMethod[]) result.toArray(new IClass.IMethod[result.size()]);
     }
 
     private IMethod
@@ -9505,20 +11486,7 @@ class UnitCompiler {
      */
     public void
     getIMethods(IClass type, String methodName, List<IMethod> v) throws CompileException {
-
-        // Check methods declared by this type.
-        {
-            IClass.IMethod[] ims = type.getDeclaredIMethods(methodName);
-            for (IMethod im : ims) v.add(im);
-        }
-
-        // Check superclass.
-        IClass superclass = type.getSuperclass();
-        if (superclass != null) this.getIMethods(superclass, methodName, v);
-
-        // Check superinterfaces.
-        IClass[] interfaces = type.getInterfaces();
-        for (IClass interfacE : interfaces) this.getIMethods(interfacE, methodName, v);
+        v.addAll(Arrays.asList(type.getIMethods(methodName)));
     }
 
     /**
@@ -9566,6 +11534,7 @@ class UnitCompiler {
                 superclassMethodInvocation.arguments
             );
         }
+        this.checkPermitted(iMethod, superclassMethodInvocation.getLocation());
         this.checkThrownExceptions(superclassMethodInvocation, iMethod);
         return iMethod;
     }
@@ -9586,8 +11555,28 @@ class UnitCompiler {
     ) throws CompileException {
 
         // Determine arguments' types.
-        final IClass[] argumentTypes = new IClass[arguments.length];
-        for (int i = 0; i < arguments.length; ++i) argumentTypes[i] = UnitCompiler.rawTypeOf(this.getType(arguments[i]));
+        return this.findMostSpecificIInvocable(
+            locatable,
+            iInvocables,
+            this.getArgumentTypes(arguments, iInvocables),
+            contextScope
+        );
+    }
+
+    /**
+     * Determines the applicable invocables and choose the most specific invocable and adjust arguments as needed (for
+     * varargs case). Reports a compile error iff no invocable is applicable.
+     *
+     * @param iInvocables Length must be greater than zero
+     * @return            The selected {@link IClass.IInvocable}
+     */
+    private IClass.IInvocable
+    findMostSpecificIInvocable(
+        Locatable          locatable,
+        final IInvocable[] iInvocables,
+        final IClass[]     argumentTypes,
+        Scope              contextScope
+    ) throws CompileException {
 
         // Determine most specific invocable WITHOUT boxing.
         IInvocable ii = this.findMostSpecificIInvocable(locatable, iInvocables, argumentTypes, false, contextScope);
@@ -9644,6 +11633,178 @@ class UnitCompiler {
         }
     }
 
+    /**
+     * Lambda expressions and method references have no type of their own; for these arguments, the parameter type of
+     * the <var>candidates</var> is taken for which the argument is potentially compatible (JLS8 15.12.2.1). If there is
+     * more than one such parameter type, then functional interfaces with a non-VOID result are preferred, so that,
+     * e.g., "{@code submit(() -> 7)}" resolves to "{@code submit(Callable)}" and not to "{@code submit(Runnable)}".
+     * However, a lambda expression whose body is an invocation of a VOID method is not value-compatible (JLS8
+     * 15.27.3), so "{@code submit(() -> System.out.println("x"))}" resolves to "{@code submit(Runnable)}". Also, a
+     * parameter type is not taken if the lambda expression's result is not assignment-compatible with the function
+     * type's result, so "{@code g(() -> "x")}" resolves to "{@code g(Supplier)}" and not to "{@code g(IntSupplier)}".
+     */
+    private IClass[]
+    getArgumentTypes(Rvalue[] arguments, IInvocable[] candidates) throws CompileException {
+        IClass[] result = new IClass[arguments.length];
+        for (int i = 0; i < arguments.length; ++i) {
+            Rvalue argument = arguments[i];
+            result[i] = (
+                UnitCompiler.isUntargetedFunctionalExpression(argument)
+                ? this.getFunctionalArgumentType(argument, i, candidates)
+                : UnitCompiler.rawTypeOf(this.getType(argument))
+            );
+        }
+        return result;
+    }
+
+    private IClass
+    getFunctionalArgumentType(Rvalue argument, int index, IInvocable[] candidates) throws CompileException {
+
+        IClass result = null;
+        for (IInvocable ii : candidates) {
+            IClass[] pts = ii.getParameterTypes();
+
+            IClass pt;
+            if (index < pts.length - (ii.isVarargs() ? 1 : 0)) {
+                pt = pts[index];
+            } else
+            if (ii.isVarargs()) {
+                pt = pts[pts.length - 1].getComponentType();
+                assert pt != null;
+            } else
+            {
+                continue;
+            }
+
+            IClass.IMethod sam = this.findFunctionalInterfaceMethod(pt);
+            if (sam == null || !this.isPotentiallyCompatible(argument, sam)) continue;
+            if (sam.getReturnType() != IClass.VOID && this.isVoidInvocationLambda(argument)) continue;
+            if (!this.isResultCompatible(argument, sam.getReturnType())) continue;
+
+            if (result == null || (sam.getReturnType() != IClass.VOID && pt != result)) {
+                IClass.IMethod resultSam = result == null ? null : this.findFunctionalInterfaceMethod(result);
+                if (resultSam == null || resultSam.getReturnType() == IClass.VOID) result = pt;
+            }
+        }
+
+        return result != null ? result : this.iClassLoader.TYPE_java_lang_Object;
+    }
+
+    /**
+     * @return Whether <var>rv</var> is a lambda expression with an expression body that is a method invocation, and
+     *         all methods that the invocation could refer to are VOID
+     */
+    private boolean
+    isVoidInvocationLambda(Rvalue rv) throws CompileException {
+
+        while (rv instanceof ParenthesizedExpression) rv = ((ParenthesizedExpression) rv).value;
+        if (!(rv instanceof LambdaExpression)) return false;
+
+        LambdaExpression le = (LambdaExpression) rv;
+        if (!(le.body instanceof ExpressionLambdaBody)) return false;
+
+        Rvalue expression = ((ExpressionLambdaBody) le.body).expression;
+        if (!(expression instanceof MethodInvocation)) return false;
+        MethodInvocation mi = (MethodInvocation) expression;
+
+        // The lambda body is not yet attached to a scope, so only unqualified invocations and invocations on an
+        // ambiguous name (that does not designate a lambda parameter) can be analyzed here.
+        List<IClass> targetTypes = new ArrayList<>();
+        if (mi.target == null) {
+            for (Scope s = le.getEnclosingScope(); !(s instanceof CompilationUnit); s = s.getEnclosingScope()) {
+                if (s instanceof TypeDeclaration) targetTypes.add(this.resolve((TypeDeclaration) s));
+            }
+        } else
+        if (mi.target instanceof AmbiguousName) {
+            AmbiguousName an = (AmbiguousName) mi.target;
+            if (Arrays.asList(UnitCompiler.getLambdaParameterNames(le)).contains(an.identifiers[0])) return false;
+
+            IClass targetType = this.getAmbiguousNameType(an, le);
+            if (targetType == null) return false;
+            targetTypes.add(targetType);
+        } else
+        {
+            return false;
+        }
+
+        for (IClass targetType : targetTypes) {
+            IClass.IMethod[] ms = this.getIMethods(targetType, mi.methodName, mi.arguments.length);
+            if (ms.length == 0) continue;
+            for (IClass.IMethod m : ms) {
+                if (m.getReturnType() != IClass.VOID) return false;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * @return Whether the result of <var>rv</var> is possibly assignment-compatible (JLS8 5.2) with the
+     *         <var>samReturnType</var>; {@code true} if <var>rv</var> is not a lambda expression, or if the type of its
+     *         result cannot be determined before the lambda body is compiled
+     */
+    private boolean
+    isResultCompatible(Rvalue rv, IClass samReturnType) throws CompileException {
+
+        if (samReturnType == IClass.VOID) return true;
+
+        while (rv instanceof ParenthesizedExpression) rv = ((ParenthesizedExpression) rv).value;
+        if (!(rv instanceof LambdaExpression)) return true;
+
+        LambdaExpression le = (LambdaExpression) rv;
+        if (!(le.body instanceof ExpressionLambdaBody)) return true;
+
+        Rvalue expression = ((ExpressionLambdaBody) le.body).expression;
+        while (expression instanceof ParenthesizedExpression) expression = ((ParenthesizedExpression) expression).value;
+
+        // The lambda body is not yet attached to a scope, so only literals and ambiguous names (that do not designate
+        // a lambda parameter) can be typed here.
+        IClass resultType;
+        if (expression instanceof Literal) {
+            resultType = UnitCompiler.rawTypeOf(this.getType(expression));
+        } else
+        if (expression instanceof AmbiguousName) {
+            AmbiguousName an = (AmbiguousName) expression;
+            if (Arrays.asList(UnitCompiler.getLambdaParameterNames(le)).contains(an.identifiers[0])) return true;
+
+            resultType = this.getAmbiguousNameType(an, le);
+            if (resultType == null) return true;
+        } else
+        {
+            return true;
+        }
+
+        return (
+            this.isNullConvertible(resultType, samReturnType)
+            || this.isMethodInvocationConvertible(resultType, samReturnType, true)
+        );
+    }
+
+    /**
+     * Determines the type of <var>an</var> as if it appeared in the enclosing scope of the <var>le</var>, without
+     * attaching <var>an</var> to that scope and without reporting compile errors.
+     *
+     * @return The raw type of <var>an</var>, or {@code null} if it cannot be determined
+     */
+    @Nullable private IClass
+    getAmbiguousNameType(AmbiguousName an, LambdaExpression le) {
+
+        AmbiguousName copy = new AmbiguousName(an.getLocation(), an.identifiers, an.n);
+        copy.setEnclosingScope(le.getEnclosingScope());
+
+        ErrorHandler savedCompileErrorHandler = this.compileErrorHandler;
+        int          savedCompileErrorCount   = this.compileErrorCount;
+        this.compileErrorHandler = null;
+        try {
+            return UnitCompiler.rawTypeOf(this.getType((Atom) copy));
+        } catch (CompileException ce) {
+            return null;
+        } finally {
+            this.compileErrorHandler = savedCompileErrorHandler;
+            this.compileErrorCount   = savedCompileErrorCount;
+        }
+    }
+
     /**
      * Determines the applicable invocables and choose the most specific invocable.
      *
@@ -10831,10 +12992,51 @@ class UnitCompiler {
 
             @Override public String
             getName() { return methodDeclarator.name; }
+
+            @Override public String[]
+            getParameterTypeVariableNames() {
+                FormalParameter[] parameters = methodDeclarator.formalParameters.parameters;
+                String[]          result     = new String[parameters.length];
+                for (int i = 0; i < parameters.length; i++) {
+                    result[i] = UnitCompiler.classTypeVariableName(parameters[i].type, methodDeclarator);
+                }
+                return result;
+            }
+
+            @Override @Nullable public String
+            getReturnTypeVariableName() {
+                return UnitCompiler.classTypeVariableName(methodDeclarator.type, methodDeclarator);
+            }
         };
         return methodDeclarator.iMethod;
     }
 
+    /**
+     * @return The name of the <var>type</var>, iff it designates a type parameter of the type that declares the
+     *         <var>md</var> (and not a type parameter of the <var>md</var> itself)
+     */
+    @Nullable private static String
+    classTypeVariableName(Type type, MethodDeclarator md) {
+
+        if (!(type instanceof ReferenceType)) return null;
+        String[] identifiers = ((ReferenceType) type).identifiers;
+        if (identifiers.length != 1) return null;
+        String name = identifiers[0];
+
+        TypeParameter[] mtps = md.typeParameters;
+        if (mtps != null) {
+            for (TypeParameter tp : mtps) if (tp.name.equals(name)) return null;
+        }
+
+        TypeDeclaration td = md.getDeclaringType();
+        if (!(td instanceof NamedTypeDeclaration)) return null;
+        TypeParameter[] ctps = ((NamedTypeDeclaration) td).getOptionalTypeParameters();
+        if (ctps != null) {
+            for (TypeParameter tp : ctps) if (tp.name.equals(name)) return name;
+        }
+        return null;
+    }
+
     private IClass.IInvocable
     toIInvocable(final FunctionDeclarator fd) {
         IClass.IInvocable result = (IClass.IInvocable) fd.accept(
@@ -12711,18 +14913,29 @@ class UnitCompiler {
 
     private void
     putfield(Locatable locatable, IField iField) throws CompileException {
+        this.putfield(
+            locatable,                   // locatable
+            iField.getDeclaringIClass(), // declaringIClass
+            iField.getName(),            // fieldName
+            iField.getType(),            // fieldType
+            iField.isStatic()            // statiC
+        );
+    }
+
+    private void
+    putfield(Locatable locatable, IClass declaringIClass, String fieldName, IClass fieldType, boolean statiC) {
         this.addLineNumberOffset(locatable);
         this.getCodeContext().popOperand();
-        if (iField.isStatic()) {
+        if (statiC) {
             this.write(Opcode.PUTSTATIC);
         } else {
             this.write(Opcode.PUTFIELD);
             this.getCodeContext().popOperand();
         }
         this.writeConstantFieldrefInfo(
-            iField.getDeclaringIClass(), // iClass
-            iField.getName(),            // fieldName
-            iField.getType()             // fieldType
+            declaringIClass, // iClass
+            fieldName,       // fieldName
+            fieldType        // fieldType
         );
     }
 
@@ -13097,6 +15310,56 @@ class UnitCompiler {
         this.warningHandler = warningHandler;
     }
 
+    /**
+     * Reports a compile error iff the {@link #setCompileTimeSandbox(CompileTimeSandbox) compile-time sandbox} does
+     * not permit references to the given class.
+     */
+    private void
+    checkPermitted(IClass iClass, Location location) throws CompileException {
+        CompileTimeSandbox sandbox = this.compileTimeSandbox;
+        if (sandbox == null || !UnitCompiler.isSandboxed(iClass)) return;
+
+        String className = Descriptor.toClassName(iClass.getDescriptor());
+        if (!sandbox.isClassPermitted(className)) {
+            this.compileError("Reference to \"" + className + "\" is not permitted", location);
+        }
+    }
+
+    /**
+     * Reports a compile error iff the {@link #setCompileTimeSandbox(CompileTimeSandbox) compile-time sandbox} does
+     * not permit references to the given method, field or constructor.
+     */
+    private void
+    checkPermitted(IClass.IMember member, Location location) throws CompileException {
+        CompileTimeSandbox sandbox = this.compileTimeSandbox;
+        if (sandbox == null) return;
+
+        IClass declaringIClass = member.getDeclaringIClass();
+        if (!UnitCompiler.isSandboxed(declaringIClass)) return;
+
+        String memberName = (
+            member instanceof IClass.IMethod ? ((IClass.IMethod) member).getName() :
+            member instanceof IClass.IField  ? ((IClass.IField) member).getName()  :
+            "<init>"
+        );
+        String className = Descriptor.toClassName(declaringIClass.getDescriptor());
+        if (!sandbox.isMemberPermitted(className, memberName)) {
+            this.compileError(
+                "Reference to \"" + className + '.' + memberName + "\" is not permitted",
+                location
+            );
+        }
+    }
+
+    /**
+     * @return Whether the {@link CompileTimeSandbox} applies to references to the given class, i.e. whether it was
+     *         loaded from a class file or through reflection, and is not an array type
+     */
+    private static boolean
+    isSandboxed(IClass iClass) {
+        return (iClass instanceof ReflectionIClass || iClass instanceof ClassFileIClass) && !iClass.isArray();
+    }
+
     @Nullable private CodeContext
     replaceCodeContext(@Nullable CodeContext newCodeContext) {
         CodeContext oldCodeContext = this.codeContext;
@@ -13106,7 +15369,11 @@ class UnitCompiler {
 
     private void
     addLineNumberOffset(Locatable locatable) {
-        this.getCodeContext().addLineNumberOffset(locatable.getLocation().getLineNumber());
+        this.getCodeContext().addLineNumberOffset(
+            locatable instanceof Located
+            ? ((Located) locatable).getLineNumber()
+            : locatable.getLocation().getLineNumber()
+        );
     }
 
     private void
@@ -13247,19 +15514,6 @@ class UnitCompiler {
         return this.getCodeContext().getClassFile().addConstantInterfaceMethodrefInfo(iClass.getDescriptor(), methodName, methodFd);
     }
 
-    private static final String classLambdaMetafactory = "Ljava/lang/invoke/LambdaMetafactory;";
-    private static final String methodMetafactory = "metafactory";
-    private static final String metafactoryFd = "(Ljava/lang/invoke/MethodHandles$Lookup;Ljava/lang/String;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodType;Ljava/lang/invoke/MethodHandle;Ljava/lang/invoke/MethodType;)Ljava/lang/invoke/CallSite;";
-    /**
-     * Add a bootstrap method which static argument list describes the sole method of the functional
-     * interface and the desugared implementation method, and returns an object (the lambda object) that
-     * implements the target type.
-     * <a href="https://docs.oracle.com/javase/8/docs/api/java/lang/invoke/LambdaMetafactory.html">See here.</a>
-     */
-    public void lambdaBootstrap(short soleMethodType,short bootstrapMethodHandle,short lambdaObjectType){
-        // TODO
-    }
-
 /* UNUSED
     private void writeConstantIntegerInfo(int value) {
         this.getCodeContext().writeShort(-1, this.addConstantIntegerInfo(value));
@@ -13625,7 +15879,7 @@ class UnitCompiler {
                     throw new AssertionError(vti2.category() + " vs. " + vti.category());
                 }
 
-                ci.setStackMap(new StackMap(locals, ci.getStackMap().operands()));
+                ci.setStackMap(ci.getStackMap().withLocals(locals));
                 return;
             }
             nextLvIndex += vti2.category();
@@ -13651,6 +15905,18 @@ class UnitCompiler {
     // Used for elaborate warning handling.
     @Nullable private WarningHandler warningHandler;
 
+    // Restricts the classes and members that the compiled code may reference.
+    @Nullable private CompileTimeSandbox compileTimeSandbox;
+
+    // Measures the phases of the compilation.
+    @Nullable private PhaseRecorder phaseRecorder;
+
+    // The local variable that holds the "ExecutionBudget" while compiling one constructor/method.
+    @Nullable private LocalVariableSlot executionBudgetSlot;
+
+    // The class whose "LineProfile" counts the statements of the constructor/method being compiled.
+    @Nullable private IClass lineProfiledIClass;
+
     private final AbstractCompilationUnit abstractCompilationUnit;
 
     private final IClassLoader iClassLoader;
@@ -13663,4 +15929,9 @@ class UnitCompiler {
     private boolean debugSource;
     private boolean debugLines;
     private boolean debugVars;
+
+    /**
+     * @see #getInlinedConstantDeclaringTypes()
+     */
+    private final Set<String> inlinedConstantDeclaringTypes = new HashSet<>();
 }
@@ -412,7 +412,7 @@ class AbstractTraverser<EX extends Throwable> implements Traverser<EX> {
 
         @Override @Nullable public Void
         visitRvalue(Rvalue rvalue) throws EX {
-            AbstractTraverser.this.traverseRvalue(rvalue);
+            rvalue.accept(AbstractTraverser.this.rvalueTraverser);
             return null;
         }
     };
@@ -868,15 +868,22 @@ class AbstractTraverser<EX extends Throwable> implements Traverser<EX> {
     traverseLambdaExpression(LambdaExpression le) throws EX { this.traverseRvalue(le); }
 
     @Override public void
-    traverseMethodReference(MethodReference mr) throws EX { this.traverseRvalue(mr); }
+    traverseMethodReference(MethodReference mr) throws EX {
+        mr.lhs.accept(this.atomTraverser);
+        this.traverseRvalue(mr);
+    }
 
     @Override public void
     traverseClassInstanceCreationReference(ClassInstanceCreationReference cicr) throws EX {
+        cicr.type.accept(this.atomTraverser);
         this.traverseRvalue(cicr);
     }
 
     @Override public void
-    traverseArrayCreationReference(ArrayCreationReference acr) throws EX { this.traverseRvalue(acr); }
+    traverseArrayCreationReference(ArrayCreationReference acr) throws EX {
+        acr.type.accept(this.atomTraverser);
+        this.traverseRvalue(acr);
+    }
 
     @Override public void
     traverseArrayType(ArrayType at) throws EX {
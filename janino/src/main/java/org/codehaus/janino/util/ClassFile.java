@@ -26,15 +26,17 @@
 package org.codehaus.janino.util;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -102,7 +104,7 @@ class ClassFile implements Annotatable {
 
         this.constantPool  = new ArrayList<>();
         this.constantPool.add(null); // Add fake "0" index entry.
-        this.constantPoolMap = new HashMap<>();
+        this.constantPoolIndex = new ConstantPoolIndex();
 
         // Some sanity checks on the access flags, according to JVMS8 4.1.
         if ((accessFlags & Mod.INTERFACE) != 0) {
@@ -152,6 +154,30 @@ class ClassFile implements Annotatable {
         this.attributes.add(new DeprecatedAttribute(this.addConstantUtf8Info("Deprecated")));
     }
 
+    /**
+     * Adds a {@code NestHost} attribute to this class, which declares the class with the given field descriptor as
+     * the host of the nest that this class belongs to (JVMS11 4.7.28).
+     */
+    public void
+    addNestHostAttribute(String hostClassFd) {
+        this.attributes.add(new NestHostAttribute(
+            this.addConstantUtf8Info("NestHost"),   // attributeNameIndex
+            this.addConstantClassInfo(hostClassFd) // hostClassIndex
+        ));
+    }
+
+    /**
+     * Adds a {@code NestMembers} attribute to this class, which declares the classes with the given field
+     * descriptors as the members of the nest hosted by this class (JVMS11 4.7.29).
+     */
+    public void
+    addNestMembersAttribute(Collection<String> memberClassFds) {
+        short[] classIndexes = new short[memberClassFds.size()];
+        int     i            = 0;
+        for (String fd : memberClassFds) classIndexes[i++] = this.addConstantClassInfo(fd);
+        this.attributes.add(new NestMembersAttribute(this.addConstantUtf8Info("NestMembers"), classIndexes));
+    }
+
     /**
      * Finds the {@code InnerClasses} attribute of this class file.
      *
@@ -176,8 +202,8 @@ class ClassFile implements Annotatable {
     @Nullable private AttributeInfo
     findAttribute(List<AttributeInfo> attributes, String attributeName) throws ClassFormatError {
 
-        Short nameIndex = (Short) this.constantPoolMap.get(new ConstantUtf8Info(attributeName));
-        if (nameIndex == null) return null;
+        short nameIndex = this.constantPoolIndex.getUtf8(attributeName);
+        if (nameIndex == 0) return null;
 
         AttributeInfo result = null;
         for (AttributeInfo ai : attributes) {
@@ -203,6 +229,37 @@ class ClassFile implements Annotatable {
         ica.getEntries().add(entry);
     }
 
+    /**
+     * Creates a {@code BootstrapMethods} attribute if it does not exist, then adds a bootstrap method entry to it,
+     * unless an equal entry exists already.
+     *
+     * @param bootstrapMethodRef The index of a "CONSTANT_MethodHandle_info" constant pool entry
+     * @param bootstrapArguments The indexes of the static arguments of the bootstrap method
+     * @return                   The index of the entry within the {@code BootstrapMethods} attribute
+     */
+    public short
+    addBootstrapMethod(short bootstrapMethodRef, short[] bootstrapArguments) {
+        BootstrapMethodsAttribute bma = (BootstrapMethodsAttribute) this.findAttribute(
+            this.attributes,
+            "BootstrapMethods"
+        );
+        if (bma == null) {
+            bma = new BootstrapMethodsAttribute(this.addConstantUtf8Info("BootstrapMethods"));
+            this.attributes.add(bma);
+        }
+
+        List<BootstrapMethodsAttribute.BootstrapMethod> bms = bma.getBootstrapMethods();
+        BootstrapMethodsAttribute.BootstrapMethod
+        bm = new BootstrapMethodsAttribute.BootstrapMethod(bootstrapMethodRef, bootstrapArguments);
+
+        int index = bms.indexOf(bm);
+        if (index == -1) {
+            index = bms.size();
+            bms.add(bm);
+        }
+        return (short) index;
+    }
+
     /**
      * Finds the {@code Runtime[In]visibleAnnotations} attribute in the <var>attributes</var>.
      *
@@ -301,7 +358,7 @@ class ClassFile implements Annotatable {
 //        }
 
         this.constantPool    = new ArrayList<>();
-        this.constantPoolMap = new HashMap<>();
+        this.constantPoolIndex = new ConstantPoolIndex();
         this.loadConstantPool(dis);                                                // constant_pool_count, constant_pool
 
         this.accessFlags  = dis.readShort();                                       // access_flags
@@ -366,7 +423,12 @@ class ClassFile implements Annotatable {
             throw new ClassFileException("\"" + Descriptor.toString(typeFd) + "\" is neither a class nor an array");
         }
 
-        return this.addToConstantPool(new ConstantClassInfo(this.addConstantUtf8Info(s)));
+        short nameIndex = this.addConstantUtf8Info(s);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_CLASS, nameIndex);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(new ConstantClassInfo(nameIndex), ClassFile.CONSTANT_CLASS, nameIndex);
     }
 
     /**
@@ -377,10 +439,18 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantFieldrefInfo(String classFd, String fieldName, String fieldFd) {
-        return this.addToConstantPool(new ConstantFieldrefInfo(
-            this.addConstantClassInfo(classFd),
-            this.addConstantNameAndTypeInfo(fieldName, fieldFd)
-        ));
+        short classIndex       = this.addConstantClassInfo(classFd);
+        short nameAndTypeIndex = this.addConstantNameAndTypeInfo(fieldName, fieldFd);
+        long  key              = ClassFile.key(classIndex, nameAndTypeIndex);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_FIELDREF, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantFieldrefInfo(classIndex, nameAndTypeIndex),
+            ClassFile.CONSTANT_FIELDREF,
+            key
+        );
     }
 
     /**
@@ -391,17 +461,83 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantMethodrefInfo(String classFd, String methodName, String methodMd) {
-        return this.addToConstantPool(new ConstantMethodrefInfo(
-            this.addConstantClassInfo(classFd),
-            this.addConstantNameAndTypeInfo(methodName, methodMd)
-        ));
+        short classIndex       = this.addConstantClassInfo(classFd);
+        short nameAndTypeIndex = this.addConstantNameAndTypeInfo(methodName, methodMd);
+        long  key              = ClassFile.key(classIndex, nameAndTypeIndex);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_METHODREF, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantMethodrefInfo(classIndex, nameAndTypeIndex),
+            ClassFile.CONSTANT_METHODREF,
+            key
+        );
     }
 
     /**
      * Adds a "CONSTANT_MethodHandle_info" structure to the class file.
+     *
+     * @param referenceKind  One of {@link #REF_getField} ... {@link #REF_invokeInterface}
+     * @param referenceIndex The index of a field, method or interface method reference constant
+     * @see                  <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.8">JVMS8
+     *                       4.4.8</a>
      */
-    public short addConstantMethodHandleInfo(byte referenceKind,short referenceIndex){
-        return this.addToConstantPool(new ConstantMethodHandleInfo(referenceKind,referenceIndex));
+    public short
+    addConstantMethodHandleInfo(byte referenceKind, short referenceIndex) {
+        long  key   = ClassFile.key(referenceKind, referenceIndex);
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_METHOD_HANDLE, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantMethodHandleInfo(referenceKind, referenceIndex),
+            ClassFile.CONSTANT_METHOD_HANDLE,
+            key
+        );
+    }
+
+    /**
+     * Adds a "CONSTANT_MethodType_info" structure to the class file.
+     *
+     * @param methodMd The method descriptor, e.g. "{@code (Ljava/lang/Object;)V}"
+     * @see            <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.9">JVMS8
+     *                 4.4.9</a>
+     */
+    public short
+    addConstantMethodTypeInfo(String methodMd) {
+        short descriptorIndex = this.addConstantUtf8Info(methodMd);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_METHOD_TYPE, descriptorIndex);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantMethodTypeInfo(descriptorIndex),
+            ClassFile.CONSTANT_METHOD_TYPE,
+            descriptorIndex
+        );
+    }
+
+    /**
+     * Adds a "CONSTANT_InvokeDynamic_info" structure to the class file.
+     *
+     * @param bootstrapMethodAttrIndex The value returned by {@link #addBootstrapMethod(short, short[])}
+     * @param methodName               The name of the call site, e.g. the name of the functional interface method
+     * @param methodMd                 The descriptor of the call site
+     * @see <a href="https://docs.oracle.com/javase/specs/jvms/se8/html/jvms-4.html#jvms-4.4.10">JVMS8 4.4.10</a>
+     */
+    public short
+    addConstantInvokeDynamicInfo(short bootstrapMethodAttrIndex, String methodName, String methodMd) {
+        short nameAndTypeIndex = this.addConstantNameAndTypeInfo(methodName, methodMd);
+        long  key              = ClassFile.key(bootstrapMethodAttrIndex, nameAndTypeIndex);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_INVOKE_DYNAMIC, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantInvokeDynamicInfo(bootstrapMethodAttrIndex, nameAndTypeIndex),
+            ClassFile.CONSTANT_INVOKE_DYNAMIC,
+            key
+        );
     }
 
     /**
@@ -412,10 +548,18 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantInterfaceMethodrefInfo(String classFd, String methodName, String methodMd) {
-        return this.addToConstantPool(new ConstantInterfaceMethodrefInfo(
-            this.addConstantClassInfo(classFd),
-            this.addConstantNameAndTypeInfo(methodName, methodMd)
-        ));
+        short classIndex       = this.addConstantClassInfo(classFd);
+        short nameAndTypeIndex = this.addConstantNameAndTypeInfo(methodName, methodMd);
+        long  key              = ClassFile.key(classIndex, nameAndTypeIndex);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_INTERFACE_METHODREF, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantInterfaceMethodrefInfo(classIndex, nameAndTypeIndex),
+            ClassFile.CONSTANT_INTERFACE_METHODREF,
+            key
+        );
     }
 
     /**
@@ -426,7 +570,12 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantStringInfo(String string) {
-        return this.addToConstantPool(new ConstantStringInfo(this.addConstantUtf8Info(string)));
+        short stringIndex = this.addConstantUtf8Info(string);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_STRING, stringIndex);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(new ConstantStringInfo(stringIndex), ClassFile.CONSTANT_STRING, stringIndex);
     }
 
     /**
@@ -437,7 +586,11 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantIntegerInfo(final int value) {
-        return this.addToConstantPool(new ConstantIntegerInfo(value));
+        long  key   = value;
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_INTEGER, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(new ConstantIntegerInfo(value), ClassFile.CONSTANT_INTEGER, key);
     }
 
     /**
@@ -448,7 +601,11 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantFloatInfo(final float value) {
-        return this.addToConstantPool(new ConstantFloatInfo(value));
+        long  key   = Float.floatToRawIntBits(value);
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_FLOAT, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(new ConstantFloatInfo(value), ClassFile.CONSTANT_FLOAT, key);
     }
 
     /**
@@ -459,7 +616,11 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantLongInfo(final long value) {
-        return this.addToConstantPool(new ConstantLongInfo(value));
+        long  key   = value;
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_LONG, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(new ConstantLongInfo(value), ClassFile.CONSTANT_LONG, key);
     }
 
     /**
@@ -470,7 +631,11 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantDoubleInfo(final double value) {
-        return this.addToConstantPool(new ConstantDoubleInfo(value));
+        long  key   = Double.doubleToRawLongBits(value);
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_DOUBLE, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(new ConstantDoubleInfo(value), ClassFile.CONSTANT_DOUBLE, key);
     }
 
     /**
@@ -481,10 +646,18 @@ class ClassFile implements Annotatable {
      */
     private short
     addConstantNameAndTypeInfo(String name, String descriptor) {
-        return this.addToConstantPool(new ConstantNameAndTypeInfo(
-            this.addConstantUtf8Info(name),
-            this.addConstantUtf8Info(descriptor)
-        ));
+        short nameIndex       = this.addConstantUtf8Info(name);
+        short descriptorIndex = this.addConstantUtf8Info(descriptor);
+        long  key             = ClassFile.key(nameIndex, descriptorIndex);
+
+        short index = this.constantPoolIndex.get(ClassFile.CONSTANT_NAME_AND_TYPE, key);
+        if (index != 0) return index;
+
+        return this.addToConstantPool(
+            new ConstantNameAndTypeInfo(nameIndex, descriptorIndex),
+            ClassFile.CONSTANT_NAME_AND_TYPE,
+            key
+        );
     }
 
     /**
@@ -496,7 +669,12 @@ class ClassFile implements Annotatable {
      */
     public short
     addConstantUtf8Info(final String s) {
-        return this.addToConstantPool(new ConstantUtf8Info(s));
+        short index = this.constantPoolIndex.getUtf8(s);
+        if (index != 0) return index;
+
+        index = this.addToConstantPool(new ConstantUtf8Info(s));
+        this.constantPoolIndex.putUtf8(s, index);
+        return index;
     }
 
     /**
@@ -531,15 +709,21 @@ class ClassFile implements Annotatable {
     }
 
     /**
-     * Adds an entry to the constant pool and returns its index, or, if an equal entry already exists in the constant
-     * pool, returns the index of that entry.
+     * Adds a new entry to the constant pool, registers it in the {@link #constantPoolIndex} under the <var>tag</var>
+     * and the <var>key</var>, and returns its index. The caller must have verified that no equal entry exists.
      */
     private short
-    addToConstantPool(ConstantPoolInfo cpi) {
+    addToConstantPool(ConstantPoolInfo cpi, byte tag, long key) {
+        short result = this.addToConstantPool(cpi);
+        this.constantPoolIndex.put(tag, key, result);
+        return result;
+    }
 
-        // Check whether an equal entry already exists.
-        Short index = (Short) this.constantPoolMap.get(cpi);
-        if (index != null) return index.shortValue();
+    /**
+     * Adds a new entry to the constant pool and returns its index.
+     */
+    private short
+    addToConstantPool(ConstantPoolInfo cpi) {
 
         // The current size of the constant pool is the index of the new entry.
         final short res = (short) this.constantPool.size();
@@ -557,9 +741,6 @@ class ClassFile implements Annotatable {
             );
         }
 
-        // Also put the new entry into the "constantPoolMap" for fast access.
-        this.constantPoolMap.put(cpi, res);
-
         return res;
     }
 
@@ -737,14 +918,14 @@ class ClassFile implements Annotatable {
     private void
     loadConstantPool(DataInputStream dis) throws IOException {
         this.constantPool.clear();
-        this.constantPoolMap.clear();
+        this.constantPoolIndex.clear();
 
         int constantPoolCount = dis.readUnsignedShort(); // constant_pool_count
         this.constantPool.add(null);
         for (int i = 1; i < constantPoolCount; ++i) {
             ConstantPoolInfo cpi = ConstantPoolInfo.loadConstantPoolInfo(dis);
             this.constantPool.add(cpi);
-            this.constantPoolMap.put(cpi, (short) i);
+            this.index(cpi, (short) i);
             if (cpi.isWide()) {
                 this.constantPool.add(null);
                 ++i;
@@ -903,19 +1084,116 @@ class ClassFile implements Annotatable {
 
     /**
      * Returns the byte code of this {@link ClassFile} as a byte array.
+     * <p>
+     *   The array is allocated with its exact size (see {@link #getLength()}) and then filled in one pass, i.e.
+     *   without any intermediate buffers.
+     * </p>
      */
     public byte[]
     toByteArray() {
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        byte[] result = new byte[this.getLength()];
+        this.store(ByteBuffer.wrap(result), result.length);
+        return result;
+    }
+
+    /**
+     * Writes this {@link ClassFile} into the <var>buffer</var>, in "class file" format, starting at the buffer's
+     * position. On return, the buffer's position is advanced by {@link #getLength()}.
+     *
+     * @throws BufferOverflowException The <var>buffer</var> has less than {@link #getLength()} bytes remaining; the
+     *                                 buffer is left unmodified
+     */
+    public void
+    store(ByteBuffer buffer) {
+        int length = this.getLength();
+        if (buffer.remaining() < length) throw new BufferOverflowException();
+        this.store(buffer, length);
+    }
+
+    private void
+    store(ByteBuffer buffer, int length) {
+        int start = buffer.position();
         try {
-            this.store(baos);
+            this.store(new DataOutputStream(new ByteBufferOutputStream(buffer)));
         } catch (IOException ex) {
-            // ByteArrayOutputStream should never throw IOExceptions.
+            // ByteBufferOutputStream should never throw IOExceptions.
             throw new ClassFileException(ex.toString(), ex);
         }
-        return baos.toByteArray();
+        if (buffer.position() - start != length) {
+            throw new ClassFileException(
+                "Class file length is "
+                + (buffer.position() - start)
+                + ", but "
+                + length
+                + " was computed"
+            );
+        }
+    }
+
+    /**
+     * @return The exact number of bytes that {@link #store(OutputStream)} writes
+     */
+    public int
+    getLength() {
+
+        int result = 4 + 2 + 2; // magic, minor_version, major_version
+
+        result += 2; // constant_pool_count
+        for (int i = 1; i < this.constantPool.size(); ++i) {
+            ConstantPoolInfo cpi = (ConstantPoolInfo) this.constantPool.get(i);
+            if (cpi != null) result += cpi.getLength();
+        }
+
+        result += 2 + 2 + 2; // access_flags, this_class, super_class
+
+        result += 2 + 2 * this.interfaces.length; // interfaces_count, interfaces
+
+        result += 2; // fields_count
+        for (FieldInfo fi : this.fieldInfos) result += 2 + 2 + 2 + ClassFile.getAttributesLength(fi.attributes);
+
+        result += 2; // methods_count
+        for (MethodInfo mi : this.methodInfos) result += 2 + 2 + 2 + ClassFile.getAttributesLength(mi.attributes);
+
+        result += ClassFile.getAttributesLength(this.attributes);
+
+        return result;
     }
 
+    /**
+     * @return The number of bytes that {@link #storeAttributes(DataOutputStream, List)} writes
+     */
+    private static int
+    getAttributesLength(List<AttributeInfo> attributeInfos) {
+        int result = 2; // attributes_count
+        for (AttributeInfo ai : attributeInfos) result += ai.getLength();
+        return result;
+    }
+
+    /**
+     * An {@link OutputStream} that writes directly into a {@link ByteBuffer}.
+     */
+    private static
+    class ByteBufferOutputStream extends OutputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferOutputStream(ByteBuffer buffer) { this.buffer = buffer; }
+
+        @Override public void
+        write(int b) { this.buffer.put((byte) b); }
+
+        @Override public void
+        write(byte[] b, int off, int len) { this.buffer.put(b, off, len); }
+    }
+
+    /**
+     * Discards all data; useful for measuring lengths with {@link DataOutputStream#size()}.
+     */
+    private static final OutputStream NULL_OUTPUT_STREAM = new OutputStream() {
+        @Override public void write(int b)                       {}
+        @Override public void write(byte[] b, int off, int len) {}
+    };
+
     private static final int CLASS_FILE_MAGIC = 0xcafebabe;
 
     /** Major version number of a class file that was generated by a Java 1.1-compliant compiler. */
@@ -1012,8 +1290,238 @@ class ClassFile implements Annotatable {
      */
     private final List<AttributeInfo> attributes;
 
-    // Convenience.
-    private final Map<ConstantPoolInfo, Short> constantPoolMap;
+    /**
+     * For fast lookup of existing constant pool entries.
+     */
+    private final ConstantPoolIndex constantPoolIndex;
+
+    // Constant pool tags, see JVMS8 4.4.
+    private static final byte CONSTANT_UTF8                = 1;
+    private static final byte CONSTANT_INTEGER             = 3;
+    private static final byte CONSTANT_FLOAT               = 4;
+    private static final byte CONSTANT_LONG                = 5;
+    private static final byte CONSTANT_DOUBLE              = 6;
+    private static final byte CONSTANT_CLASS               = 7;
+    private static final byte CONSTANT_STRING              = 8;
+    private static final byte CONSTANT_FIELDREF            = 9;
+    private static final byte CONSTANT_METHODREF           = 10;
+    private static final byte CONSTANT_INTERFACE_METHODREF = 11;
+    private static final byte CONSTANT_NAME_AND_TYPE       = 12;
+    private static final byte CONSTANT_METHOD_HANDLE       = 15;
+    private static final byte CONSTANT_METHOD_TYPE         = 16;
+    private static final byte CONSTANT_INVOKE_DYNAMIC      = 18;
+
+    /**
+     * Combines two constant pool operands into one {@link ConstantPoolIndex} key.
+     */
+    private static long
+    key(int operand1, short operand2) { return ((long) operand1 << 16) | (operand2 & 0xffff); }
+
+    /**
+     * Registers a loaded constant pool entry in the {@link #constantPoolIndex}.
+     */
+    private void
+    index(ConstantPoolInfo cpi, short index) {
+        if (cpi instanceof ConstantUtf8Info) {
+            String s = ((ConstantUtf8Info) cpi).s;
+            if (this.constantPoolIndex.getUtf8(s) == 0) this.constantPoolIndex.putUtf8(s, index);
+            return;
+        }
+
+        byte tag;
+        long key;
+        if (cpi instanceof ConstantClassInfo) {
+            tag = ClassFile.CONSTANT_CLASS;
+            key = ((ConstantClassInfo) cpi).nameIndex;
+        } else
+        if (cpi instanceof ConstantFieldrefInfo) {
+            ConstantFieldrefInfo cfi = (ConstantFieldrefInfo) cpi;
+            tag = ClassFile.CONSTANT_FIELDREF;
+            key = ClassFile.key(cfi.classIndex, cfi.nameAndTypeIndex);
+        } else
+        if (cpi instanceof ConstantMethodrefInfo) {
+            ConstantMethodrefInfo cmi = (ConstantMethodrefInfo) cpi;
+            tag = ClassFile.CONSTANT_METHODREF;
+            key = ClassFile.key(cmi.classIndex, cmi.nameAndTypeIndex);
+        } else
+        if (cpi instanceof ConstantInterfaceMethodrefInfo) {
+            ConstantInterfaceMethodrefInfo cimi = (ConstantInterfaceMethodrefInfo) cpi;
+            tag = ClassFile.CONSTANT_INTERFACE_METHODREF;
+            key = ClassFile.key(cimi.classIndex, cimi.nameAndTypeIndex);
+        } else
+        if (cpi instanceof ConstantStringInfo) {
+            tag = ClassFile.CONSTANT_STRING;
+            key = ((ConstantStringInfo) cpi).stringIndex;
+        } else
+        if (cpi instanceof ConstantIntegerInfo) {
+            tag = ClassFile.CONSTANT_INTEGER;
+            key = ((ConstantIntegerInfo) cpi).value;
+        } else
+        if (cpi instanceof ConstantFloatInfo) {
+            tag = ClassFile.CONSTANT_FLOAT;
+            key = Float.floatToRawIntBits(((ConstantFloatInfo) cpi).value);
+        } else
+        if (cpi instanceof ConstantLongInfo) {
+            tag = ClassFile.CONSTANT_LONG;
+            key = ((ConstantLongInfo) cpi).value;
+        } else
+        if (cpi instanceof ConstantDoubleInfo) {
+            tag = ClassFile.CONSTANT_DOUBLE;
+            key = Double.doubleToRawLongBits(((ConstantDoubleInfo) cpi).value);
+        } else
+        if (cpi instanceof ConstantNameAndTypeInfo) {
+            ConstantNameAndTypeInfo cnati = (ConstantNameAndTypeInfo) cpi;
+            tag = ClassFile.CONSTANT_NAME_AND_TYPE;
+            key = ClassFile.key(cnati.nameIndex, cnati.descriptorIndex);
+        } else
+        if (cpi instanceof ConstantMethodHandleInfo) {
+            ConstantMethodHandleInfo cmhi = (ConstantMethodHandleInfo) cpi;
+            tag = ClassFile.CONSTANT_METHOD_HANDLE;
+            key = ClassFile.key(cmhi.referenceKind, cmhi.referenceIndex);
+        } else
+        if (cpi instanceof ConstantMethodTypeInfo) {
+            tag = ClassFile.CONSTANT_METHOD_TYPE;
+            key = ((ConstantMethodTypeInfo) cpi).descriptorIndex;
+        } else
+        if (cpi instanceof ConstantInvokeDynamicInfo) {
+            ConstantInvokeDynamicInfo cidi = (ConstantInvokeDynamicInfo) cpi;
+            tag = ClassFile.CONSTANT_INVOKE_DYNAMIC;
+            key = ClassFile.key(cidi.bootstrapMethodAttrIndex, cidi.nameAndTypeIndex);
+        } else
+        {
+            return;
+        }
+
+        if (this.constantPoolIndex.get(tag, key) == 0) this.constantPoolIndex.put(tag, key, index);
+    }
+
+    /**
+     * An open-addressing hash table that maps constant pool entries to their (non-zero) indexes. Entries are
+     * identified by their tag and their operands, which avoids allocating a {@link ConstantPoolInfo} just to find out
+     * whether an equal entry already exists. {@code CONSTANT_Utf8_info} entries are identified by their string value.
+     */
+    private static final
+    class ConstantPoolIndex {
+
+        private static final int INITIAL_CAPACITY = 256; // Must be a power of two.
+
+        private byte[]  tags   = new byte[ConstantPoolIndex.INITIAL_CAPACITY];
+        private long[]  keys   = new long[ConstantPoolIndex.INITIAL_CAPACITY];
+        private short[] values = new short[ConstantPoolIndex.INITIAL_CAPACITY];
+        private int     size;
+
+        private String[] utf8Keys   = new String[ConstantPoolIndex.INITIAL_CAPACITY];
+        private short[]  utf8Values = new short[ConstantPoolIndex.INITIAL_CAPACITY];
+        private int      utf8Size;
+
+        /**
+         * @return The index of the entry with the given <var>tag</var> and <var>key</var>, or 0
+         */
+        short
+        get(byte tag, long key) {
+            int mask = this.tags.length - 1;
+            for (int i = ConstantPoolIndex.hash(tag, key) & mask;; i = (i + 1) & mask) {
+                byte t = this.tags[i];
+                if (t == 0) return 0;
+                if (t == tag && this.keys[i] == key) return this.values[i];
+            }
+        }
+
+        /**
+         * Adds an entry; the caller must have verified that no entry with the same <var>tag</var> and <var>key</var>
+         * exists.
+         */
+        void
+        put(byte tag, long key, short value) {
+            if (2 * (this.size + 1) > this.tags.length) this.rehash(2 * this.tags.length);
+            int mask = this.tags.length - 1;
+            int i    = ConstantPoolIndex.hash(tag, key) & mask;
+            while (this.tags[i] != 0) i = (i + 1) & mask;
+            this.tags[i]   = tag;
+            this.keys[i]   = key;
+            this.values[i] = value;
+            this.size++;
+        }
+
+        /**
+         * @return The index of the {@code CONSTANT_Utf8_info} entry with the value <var>s</var>, or 0
+         */
+        short
+        getUtf8(String s) {
+            int mask = this.utf8Keys.length - 1;
+            for (int i = ConstantPoolIndex.hash(s) & mask;; i = (i + 1) & mask) {
+                String k = this.utf8Keys[i];
+                if (k == null) return 0;
+                if (k.equals(s)) return this.utf8Values[i];
+            }
+        }
+
+        /**
+         * Adds a {@code CONSTANT_Utf8_info} entry; the caller must have verified that no entry with the same value
+         * exists.
+         */
+        void
+        putUtf8(String s, short value) {
+            if (2 * (this.utf8Size + 1) > this.utf8Keys.length) this.rehashUtf8(2 * this.utf8Keys.length);
+            int mask = this.utf8Keys.length - 1;
+            int i    = ConstantPoolIndex.hash(s) & mask;
+            while (this.utf8Keys[i] != null) i = (i + 1) & mask;
+            this.utf8Keys[i]   = s;
+            this.utf8Values[i] = value;
+            this.utf8Size++;
+        }
+
+        void
+        clear() {
+            Arrays.fill(this.tags, (byte) 0);
+            Arrays.fill(this.utf8Keys, null);
+            this.size     = 0;
+            this.utf8Size = 0;
+        }
+
+        private void
+        rehash(int capacity) {
+            byte[]  oldTags   = this.tags;
+            long[]  oldKeys   = this.keys;
+            short[] oldValues = this.values;
+
+            this.tags   = new byte[capacity];
+            this.keys   = new long[capacity];
+            this.values = new short[capacity];
+            this.size   = 0;
+
+            for (int i = 0; i < oldTags.length; i++) {
+                if (oldTags[i] != 0) this.put(oldTags[i], oldKeys[i], oldValues[i]);
+            }
+        }
+
+        private void
+        rehashUtf8(int capacity) {
+            String[] oldKeys   = this.utf8Keys;
+            short[]  oldValues = this.utf8Values;
+
+            this.utf8Keys   = new String[capacity];
+            this.utf8Values = new short[capacity];
+            this.utf8Size   = 0;
+
+            for (int i = 0; i < oldKeys.length; i++) {
+                String k = oldKeys[i];
+                if (k != null) this.putUtf8(k, oldValues[i]);
+            }
+        }
+
+        private static int
+        hash(byte tag, long key) {
+            long h = (key ^ ((long) tag << 56)) * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+
+        private static int
+        hash(String s) {
+            int h = s.hashCode() * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
 
     /**
      * Base for various the constant pool table entry types.
@@ -1029,6 +1537,21 @@ class ClassFile implements Annotatable {
          */
         protected abstract void store(DataOutputStream dos) throws IOException;
 
+        /**
+         * @return The number of bytes that {@link #store(DataOutputStream)} writes; derived classes should override
+         *         this method with a more efficient calculation
+         */
+        public int
+        getLength() {
+            DataOutputStream dos = new DataOutputStream(ClassFile.NULL_OUTPUT_STREAM);
+            try {
+                this.store(dos);
+            } catch (IOException ioe) {
+                throw new ClassFileException(ioe.toString(), ioe);
+            }
+            return dos.size();
+        }
+
         /**
          * @return Whether this CP entry is "wide" in the sense of JVMS7 4.4.5
          */
@@ -1130,6 +1653,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.nameIndex);
         }
 
+        @Override public int
+        getLength() { return 3; }
+
         @Override public String
         toString() { return "CONSTANT_Class_info(" + this.nameIndex + ")"; }
 
@@ -1183,6 +1709,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.nameAndTypeIndex);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() { return "CONSTANT_Fieldref_info(" + this.classIndex + ", " + this.nameAndTypeIndex + ")"; }
 
@@ -1238,6 +1767,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.nameAndTypeIndex);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() { return "CONSTANT_Methodref_info(" + this.classIndex + ", " + this.nameAndTypeIndex + ")"; }
 
@@ -1292,6 +1824,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.nameAndTypeIndex);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() {
             return "CONSTANT_InterfaceMethodref_info(" + this.classIndex + ", " + this.nameAndTypeIndex + ")";
@@ -1335,6 +1870,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.stringIndex);
         }
 
+        @Override public int
+        getLength() { return 3; }
+
         @Override public String
         toString() { return "CONSTANT_String_info(" + this.stringIndex + ")"; }
 
@@ -1372,6 +1910,9 @@ class ClassFile implements Annotatable {
             dos.writeInt(this.value);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() { return "CONSTANT_Integer_info(" + this.value + ")"; }
 
@@ -1409,6 +1950,9 @@ class ClassFile implements Annotatable {
             dos.writeFloat(this.value);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() { return "CONSTANT_Float_info(" + this.value + ")"; }
 
@@ -1446,6 +1990,9 @@ class ClassFile implements Annotatable {
             dos.writeLong(this.value);
         }
 
+        @Override public int
+        getLength() { return 9; }
+
         @Override public String
         toString() { return "CONSTANT_Long_info(" + this.value + ")"; }
 
@@ -1481,6 +2028,9 @@ class ClassFile implements Annotatable {
             dos.writeDouble(this.value);
         }
 
+        @Override public int
+        getLength() { return 9; }
+
         @Override public String
         toString() { return "CONSTANT_Double_info(" + this.value + ")"; }
 
@@ -1535,6 +2085,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.descriptorIndex);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() { return "CONSTANT_NameAndType_info(" + this.nameIndex + ", " + this.descriptorIndex + ")"; }
 
@@ -1591,6 +2144,16 @@ class ClassFile implements Annotatable {
             }
         }
 
+        @Override public int
+        getLength() {
+            int result = 3;
+            for (int i = 0; i < this.s.length(); i++) {
+                char c = this.s.charAt(i);
+                result += c >= 0x0001 && c <= 0x007f ? 1 : c <= 0x07ff ? 2 : 3;
+            }
+            return result;
+        }
+
         @Override public String
         toString() { return "CONSTANT_Utf8_info(\"" + this.s + "\")"; }
 
@@ -1603,20 +2166,21 @@ class ClassFile implements Annotatable {
         hashCode() { return this.s.hashCode(); }
     }
 
+    // Reference kinds of "CONSTANT_MethodHandle_info" constants; see JVMS8 4.4.8 and 5.4.3.5.
+    // SUPPRESS CHECKSTYLE ConstantName:9
+    public static final byte REF_getField         = 1;
+    public static final byte REF_getStatic        = 2;
+    public static final byte REF_putField         = 3;
+    public static final byte REF_putStatic        = 4;
+    public static final byte REF_invokeVirtual    = 5;
+    public static final byte REF_invokeStatic     = 6;
+    public static final byte REF_invokeSpecial    = 7;
+    public static final byte REF_newInvokeSpecial = 8;
+    public static final byte REF_invokeInterface  = 9;
+
     /**
      * See JVMS7 4.4.8.
      */
-
-    public static final byte
-            REF_getField = 1,
-            REF_getStatic = 2,
-            REF_putField = 3,
-            REF_putStatic = 4,
-            REF_invokeVirtual = 5,
-            REF_invokeStatic = 6,
-            REF_invokeSpecial = 7,
-            REF_newInvokeSpecial = 8,
-            REF_invokeInterface = 9;
     public static
     class ConstantMethodHandleInfo extends ConstantPoolInfo {
 
@@ -1644,6 +2208,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.referenceIndex);
         }
 
+        @Override public int
+        getLength() { return 4; }
+
         @Override public String
         toString() { return "CONSTANT_MethodHandle_info(" + this.referenceKind + ", " + this.referenceIndex + ")"; }
 
@@ -1686,6 +2253,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.descriptorIndex);
         }
 
+        @Override public int
+        getLength() { return 3; }
+
         @Override public String
         toString() { return "CONSTANT_MethodType_info(" + this.descriptorIndex + ")"; }
 
@@ -1731,6 +2301,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.nameAndTypeIndex);
         }
 
+        @Override public int
+        getLength() { return 5; }
+
         @Override public String
         toString() {
             return "CONSTANT_InvokeDynamic_info(" + this.bootstrapMethodAttrIndex + ", " + this.nameAndTypeIndex + ")";
@@ -1977,21 +2550,38 @@ class ClassFile implements Annotatable {
          */
         public void
         store(DataOutputStream dos) throws IOException {
-
-            ByteArrayOutputStream baos = new ByteArrayOutputStream();
-            this.storeBody(new DataOutputStream(baos));
-
-            dos.writeShort(this.nameIndex); // attribute_name_index;
-            dos.writeInt(baos.size());      // attribute_length
-            baos.writeTo(dos);              // info
+            dos.writeShort(this.nameIndex);     // attribute_name_index;
+            dos.writeInt(this.getBodyLength()); // attribute_length
+            this.storeBody(dos);                // info
         }
 
+        /**
+         * @return The number of bytes that {@link #store(DataOutputStream)} writes
+         */
+        public int
+        getLength() { return 6 + this.getBodyLength(); }
+
         /**
          * Writes the body of this attribute in an attribute-type dependent way; see JVMS7 4.7.2 and following.
          */
         protected abstract void
         storeBody(DataOutputStream dos) throws IOException;
 
+        /**
+         * @return The number of bytes that {@link #storeBody(DataOutputStream)} writes; derived classes should
+         *         override this method with a more efficient calculation
+         */
+        protected int
+        getBodyLength() {
+            DataOutputStream dos = new DataOutputStream(ClassFile.NULL_OUTPUT_STREAM);
+            try {
+                this.storeBody(dos);
+            } catch (IOException ioe) {
+                throw new ClassFileException(ioe.toString(), ioe);
+            }
+            return dos.size();
+        }
+
         private final short nameIndex;
     }
 
@@ -2026,12 +2616,21 @@ class ClassFile implements Annotatable {
         if ("InnerClasses".equals(attributeName)) {
             result = InnerClassesAttribute.loadBody(attributeNameIndex, bdis);
         } else
+        if ("BootstrapMethods".equals(attributeName)) {
+            result = BootstrapMethodsAttribute.loadBody(attributeNameIndex, bdis);
+        } else
         if ("Synthetic".equals(attributeName)) {
             result = SyntheticAttribute.loadBody(attributeNameIndex, bdis);
         } else
         if ("Signature".equals(attributeName)) {
             result = SignatureAttribute.loadBody(attributeNameIndex, bdis);
         } else
+        if ("NestHost".equals(attributeName)) {
+            result = NestHostAttribute.loadBody(attributeNameIndex, bdis);
+        } else
+        if ("NestMembers".equals(attributeName)) {
+            result = NestMembersAttribute.loadBody(attributeNameIndex, bdis);
+        } else
         if ("SourceFile".equals(attributeName)) {
             result = SourceFileAttribute.loadBody(attributeNameIndex, bdis);
         } else
@@ -2059,6 +2658,7 @@ class ClassFile implements Annotatable {
         {
             return new AttributeInfo(attributeNameIndex) {
                 @Override protected void storeBody(DataOutputStream dos) throws IOException { dos.write(ba); }
+                @Override protected int  getBodyLength()                                   { return ba.length; }
             };
         }
 
@@ -2106,6 +2706,9 @@ class ClassFile implements Annotatable {
         storeBody(DataOutputStream dos) throws IOException {
             dos.writeShort(this.constantValueIndex);
         }
+
+        @Override protected int
+        getBodyLength() { return 2; }
     }
 
     /**
@@ -2145,6 +2748,9 @@ class ClassFile implements Annotatable {
         storeBody(DataOutputStream dos) throws IOException {
             ClassFile.storeShortArray(dos, this.exceptionIndexes);
         }
+
+        @Override protected int
+        getBodyLength() { return 2 + 2 * this.exceptionIndexes.length; }
     }
 
     /**
@@ -2198,6 +2804,9 @@ class ClassFile implements Annotatable {
             }
         }
 
+        @Override protected int
+        getBodyLength() { return 2 + 8 * this.entries.size(); }
+
         /**
          * The structure of the {@code classes} array as described in JVMS7 4.7.6.
          */
@@ -2290,6 +2899,13 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.annotations.size()); // num_annotations
             for (Annotation a : this.annotations) a.store(dos);
         }
+
+        @Override protected int
+        getBodyLength() {
+            int result = 2;
+            for (Annotation a : this.annotations) result += a.getLength();
+            return result;
+        }
     }
 
     /**
@@ -2312,6 +2928,9 @@ class ClassFile implements Annotatable {
         storeBody(DataOutputStream dos) {
             ;
         }
+
+        @Override protected int
+        getBodyLength() { return 0; }
     }
 
     /**
@@ -2342,6 +2961,85 @@ class ClassFile implements Annotatable {
         // Implement "AttributeInfo".
         @Override protected void
         storeBody(DataOutputStream dos) throws IOException { dos.writeShort(this.signatureIndex); }
+
+        @Override protected int
+        getBodyLength() { return 2; }
+    }
+
+    /**
+     * Representation of a {@code NestHost} attribute (see JVMS11 4.7.28).
+     */
+    public static
+    class NestHostAttribute extends AttributeInfo {
+
+        private final short hostClassIndex;
+
+        public
+        NestHostAttribute(short attributeNameIndex, short hostClassIndex) {
+            super(attributeNameIndex);
+            this.hostClassIndex = hostClassIndex;
+        }
+
+        /**
+         * @return The host of the nest that the class belongs to
+         */
+        public ConstantClassInfo
+        getHostClass(ClassFile classFile) { return classFile.getConstantClassInfo(this.hostClassIndex); }
+
+        private static AttributeInfo
+        loadBody(short attributeNameIndex, DataInputStream dis) throws IOException {
+            return new NestHostAttribute(
+                attributeNameIndex, // attributeNameIndex
+                dis.readShort()     // hostClassIndex
+            );
+        }
+
+        // Implement "AttributeInfo".
+        @Override protected void
+        storeBody(DataOutputStream dos) throws IOException { dos.writeShort(this.hostClassIndex); }
+
+        @Override protected int
+        getBodyLength() { return 2; }
+    }
+
+    /**
+     * Representation of a {@code NestMembers} attribute (see JVMS11 4.7.29).
+     */
+    public static
+    class NestMembersAttribute extends AttributeInfo {
+
+        private final short[] classIndexes;
+
+        public
+        NestMembersAttribute(short attributeNameIndex, short[] classIndexes) {
+            super(attributeNameIndex);
+            this.classIndexes = classIndexes;
+        }
+
+        /**
+         * @return The members of the nest hosted by the class
+         */
+        public ConstantClassInfo[]
+        getClasses(ClassFile classFile) {
+            ConstantClassInfo[] cs = new ConstantClassInfo[this.classIndexes.length];
+            for (int i = 0; i < cs.length; i++) cs[i] = classFile.getConstantClassInfo(this.classIndexes[i]);
+            return cs;
+        }
+
+        private static AttributeInfo
+        loadBody(short attributeNameIndex, DataInputStream dis) throws IOException {
+            return new NestMembersAttribute(
+                attributeNameIndex,           // attributeNameIndex
+                ClassFile.readShortArray(dis) // classIndexes
+            );
+        }
+
+        // Implement "AttributeInfo".
+        @Override protected void
+        storeBody(DataOutputStream dos) throws IOException { ClassFile.storeShortArray(dos, this.classIndexes); }
+
+        @Override protected int
+        getBodyLength() { return 2 + 2 * this.classIndexes.length; }
     }
 
     /**
@@ -2369,6 +3067,9 @@ class ClassFile implements Annotatable {
         // Implement "AttributeInfo".
         @Override protected void
         storeBody(DataOutputStream dos) throws IOException { dos.writeShort(this.sourceFileIndex); }
+
+        @Override protected int
+        getBodyLength() { return 2; }
     }
 
     /**
@@ -2408,6 +3109,9 @@ class ClassFile implements Annotatable {
             }
         }
 
+        @Override protected int
+        getBodyLength() { return 2 + 4 * this.entries.length; }
+
         /**
          * The structure of the entries in the {@code line_number_table}, as described in JVMS7 4.7.12.
          */
@@ -2473,6 +3177,9 @@ class ClassFile implements Annotatable {
             }
         }
 
+        @Override protected int
+        getBodyLength() { return 2 + 10 * this.entries.length; }
+
         /**
          * The structure of the entries in the {@code local_variable_table}, as described in JVMS7 4.7.13.
          */
@@ -2514,6 +3221,9 @@ class ClassFile implements Annotatable {
         storeBody(DataOutputStream dos) {
             ;
         }
+
+        @Override protected int
+        getBodyLength() { return 0; }
     }
 
     /**
@@ -2544,6 +3254,9 @@ class ClassFile implements Annotatable {
             dos.writeByte(this.elementValue.getTag());
             this.elementValue.store(dos);
         }
+
+        @Override protected int
+        getBodyLength() { return 1 + this.elementValue.getLength(); }
     }
 
     /**
@@ -2624,6 +3337,13 @@ class ClassFile implements Annotatable {
             for (AttributeInfo ai : this.attributes) ai.store(dos);      // attributes
         }
 
+        @Override protected int
+        getBodyLength() {
+            int result = 2 + 2 + 4 + this.code.length + 2 + 8 * this.exceptionTableEntries.length + 2;
+            for (AttributeInfo ai : this.attributes) result += ai.getLength();
+            return result;
+        }
+
         /**
          * Representation of an entry in the "exception_table" of a "Code" attribute (see JVMS 4.7.3).
          */
@@ -2643,54 +3363,96 @@ class ClassFile implements Annotatable {
     }
 
 
-    private void addBootstrapMethod(BootstrapMethod bootstrapMethod){
-        if(bootstrapMethodsAttribute == null)
-            bootstrapMethodsAttribute = new BootstrapMethodsAttribute(
-                    ClassFile.this.addConstantUtf8Info("BootstrapMethods"));
+    /**
+     * Representation of a {@code BootstrapMethods} attribute (see JVMS8 4.7.23).
+     */
+    public static
+    class BootstrapMethodsAttribute extends AttributeInfo {
 
-        bootstrapMethodsAttribute.addBootstrapMethods(bootstrapMethod);
-    }
+        private final List<BootstrapMethodsAttribute.BootstrapMethod> bootstrapMethods;
 
-    private BootstrapMethodsAttribute bootstrapMethodsAttribute;
-    public static
-    class BootstrapMethodsAttribute extends AttributeInfo{
-        private final List<BootstrapMethod> bootstrapMethods = new ArrayList<>();
+        BootstrapMethodsAttribute(short attributeNameIndex) {
+            super(attributeNameIndex);
+            this.bootstrapMethods = new ArrayList<>();
+        }
+        BootstrapMethodsAttribute(short attributeNameIndex, BootstrapMethod[] bootstrapMethods) {
+            super(attributeNameIndex);
+            this.bootstrapMethods = new ArrayList<>(Arrays.asList(bootstrapMethods));
+        }
+
+        /**
+         * @return The {@link BootstrapMethod}s contained in this attribute; the list index is the value that
+         *         "CONSTANT_InvokeDynamic_info" structures refer to
+         */
+        public List<BootstrapMethodsAttribute.BootstrapMethod>
+        getBootstrapMethods() { return this.bootstrapMethods; }
 
-        public BootstrapMethodsAttribute(short nameIndex) {
-            super(nameIndex);
+        private static AttributeInfo
+        loadBody(short attributeNameIndex, DataInputStream dis) throws IOException {
+
+            BootstrapMethod[] bms = new BootstrapMethod[dis.readUnsignedShort()]; // num_bootstrap_methods
+            for (int i = 0; i < bms.length; ++i) {                                // bootstrap_methods
+                bms[i] = new BootstrapMethod(
+                    dis.readShort(),              // bootstrapMethodRef
+                    ClassFile.readShortArray(dis) // bootstrapArguments
+                );
+            }
+            return new BootstrapMethodsAttribute(attributeNameIndex, bms);
         }
 
-        public void addBootstrapMethods(BootstrapMethod bootstrapMethod){
-            bootstrapMethods.add(bootstrapMethod);
+        // Implement "AttributeInfo".
+        @Override protected void
+        storeBody(DataOutputStream dos) throws IOException {
+            dos.writeShort(this.bootstrapMethods.size());
+            for (BootstrapMethod bm : this.bootstrapMethods) {
+                dos.writeShort(bm.bootstrapMethodRef);
+                ClassFile.storeShortArray(dos, bm.bootstrapArguments);
+            }
         }
 
-        @Override
-        protected void storeBody(DataOutputStream dos) throws IOException {
-            dos.writeShort(bootstrapMethods.size());
-            for(BootstrapMethod bm : bootstrapMethods)
-                bm.store(dos);
+        @Override protected int
+        getBodyLength() {
+            int result = 2;
+            for (BootstrapMethod bm : this.bootstrapMethods) result += 4 + 2 * bm.bootstrapArguments.length;
+            return result;
         }
-    }
 
-    public static
-    class BootstrapMethod{
-        private final short bootstrapMethodRef;
-        private final short[] bootstrapArguments;
+        /**
+         * The structure of the {@code bootstrap_methods} array as described in JVMS8 4.7.23.
+         */
+        public static
+        class BootstrapMethod {
 
-        public BootstrapMethod(short bootstrapMethodRef,short... bootstrapArguments){
-            this.bootstrapMethodRef = bootstrapMethodRef;
-            this.bootstrapArguments = bootstrapArguments;
-        }
+            /**
+             * The index of a "CONSTANT_MethodHandle_info" constant pool entry.
+             */
+            public final short bootstrapMethodRef;
 
-        public void store(DataOutputStream dos) throws IOException {
-            dos.writeShort(bootstrapMethodRef);
-            dos.writeShort(bootstrapArguments.length);
-            for(Short arg : bootstrapArguments)
-                dos.writeShort(arg);
+            /**
+             * The indexes of the "loadable" constant pool entries that are passed to the bootstrap method.
+             */
+            public final short[] bootstrapArguments;
+
+            public
+            BootstrapMethod(short bootstrapMethodRef, short[] bootstrapArguments) {
+                this.bootstrapMethodRef = bootstrapMethodRef;
+                this.bootstrapArguments = bootstrapArguments;
+            }
+
+            @Override public boolean
+            equals(@Nullable Object o) {
+                return (
+                    o instanceof BootstrapMethod
+                    && ((BootstrapMethod) o).bootstrapMethodRef == this.bootstrapMethodRef
+                    && Arrays.equals(((BootstrapMethod) o).bootstrapArguments, this.bootstrapArguments)
+                );
+            }
+
+            @Override public int
+            hashCode() { return this.bootstrapMethodRef + 31 * Arrays.hashCode(this.bootstrapArguments); }
         }
     }
 
-
     /**
      * Representation of an unmodifiable {@code StackMapTable} attribute, as read from a class file.
      */
@@ -2733,6 +3495,11 @@ class ClassFile implements Annotatable {
              * Serializes this record and writes it to the given {@link DataOutputStream}.
              */
             public abstract void store(DataOutputStream dos) throws IOException;
+
+            /**
+             * @return The number of bytes that {@link #store(DataOutputStream)} writes
+             */
+            public abstract int getLength();
         }
 
         /**
@@ -2761,6 +3528,9 @@ class ClassFile implements Annotatable {
             @Override public void
             store(DataOutputStream dos) throws IOException { dos.writeByte(this.offsetDelta); }
 
+            @Override public int
+            getLength() { return 1; }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitSameFrame(this); }
 
@@ -2788,6 +3558,9 @@ class ClassFile implements Annotatable {
                 this.stack.store(dos);
             }
 
+            @Override public int
+            getLength() { return 1 + this.stack.getLength(); }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitSameLocals1StackItemFrame(this); }
 
@@ -2824,6 +3597,9 @@ class ClassFile implements Annotatable {
                 this.stack.store(dos);
             }
 
+            @Override public int
+            getLength() { return 3 + this.stack.getLength(); }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitSameLocals1StackItemFrameExtended(this); }
 
@@ -2860,6 +3636,9 @@ class ClassFile implements Annotatable {
                 dos.writeShort(this.offsetDelta);
             }
 
+            @Override public int
+            getLength() { return 3; }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitChopFrame(this); }
 
@@ -2882,6 +3661,9 @@ class ClassFile implements Annotatable {
                 dos.writeShort(this.offsetDelta);
             }
 
+            @Override public int
+            getLength() { return 3; }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitSameFrameExtended(this); }
 
@@ -2912,6 +3694,9 @@ class ClassFile implements Annotatable {
                 StackMapTableAttribute.storeVerificationTypeInfos(this.locals, dos);
             }
 
+            @Override public int
+            getLength() { return 3 + StackMapTableAttribute.getLength(this.locals); }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitAppendFrame(this); }
 
@@ -2947,6 +3732,15 @@ class ClassFile implements Annotatable {
                 StackMapTableAttribute.storeVerificationTypeInfos(this.stack, dos);
             }
 
+            @Override public int
+            getLength() {
+                return (
+                    7
+                    + StackMapTableAttribute.getLength(this.locals)
+                    + StackMapTableAttribute.getLength(this.stack)
+                );
+            }
+
             @Override public <T> T
             accept(StackMapFrameVisitor<T> smfv) { return smfv.visitFullFrame(this); }
 
@@ -2979,6 +3773,11 @@ class ClassFile implements Annotatable {
              * Writes this object to an {@link OutputStream}, in "class file" format.
              */
             void store(DataOutputStream dos) throws IOException;
+
+            /**
+             * @return The number of bytes that {@link #store(DataOutputStream)} writes
+             */
+            int getLength();
         }
 
         /**
@@ -2988,6 +3787,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 1;           }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(0);   }
+            @Override public int     getLength()                                    { return 1;           }
             @Override public String  toString()                                     { return "top";       }
             @Override public int     hashCode()                                     { return 0;           }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this; }
@@ -3000,6 +3800,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 1;           }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(1);   }
+            @Override public int     getLength()                                    { return 1;           }
             @Override public String  toString()                                     { return "int";       }
             @Override public int     hashCode()                                     { return 1;           }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this; }
@@ -3012,6 +3813,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 1;           }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(2);   }
+            @Override public int     getLength()                                    { return 1;           }
             @Override public String  toString()                                     { return "float";     }
             @Override public int     hashCode()                                     { return 2;           }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this; }
@@ -3024,6 +3826,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 2;           }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(3);   }
+            @Override public int     getLength()                                    { return 1;           }
             @Override public String  toString()                                     { return "double";    }
             @Override public int     hashCode()                                     { return 3;           }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this; }
@@ -3036,6 +3839,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 2;           }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(4);   }
+            @Override public int     getLength()                                    { return 1;           }
             @Override public String  toString()                                     { return "long";      }
             @Override public int     hashCode()                                     { return 4;           }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this; }
@@ -3048,6 +3852,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 1;           }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(5);   }
+            @Override public int     getLength()                                    { return 1;           }
             @Override public String  toString()                                     { return "null";      }
             @Override public int     hashCode()                                     { return 5;           }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this; }
@@ -3060,6 +3865,7 @@ class ClassFile implements Annotatable {
 
             @Override public int     category()                                     { return 1;                   }
             @Override public void    store(DataOutputStream dos) throws IOException { dos.writeByte(6);           }
+            @Override public int     getLength()                                    { return 1;                   }
             @Override public String  toString()                                     { return "uninitializedThis"; }
             @Override public int     hashCode()                                     { return 6;                   }
             @Override public boolean equals(@Nullable Object obj)                   { return obj == this;         }
@@ -3092,6 +3898,9 @@ class ClassFile implements Annotatable {
                 dos.writeShort(this.constantClassInfoIndex);
             }
 
+            @Override public int
+            getLength() { return 3; }
+
             @Override public String
             toString() { return "object(" + Descriptor.toString(this.fieldDescriptor) + ")"; }
 
@@ -3127,6 +3936,9 @@ class ClassFile implements Annotatable {
                 dos.writeShort(this.offset);
             }
 
+            @Override public int
+            getLength() { return 3; }
+
             @Override public String
             toString() { return "uninitialized(offset=" + this.offset + ")"; }
 
@@ -3196,6 +4008,13 @@ class ClassFile implements Annotatable {
             for (VerificationTypeInfo vti : vtis) vti.store(dos);
         }
 
+        private static int
+        getLength(VerificationTypeInfo[] vtis) {
+            int result = 0;
+            for (VerificationTypeInfo vti : vtis) result += vti.getLength();
+            return result;
+        }
+
         private static VerificationTypeInfo[]
         loadVerificationTypeInfos(DataInputStream dis, int number, ClassFile classFile) throws IOException {
             VerificationTypeInfo[] result = new VerificationTypeInfo[number];
@@ -3240,6 +4059,13 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.entries.length);                   // number_of_entries
             for (StackMapFrame smf : this.entries) smf.store(dos); // entries
         }
+
+        @Override protected int
+        getBodyLength() {
+            int result = 2;
+            for (StackMapFrame smf : this.entries) result += smf.getLength();
+            return result;
+        }
     }
 
     /**
@@ -3259,6 +4085,11 @@ class ClassFile implements Annotatable {
          */
         void store(DataOutputStream dos) throws IOException;
 
+        /**
+         * @return The number of bytes that {@link #store(DataOutputStream)} writes (excluding the "tag" byte)
+         */
+        int getLength();
+
         /**
          * Invokes the respective method of the {@link ClassFile.ElementValue.Visitor}.
          */
@@ -3308,6 +4139,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.constantValueIndex); // const_value_index
         }
 
+        @Override public int
+        getLength() { return 2; }
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(ClassFile.ElementValue.Visitor<R, EX> visitor) throws EX {
             return this.accept((ConstantElementValue.Visitor<R, EX>) visitor);
@@ -3439,6 +4273,9 @@ class ClassFile implements Annotatable {
             dos.writeShort(this.constNameIndex); // const_name_index
         }
 
+        @Override public int
+        getLength() { return 4; }
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(ClassFile.ElementValue.Visitor<R, EX> visitor)
         throws EX { return visitor.visitEnumConstValue(this); }
@@ -3470,6 +4307,13 @@ class ClassFile implements Annotatable {
             }
         }
 
+        @Override public int
+        getLength() {
+            int result = 2;
+            for (ClassFile.ElementValue ev : this.values) result += 1 + ev.getLength();
+            return result;
+        }
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(ClassFile.ElementValue.Visitor<R, EX> visitor)
         throws EX { return visitor.visitArrayElementValue(this); }
@@ -3527,6 +4371,13 @@ class ClassFile implements Annotatable {
             }
         }
 
+        @Override public int
+        getLength() {
+            int result = 4;
+            for (ClassFile.ElementValue ev : this.elementValuePairs.values()) result += 3 + ev.getLength();
+            return result;
+        }
+
         @Override @Nullable public <R, EX extends Throwable> R
         accept(ClassFile.ElementValue.Visitor<R, EX> visitor)
         throws EX { return visitor.visitAnnotation(this); }
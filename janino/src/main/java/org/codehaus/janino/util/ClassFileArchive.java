@@ -0,0 +1,242 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.codehaus.commons.nullanalysis.Nullable;
+
+/**
+ * An append-only archive file that stores class files, each validated by a hash of the content of its source file.
+ * <p>
+ *   When the archive is opened, it is memory-mapped and its records are indexed (later records supersede earlier
+ *   records for the same class). From then on, {@link #get(String, byte[])} costs no file system access at all, and
+ *   {@link #put(String, byte[], byte[])} costs one write at the end of the archive.
+ * </p>
+ * <p>
+ *   Record layout (all integers are big-endian):
+ * </p>
+ * <pre>
+ *   int    magic (0x4A4E4F41, "JNOA")
+ *   int    payloadLength
+ *   byte[] payload:
+ *            short  classNameLength
+ *            byte[] className (UTF-8)
+ *            byte   sourceHashLength
+ *            byte[] sourceHash
+ *            byte[] classFile (the rest of the payload)
+ *   long   CRC32 of the payload
+ * </pre>
+ * <p>
+ *   A record that is incomplete or corrupt (e.g. because the JVM died while writing it) ends the archive; the next
+ *   {@link #put(String, byte[], byte[])} overwrites it.
+ * </p>
+ * <p>
+ *   This class is thread-safe. Notice, however, that an archive must not be opened more than once at a time.
+ * </p>
+ */
+public
+class ClassFileArchive implements Closeable {
+
+    private static final int MAGIC = 0x4A4E4F41;
+
+    private final File        file;
+    private final FileChannel channel;
+
+    /**
+     * The archive contents as it was when the archive was opened.
+     */
+    private final ByteBuffer mapped;
+
+    /**
+     * The position where the next record is appended.
+     */
+    private long end;
+
+    private final Map<String /*className*/, Entry> index = new HashMap<>();
+
+    private static final
+    class Entry {
+
+        final byte[] sourceHash;
+
+        /**
+         * Offset and length of the class file in {@link ClassFileArchive#mapped}; irrelevant iff {@link #classFile}
+         * is not {@code null}.
+         */
+        final int offset, length;
+
+        /**
+         * The class file, iff it was {@link ClassFileArchive#put(String, byte[], byte[]) put} <em>after</em> the
+         * archive was opened.
+         */
+        @Nullable final byte[] classFile;
+
+        Entry(byte[] sourceHash, int offset, int length, @Nullable byte[] classFile) {
+            this.sourceHash = sourceHash;
+            this.offset     = offset;
+            this.length     = length;
+            this.classFile  = classFile;
+        }
+    }
+
+    /**
+     * Opens the archive, or creates an empty archive iff the <var>file</var> does not exist.
+     */
+    public
+    ClassFileArchive(File file) throws IOException {
+        this.file    = file;
+        this.channel = new RandomAccessFile(file, "rw").getChannel();
+
+        long size = this.channel.size();
+        if (size > Integer.MAX_VALUE) {
+            this.channel.close();
+            throw new IOException("Class file archive \"" + file + "\" is too large");
+        }
+
+        this.mapped = this.channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        this.end    = this.scan();
+    }
+
+    /**
+     * Indexes all valid records of {@link #mapped}.
+     *
+     * @return The end of the last valid record
+     */
+    private int
+    scan() {
+        ByteBuffer bb  = this.mapped;
+        int        pos = 0;
+        for (;;) {
+            if (bb.limit() - pos < 8 || bb.getInt(pos) != ClassFileArchive.MAGIC) return pos;
+
+            int payloadLength = bb.getInt(pos + 4);
+            int payloadOffset = pos + 8;
+            if (payloadLength < 3 || bb.limit() - payloadOffset - 8 < payloadLength) return pos;
+
+            byte[]     payload = new byte[payloadLength];
+            ByteBuffer dup     = bb.duplicate();
+            dup.position(payloadOffset);
+            dup.get(payload);
+
+            CRC32 crc32 = new CRC32();
+            crc32.update(payload);
+            if (bb.getLong(payloadOffset + payloadLength) != crc32.getValue()) return pos;
+
+            int classNameLength = ((payload[0] & 0xff) << 8) | (payload[1] & 0xff);
+            if (2 + classNameLength + 1 > payloadLength) return pos;
+            String className = new String(payload, 2, classNameLength, StandardCharsets.UTF_8);
+
+            int sourceHashLength = payload[2 + classNameLength] & 0xff;
+            int classFileOffset  = 2 + classNameLength + 1 + sourceHashLength;
+            if (classFileOffset > payloadLength) return pos;
+            byte[] sourceHash = Arrays.copyOfRange(payload, 2 + classNameLength + 1, classFileOffset);
+
+            this.index.put(className, new Entry(
+                sourceHash,
+                payloadOffset + classFileOffset,
+                payloadLength - classFileOffset,
+                null
+            ));
+
+            pos = payloadOffset + payloadLength + 8;
+        }
+    }
+
+    /**
+     * @return The class file that was stored for the <var>className</var>, or {@code null} iff no class file was
+     *         stored for that class, or iff it was stored with a different source hash
+     */
+    @Nullable public synchronized byte[]
+    get(String className, byte[] sourceHash) {
+
+        Entry e = (Entry) this.index.get(className);
+        if (e == null || !Arrays.equals(e.sourceHash, sourceHash)) return null;
+
+        if (e.classFile != null) return e.classFile;
+
+        byte[]     result = new byte[e.length];
+        ByteBuffer dup    = this.mapped.duplicate();
+        dup.position(e.offset);
+        dup.get(result);
+        return result;
+    }
+
+    /**
+     * Appends a record to the archive, which supersedes any record previously stored for the <var>className</var>.
+     */
+    public synchronized void
+    put(String className, byte[] sourceHash, byte[] classFile) throws IOException {
+
+        byte[] cn = className.getBytes(StandardCharsets.UTF_8);
+        if (cn.length > 0xffff || sourceHash.length > 0xff) throw new IllegalArgumentException(className);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(19 + cn.length + sourceHash.length + classFile.length);
+        DataOutputStream      dos  = new DataOutputStream(baos);
+
+        dos.writeInt(ClassFileArchive.MAGIC);
+        dos.writeInt(2 + cn.length + 1 + sourceHash.length + classFile.length);
+        dos.writeShort(cn.length);
+        dos.write(cn);
+        dos.writeByte(sourceHash.length);
+        dos.write(sourceHash);
+        dos.write(classFile);
+
+        byte[] record = baos.toByteArray();
+
+        CRC32 crc32 = new CRC32();
+        crc32.update(record, 8, record.length - 8);
+        dos.writeLong(crc32.getValue());
+        record = baos.toByteArray();
+
+        ByteBuffer bb = ByteBuffer.wrap(record);
+        for (long pos = this.end; bb.hasRemaining();) pos += this.channel.write(bb, pos);
+        this.end += record.length;
+
+        this.index.put(className, new Entry(sourceHash, 0, classFile.length, classFile));
+    }
+
+    /**
+     * Closes the underlying file. Subsequent {@link #put(String, byte[], byte[])}s will fail.
+     */
+    @Override public synchronized void
+    close() throws IOException { this.channel.close(); }
+
+    @Override public String
+    toString() { return this.file.toString(); }
+}
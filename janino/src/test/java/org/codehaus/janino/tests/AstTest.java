@@ -517,6 +517,61 @@ class AstTest {
         }
     }
 
+    @Test public void
+    testDeferredMethodBodies() throws Exception {
+
+        for (File f : UnparserTest.findJaninoJavaFiles()) {
+
+            AbstractCompilationUnit acu1 = AstTest.parseAbstractCompilationUnit(f);
+
+            // Parse the compilation unit without the method bodies, and then parse these.
+            AbstractCompilationUnit acu2;
+            {
+                Reader r = new FileReader(f);
+                try {
+                    Parser parser = new Parser(new Scanner(f.getPath(), r));
+                    parser.setMethodBodiesDeferred(true);
+                    acu2 = parser.parseAbstractCompilationUnit();
+                } finally {
+                    try { r.close(); } catch (Exception e) {}
+                }
+            }
+            Parser.parseDeferredBodies(acu2);
+
+            Assert.assertEquals(f.getPath(), AstTest.unparse(acu1), AstTest.unparse(acu2));
+        }
+
+        // Syntax errors in method bodies are reported when the unit is compiled, not when it is parsed.
+        Parser parser = new Parser(new Scanner(null, new StringReader(
+            ""
+            + "public class HandMade {\n"
+            + "    static int x;\n"
+            + "    static { x = 7; }\n"
+            + "    public Object calculate() { return x * 6; }\n"
+            + "    public Object broken() { return 1 +; }\n"
+            + "}\n"
+        )));
+        parser.setMethodBodiesDeferred(true);
+        AbstractCompilationUnit acu = parser.parseAbstractCompilationUnit();
+        try {
+            AstTest.compileAndEval(acu);
+            Assert.fail("CompileException expected");
+        } catch (CompileException ce) {
+            Assert.assertEquals(5, ce.getLocation().getLineNumber());
+        }
+
+        parser = new Parser(new Scanner(null, new StringReader(
+            ""
+            + "public class HandMade {\n"
+            + "    static int x;\n"
+            + "    static { x = 7; }\n"
+            + "    public Object calculate() { return x * 6; }\n"
+            + "}\n"
+        )));
+        parser.setMethodBodiesDeferred(true);
+        Assert.assertEquals(42, AstTest.compileAndEval(parser.parseAbstractCompilationUnit()));
+    }
+
     private static AbstractCompilationUnit
     parseAbstractCompilationUnit(File f) throws CompileException, IOException {
 
@@ -641,6 +696,50 @@ class AstTest {
         );
     }
 
+    @Test public void
+    testLocations() throws Exception {
+        CompilationUnit cu = (CompilationUnit) new Parser(new Scanner(
+            "Foo.java",
+            new StringReader("public class Foo {\n    int x =\n        7;\n}\n")
+        )).parseAbstractCompilationUnit();
+
+        FieldDeclaration fd = (FieldDeclaration) (
+            ((AbstractClassDeclaration) cu.getPackageMemberTypeDeclarations()[0]).fieldDeclarationsAndInitializers.get(0)
+        );
+        Rvalue initializer = (Rvalue) fd.variableDeclarators[0].initializer;
+        assert initializer != null;
+
+        Location location = initializer.getLocation();
+        Assert.assertEquals("Foo.java", location.getFileName());
+        Assert.assertEquals(3, location.getLineNumber());
+        Assert.assertEquals(9, location.getColumnNumber());
+        Assert.assertEquals(3, initializer.getLineNumber());
+        Assert.assertEquals(9, initializer.getColumnNumber());
+
+        // Extreme line and column numbers survive the packing.
+        for (int[] lc : new int[][] { { -1, -1 }, { 0, 0 }, { Integer.MAX_VALUE, Integer.MAX_VALUE }, { 1, -1 } }) {
+            Location l  = new Location(null, lc[0], lc[1]);
+            Rvalue   rv = new IntegerLiteral(l, "1");
+            Assert.assertNull(rv.getLocation().getFileName());
+            Assert.assertEquals(lc[0], rv.getLocation().getLineNumber());
+            Assert.assertEquals(lc[1], rv.getLocation().getColumnNumber());
+        }
+
+        // The scanner re-uses the location of the current token, and exposes the packed line and column number.
+        Scanner scanner = new Scanner("Bar.java", new StringReader("int\n  x;"));
+        scanner.produce();
+        Location l1 = scanner.location();
+        Assert.assertSame(l1, scanner.location());
+        Assert.assertEquals(1L << 32 | 1, scanner.lineAndColumn());
+        scanner.produce();
+        scanner.produce();
+        Location l2 = scanner.location();
+        Assert.assertNotSame(l1, l2);
+        Assert.assertEquals(2, l2.getLineNumber());
+        Assert.assertEquals(3, l2.getColumnNumber());
+        Assert.assertEquals(2L << 32 | 3, scanner.lineAndColumn());
+    }
+
     public static String
     unparse(AbstractCompilationUnit acu) {
         StringWriter sw = new StringWriter();
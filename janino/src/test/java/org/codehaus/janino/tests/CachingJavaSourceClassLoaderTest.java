@@ -0,0 +1,219 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.ResourceFinder;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.CachingJavaSourceClassLoader;
+import org.codehaus.janino.util.ClassFileArchive;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the {@link CachingJavaSourceClassLoader} and the {@link ClassFileArchive}.
+ */
+public
+class CachingJavaSourceClassLoaderTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private static final byte[] HASH1 = { 1, 2, 3 };
+    private static final byte[] HASH2 = { 4, 5, 6 };
+
+    /**
+     * The source files that the {@link #sourceFinder} finds; can be modified by the tests.
+     */
+    private final Map<String /*resourceName*/, String /*text*/> sources = new HashMap<>();
+
+    /**
+     * Counts how often the source files were read.
+     */
+    private int sourceReads;
+
+    private final ResourceFinder sourceFinder = new ResourceFinder() {
+
+        @Override @Nullable public Resource
+        findResource(final String resourceName) {
+
+            final String text = CachingJavaSourceClassLoaderTest.this.sources.get(resourceName);
+            if (text == null) return null;
+
+            return new Resource() {
+                @Override public String getFileName()  { return resourceName; }
+                @Override public long   lastModified() { return 0L;           }
+
+                @Override public InputStream
+                open() {
+                    CachingJavaSourceClassLoaderTest.this.sourceReads++;
+                    return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+                }
+            };
+        }
+    };
+
+    @Test public void
+    testClassFileArchiveRoundTrip() throws Exception {
+        File file = new File(this.temporaryFolder.getRoot(), "classes.jnoa");
+
+        ClassFileArchive cfa = new ClassFileArchive(file);
+        try {
+            Assert.assertNull(cfa.get("pkg.A", HASH1));
+
+            cfa.put("pkg.A", HASH1, new byte[] { 10, 11 });
+            cfa.put("pkg.B", HASH1, new byte[] { 20 });
+            Assert.assertArrayEquals(new byte[] { 10, 11 }, cfa.get("pkg.A", HASH1));
+            Assert.assertNull(cfa.get("pkg.A", HASH2));
+
+            // A later record supersedes an earlier one.
+            cfa.put("pkg.A", HASH2, new byte[] { 12 });
+            Assert.assertNull(cfa.get("pkg.A", HASH1));
+            Assert.assertArrayEquals(new byte[] { 12 }, cfa.get("pkg.A", HASH2));
+        } finally {
+            cfa.close();
+        }
+
+        // Re-open the archive, as after a JVM restart.
+        cfa = new ClassFileArchive(file);
+        try {
+            Assert.assertNull(cfa.get("pkg.A", HASH1));
+            Assert.assertArrayEquals(new byte[] { 12 }, cfa.get("pkg.A", HASH2));
+            Assert.assertArrayEquals(new byte[] { 20 }, cfa.get("pkg.B", HASH1));
+        } finally {
+            cfa.close();
+        }
+    }
+
+    @Test public void
+    testClassFileArchiveTruncated() throws Exception {
+        File file = new File(this.temporaryFolder.getRoot(), "classes.jnoa");
+
+        ClassFileArchive cfa = new ClassFileArchive(file);
+        try {
+            cfa.put("pkg.A", HASH1, new byte[] { 10 });
+            cfa.put("pkg.B", HASH1, new byte[] { 20 });
+        } finally {
+            cfa.close();
+        }
+
+        // Simulate a JVM that died while writing the second record.
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(raf.length() - 3);
+        } finally {
+            raf.close();
+        }
+
+        cfa = new ClassFileArchive(file);
+        try {
+            Assert.assertArrayEquals(new byte[] { 10 }, cfa.get("pkg.A", HASH1));
+            Assert.assertNull(cfa.get("pkg.B", HASH1));
+
+            // The next record must overwrite the incomplete one.
+            cfa.put("pkg.C", HASH1, new byte[] { 30 });
+        } finally {
+            cfa.close();
+        }
+
+        cfa = new ClassFileArchive(file);
+        try {
+            Assert.assertArrayEquals(new byte[] { 10 }, cfa.get("pkg.A", HASH1));
+            Assert.assertNull(cfa.get("pkg.B", HASH1));
+            Assert.assertArrayEquals(new byte[] { 30 }, cfa.get("pkg.C", HASH1));
+        } finally {
+            cfa.close();
+        }
+    }
+
+    @Test public void
+    testClassFileArchiveCacheHit() throws Exception {
+        File file = new File(this.temporaryFolder.getRoot(), "classes.jnoa");
+
+        this.sources.put("pkg/A.java", "package pkg; public class A { public static int meth() { return 1; } }");
+
+        // Cache miss; the source file is read for hashing and for compilation.
+        Assert.assertEquals(1, this.loadAndInvoke(file));
+        Assert.assertTrue(this.sourceReads >= 2);
+
+        // Cache hit with a new class loader and a re-opened archive; the source file is read only for hashing.
+        this.sourceReads = 0;
+        Assert.assertEquals(1, this.loadAndInvoke(file));
+        Assert.assertEquals(1, this.sourceReads);
+    }
+
+    @Test public void
+    testClassFileArchiveStaleHash() throws Exception {
+        File file = new File(this.temporaryFolder.getRoot(), "classes.jnoa");
+
+        this.sources.put("pkg/A.java", "package pkg; public class A { public static int meth() { return 1; } }");
+        Assert.assertEquals(1, this.loadAndInvoke(file));
+
+        // Modify the source file; the archived class file must not be used any longer, regardless of modification
+        // times.
+        this.sources.put("pkg/A.java", "package pkg; public class A { public static int meth() { return 2; } }");
+        this.sourceReads = 0;
+        Assert.assertEquals(2, this.loadAndInvoke(file));
+        Assert.assertTrue(this.sourceReads >= 2);
+
+        // Now the recompiled class file must be archived.
+        this.sourceReads = 0;
+        Assert.assertEquals(2, this.loadAndInvoke(file));
+        Assert.assertEquals(1, this.sourceReads);
+    }
+
+    /**
+     * Loads class {@code pkg.A} through a new {@link CachingJavaSourceClassLoader} and a newly opened {@link
+     * ClassFileArchive}, and invokes its {@code meth()} method.
+     */
+    private Object
+    loadAndInvoke(File archiveFile) throws Exception {
+
+        ClassFileArchive cfa = new ClassFileArchive(archiveFile);
+        try {
+            ClassLoader cl = new CachingJavaSourceClassLoader(
+                ClassLoader.getSystemClassLoader(),
+                this.sourceFinder,
+                null,
+                cfa
+            );
+            return cl.loadClass("pkg.A").getMethod("meth").invoke(null);
+        } finally {
+            cfa.close();
+        }
+    }
+}
@@ -0,0 +1,219 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+import org.codehaus.janino.Mod;
+import org.codehaus.janino.SimpleCompiler;
+import org.codehaus.janino.util.ClassFile;
+import org.codehaus.janino.util.ClassFile.AttributeInfo;
+import org.codehaus.janino.util.ClassFile.FieldInfo;
+import org.codehaus.janino.util.ClassFile.MethodInfo;
+import org.codehaus.janino.util.ClassFile.StackMapTableAttribute;
+import org.codehaus.janino.util.ClassFile.StackMapTableAttribute.StackMapFrame;
+import org.codehaus.janino.util.ClassFile.StackMapTableAttribute.VerificationTypeInfo;
+import org.junit.Assert;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the {@link ClassFile}.
+ */
+public
+class ClassFileTest {
+
+    @Test public void
+    testAttributeLengths() throws Exception {
+
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.cook(
+            ""
+            + "package pkg;\n"
+            + "\n"
+            + "import java.lang.annotation.*;\n"
+            + "\n"
+            + "public class Foo {\n"
+            + "\n"
+            + "    @Retention(RetentionPolicy.RUNTIME) public @interface Anno {\n"
+            + "        int[]           ints()   default { 1, 2 };\n"
+            + "        RetentionPolicy policy();\n"
+            + "        String          s()      default \"x\";\n"
+            + "        Class<?>        c();\n"
+            + "    }\n"
+            + "\n"
+            + "    @Anno(ints = { 3, 4, 5 }, policy = RetentionPolicy.RUNTIME, s = \"y\", c = String.class) public long l;\n"
+            + "\n"
+            + "    @Anno(policy = RetentionPolicy.CLASS, c = Object.class) @Deprecated public static double\n"
+            + "    meth(int x, String s) {\n"
+            + "        long   l = 0;\n"
+            + "        double d = 1.5;\n"
+            + "        for (int i = 0; i < x; i++) {\n"
+            + "            if (s == null) { String t = \"a\"; l += t.length(); } else { l--; }\n"
+            + "        }\n"
+            + "        try {\n"
+            + "            d += Integer.parseInt(s);\n"
+            + "        } catch (NumberFormatException nfe) {\n"
+            + "            d = x > 0 ? l : -l;\n"
+            + "        }\n"
+            + "        return d;\n"
+            + "    }\n"
+            + "}\n"
+        );
+
+        Map<String, byte[]> classes = sc.getBytecodes();
+        Assert.assertEquals(2, classes.size());
+        for (byte[] ba : classes.values()) {
+            ClassFile cf = new ClassFile(new ByteArrayInputStream(ba));
+
+            // The computed lengths of all attributes must match the number of bytes that are actually written.
+            for (FieldInfo fi : cf.fieldInfos) {
+                for (AttributeInfo ai : fi.getAttributes()) ClassFileTest.assertLength(ai);
+            }
+            for (MethodInfo mi : cf.methodInfos) {
+                for (AttributeInfo ai : mi.getAttributes()) ClassFileTest.assertLength(ai);
+            }
+
+            Assert.assertEquals(ba.length, cf.getLength());
+            Assert.assertArrayEquals(ba, cf.toByteArray());
+        }
+    }
+
+    @Test public void
+    testStackMapTableLength() throws Exception {
+
+        VerificationTypeInfo oti = new StackMapTableAttribute.ObjectVariableInfo((short) 7, "Ljava/lang/String;");
+        VerificationTypeInfo uti = new StackMapTableAttribute.UninitializedVariableInfo((short) 3);
+
+        ClassFileTest.assertLength(new StackMapTableAttribute((short) 1, new StackMapFrame[0]));
+        ClassFileTest.assertLength(new StackMapTableAttribute((short) 1, new StackMapFrame[] {
+            new StackMapTableAttribute.SameFrame(5),
+            new StackMapTableAttribute.SameLocals1StackItemFrame(6, StackMapTableAttribute.INTEGER_VARIABLE_INFO),
+            new StackMapTableAttribute.SameLocals1StackItemFrameExtended(700, oti),
+            new StackMapTableAttribute.ChopFrame(8, 2),
+            new StackMapTableAttribute.SameFrameExtended(900),
+            new StackMapTableAttribute.AppendFrame(10, new VerificationTypeInfo[] {
+                StackMapTableAttribute.LONG_VARIABLE_INFO,
+                uti,
+                StackMapTableAttribute.NULL_VARIABLE_INFO,
+            }),
+            new StackMapTableAttribute.FullFrame(
+                11,
+                new VerificationTypeInfo[] {
+                    StackMapTableAttribute.UNINITIALIZED_THIS_VARIABLE_INFO,
+                    StackMapTableAttribute.TOP_VARIABLE_INFO,
+                    StackMapTableAttribute.DOUBLE_VARIABLE_INFO,
+                    oti,
+                },
+                new VerificationTypeInfo[] { StackMapTableAttribute.FLOAT_VARIABLE_INFO, uti }
+            ),
+        }));
+    }
+
+    @Test public void
+    testConstantPoolInterning() throws Exception {
+        ClassFile cf = new ClassFile(Mod.PUBLIC, "Lpkg/A;", "Ljava/lang/Object;", new String[0]);
+
+        // Equal constants share one entry.
+        short utf8 = cf.addConstantUtf8Info("foo");
+        short str  = cf.addConstantStringInfo("foo");
+        short cls  = cf.addConstantClassInfo("Lpkg/B;");
+        short arr  = cf.addConstantClassInfo("[Lpkg/B;");
+        short fr   = cf.addConstantFieldrefInfo("Lpkg/B;", "foo", "I");
+        short mr   = cf.addConstantMethodrefInfo("Lpkg/B;", "foo", "()V");
+        short imr  = cf.addConstantInterfaceMethodrefInfo("Lpkg/B;", "foo", "()V");
+        short i    = cf.addConstantIntegerInfo(-1);
+        short l    = cf.addConstantLongInfo(-1L);
+        short d    = cf.addConstantDoubleInfo(0.0);
+        short nd   = cf.addConstantDoubleInfo(-0.0);
+        short nan  = cf.addConstantFloatInfo(Float.NaN);
+        short mt   = cf.addConstantMethodTypeInfo("()V");
+        short mh   = cf.addConstantMethodHandleInfo((byte) 6, mr);
+
+        int size = cf.getConstantPoolSize();
+        Assert.assertEquals(utf8, cf.addConstantUtf8Info("foo"));
+        Assert.assertEquals(str, cf.addConstantStringInfo("foo"));
+        Assert.assertEquals(cls, cf.addConstantClassInfo("Lpkg/B;"));
+        Assert.assertEquals(arr, cf.addConstantClassInfo("[Lpkg/B;"));
+        Assert.assertEquals(fr, cf.addConstantFieldrefInfo("Lpkg/B;", "foo", "I"));
+        Assert.assertEquals(mr, cf.addConstantMethodrefInfo("Lpkg/B;", "foo", "()V"));
+        Assert.assertEquals(imr, cf.addConstantInterfaceMethodrefInfo("Lpkg/B;", "foo", "()V"));
+        Assert.assertEquals(i, cf.addConstantIntegerInfo(-1));
+        Assert.assertEquals(l, cf.addConstantLongInfo(-1L));
+        Assert.assertEquals(d, cf.addConstantDoubleInfo(0.0));
+        Assert.assertEquals(nd, cf.addConstantDoubleInfo(-0.0));
+        Assert.assertEquals(nan, cf.addConstantFloatInfo(Float.NaN));
+        Assert.assertEquals(mt, cf.addConstantMethodTypeInfo("()V"));
+        Assert.assertEquals(mh, cf.addConstantMethodHandleInfo((byte) 6, mr));
+        Assert.assertEquals(size, cf.getConstantPoolSize());
+
+        // Constants with different tags, but equal operands, have distinct entries.
+        Assert.assertNotEquals(utf8, str);
+        Assert.assertNotEquals(mr, imr);
+        Assert.assertNotEquals(i, l);
+        Assert.assertNotEquals(d, nd);
+        Assert.assertNotEquals(i, cf.addConstantFloatInfo(Float.intBitsToFloat(-1)));
+        Assert.assertNotEquals(l, cf.addConstantDoubleInfo(Double.longBitsToDouble(-1L)));
+
+        Assert.assertEquals("foo", cf.getConstantUtf8(utf8));
+        Assert.assertEquals(-1, cf.getConstantValuePoolInfo(i).getValue(cf));
+        Assert.assertEquals(-1L, cf.getConstantValuePoolInfo(l).getValue(cf));
+        Assert.assertEquals(-0.0, cf.getConstantValuePoolInfo(nd).getValue(cf));
+
+        // Many entries, so that the index must grow.
+        short[] ints = new short[5000];
+        for (int j = 0; j < ints.length; j++) ints[j] = cf.addConstantIntegerInfo(1000 + j);
+        size = cf.getConstantPoolSize();
+        for (int j = 0; j < ints.length; j++) Assert.assertEquals(ints[j], cf.addConstantIntegerInfo(1000 + j));
+        Assert.assertEquals(size, cf.getConstantPoolSize());
+
+        // A constant pool that is read from a class file must be indexed as well.
+        ClassFile cf2 = new ClassFile(new ByteArrayInputStream(cf.toByteArray()));
+        Assert.assertEquals(size, cf2.getConstantPoolSize());
+        Assert.assertEquals(utf8, cf2.addConstantUtf8Info("foo"));
+        Assert.assertEquals(str, cf2.addConstantStringInfo("foo"));
+        Assert.assertEquals(cls, cf2.addConstantClassInfo("Lpkg/B;"));
+        Assert.assertEquals(mr, cf2.addConstantMethodrefInfo("Lpkg/B;", "foo", "()V"));
+        Assert.assertEquals(imr, cf2.addConstantInterfaceMethodrefInfo("Lpkg/B;", "foo", "()V"));
+        Assert.assertEquals(l, cf2.addConstantLongInfo(-1L));
+        Assert.assertEquals(nan, cf2.addConstantFloatInfo(Float.NaN));
+        Assert.assertEquals(mh, cf2.addConstantMethodHandleInfo((byte) 6, mr));
+        Assert.assertEquals(ints[4999], cf2.addConstantIntegerInfo(5999));
+        Assert.assertEquals(size, cf2.getConstantPoolSize());
+    }
+
+    private static void
+    assertLength(AttributeInfo ai) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        ai.store(new DataOutputStream(baos));
+        Assert.assertEquals(ai.toString(), baos.size(), ai.getLength());
+    }
+}
@@ -0,0 +1,155 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2001-2018 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Arrays;
+import java.util.TreeSet;
+
+import org.codehaus.janino.Compiler;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the {@link Compiler}.
+ */
+public
+class CompilerTest {
+
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    /**
+     * Tests {@link Compiler#setDependencyGraphFile(File)}.
+     */
+    @Test public void
+    testIncrementalCompilation() throws Exception {
+
+        File sourceDirectory      = this.temporaryFolder.newFolder("src");
+        File destinationDirectory = this.temporaryFolder.newFolder("classes");
+        File dependencyGraphFile  = new File(this.temporaryFolder.getRoot(), "dependencies.bin");
+
+        File a = CompilerTest.write(sourceDirectory, "A.java", (
+            "public class A { public static int meth() { return B.X + B.meth(); } }"
+        ));
+        File b = CompilerTest.write(sourceDirectory, "B.java", (
+            "public class B { public static final int X = 1; public static int meth() { return 10; } }"
+        ));
+        File c = CompilerTest.write(sourceDirectory, "C.java", (
+            "public class C { private int x = 1; }"
+        ));
+        File[] sources = { a, b, c };
+
+        // Initially, all units are compiled.
+        CompilerTest.compile(sources, destinationDirectory, dependencyGraphFile);
+        Assert.assertEquals("[A, B, C]", CompilerTest.recompiledClasses(destinationDirectory));
+        Assert.assertEquals(11, CompilerTest.callA(destinationDirectory));
+
+        // Nothing changed.
+        CompilerTest.compile(sources, destinationDirectory, dependencyGraphFile);
+        Assert.assertEquals("[]", CompilerTest.recompiledClasses(destinationDirectory));
+
+        // Private change; the API of "C" remains unchanged.
+        CompilerTest.write(sourceDirectory, "C.java", "public class C { private int x = 2; }");
+        CompilerTest.compile(sources, destinationDirectory, dependencyGraphFile);
+        Assert.assertEquals("[C]", CompilerTest.recompiledClasses(destinationDirectory));
+
+        // Implementation change; the API of "B" remains unchanged.
+        CompilerTest.write(sourceDirectory, "B.java", (
+            "public class B { public static final int X = 1; public static int meth() { return 20; } }"
+        ));
+        CompilerTest.compile(sources, destinationDirectory, dependencyGraphFile);
+        Assert.assertEquals("[B]", CompilerTest.recompiledClasses(destinationDirectory));
+        Assert.assertEquals(21, CompilerTest.callA(destinationDirectory));
+
+        // Change of a constant, which "A" inlines.
+        CompilerTest.write(sourceDirectory, "B.java", (
+            "public class B { public static final int X = 2; public static int meth() { return 20; } }"
+        ));
+        CompilerTest.compile(sources, destinationDirectory, dependencyGraphFile);
+        Assert.assertEquals("[A, B]", CompilerTest.recompiledClasses(destinationDirectory));
+        Assert.assertEquals(22, CompilerTest.callA(destinationDirectory));
+
+        // Removal of a unit.
+        CompilerTest.compile(new File[] { a, b }, destinationDirectory, dependencyGraphFile);
+        Assert.assertEquals("[]", CompilerTest.recompiledClasses(destinationDirectory));
+        Assert.assertFalse(new File(destinationDirectory, "C.class").exists());
+    }
+
+    private static void
+    compile(File[] sources, File destinationDirectory, File dependencyGraphFile) throws Exception {
+        Compiler compiler = new Compiler();
+        compiler.setDestinationDirectory(destinationDirectory, false);
+        compiler.setDependencyGraphFile(dependencyGraphFile);
+        compiler.compile(sources);
+    }
+
+    /**
+     * @return The names of the class files that were (re)written since the last invocation
+     */
+    private static String
+    recompiledClasses(File destinationDirectory) {
+        StringBuilder sb = new StringBuilder("[");
+        for (String fileName : new TreeSet<String>(Arrays.asList(destinationDirectory.list()))) {
+            File file = new File(destinationDirectory, fileName);
+            if (file.lastModified() == 0) continue;
+            if (sb.length() > 1) sb.append(", ");
+            sb.append(fileName.substring(0, fileName.length() - 6));
+            Assert.assertTrue(file.setLastModified(0));
+        }
+        return sb.append(']').toString();
+    }
+
+    private static int
+    callA(File destinationDirectory) throws Exception {
+        URLClassLoader cl = new URLClassLoader(new URL[] { destinationDirectory.toURI().toURL() });
+        try {
+            return (Integer) cl.loadClass("A").getMethod("meth").invoke(null);
+        } finally {
+            cl.close();
+        }
+    }
+
+    private static File
+    write(File directory, String fileName, String contents) throws IOException {
+        File         file = new File(directory, fileName);
+        OutputStream os   = new FileOutputStream(file);
+        try {
+            os.write(contents.getBytes("UTF-8"));
+        } finally {
+            os.close();
+        }
+        return file;
+    }
+}
@@ -25,11 +25,21 @@
 
 package org.codehaus.janino.tests;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.StringReader;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 
+import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.CookExecutor;
+import org.codehaus.janino.EvaluatorBundle;
 import org.codehaus.janino.ExpressionEvaluator;
 import org.codehaus.janino.Scanner;
 import org.codehaus.janino.ScriptEvaluator;
@@ -65,4 +75,111 @@ class ExpressionEvaluatorTest {
         );
         Assert.assertEquals(new HashSet<>(Arrays.asList("b", "d")), parameterNames);
     }
+
+    @Test public void
+    testEvaluatorBundle() throws Exception {
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        new EvaluatorBundle.Builder()
+        .addExpression("a + b", IntBinaryOperator.class, "a", "b")
+        .addExpression("a * b", IntBinaryOperator.class, "a", "b")
+        .addScript("int c = a - b; return c < 0 ? -c : c;", IntBinaryOperator.class, "a", "b")
+        .addClassBody("public String toString() { return \"Hello\"; }", null)
+        .write(baos);
+
+        EvaluatorBundle bundle = EvaluatorBundle.load(new ByteArrayInputStream(baos.toByteArray()), null);
+        Assert.assertEquals(4, bundle.keys().size());
+
+        IntBinaryOperator plus = bundle.getExpressionEvaluator("a + b", IntBinaryOperator.class, "a", "b");
+        Assert.assertNotNull(plus);
+        Assert.assertEquals(5, plus.applyAsInt(2, 3));
+
+        IntBinaryOperator times = bundle.getExpressionEvaluator("a * b", IntBinaryOperator.class, "a", "b");
+        Assert.assertNotNull(times);
+        Assert.assertEquals(6, times.applyAsInt(2, 3));
+
+        IntBinaryOperator distance = bundle.getScriptEvaluator(
+            "int c = a - b; return c < 0 ? -c : c;",
+            IntBinaryOperator.class,
+            "a",
+            "b"
+        );
+        Assert.assertNotNull(distance);
+        Assert.assertEquals(7, distance.applyAsInt(3, 10));
+
+        Assert.assertEquals(
+            "Hello",
+            String.valueOf(bundle.getClassBodyInstance("public String toString() { return \"Hello\"; }", null))
+        );
+
+        // Not in the bundle.
+        Assert.assertNull(bundle.getExpressionEvaluator("a - b", IntBinaryOperator.class, "a", "b"));
+        Assert.assertNull(bundle.getExpressionEvaluator("a + b", IntBinaryOperator.class, "b", "a"));
+    }
+
+    @Test public void
+    testCookAsync() throws Exception {
+
+        CookExecutor ce = new CookExecutor(4, 100);
+        try {
+
+            // Many identical compilations, most of which are in flight at the same time.
+            List<Future<IntBinaryOperator>> futures = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                futures.add(new ExpressionEvaluator().<IntBinaryOperator>createFastEvaluatorAsync(
+                    ce,
+                    "a + b",
+                    IntBinaryOperator.class,
+                    "a",
+                    "b"
+                ));
+            }
+            for (Future<IntBinaryOperator> f : futures) Assert.assertEquals(5, f.get().applyAsInt(2, 3));
+
+            ExpressionEvaluator ee = new ExpressionEvaluator();
+            ee.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+            Assert.assertEquals(14, ee.cookAsync(ce, "a * 2").get().invoke(null, 7));
+
+            // Identical compilations that fail must all report the compilation error.
+            List<Future<Method>> failures = new ArrayList<>();
+            for (int i = 0; i < 4; i++) failures.add(new ExpressionEvaluator().cookAsync(ce, "1 +"));
+            for (Future<Method> f : failures) {
+                try {
+                    f.get();
+                    Assert.fail("ExecutionException expected");
+                } catch (ExecutionException ee2) {
+                    Assert.assertTrue(String.valueOf(ee2.getCause()), ee2.getCause() instanceof CompileException);
+                }
+            }
+        } finally {
+            ce.shutdown();
+        }
+    }
+
+    @Test public void
+    testCanonicalizeClasses() throws Exception {
+
+        ExpressionEvaluator ee1 = new ExpressionEvaluator(), ee2 = new ExpressionEvaluator();
+        ee1.setCanonicalizeClasses(true);
+        ee2.setCanonicalizeClasses(true);
+        ee1.cook("7 * 6");
+        ee2.cook("7 * 6");
+        Assert.assertSame(ee1.getMethod().getDeclaringClass(), ee2.getMethod().getDeclaringClass());
+        Assert.assertEquals(42, ee2.evaluate());
+
+        // Different code must not share the classes.
+        ExpressionEvaluator ee3 = new ExpressionEvaluator();
+        ee3.setCanonicalizeClasses(true);
+        ee3.cook("7 * 7");
+        Assert.assertNotSame(ee1.getMethod().getDeclaringClass(), ee3.getMethod().getDeclaringClass());
+        Assert.assertEquals(49, ee3.evaluate());
+
+        // Without canonicalization, identical code is loaded again.
+        ExpressionEvaluator ee4 = new ExpressionEvaluator();
+        ee4.cook("7 * 6");
+        Assert.assertNotSame(ee1.getMethod().getDeclaringClass(), ee4.getMethod().getDeclaringClass());
+    }
+
+    public
+    interface IntBinaryOperator { int applyAsInt(int a, int b); }
 }
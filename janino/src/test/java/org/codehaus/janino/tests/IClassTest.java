@@ -0,0 +1,188 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+
+import org.codehaus.commons.compiler.Location;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Descriptor;
+import org.codehaus.janino.IClass;
+import org.codehaus.janino.Java;
+import org.codehaus.janino.Java.AbstractClassDeclaration;
+import org.codehaus.janino.Java.BlockStatement;
+import org.codehaus.janino.Java.CompilationUnit;
+import org.codehaus.janino.Java.FunctionDeclarator.FormalParameter;
+import org.codehaus.janino.Java.FunctionDeclarator.FormalParameters;
+import org.codehaus.janino.Java.MethodDeclarator;
+import org.codehaus.janino.Java.Primitive;
+import org.codehaus.janino.Java.PrimitiveType;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.SimpleCompiler;
+import org.codehaus.janino.UnitCompiler;
+import org.junit.Assert;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the method caches of {@link IClass}, for the memoization of method resolution in the {@link
+ * UnitCompiler}, and for the reflection metadata that all {@link ClassLoaderIClassLoader}s share.
+ */
+public
+class IClassTest {
+
+    @Test public void
+    testMethodCaches() throws Exception {
+
+        CompilationUnit cu = (CompilationUnit) new Parser(new Scanner(null, new StringReader(
+            ""
+            + "public class A { public void m(int x) {} public void n() {} }\n"
+            + "public class B extends A { public void m(String s) {} }\n"
+            + "public class C extends B {}\n"
+        ))).parseAbstractCompilationUnit();
+
+        UnitCompiler uc = new UnitCompiler(cu, new ClassLoaderIClassLoader(this.getClass().getClassLoader()));
+        IClass       a  = uc.findClass("A");
+        IClass       c  = uc.findClass("C");
+        assert a != null && c != null;
+
+        // The methods of "C" are inherited from "B" and "A".
+        IClass.IMethod[] ms = c.getIMethods("m");
+        Assert.assertEquals(2, ms.length);
+        Assert.assertSame(ms, c.getIMethods("m"));
+        Assert.assertEquals(2, c.getIMethods("m", 1).length);
+        Assert.assertEquals(0, c.getIMethods("m", 2).length);
+        Assert.assertEquals(1, c.getIMethods("n", 0).length);
+        int methodCount = c.getIMethods().length;
+
+        // Add a method "m(int, int)" to "A".
+        Location loc = Location.NOWHERE;
+        AbstractClassDeclaration acd = (AbstractClassDeclaration) cu.getPackageMemberTypeDeclarations()[0];
+        acd.addDeclaredMethod(new MethodDeclarator(
+            loc,                                                                        // location
+            null,                                                                       // docComment
+            new Java.Modifier[] { new Java.AccessModifier("public", loc) },             // modifiers
+            null,                                                                       // typeParameters
+            new PrimitiveType(loc, Primitive.VOID),                                     // type
+            "m",                                                                        // name
+            new FormalParameters(loc, new FormalParameter[] {                           // formalParameters
+                new FormalParameter(loc, new Java.Modifier[0], new PrimitiveType(loc, Primitive.INT), "x"),
+                new FormalParameter(loc, new Java.Modifier[0], new PrimitiveType(loc, Primitive.INT), "y"),
+            }, false),
+            new Java.Type[0],                                                           // thrownExceptions
+            null,                                                                       // defaultValue
+            new ArrayList<BlockStatement>()                                             // statements
+        ));
+        acd.invalidateMethodCaches();
+
+        // The caches of the subclasses must reflect the new method.
+        Assert.assertEquals(2, a.getDeclaredIMethods("m").length);
+        Assert.assertEquals(3, c.getIMethods("m").length);
+        Assert.assertEquals(1, c.getIMethods("m", 2).length);
+        Assert.assertEquals(2, c.getIMethods("m", 1).length);
+        Assert.assertEquals(methodCount + 1, c.getIMethods().length);
+    }
+
+    @Test public void
+    testMethodResolutionMemo() throws Exception {
+
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.cook(
+            ""
+            + "public class A {\n"
+            + "    private static int m(String s) { return 1; }\n"
+            + "    static int         m(Object o) { return 2; }\n"
+            + "    static int         v(int... a) { return a.length; }\n"
+            + "    public static int  a()         { return A.m(\"x\") * 10 + A.m(\"y\"); }\n"
+            + "}\n"
+            + "public class B {\n"
+            + "\n"
+            + "    // The same invocation resolves differently where \"A.m(String)\" is not accessible.\n"
+            + "    public static int b() { return A.m(\"x\") * 10 + A.m(\"y\"); }\n"
+            + "\n"
+            + "    // Identical invocations of a varargs method, with and without argument wrapping.\n"
+            + "    public static int c() { return A.v(1, 2) * 100 + A.v(new int[] { 1, 2, 3 }) * 10 + A.v(4, 5); }\n"
+            + "}\n"
+        );
+
+        ClassLoader cl = sc.getClassLoader();
+        Assert.assertEquals(11,  cl.loadClass("A").getMethod("a").invoke(null));
+        Assert.assertEquals(22,  cl.loadClass("B").getMethod("b").invoke(null));
+        Assert.assertEquals(232, cl.loadClass("B").getMethod("c").invoke(null));
+    }
+
+    @Test public void
+    testSharedReflectionMetadata() throws Exception {
+
+        ClassLoader             cl   = this.getClass().getClassLoader();
+        ClassLoaderIClassLoader icl1 = new ClassLoaderIClassLoader(cl);
+        ClassLoaderIClassLoader icl2 = new ClassLoaderIClassLoader(cl);
+
+        IClass c1 = icl1.loadIClass(Descriptor.fromClassName(Lazy.class.getName()));
+        IClass c2 = icl2.loadIClass(Descriptor.fromClassName(Lazy.class.getName()));
+        assert c1 != null && c2 != null;
+        Assert.assertNotSame(c1, c2);
+
+        // The IMethods are per IClassLoader, and resolve their types through "their" IClassLoader...
+        IClass.IMethod m1 = c1.getDeclaredIMethods("get")[0];
+        IClass.IMethod m2 = c2.getDeclaredIMethods("get")[0];
+        Assert.assertNotSame(m1, m2);
+        Assert.assertSame(icl1.TYPE_java_lang_Object, m1.getReturnType());
+        Assert.assertSame(icl2.TYPE_java_lang_Object, m2.getReturnType());
+
+        // ... but share their descriptors.
+        Assert.assertEquals("(I)Ljava/lang/Object;", m1.getDescriptor().toString());
+        Assert.assertSame(m1.getDescriptor(), m2.getDescriptor());
+
+        // Neither the members nor non-constant fields require the class to be initialized.
+        IClass.IField f1 = c1.getDeclaredIField("CONSTANT");
+        IClass.IField f2 = c2.getDeclaredIField("CONSTANT");
+        IClass.IField nc = c1.getDeclaredIField("nonConstant");
+        assert f1 != null && f2 != null && nc != null;
+        Assert.assertSame(IClass.NOT_CONSTANT, nc.getConstantValue());
+        Assert.assertFalse(IClassTest.lazyInitialized);
+
+        // The constant value is computed once and then shared.
+        Assert.assertEquals("c", f1.getConstantValue());
+        Assert.assertTrue(IClassTest.lazyInitialized);
+        Assert.assertSame(f1.getConstantValue(), f2.getConstantValue());
+    }
+
+    static volatile boolean lazyInitialized;
+
+    public static
+    class Lazy {
+        public static final String CONSTANT    = "c";
+        public static int          nonConstant = 7;
+
+        static { IClassTest.lazyInitialized = true; }
+
+        public Object get(int i) { return null; }
+    }
+}
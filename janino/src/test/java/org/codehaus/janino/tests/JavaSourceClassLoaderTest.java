@@ -0,0 +1,118 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+package org.codehaus.janino.tests;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.codehaus.commons.compiler.util.resource.Resource;
+import org.codehaus.commons.compiler.util.resource.ResourceFinder;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.JavaSourceClassLoader;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit tests for the {@link JavaSourceClassLoader}.
+ */
+public
+class JavaSourceClassLoaderTest {
+
+    @Test public void
+    testConcurrentCompilation() throws Exception {
+
+        final Map<String /*resourceName*/, String /*text*/> sources = new HashMap<>();
+        sources.put("pkg/A.java", "package pkg; public class A { public static int meth() { return C.meth() + 1; } }");
+        sources.put("pkg/B.java", "package pkg; public class B { public static int meth() { return C.meth() + 2; } }");
+        sources.put("pkg/C.java", "package pkg; public class C { public static int meth() { return 10; } }");
+
+        // Reading "A.java" and "B.java" blocks until both are read, i.e. until two compilations are in progress.
+        final CyclicBarrier barrier = new CyclicBarrier(2);
+        ResourceFinder sourceFinder = new ResourceFinder() {
+
+            @Override @Nullable public Resource
+            findResource(final String resourceName) {
+
+                final String text = sources.get(resourceName);
+                if (text == null) return null;
+
+                return new Resource() {
+                    @Override public String getFileName()  { return resourceName; }
+                    @Override public long   lastModified() { return 0L;           }
+
+                    @Override public InputStream
+                    open() throws IOException {
+                        if (!"pkg/C.java".equals(resourceName) && !barrier.isBroken()) {
+                            try {
+                                barrier.await(10, TimeUnit.SECONDS);
+                            } catch (Exception e) {
+                                throw new IOException("Compilations did not run concurrently", e);
+                            }
+                        }
+                        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+                    }
+                };
+            }
+        };
+
+        final JavaSourceClassLoader jscl = new JavaSourceClassLoader(
+            this.getClass().getClassLoader(), // parentClassLoader
+            sourceFinder,                     // sourceFinder
+            null                              // characterEncoding
+        );
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<Class<?>>> futures = new ArrayList<Future<Class<?>>>();
+            for (final String className : new String[] { "pkg.A", "pkg.B" }) {
+                futures.add(executor.submit(new Callable<Class<?>>() {
+                    @Override public Class<?> call() throws Exception { return jscl.loadClass(className); }
+                }));
+            }
+
+            // Both compilations compile "C.java", but only one class "C" must be defined.
+            Assert.assertEquals(11, futures.get(0).get().getMethod("meth").invoke(null));
+            Assert.assertEquals(12, futures.get(1).get().getMethod("meth").invoke(null));
+            Assert.assertSame(jscl, jscl.loadClass("pkg.C").getClassLoader());
+        } finally {
+            executor.shutdown();
+        }
+    }
+}
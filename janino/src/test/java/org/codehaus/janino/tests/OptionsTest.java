@@ -25,6 +25,7 @@
 
 package org.codehaus.janino.tests;
 
+import java.io.StringReader;
 import java.lang.reflect.InvocationTargetException;
 import java.util.Arrays;
 import java.util.EnumSet;
@@ -33,7 +34,11 @@ import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.janino.Java.CompilationUnit;
+import org.codehaus.janino.Java.NamedClassDeclaration;
 import org.codehaus.janino.JaninoOption;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
 import org.codehaus.janino.ScriptEvaluator;
 import org.codehaus.janino.SimpleCompiler;
 import org.codehaus.janino.UnitCompiler;
@@ -92,6 +97,57 @@ class OptionsTest {
         OptionsTest.assertScriptExecutable(script, JaninoOption.EXPRESSIONS_IN_TRY_WITH_RESOURCES_ALLOWED);
     }
 
+    /**
+     * Tests {@link JaninoOption#METHOD_BODIES_DISCARDED}.
+     */
+    @Test public void
+    testMethodBodiesDiscarded() throws Exception {
+        String cu = (
+            ""
+            + "package pkg;\n"
+            + "\n"
+            + "public class A {\n"
+            + "\n"
+            + "    public static int meth(int x) {\n"
+            + "        Runnable r = new Runnable() { public void run() {} };\n"
+            + "        r.run();\n"
+            + "        return new B().twice(x) + 1;\n"
+            + "    }\n"
+            + "\n"
+            + "    static class B {\n"
+            + "        B() { super(); }\n"
+            + "        int twice(int y) { return 2 * y; }\n"
+            + "    }\n"
+            + "\n"
+            + "    abstract static class C {\n"
+            + "        abstract void abs();\n"
+            + "    }\n"
+            + "}\n"
+        );
+
+        CompilationUnit acu = (CompilationUnit) new Parser(new Scanner(null, new StringReader(cu)))
+        .parseAbstractCompilationUnit();
+
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.options(EnumSet.of(JaninoOption.METHOD_BODIES_DISCARDED));
+        sc.cook(acu);
+
+        Assert.assertEquals(
+            7,
+            sc.getClassLoader().loadClass("pkg.A").getMethod("meth", int.class).invoke(null, 3)
+        );
+
+        // The method bodies are gone, but the signatures are still there.
+        NamedClassDeclaration a = (NamedClassDeclaration) acu.getPackageMemberTypeDeclarations()[0];
+        Assert.assertEquals(0, a.getMethodDeclaration("meth").statements.size());
+        NamedClassDeclaration b = (NamedClassDeclaration) a.getMemberTypeDeclaration("B");
+        Assert.assertEquals(0, b.getMethodDeclaration("twice").statements.size());
+        Assert.assertEquals(1, b.getMethodDeclaration("twice").formalParameters.parameters.length);
+        Assert.assertEquals(0, b.constructors.get(0).statements.size());
+        NamedClassDeclaration c = (NamedClassDeclaration) a.getMemberTypeDeclaration("C");
+        Assert.assertNull(c.getMethodDeclaration("abs").statements);
+    }
+
     private static void
     assertScriptExecutable(String script, JaninoOption... options)
     throws CompileException, InvocationTargetException {
@@ -25,13 +25,31 @@
 
 package org.codehaus.janino.tests;
 
+import java.io.File;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
 import org.codehaus.commons.compiler.CompileException;
+import org.codehaus.commons.nullanalysis.Nullable;
+import org.codehaus.janino.BytecodeCache;
+import org.codehaus.janino.CompilationListener;
+import org.codehaus.janino.CompilationListener.Phase;
+import org.codehaus.janino.CompileTimeSandbox;
+import org.codehaus.janino.CompilerStatistics;
+import org.codehaus.janino.ExecutionBudget;
+import org.codehaus.janino.ExecutionBudgetExceededException;
 import org.codehaus.janino.JaninoOption;
+import org.codehaus.janino.LineProfile;
 import org.codehaus.janino.ScriptEvaluator;
 import org.junit.Assert;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 // SUPPRESS CHECKSTYLE JavadocMethod:9999
 
@@ -41,6 +59,8 @@ import org.junit.Test;
 public
 class ScriptEvaluatorTest {
 
+    @Rule public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test public void
     testAccessibilityOfClassMembers1() throws Exception {
 
@@ -73,4 +93,347 @@ class ScriptEvaluatorTest {
             Assert.assertTrue(ce.getMessage().contains("Private member cannot be accessed"));
         }
     }
+
+    @Test public void
+    testCompileTimeSandbox() throws Exception {
+        CompileTimeSandbox sandbox = (
+            new CompileTimeSandbox(false)
+            .allow("java.lang")
+            .deny("java.lang.System")
+            .allow("java.lang.System.currentTimeMillis")
+            .deny("java.lang.Class")
+            .deny("java.lang.Object.getClass")
+            .deny("java.lang.Thread")
+        );
+
+        ScriptEvaluatorTest.cookSandboxed(sandbox, "return Math.max(a, 3) + Integer.MAX_VALUE + new Object().hashCode();");
+        ScriptEvaluatorTest.cookSandboxed(sandbox, "return (int) System.currentTimeMillis();");
+        ScriptEvaluatorTest.cookSandboxed(sandbox, "class C { int f(int x) { return x; } } return new C().f(a);");
+
+        // String concatenation implicitly references "java.lang.StringBuilder"; that is not subject to the rules.
+        ScriptEvaluatorTest.cookSandboxed(sandbox, "return (\"x\" + a).length();");
+
+        ScriptEvaluatorTest.assertNotPermitted(sandbox, "System.exit(a); return 0;", "java.lang.System.exit");
+        ScriptEvaluatorTest.assertNotPermitted(sandbox, "System.out.println(); return 0;", "java.lang.System.out");
+        ScriptEvaluatorTest.assertNotPermitted(
+            sandbox,
+            "return \"abc\".getClass() == null ? 1 : 2;",
+            "java.lang.Object.getClass"
+        );
+        ScriptEvaluatorTest.assertNotPermitted(sandbox, "return java.util.List.class.hashCode();", "java.util.List");
+        ScriptEvaluatorTest.assertNotPermitted(sandbox, "new java.io.File(\"x\").delete(); return 0;", "java.io.File");
+        ScriptEvaluatorTest.assertNotPermitted(
+            sandbox,
+            "new Thread() { public void run() {} }; return 0;",
+            "java.lang.Thread.<init>"
+        );
+
+        // Method and constructor references must not bypass the sandbox.
+        sandbox = (
+            new CompileTimeSandbox(false)
+            .allow("java.lang")
+            .allow("java.util.function")
+            .deny("java.lang.System")
+            .allow("java.lang.System.currentTimeMillis")
+        );
+        ScriptEvaluatorTest.cookSandboxed(
+            sandbox,
+            "java.util.function.LongSupplier s = System::currentTimeMillis; return (int) s.getAsLong();"
+        );
+        ScriptEvaluatorTest.cookSandboxed(
+            sandbox,
+            (
+                ""
+                + "java.util.function.Function<String, StringBuilder> f = StringBuilder::new;\n"
+                + "return f.apply(\"x\").hashCode();"
+            )
+        );
+        ScriptEvaluatorTest.assertNotPermitted(
+            sandbox,
+            "java.util.function.IntConsumer c = System::exit; c.accept(42); return 0;",
+            "java.lang.System.exit"
+        );
+        ScriptEvaluatorTest.assertNotPermitted(
+            sandbox,
+            "java.util.function.Function<String, Object> f = java.io.File::new; return f.apply(\"x\").hashCode();",
+            "java.io.File"
+        );
+    }
+
+    private static void
+    cookSandboxed(CompileTimeSandbox sandbox, String script) throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setCompileTimeSandbox(sandbox);
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+        se.cook(script);
+    }
+
+    private static void
+    assertNotPermitted(CompileTimeSandbox sandbox, String script, String reference) throws Exception {
+        try {
+            ScriptEvaluatorTest.cookSandboxed(sandbox, script);
+            Assert.fail("CompileException expected");
+        } catch (CompileException ce) {
+            Assert.assertTrue(ce.getMessage(), ce.getMessage().contains("\"" + reference));
+        }
+    }
+
+    @Test public void
+    testExecutionBudget() throws Exception {
+        ScriptEvaluator sum       = ScriptEvaluatorTest.cookInstrumented(
+            "int s = 0; for (int i = 0; i < a; i++) s += i; return s;"
+        );
+        ScriptEvaluator endless   = ScriptEvaluatorTest.cookInstrumented(
+            "int b = a; while (b > 0) { try { b++; } catch (RuntimeException e) {} } return b;"
+        );
+        ScriptEvaluator recursive = ScriptEvaluatorTest.cookInstrumented(
+            "class C { int f(int x) { return x == 0 ? 0 : this.f(x - 1) + 1; } } return new C().f(a);"
+        );
+        ScriptEvaluator wrapping  = ScriptEvaluatorTest.cookInstrumented(
+            "int b = a; do { b++; } while (b != 0); return b;"
+        );
+
+        // Without a budget, there is no limit.
+        Assert.assertEquals(4950, sum.evaluate(new Object[] { 100 }));
+        Assert.assertEquals(0, wrapping.evaluate(new Object[] { -5 }));
+
+        ExecutionBudget budget = ExecutionBudget.start(1000, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        try {
+            Assert.assertEquals(4950, sum.evaluate(new Object[] { 100 }));
+            Assert.assertTrue(budget.getExecutedSteps() > 100);
+            Assert.assertTrue(budget.getExecutedSteps() < 110);
+
+            ScriptEvaluatorTest.assertBudgetExceeded(endless, 1);
+            ScriptEvaluatorTest.assertBudgetExceeded(recursive, 2000);
+        } finally {
+            budget.close();
+        }
+
+        budget = ExecutionBudget.start(Long.MAX_VALUE, 50, TimeUnit.MILLISECONDS);
+        try {
+            ScriptEvaluatorTest.assertBudgetExceeded(wrapping, 1);
+        } finally {
+            budget.close();
+        }
+    }
+
+    @Test public void
+    testExecutionBudgetEscape() throws Exception {
+
+        // Untrusted code that starts a budget of its own, and leaves it open.
+        ScriptEvaluator escape = ScriptEvaluatorTest.cookInstrumented(
+            ""
+            + "class C { int f() { int n = 0; for (int i = 0; i < 100000000; i++) n++; return n; } }\n"
+            + "org.codehaus.janino.ExecutionBudget.start(\n"
+            + "    Long.MAX_VALUE,\n"
+            + "    Long.MAX_VALUE,\n"
+            + "    java.util.concurrent.TimeUnit.SECONDS\n"
+            + ");\n"
+            + "return new C().f();\n"
+        );
+
+        // Untrusted code that executes each piece of work under a new budget.
+        ScriptEvaluator renew = ScriptEvaluatorTest.cookInstrumented(
+            ""
+            + "class C { int f() { int n = 0; for (int i = 0; i < 500; i++) n++; return n; } }\n"
+            + "for (;;) {\n"
+            + "    org.codehaus.janino.ExecutionBudget b = org.codehaus.janino.ExecutionBudget.start(\n"
+            + "        Long.MAX_VALUE,\n"
+            + "        Long.MAX_VALUE,\n"
+            + "        java.util.concurrent.TimeUnit.SECONDS\n"
+            + "    );\n"
+            + "    new C().f();\n"
+            + "    b.close();\n"
+            + "}\n"
+        );
+
+        ExecutionBudget budget = ExecutionBudget.start(1000, 100, TimeUnit.MILLISECONDS);
+        try {
+            ScriptEvaluatorTest.assertBudgetExceeded(escape, 0);
+        } finally {
+            budget.close(); // Must also close the budget that the script left open.
+        }
+
+        budget = ExecutionBudget.start(10000, Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        try {
+            ScriptEvaluatorTest.assertBudgetExceeded(renew, 0);
+            Assert.assertTrue(budget.getExecutedSteps() < 12000);
+        } finally {
+            budget.close();
+        }
+
+        // Closing a budget twice is an error.
+        try {
+            budget.close();
+            Assert.fail("IllegalStateException expected");
+        } catch (IllegalStateException ise) {}
+    }
+
+    private static ScriptEvaluator
+    cookInstrumented(String script) throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.options(EnumSet.of(JaninoOption.EXECUTION_BUDGET_INSTRUMENTED));
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+        se.cook(script);
+        return se;
+    }
+
+    private static void
+    assertBudgetExceeded(ScriptEvaluator se, int a) throws Exception {
+        try {
+            se.evaluate(new Object[] { a });
+            Assert.fail("ExecutionBudgetExceededException expected");
+        } catch (InvocationTargetException ite) {
+            Assert.assertTrue(ite.getCause() instanceof ExecutionBudgetExceededException);
+        }
+    }
+
+    @Test public void
+    testLineProfiling() throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.options(EnumSet.of(JaninoOption.LINE_PROFILING_INSTRUMENTED));
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+        se.cook(
+            ""
+            + "int s = 0;\n"
+            + "for (int i = 0; i < a; i++) {\n"
+            + "    if (i % 2 == 0) s += i;\n"
+            + "}\n"
+            + "class C { int twice(int x) { return 2 * x; } }\n"
+            + "return new C().twice(s);\n"
+        );
+        Assert.assertEquals(40, se.evaluate(new Object[] { 10 }));
+
+        LineProfile profile = LineProfile.forClass(se.getMethod().getDeclaringClass());
+        Assert.assertNotNull(profile);
+        Assert.assertEquals(1, profile.getCount(1));
+        Assert.assertEquals(1, profile.getCount(2));
+        Assert.assertEquals(15, profile.getCount(3)); // 10 IF statements plus 5 assignments
+        Assert.assertEquals(1, profile.getCount(6));
+
+        // The local class has a profile of its own.
+        Class<?>    sc         = se.getMethod().getDeclaringClass();
+        LineProfile profileOfC = null;
+        for (Map.Entry<Class<?>, LineProfile> e : LineProfile.getProfiles().entrySet()) {
+            Class<?> c = e.getKey();
+            if (c.getClassLoader() == sc.getClassLoader() && c != sc) {
+                profileOfC = e.getValue();
+            }
+        }
+        Assert.assertNotNull(profileOfC);
+        Assert.assertEquals(2, profileOfC.getCount(5)); // The implicit constructor and the RETURN statement
+
+        se.evaluate(new Object[] { 10 });
+        Assert.assertEquals(30, profile.getCount(3));
+
+        profile.reset();
+        Assert.assertEquals(0, profile.getCounts().length);
+        se.evaluate(new Object[] { 3 });
+        Assert.assertEquals(5, profile.getCount(3));
+    }
+
+    @Test public void
+    testBytecodeCache() throws Exception {
+
+        File          cacheDirectory = this.temporaryFolder.getRoot();
+        BytecodeCache cache          = new BytecodeCache(cacheDirectory);
+        Set<Phase>    phases         = EnumSet.noneOf(Phase.class);
+
+        // Cache miss.
+        Assert.assertEquals(6, ScriptEvaluatorTest.evaluateCached(cache, "return a * 2;", 3, phases));
+        Assert.assertEquals(1, ScriptEvaluatorTest.countFiles(cacheDirectory));
+        Assert.assertTrue(phases.contains(Phase.CODE_GENERATION));
+        Assert.assertTrue(phases.contains(Phase.CLASS_FILE_SERIALIZATION));
+
+        // Cache hit, even with a new cache instance (as after a JVM restart); the script is parsed (to compute the
+        // cache key), but not compiled.
+        BytecodeCache cache2       = new BytecodeCache(cacheDirectory);
+        long          compileCount = CompilerStatistics.INSTANCE.getCompileCount();
+        long          hitCount     = CompilerStatistics.INSTANCE.getBytecodeCacheHits();
+        phases.clear();
+        Assert.assertEquals(8, ScriptEvaluatorTest.evaluateCached(cache2, "return a * 2;", 4, phases));
+        Assert.assertEquals(1, ScriptEvaluatorTest.countFiles(cacheDirectory));
+        Assert.assertEquals(EnumSet.of(Phase.SCAN, Phase.PARSE, Phase.CLASS_DEFINITION), phases);
+        Assert.assertEquals(compileCount, CompilerStatistics.INSTANCE.getCompileCount());
+        Assert.assertEquals(hitCount + 1, CompilerStatistics.INSTANCE.getBytecodeCacheHits());
+
+        // Different source, different entry.
+        phases.clear();
+        Assert.assertEquals(7, ScriptEvaluatorTest.evaluateCached(cache, "return a + 2;", 5, phases));
+        Assert.assertEquals(2, ScriptEvaluatorTest.countFiles(cacheDirectory));
+        Assert.assertTrue(phases.contains(Phase.CODE_GENERATION));
+
+        // Different classpath signature, different entry.
+        phases.clear();
+        Assert.assertEquals(
+            6,
+            ScriptEvaluatorTest.evaluateCached(cache.setClasspathSignature("v2"), "return a * 2;", 3, phases)
+        );
+        Assert.assertEquals(3, ScriptEvaluatorTest.countFiles(cacheDirectory));
+        Assert.assertTrue(phases.contains(Phase.CODE_GENERATION));
+    }
+
+    @Test public void
+    testCompilationListener() throws Exception {
+
+        final Map<Phase, Integer> counts = new EnumMap<Phase, Integer>(Phase.class);
+
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setCompilationListener(new CompilationListener() {
+
+            @Override public void
+            phaseCompleted(@Nullable String fileName, Phase phase, int count, long durationNanos) {
+                Assert.assertEquals("script.java", fileName);
+                Assert.assertTrue(durationNanos >= 0);
+                Assert.assertNull(counts.put(phase, count));
+            }
+        });
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+
+        long compileCount = CompilerStatistics.INSTANCE.getCompileCount();
+        long classCount   = CompilerStatistics.INSTANCE.getClassesDefinedCount();
+
+        se.cook("script.java", new StringReader("return a * 2;"));
+        Assert.assertEquals(6, se.evaluate(new Object[] { 3 }));
+
+        Assert.assertEquals(Integer.valueOf(6), counts.get(Phase.SCAN)); // "return", "a", "*", "2", ";", END_OF_INPUT
+        Assert.assertEquals(Integer.valueOf(1), counts.get(Phase.PARSE));
+        Assert.assertEquals(Integer.valueOf(1), counts.get(Phase.CODE_GENERATION));
+        Assert.assertEquals(Integer.valueOf(2), counts.get(Phase.STACK_MAP_COMPUTATION)); // Constructor and method
+        Assert.assertEquals(Integer.valueOf(1), counts.get(Phase.CLASS_FILE_SERIALIZATION));
+        Assert.assertEquals(Integer.valueOf(1), counts.get(Phase.CLASS_DEFINITION));
+
+        Assert.assertTrue(CompilerStatistics.INSTANCE.getCompileCount() > compileCount);
+        Assert.assertTrue(CompilerStatistics.INSTANCE.getClassesDefinedCount() > classCount);
+        Assert.assertTrue(CompilerStatistics.INSTANCE.getBytesGenerated() > 0);
+    }
+
+    /**
+     * @param phases Gets the phases of the compilation added
+     */
+    private static Object
+    evaluateCached(BytecodeCache cache, String script, int a, final Set<Phase> phases) throws Exception {
+        ScriptEvaluator se = new ScriptEvaluator();
+        se.setBytecodeCache(cache);
+        se.setCompilationListener(new CompilationListener() {
+
+            @Override public void
+            phaseCompleted(@Nullable String fileName, Phase phase, int count, long durationNanos) { phases.add(phase); }
+        });
+        se.setReturnType(int.class);
+        se.setParameters(new String[] { "a" }, new Class<?>[] { int.class });
+        se.cook(script);
+        return se.evaluate(new Object[] { a });
+    }
+
+    private static int
+    countFiles(File directory) {
+        int result = 0;
+        for (File f : directory.listFiles()) result += f.isDirectory() ? ScriptEvaluatorTest.countFiles(f) : 1;
+        return result;
+    }
 }
@@ -0,0 +1,156 @@
+
+/*
+ * Janino - An embedded Java[TM] compiler
+ *
+ * Copyright (c) 2022 Arno Unkrig. All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *
+ *    1. Redistributions of source code must retain the above copyright notice, this list of conditions and the
+ *       following disclaimer.
+ *    2. Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *       following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    3. Neither the name of the copyright holder nor the names of its contributors may be used to endorse or promote
+ *       products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT HOLDER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ */
+
+package org.codehaus.janino.tests;
+
+import java.lang.reflect.Method;
+
+import org.codehaus.janino.CodeContext;
+import org.codehaus.janino.SimpleCompiler;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+// SUPPRESS CHECKSTYLE JavadocMethod:9999
+
+/**
+ * Unit tests for the stack maps that the {@link CodeContext} tracks while generating code, in particular for pushing
+ * and popping locals and operands of both categories, and for merging stack maps at branch targets. The JVM's
+ * type-checking verifier rejects the generated classes iff any of the resulting "StackMapTable" frames is wrong.
+ */
+public
+class StackMapTest {
+
+    private static Class<?> clazz;
+
+    @BeforeClass public static void
+    setUp() throws Exception {
+        SimpleCompiler sc = new SimpleCompiler();
+        sc.cook(
+            ""
+            + "package pkg;\n"
+            + "\n"
+            + "public class Foo {\n"
+            + "\n"
+            // Locals of different types in the same slots, merged at the end of the IF statement and in the loop.
+            + "    public static long\n"
+            + "    locals(int x) {\n"
+            + "        long r;\n"
+            + "        if (x > 0) {\n"
+            + "            long a = x;\n"
+            + "            r = a * 2;\n"
+            + "        } else {\n"
+            + "            double b = x;\n"
+            + "            int    c = 7;\n"
+            + "            r = (long) b - c;\n"
+            + "        }\n"
+            + "        double d;\n"
+            + "        for (int i = 0; i < 3; ++i) { d = i; r += (long) d; }\n"
+            + "        return r;\n"
+            + "    }\n"
+            + "\n"
+            // Category-2 operands below conditional expressions.
+            + "    public static double\n"
+            + "    operands(int x) {\n"
+            + "        return (\n"
+            + "            1L\n"
+            + "            + (x > 0 ? 2L : 3L) * (x > 1 ? (x > 2 ? 5.0 : 6.0) : 7.0)\n"
+            + "            + m(10L, x > 0 ? \"a\" : \"bb\", x > 1 ? 0.5 : 1.5, x)\n"
+            + "        );\n"
+            + "    }\n"
+            + "    private static double m(long l, String s, double d, int i) { return l + s.length() + d + i; }\n"
+            + "\n"
+            // Uninitialized objects below conditional expressions.
+            + "    public static String\n"
+            + "    uninitialized(int x) {\n"
+            + "        return new StringBuilder(x > 0 ? \"p\" : \"q\").append(x > 1 ? 1L : 2.5).toString();\n"
+            + "    }\n"
+            + "\n"
+            // Locals that are pushed and popped in nested loops, TRY and SWITCH statements.
+            + "    public static String\n"
+            + "    nested(int n) {\n"
+            + "        StringBuilder sb = new StringBuilder();\n"
+            + "        for (int i = 0; i < n; i++) {\n"
+            + "            String s = \"s\" + i;\n"
+            + "            for (long j = 0; j < i; j++) {\n"
+            + "                double d = j * 0.5;\n"
+            + "                sb.append(s).append(':').append(d).append(' ');\n"
+            + "            }\n"
+            + "            try {\n"
+            + "                if (i % 2 == 0) throw new IllegalStateException(\"e\" + i);\n"
+            + "                sb.append('|');\n"
+            + "            } catch (IllegalStateException e) {\n"
+            + "                long t = i;\n"
+            + "                sb.append(e.getMessage()).append(t);\n"
+            + "            }\n"
+            + "            try {\n"
+            + "                switch (i) {\n"
+            + "                case 1:  { long q = 1; sb.append(q); } break;\n"
+            + "                case 2:  { double q = 2; sb.append(q); }\n"
+            + "                default: sb.append('#');\n"
+            + "                }\n"
+            + "            } finally {\n"
+            + "                sb.append(';');\n"
+            + "            }\n"
+            + "        }\n"
+            + "        return sb.toString();\n"
+            + "    }\n"
+            + "}\n"
+        );
+
+        // Loading and initializing the class also verifies it.
+        StackMapTest.clazz = Class.forName("pkg.Foo", true, sc.getClassLoader());
+    }
+
+    @Test public void
+    testLocals() throws Exception {
+        Assert.assertEquals(13L, StackMapTest.invoke("locals", 5));
+        Assert.assertEquals(-9L, StackMapTest.invoke("locals", -5));
+    }
+
+    @Test public void
+    testOperands() throws Exception {
+        Assert.assertEquals(25.5, StackMapTest.invoke("operands", 3));
+        Assert.assertEquals(28.5, StackMapTest.invoke("operands", 1));
+        Assert.assertEquals(35.5, StackMapTest.invoke("operands", 0));
+    }
+
+    @Test public void
+    testUninitialized() throws Exception {
+        Assert.assertEquals("p1.0", StackMapTest.invoke("uninitialized", 2));
+        Assert.assertEquals("q2.5", StackMapTest.invoke("uninitialized", 0));
+    }
+
+    @Test public void
+    testNested() throws Exception {
+        Assert.assertEquals("e00#;s1:0.0 |1;s2:0.0 s2:0.5 e222.0#;", StackMapTest.invoke("nested", 3));
+    }
+
+    private static Object
+    invoke(String methodName, int arg) throws Exception {
+        Method m = StackMapTest.clazz.getMethod(methodName, int.class);
+        return m.invoke(null, arg);
+    }
+}